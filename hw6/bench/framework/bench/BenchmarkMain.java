@@ -0,0 +1,39 @@
+package framework.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+
+/**
+ * Runs the benchmarks in this package with the GC profiler attached, so that
+ * every result comes with its allocation rate (gc.alloc.rate and
+ * gc.alloc.rate.norm, the bytes allocated per operation), and writes the
+ * results to jmh-result.json so runs can be compared. Any JMH command line
+ * options can be passed, for instance a regular expression to only run some
+ * of the benchmarks, or {@code -p size=512} to only run one size.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public class BenchmarkMain
+{
+
+	public static void main(String[] args) throws RunnerException,
+			CommandLineOptionException
+	{
+		CommandLineOptions cmd = new CommandLineOptions(args);
+		OptionsBuilder opts = new OptionsBuilder();
+		opts.parent(cmd);
+		if (cmd.getIncludes().isEmpty())
+			opts.include(BenchmarkMain.class.getPackage().getName() + ".");
+		opts.addProfiler(GCProfiler.class);
+		opts.resultFormat(ResultFormatType.JSON);
+		opts.result("jmh-result.json");
+
+		new Runner(opts.build()).run();
+	}
+}
@@ -0,0 +1,116 @@
+package framework.bench;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import framework.lib.Neighborhood;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+
+/**
+ * Microbenchmarks for the small operations that a step, or a client walking
+ * a State, does once per cell: hashing and comparing points, iterating over
+ * the points of a State, and reading cells out of a Neighborhood. Reading is
+ * measured both in the interior and at a corner of a wrapping world, where
+ * the coordinates have to be wrapped around. Scores are in nanoseconds per
+ * operation.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PointBenchmark
+{
+
+	private static final int			SIZE	= 256;
+
+	private Point2D						p;
+	private Point2D						q;
+	private HashMap<Point2D, Integer>	map;
+	private State<Point2D>				state;
+	private Neighborhood<Point2D>		interior;
+	private Neighborhood<Point2D>		corner;
+	private Point2D[]					offsets;
+
+	@Setup
+	public void setUp()
+	{
+		p = new Point2D(12, 34);
+		q = new Point2D(12, 34);
+		map = new HashMap<Point2D, Integer>();
+		for (int x = 0; x < 64; x++)
+			for (int y = 0; y < 64; y++)
+				map.put(new Point2D(x, y), x ^ y);
+
+		boolean[] wraps = { true, true };
+		state = new State<Point2D>(new Point2D(SIZE, SIZE), 2, wraps);
+		for (int i = 0; i < SIZE; i++)
+			state.setCellState(new Point2D(i, i * 7 % SIZE), 1);
+
+		interior = state.getNeighborhood(new Point2D(SIZE / 2, SIZE / 2), 1);
+		corner = state.getNeighborhood(new Point2D(0, 0), 1);
+		offsets = new Point2D[9];
+		int i = 0;
+		for (Point2D o : interior)
+			offsets[i++] = (Point2D) o.copy();
+	}
+
+	@Benchmark
+	public int pointHashCode()
+	{
+		return p.hashCode();
+	}
+
+	@Benchmark
+	public boolean pointEquals()
+	{
+		return p.equals(q);
+	}
+
+	@Benchmark
+	public Integer hashMapGet()
+	{
+		return map.get(q);
+	}
+
+	/**
+	 * Walks every point of a 256x256 State, so divide by 65536 for the cost
+	 * per point.
+	 */
+	@Benchmark
+	public void pointIterator(Blackhole bh)
+	{
+		Iterator<Point2D> it = state.iterator();
+		while (it.hasNext())
+			bh.consume(it.next());
+	}
+
+	@Benchmark
+	public int hoodInterior()
+	{
+		int sum = 0;
+		for (Point2D o : offsets)
+			sum += interior.getCellState(o);
+		return sum;
+	}
+
+	@Benchmark
+	public int hoodWrapped()
+	{
+		int sum = 0;
+		for (Point2D o : offsets)
+			sum += corner.getCellState(o);
+		return sum;
+	}
+}
@@ -0,0 +1,112 @@
+package framework.bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+
+import example.BriansBrainRule;
+import example.LifeRule;
+import example.Rule110;
+import example.Seeds;
+import framework.interfaces.Rule;
+import framework.lib.CompiledRule;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+
+/**
+ * Measures State.step for each of the example rules, on square worlds of
+ * several sizes that start out with a random fraction of their cells alive.
+ * The score of each benchmark is in generations per second, and the cells
+ * counter gives the same rate in cells per second. The world is re-seeded at
+ * the start of each iteration, so that rules like Seeds that fill or empty
+ * the world don't end up measuring a different pattern than they started
+ * with.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+@org.openjdk.jmh.annotations.State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class StepBenchmark
+{
+
+	/**
+	 * Counts the cells stepped, which JMH reports as a rate next to the
+	 * generations per second.
+	 */
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	@org.openjdk.jmh.annotations.State(Scope.Thread)
+	public static class Counters
+	{
+		public long	cells;
+
+		@Setup(Level.Iteration)
+		public void reset()
+		{
+			cells = 0;
+		}
+	}
+
+	@Param({ "life", "seeds", "briansbrain", "rule110" })
+	public String			rule;
+
+	@Param({ "10", "64", "512", "4096" })
+	public int				size;
+
+	@Param({ "0.05", "0.3" })
+	public double			density;
+
+	@Param({ "false", "true" })
+	public boolean			compiled;
+
+	private Rule<Point2D>	r;
+	private State<Point2D>	state;
+	private long			numCells;
+
+	@Setup(Level.Iteration)
+	public void setUp()
+	{
+		int numStates = 2;
+		if (rule.equals("life"))
+			r = new LifeRule();
+		else if (rule.equals("seeds"))
+			r = new Seeds();
+		else if (rule.equals("briansbrain")) {
+			r = new BriansBrainRule();
+			numStates = 3;
+		}
+		else if (rule.equals("rule110"))
+			r = new Rule110();
+		else
+			throw new IllegalArgumentException("Unknown rule " + rule);
+
+		if (compiled) r = CompiledRule.compile(r, numStates);
+
+		boolean[] wraps = { true, true };
+		state = new State<Point2D>(new Point2D(size, size), numStates, wraps);
+		Random random = new Random(size);
+		for (int y = 0; y < size; y++)
+			for (int x = 0; x < size; x++)
+				if (random.nextDouble() < density)
+					state.setCellState(new Point2D(x, y), 1 + random.nextInt(numStates - 1));
+		numCells = (long) size * size;
+	}
+
+	@Benchmark
+	public State<Point2D> step(Counters counters)
+	{
+		state.step(r);
+		counters.cells += numCells;
+		return state;
+	}
+}
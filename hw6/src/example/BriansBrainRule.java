@@ -2,24 +2,24 @@ package example;
 
 import java.util.HashMap;
 
-import framework.interfaces.Rule;
+import framework.interfaces.QuiescentRule;
 import framework.lib.Neighborhood;
 import framework.lib.Point2D;
 import framework.lib.State;
 
-public class BriansBrainRule implements Rule<Point2D>
+public class BriansBrainRule implements QuiescentRule<Point2D>
 {
 
+	private static final Point2D	CENTER	= new Point2D(0, 0);
+
 	@Override
 	public int stepCell(Neighborhood<Point2D> n)
 	{
-		int center = n.getCellState(getOrigin());
+		int center = n.getCellState(CENTER);
 		if(center != 0)
 			return center - 1;
 		
-		int aliveCount = 0;
-		for(Point2D p : n)
-			aliveCount += n.getCellState(p) == 2 ? 1 : 0;
+		int aliveCount = n.countState(2);
 		
 		return (aliveCount == 2) ? 2 : 0;
 	}
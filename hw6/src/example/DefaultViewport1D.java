@@ -6,9 +6,11 @@ import java.awt.Rectangle;
 
 import javax.swing.JToolBar;
 
+import framework.interfaces.CellVisitor;
 import framework.interfaces.Viewport;
 import framework.interfaces.Visualization;
 import framework.lib.Point1D;
+import framework.lib.Region;
 import framework.lib.State;
 
 
@@ -17,23 +19,21 @@ public class DefaultViewport1D implements Viewport<Point1D>
 	private Visualization	v;
 
 	@Override
-	public void drawState(State<Point1D> s, Graphics g)
+	public void drawState(State<Point1D> s, final Graphics g)
 	{
 		Rectangle r = g.getClipBounds();
 		Point1D size = s.getSize();
-		int cellWidth = r.width/size.getCoord();
-		for (Point1D p : s) {
-			if (s.getCellState(p) == 1) {
-				g.setColor(v.getColorRep(1));
-				g.fillRect(p.getCoord() * cellWidth, 0, cellWidth, cellWidth);
+		final int cellWidth = r.width/size.getCoord();
+		s.visitCells(new Region<Point1D>(new Point1D(0), size), new CellVisitor() {
+			@Override
+			public void visitCell(int[] coords, int state)
+			{
+				g.setColor(v.getColorRep(state == 1 ? 1 : 0));
+				g.fillRect(coords[0] * cellWidth, 0, cellWidth, cellWidth);
+				g.setColor(Color.white);
+				g.drawRect(coords[0] * cellWidth, 0, cellWidth, cellWidth);
 			}
-			else {
-				g.setColor(v.getColorRep(0));
-				g.fillRect(p.getCoord() * cellWidth, 0, cellWidth, cellWidth);
-			}
-			g.setColor(Color.white);
-			g.drawRect(p.getCoord() * cellWidth, 0, cellWidth, cellWidth);
-		}
+		});
 	}
 
 	@Override
@@ -3,38 +3,105 @@ package example;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
 
 import javax.swing.JToolBar;
 
+import framework.interfaces.CellVisitor;
 import framework.interfaces.Viewport;
 import framework.interfaces.Visualization;
+import framework.lib.DirtyRegions;
 import framework.lib.Point2D;
+import framework.lib.Region;
 import framework.lib.State;
 
 
+/**
+ * Draws a 2D State as a grid of square cells. The cells are drawn into an
+ * image that is kept between calls, writing pixels straight into its array,
+ * and only the cells in the regions the State reports as changed (see
+ * {@link State#trackChanges()}) are redrawn, so the cost of a frame depends
+ * on how much changed rather than on the size of the world. The image is
+ * redrawn in full when the State, its size, the cell size, the
+ * visualization or the grid lines change.
+ */
 public class DefaultViewport2D implements Viewport<Point2D>
 {
-	private Visualization	v;
+	private Visualization			v;
+	private boolean					gridLines	= true;
+
+	private State<Point2D>			state;
+	private DirtyRegions<Point2D>	changes;
+	private Point2D					size;
+	private int						cellWidth;
+	private BufferedImage			image;
+	private int[]					pixels;
+	private int[]					colors		= new int[0];
+	private final CellVisitor		painter		= new Painter();
 
 	@Override
 	public void drawState(State<Point2D> s, Graphics g)
 	{
 		Rectangle r = g.getClipBounds();
 		Point2D size = s.getSize();
-		int cellWidth = r.height/((size.getX() < size.getY()) ? size.getY() : size.getX());
-		for (Point2D p : s) {
-			g.setColor(v.getColorRep(s.getCellState(p)));
-			g.fillRect(p.getX() * cellWidth, p.getY() * cellWidth, cellWidth, cellWidth);
+		int cells = Math.max(size.getX(), size.getY());
+		if (cells == 0) return;
+
+		// A partial repaint has a smaller clip, which says nothing about the
+		// size of the panel
+		int cellWidth = this.cellWidth;
+		if (image == null || r.x == 0 && r.y == 0)
+			cellWidth = Math.max(1, r.height / cells);
 
-			g.setColor(Color.white);
-			g.drawRect(p.getX() * cellWidth, p.getY() * cellWidth, cellWidth, cellWidth);
+		if (s != state) {
+			if (state != null) state.stopTrackingChanges(changes);
+			state = s;
+			changes = s.trackChanges();
+			image = null;
+		}
+		if (image == null || cellWidth != this.cellWidth || !size.equals(this.size)) {
+			this.size = size;
+			this.cellWidth = cellWidth;
+			createImage();
+			changes.take();
+			s.visitCells(new Region<Point2D>(new Point2D(0, 0), size), painter);
+		}
+		else {
+			for (Region<Point2D> region : changes.take())
+				s.visitCells(region, painter);
 		}
+
+		g.drawImage(image, 0, 0, null);
 	}
 
 	@Override
 	public void setVisualization(Visualization v)
 	{
 		this.v = v;
+		colors = new int[0];
+		image = null;
+	}
+
+	/**
+	 * Sets whether white lines are drawn between the cells. They are left
+	 * out when cells are less than 3 pixels wide, whatever this is set to.
+	 *
+	 * @param gridLines true to draw grid lines
+	 */
+	public void setGridLines(boolean gridLines)
+	{
+		this.gridLines = gridLines;
+		image = null;
+	}
+
+	/**
+	 * @return true if grid lines are drawn between the cells
+	 */
+	public boolean isGridLines()
+	{
+		return gridLines;
 	}
 
 	@Override
@@ -44,4 +111,58 @@ public class DefaultViewport2D implements Viewport<Point2D>
 		return null;
 	}
 
+	/**
+	 * Makes a new image for the current size, with the grid lines drawn in.
+	 * The lines are never drawn over again, since cells only fill the space
+	 * between them.
+	 */
+	private void createImage()
+	{
+		int width = size.getX() * cellWidth + 1;
+		int height = size.getY() * cellWidth + 1;
+		image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+		if (hasGridLines()) {
+			Arrays.fill(pixels, Color.white.getRGB());
+		}
+	}
+
+	/**
+	 * Redraws each cell it is shown.
+	 */
+	private class Painter implements CellVisitor
+	{
+		@Override
+		public void visitCell(int[] coords, int s)
+		{
+			int width = image.getWidth();
+			int inset = hasGridLines() ? 1 : 0;
+			int rgb = color(s);
+			int left = coords[0] * cellWidth + inset;
+			int right = (coords[0] + 1) * cellWidth;
+			for (int py = coords[1] * cellWidth + inset; py < (coords[1] + 1) * cellWidth; py++)
+				Arrays.fill(pixels, py * width + left, py * width + right, rgb);
+		}
+	}
+
+	private boolean hasGridLines()
+	{
+		return gridLines && cellWidth >= 3;
+	}
+
+	/**
+	 * Gets the RGB value of a state, asking the visualization only the first
+	 * time each state is drawn.
+	 */
+	private int color(int s)
+	{
+		if (s >= colors.length) {
+			int old = colors.length;
+			colors = Arrays.copyOf(colors, Math.max(s + 1, old * 2));
+			for (int i = old; i < colors.length; i++)
+				colors[i] = v.getColorRep(i).getRGB();
+		}
+		return colors[s];
+	}
 }
@@ -0,0 +1,117 @@
+package example;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JButton;
+import javax.swing.JLabel;
+import javax.swing.JToolBar;
+
+import framework.interfaces.CellVisitor;
+import framework.interfaces.Viewport;
+import framework.interfaces.Visualization;
+import framework.lib.Point3D;
+import framework.lib.Region;
+import framework.lib.State;
+
+
+/**
+ * Draws one layer of a 3D State, the cells with a given z-coordinate, as a
+ * grid of square cells. The toolbar moves up and down through the layers.
+ * Starts on the middle layer.
+ */
+public class DefaultViewport3D implements Viewport<Point3D>
+{
+	private Visualization	v;
+	private int				layer	= -1;
+	private int				depth;
+	private JToolBar		toolbar;
+	private JLabel			label;
+
+	@Override
+	public void drawState(State<Point3D> s, final Graphics g)
+	{
+		Rectangle r = g.getClipBounds();
+		Point3D size = s.getSize();
+		int cells = Math.max(size.getX(), size.getY());
+		depth = size.getZ();
+		if (cells == 0 || depth == 0) return;
+
+		if (layer < 0 || layer >= depth) layer = depth / 2;
+		if (label != null) label.setText("Layer " + layer);
+
+		final int cellWidth = Math.max(1, Math.min(r.x + r.width, r.y + r.height) / cells);
+		Region<Point3D> slice = new Region<Point3D>(new Point3D(0, 0, layer),
+				new Point3D(size.getX(), size.getY(), layer + 1));
+		s.visitCells(slice, new CellVisitor() {
+			@Override
+			public void visitCell(int[] coords, int state)
+			{
+				g.setColor(v.getColorRep(state));
+				g.fillRect(coords[0] * cellWidth, coords[1] * cellWidth, cellWidth, cellWidth);
+			}
+		});
+	}
+
+	@Override
+	public void setVisualization(Visualization v)
+	{
+		this.v = v;
+	}
+
+	/**
+	 * Sets the layer to draw.
+	 * 
+	 * @param layer the z-coordinate of the cells to draw. A layer outside the
+	 *            State is drawn as the middle layer.
+	 */
+	public void setLayer(int layer)
+	{
+		this.layer = layer;
+	}
+
+	/**
+	 * @return the z-coordinate of the cells being drawn
+	 */
+	public int getLayer()
+	{
+		return layer;
+	}
+
+	@Override
+	public JToolBar getToolbar()
+	{
+		if (toolbar != null) return toolbar;
+
+		toolbar = new JToolBar();
+		toolbar.setFloatable(false);
+		addButton("<", -1);
+		addButton(">", 1);
+		label = new JLabel();
+		toolbar.add(label);
+		return toolbar;
+	}
+
+	/**
+	 * Private helper method that adds a button that moves through the layers
+	 * to the toolbar.
+	 */
+	private void addButton(String text, final int move)
+	{
+		JButton button = new JButton(text);
+		button.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				if (depth > 0) setLayer(Math.max(0, Math.min(depth - 1, layer + move)));
+				Component top = toolbar.getTopLevelAncestor();
+				if (top != null) top.repaint();
+			}
+		});
+		toolbar.add(button);
+	}
+
+}
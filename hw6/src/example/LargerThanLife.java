@@ -0,0 +1,102 @@
+package example;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import framework.interfaces.QuiescentRule;
+import framework.lib.Neighborhood;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+
+/**
+ * A Larger than Life rule: like the Game of Life, but a cell looks at every
+ * cell within a large square around it, and is born or survives when the
+ * number of live cells in the square, itself included, falls in a range. The
+ * default is Evans's "Bugs" (R5, B34..45, S34..58), which grows gliding
+ * blobs out of a random soup. The square is counted with boxSum, so the
+ * radius barely affects how long a step takes.
+ */
+public class LargerThanLife implements QuiescentRule<Point2D>
+{
+
+	private final int	radius;
+	private final int	birthMin;
+	private final int	birthMax;
+	private final int	survivalMin;
+	private final int	survivalMax;
+
+	/**
+	 * Creates the Bugs rule.
+	 */
+	public LargerThanLife()
+	{
+		this(5, 34, 45, 34, 58);
+	}
+
+	/**
+	 * Creates a Larger than Life rule. Counts include the cell itself.
+	 * 
+	 * @param radius the distance along each axis of the farthest cells
+	 *            counted
+	 * @param birthMin the fewest live cells that bring a dead cell to life
+	 * @param birthMax the most live cells that bring a dead cell to life
+	 * @param survivalMin the fewest live cells that keep a live cell alive
+	 * @param survivalMax the most live cells that keep a live cell alive
+	 * @throws IllegalArgumentException if radius is not positive, or birthMin
+	 *             is less than 1, since a rule that brings cells to life with
+	 *             no live neighbors isn't quiescent
+	 */
+	public LargerThanLife(int radius, int birthMin, int birthMax,
+			int survivalMin, int survivalMax)
+	{
+		if (radius < 1)
+			throw new IllegalArgumentException("Radius must be positive");
+		if (birthMin < 1)
+			throw new IllegalArgumentException("Birth must need a live cell");
+
+		this.radius = radius;
+		this.birthMin = birthMin;
+		this.birthMax = birthMax;
+		this.survivalMin = survivalMin;
+		this.survivalMax = survivalMax;
+	}
+
+	@Override
+	public int stepCell(Neighborhood<Point2D> n)
+	{
+		int count = n.boxSum(radius);
+		if (n.getCellState(getOrigin()) == 0)
+			return count >= birthMin && count <= birthMax ? 1 : 0;
+		return count >= survivalMin && count <= survivalMax ? 1 : 0;
+	}
+
+	@Override
+	public Point2D getOrigin()
+	{
+		return new Point2D(0, 0);
+	}
+
+	@Override
+	public int getNeighborhoodSize()
+	{
+		return radius;
+	}
+
+	@Override
+	public State<Point2D> getInitialState()
+	{
+		HashMap<Point2D, Integer> state = new HashMap<Point2D, Integer>();
+		boolean[] wraps = { true, true };
+
+		// A random soup in the middle
+		Random r = new Random(1);
+		for (int x = 70; x < 130; x++) {
+			for (int y = 70; y < 130; y++) {
+				if (r.nextBoolean()) state.put(new Point2D(x, y), 1);
+			}
+		}
+		return new State<Point2D>(new Point2D(200, 200), 2, wraps, state);
+	}
+
+}
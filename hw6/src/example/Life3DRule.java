@@ -0,0 +1,60 @@
+package example;
+
+import java.util.HashMap;
+import java.util.Random;
+
+import framework.interfaces.QuiescentRule;
+import framework.lib.Neighborhood;
+import framework.lib.Point3D;
+import framework.lib.State;
+
+
+/**
+ * Bays' 3D Life 5766: a dead cell with 6 live neighbors out of its 26 comes
+ * to life, and a live cell with 5 to 7 stays alive.
+ */
+public class Life3DRule implements QuiescentRule<Point3D>
+{
+
+	private static final Point3D	CENTER	= new Point3D(0, 0, 0);
+
+	@Override
+	public int stepCell(Neighborhood<Point3D> n)
+	{
+		int s = n.getCellState(CENTER);
+		int sum = n.sumStates() - s;
+		if (s == 0) return sum == 6 ? 1 : 0;
+		return sum >= 5 && sum <= 7 ? 1 : 0;
+	}
+
+	@Override
+	public Point3D getOrigin()
+	{
+		return new Point3D(0, 0, 0);
+	}
+
+	@Override
+	public int getNeighborhoodSize()
+	{
+		return 1;
+	}
+
+	@Override
+	public State<Point3D> getInitialState()
+	{
+		HashMap<Point3D, Integer> state = new HashMap<Point3D, Integer>();
+		boolean[] wraps = { true, true, true };
+
+		// A random soup in the middle
+		Random r = new Random(1);
+		for (int x = 12; x < 20; x++) {
+			for (int y = 12; y < 20; y++) {
+				for (int z = 12; z < 20; z++) {
+					if (r.nextInt(4) == 0) state.put(new Point3D(x, y, z), 1);
+				}
+			}
+		}
+		return new State<Point3D>(new Point3D(32, 32, 32), 2, wraps, state);
+	}
+
+}
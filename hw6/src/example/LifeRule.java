@@ -2,32 +2,45 @@ package example;
 
 import java.util.HashMap;
 
-import framework.interfaces.Rule;
+import framework.interfaces.OuterTotalisticRule;
+import framework.interfaces.QuiescentRule;
 import framework.lib.Neighborhood;
 import framework.lib.Point2D;
 import framework.lib.State;
 
 
-public class LifeRule implements Rule<Point2D>
+public class LifeRule implements QuiescentRule<Point2D>,
+		OuterTotalisticRule<Point2D>
 {
 
-	private static final int	NeighborhoodSize	= 1;
+	private static final int		NeighborhoodSize	= 1;
+	private static final Point2D	CENTER				= new Point2D(0, 0);
+	private static final boolean[]	BIRTH				= { false, false, false, true, false, false, false, false, false };
+	private static final boolean[]	SURVIVAL			= { false, false, true, true, false, false, false, false, false };
 
 	@Override
 	public int stepCell(Neighborhood<Point2D> n)
 	{
-		int s = n.getCellState(new Point2D(0, 0));
-		int sum = 0;
-		for (Point2D i : n) {
-			sum += n.getCellState(i);
-		}
-		sum -= s;
+		int s = n.getCellState(CENTER);
+		int sum = n.sumStates() - s;
 		if (s == 0 && sum == 3)
 			return 1;
 		else if (s == 1 && (sum == 2 || sum == 3)) return 1;
 		return 0;
 	}
 
+	@Override
+	public boolean[] getBirth()
+	{
+		return BIRTH.clone();
+	}
+
+	@Override
+	public boolean[] getSurvival()
+	{
+		return SURVIVAL.clone();
+	}
+
 	@Override
 	public Point2D getOrigin()
 	{
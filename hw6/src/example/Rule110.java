@@ -2,20 +2,24 @@ package example;
 
 import java.util.HashMap;
 
-import framework.interfaces.Rule;
+import framework.interfaces.QuiescentRule;
 import framework.lib.Neighborhood;
 import framework.lib.Point2D;
 import framework.lib.State;
 
-public class Rule110 implements Rule<Point2D>
+public class Rule110 implements QuiescentRule<Point2D>
 {
 
+	private static final Point2D	UP_LEFT		= new Point2D(-1, -1);
+	private static final Point2D	UP			= new Point2D(0, -1);
+	private static final Point2D	UP_RIGHT	= new Point2D(1, -1);
+
 	@Override
 	public int stepCell(Neighborhood<Point2D> n)
 	{
-		boolean s1 = n.getCellState(new Point2D(-1, -1)) == 1;
-		boolean s2 = n.getCellState(new Point2D(0, -1)) == 1;
-		boolean s3 = n.getCellState(new Point2D(1, -1)) == 1;
+		boolean s1 = n.getCellState(UP_LEFT) == 1;
+		boolean s2 = n.getCellState(UP) == 1;
+		boolean s3 = n.getCellState(UP_RIGHT) == 1;
 		
 		if((s1 && s2 && !s3)|| (s1 && !s2 && s3) || 
 				(!s1 && s2 && !s3) || (!s1 && !s2 && s3))
@@ -2,27 +2,43 @@ package example;
 
 import java.util.HashMap;
 
-import framework.interfaces.Rule;
+import framework.interfaces.OuterTotalisticRule;
+import framework.interfaces.QuiescentRule;
 import framework.lib.Neighborhood;
 import framework.lib.Point2D;
 import framework.lib.State;
 
-public class Seeds implements Rule<Point2D>
+public class Seeds implements QuiescentRule<Point2D>,
+		OuterTotalisticRule<Point2D>
 {
 
+	private static final Point2D	CENTER		= new Point2D(0, 0);
+	private static final boolean[]	BIRTH		= { false, false, true, false, false, false, false, false, false };
+	private static final boolean[]	SURVIVAL	= new boolean[9];
+
 	@Override
 	public int stepCell(Neighborhood<Point2D> n)
 	{
-		if(n.getCellState(getOrigin()) == 1)
+		if(n.getCellState(CENTER) == 1)
 			return 0;
 		
-		int aliveCount = 0;
-		for(Point2D p : n)
-			aliveCount += n.getCellState(p);
+		int aliveCount = n.sumStates();
 		
 		return aliveCount == 2 ? 1 : 0; 
 	}
 
+	@Override
+	public boolean[] getBirth()
+	{
+		return BIRTH.clone();
+	}
+
+	@Override
+	public boolean[] getSurvival()
+	{
+		return SURVIVAL.clone();
+	}
+
 	@Override
 	public Point2D getOrigin()
 	{
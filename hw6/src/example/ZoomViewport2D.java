@@ -0,0 +1,369 @@
+package example;
+
+import java.awt.Component;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+import javax.swing.JButton;
+import javax.swing.JComboBox;
+import javax.swing.JToolBar;
+
+import framework.interfaces.Viewport;
+import framework.interfaces.Visualization;
+import framework.lib.Point2D;
+import framework.lib.State;
+import framework.lib.Summary2D;
+
+
+/**
+ * Draws a 2D State of any size, with zoom and pan. Zoom goes in powers of
+ * two: zoomed in, each cell is a square of pixels, and zoomed out, each pixel
+ * stands for a square block of cells, colored from a Summary2D of the State.
+ * Only the part of the State that is on screen is looked at, so the cost of
+ * drawing depends on the size of the panel rather than the size of the
+ * State. <br>
+ * <br>
+ * Until it is zoomed or panned, the whole State is fitted to the panel. The
+ * toolbar has buttons for zooming, panning and fitting, and a choice of how
+ * blocks are colored.
+ */
+public class ZoomViewport2D implements Viewport<Point2D>
+{
+
+	/**
+	 * How a pixel that stands for a block of cells is colored.
+	 */
+	public enum Aggregate
+	{
+		/**
+		 * The color of the highest state in the block, so any live cell
+		 * shows.
+		 */
+		MAX_STATE,
+
+		/**
+		 * Between the color of state 0 and that of the highest state, by the
+		 * square root of the fraction of the block that is non-zero, so
+		 * dense areas stand out and sparse ones still show.
+		 */
+		DENSITY
+	}
+
+	/**
+	 * The most pixels across a cell can be, as a power of two.
+	 */
+	public static final int	MAX_ZOOM	= 6;
+
+	private static final int	OUTSIDE		= 0x404040;
+
+	private Visualization		v;
+	private int[]				colors		= new int[0];
+	private Aggregate			aggregate	= Aggregate.MAX_STATE;
+
+	private State<Point2D>		state;
+	private Summary2D			summary;
+	private boolean				fit			= true;
+	private int					zoom;
+	private int					centerX;
+	private int					centerY;
+	private int					width;
+	private int					height;
+
+	private BufferedImage		image;
+	private int[]				pixels;
+	private JToolBar			toolbar;
+
+	@Override
+	public void drawState(State<Point2D> s, Graphics g)
+	{
+		Rectangle r = g.getClipBounds();
+		width = r.x + r.width;
+		height = r.y + r.height;
+		if (width <= 0 || height <= 0) return;
+
+		if (s != state) {
+			if (summary != null) summary.close();
+			state = s;
+			summary = new Summary2D(s);
+		}
+		summary.update();
+		if (fit) fitZoom();
+		zoom = Math.max(-(summary.numLevels() - 1), Math.min(MAX_ZOOM, zoom));
+
+		if (image == null || image.getWidth() != width || image.getHeight() != height) {
+			image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+			pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+		}
+		if (zoom >= 0)
+			drawCells();
+		else
+			drawBlocks();
+
+		g.drawImage(image, 0, 0, null);
+	}
+
+	@Override
+	public void setVisualization(Visualization v)
+	{
+		this.v = v;
+		colors = new int[0];
+	}
+
+	/**
+	 * Sets the zoom, keeping the same cell in the middle.
+	 *
+	 * @param zoom the power of two of the number of pixels across a cell, or
+	 *            minus that of the number of cells across a pixel. It is kept
+	 *            between the level that shows the whole State in one pixel and
+	 *            MAX_ZOOM.
+	 */
+	public void setZoom(int zoom)
+	{
+		this.zoom = Math.min(MAX_ZOOM, zoom);
+		fit = false;
+	}
+
+	/**
+	 * @return the power of two of the number of pixels across a cell, negative
+	 *         when zoomed out
+	 */
+	public int getZoom()
+	{
+		return zoom;
+	}
+
+	/**
+	 * Sets the cell to show in the middle of the panel.
+	 *
+	 * @param x the column of the cell
+	 * @param y the row of the cell
+	 */
+	public void setCenter(int x, int y)
+	{
+		centerX = x;
+		centerY = y;
+		fit = false;
+	}
+
+	/**
+	 * Goes back to fitting the whole State to the panel.
+	 */
+	public void fit()
+	{
+		fit = true;
+	}
+
+	/**
+	 * Sets how a pixel that stands for a block of cells is colored.
+	 *
+	 * @param aggregate MAX_STATE or DENSITY
+	 * @throws IllegalArgumentException if aggregate is null
+	 */
+	public void setAggregate(Aggregate aggregate)
+	{
+		if (aggregate == null)
+			throw new IllegalArgumentException("Need a way to color blocks");
+
+		this.aggregate = aggregate;
+	}
+
+	/**
+	 * @return how a pixel that stands for a block of cells is colored
+	 */
+	public Aggregate getAggregate()
+	{
+		return aggregate;
+	}
+
+	@Override
+	public JToolBar getToolbar()
+	{
+		if (toolbar != null) return toolbar;
+
+		toolbar = new JToolBar();
+		toolbar.setFloatable(false);
+		addButton("+", "in");
+		addButton("-", "out");
+		addButton("Fit", "fit");
+		addButton("<", "left");
+		addButton(">", "right");
+		addButton("^", "up");
+		addButton("v", "down");
+
+		final JComboBox<Aggregate> choice = new JComboBox<Aggregate>(Aggregate.values());
+		choice.setSelectedItem(aggregate);
+		choice.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				setAggregate((Aggregate) choice.getSelectedItem());
+				repaint();
+			}
+		});
+		toolbar.add(choice);
+		return toolbar;
+	}
+
+	/**
+	 * Private helper method that adds a button that zooms or pans to the
+	 * toolbar.
+	 */
+	private void addButton(String text, final String action)
+	{
+		JButton button = new JButton(text);
+		button.addActionListener(new ActionListener() {
+			@Override
+			public void actionPerformed(ActionEvent e)
+			{
+				// Pan by a quarter of the panel
+				int stepX = Math.max(1, zoom >= 0 ? (width / 4) >> zoom : (width / 4) << -zoom);
+				int stepY = Math.max(1, zoom >= 0 ? (height / 4) >> zoom : (height / 4) << -zoom);
+				if (action.equals("in"))
+					setZoom(zoom + 1);
+				else if (action.equals("out"))
+					setZoom(zoom - 1);
+				else if (action.equals("fit"))
+					fit();
+				else if (action.equals("left"))
+					setCenter(centerX - stepX, centerY);
+				else if (action.equals("right"))
+					setCenter(centerX + stepX, centerY);
+				else if (action.equals("up"))
+					setCenter(centerX, centerY - stepY);
+				else if (action.equals("down")) setCenter(centerX, centerY + stepY);
+				repaint();
+			}
+		});
+		toolbar.add(button);
+	}
+
+	/**
+	 * Private helper method that redraws whatever the toolbar is in, since
+	 * the panel being drawn on isn't known here.
+	 */
+	private void repaint()
+	{
+		Component top = toolbar.getTopLevelAncestor();
+		if (top != null) top.repaint();
+	}
+
+	/**
+	 * Private helper method that picks the closest zoom that shows the whole
+	 * State, centered.
+	 */
+	private void fitZoom()
+	{
+		Point2D size = state.getSize();
+		int z = MAX_ZOOM;
+		while (z > -(summary.numLevels() - 1)
+				&& (scaled(size.getX(), z) > width || scaled(size.getY(), z) > height))
+			z--;
+
+		zoom = z;
+		centerX = size.getX() / 2;
+		centerY = size.getY() / 2;
+	}
+
+	/**
+	 * Private helper method that gets how many pixels a number of cells
+	 * takes at a zoom.
+	 */
+	private static long scaled(int cells, int zoom)
+	{
+		if (zoom >= 0) return (long) cells << zoom;
+		return (cells + (1L << -zoom) - 1) >> -zoom;
+	}
+
+	/**
+	 * Private helper method that draws each visible cell as a square of
+	 * pixels.
+	 */
+	private void drawCells()
+	{
+		int side = 1 << zoom;
+		Point2D size = state.getSize();
+		int left = centerX - (width / 2 >> zoom);
+		int top = centerY - (height / 2 >> zoom);
+
+		for (int y = top; (y - top) * side < height; y++) {
+			int py = (y - top) * side;
+			int pyEnd = Math.min(height, py + side);
+			for (int x = left; (x - left) * side < width; x++) {
+				int rgb = OUTSIDE;
+				if (x >= 0 && y >= 0 && x < size.getX() && y < size.getY())
+					rgb = color(summary.getMaxState(0, x, y));
+
+				int px = (x - left) * side;
+				int pxEnd = Math.min(width, px + side);
+				for (int row = py; row < pyEnd; row++)
+					Arrays.fill(pixels, row * width + px, row * width + pxEnd, rgb);
+			}
+		}
+	}
+
+	/**
+	 * Private helper method that draws one pixel for each visible block of
+	 * cells, from the summary.
+	 */
+	private void drawBlocks()
+	{
+		int level = -zoom;
+		int blocksX = summary.getWidth(level);
+		int blocksY = summary.getHeight(level);
+		int left = (centerX >> level) - width / 2;
+		int top = (centerY >> level) - height / 2;
+		double area = 1L << (2 * level);
+
+		for (int py = 0; py < height; py++) {
+			int y = top + py;
+			for (int px = 0; px < width; px++) {
+				int x = left + px;
+				int rgb = OUTSIDE;
+				if (x >= 0 && y >= 0 && x < blocksX && y < blocksY) {
+					int max = summary.getMaxState(level, x, y);
+					if (aggregate == Aggregate.MAX_STATE || max == 0)
+						rgb = color(max);
+					else
+						rgb = blend(color(0), color(max),
+								Math.sqrt(summary.getCount(level, x, y) / area));
+				}
+				pixels[py * width + px] = rgb;
+			}
+		}
+	}
+
+	/**
+	 * Private helper method that mixes two colors, giving a when fraction is
+	 * 0 and b when it is 1.
+	 */
+	private static int blend(int a, int b, double fraction)
+	{
+		int rgb = 0;
+		for (int shift = 0; shift < 24; shift += 8) {
+			int ca = (a >> shift) & 0xff;
+			int cb = (b >> shift) & 0xff;
+			rgb |= ((int) (ca + (cb - ca) * fraction) & 0xff) << shift;
+		}
+		return rgb;
+	}
+
+	/**
+	 * Gets the RGB value of a state, asking the visualization only the first
+	 * time each state is drawn.
+	 */
+	private int color(int s)
+	{
+		if (s >= colors.length) {
+			int old = colors.length;
+			colors = Arrays.copyOf(colors, Math.max(s + 1, old * 2));
+			for (int i = old; i < colors.length; i++)
+				colors[i] = v.getColorRep(i).getRGB() & 0xffffff;
+		}
+		return colors[s];
+	}
+}
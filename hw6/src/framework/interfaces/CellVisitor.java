@@ -0,0 +1,29 @@
+package framework.interfaces;
+
+import framework.lib.State;
+
+
+/**
+ * Is shown cells of a State one at a time, as plain ints, by
+ * {@link State#visitCells(CellVisitor)} and
+ * {@link State#visitCells(framework.lib.Region, CellVisitor)}. Unlike iterating
+ * over Points, visiting allocates nothing per cell, so it suits hot loops
+ * like drawing.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public interface CellVisitor
+{
+
+	/**
+	 * Called for each cell visited. The State must not be changed until the
+	 * visit is over.
+	 * 
+	 * @param coords the coordinates of the cell, one per axis. The same array
+	 *            is passed for every cell, so copy it to keep it, and don't
+	 *            change it.
+	 * @param state the state of the cell
+	 */
+	void visitCell(int[] coords, int state);
+
+}
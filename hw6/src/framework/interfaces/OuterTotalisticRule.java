@@ -0,0 +1,44 @@
+package framework.interfaces;
+
+import framework.lib.Point;
+
+
+/**
+ * A two state Rule whose new state for a cell only depends on whether the
+ * cell is alive and on how many of the other cells in its neighborhood are
+ * alive, like Conway's Game of Life (B3/S23) or Seeds (B2/S). Such a rule is
+ * described by the neighbor counts that bring a dead cell to life (birth)
+ * and that keep a live cell alive (survival). <br>
+ * <br>
+ * A State stepping a rule that declares itself outer-totalistic keeps the
+ * neighbor count of every cell, and only updates the counts around the cells
+ * that flipped, so each step only looks at the cells that changed and their
+ * neighbors. stepCell must agree with the birth and survival sets, since a
+ * State may use either.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point in the concrete dimension (i.e. 1D, 2D) that the automaton
+ *            runs in. Should be a strict subclass of Point.
+ */
+public interface OuterTotalisticRule<T extends Point> extends Rule<T>
+{
+
+	/**
+	 * Gets the neighbor counts that bring a dead cell to life.
+	 * 
+	 * @return an array with an entry for each count from 0 up to the number
+	 *         of cells in the neighborhood less the center, that is true if a
+	 *         dead cell with that many live neighbors becomes alive
+	 */
+	boolean[] getBirth();
+
+	/**
+	 * Gets the neighbor counts that keep a live cell alive.
+	 * 
+	 * @return an array with an entry for each count from 0 up to the number
+	 *         of cells in the neighborhood less the center, that is true if a
+	 *         live cell with that many live neighbors stays alive
+	 */
+	boolean[] getSurvival();
+
+}
@@ -0,0 +1,26 @@
+package framework.interfaces;
+
+import framework.lib.Point;
+
+
+/**
+ * A Rule that promises to be quiescent: a cell whose whole neighborhood is in
+ * state 0 stays in state 0. Since stepCell is a function of the neighborhood
+ * alone, this lets a State skip the parts of the world that can't change,
+ * which are the empty parts at first, and after that the parts with nothing in
+ * their neighborhood that changed in the last step. For worlds that are mostly
+ * empty or mostly still, this makes a step far cheaper. <br>
+ * <br>
+ * There are no extra methods to implement. Don't implement this interface if
+ * the rule can bring a cell to life out of nothing, or if its result depends
+ * on anything besides the neighborhood, such as a random number generator or
+ * the number of steps so far.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point in the concrete dimension (i.e. 1D, 2D) that the automaton
+ *            runs in. Should be a strict subclass of Point.
+ */
+public interface QuiescentRule<T extends Point> extends Rule<T>
+{
+
+}
@@ -0,0 +1,38 @@
+package framework.interfaces;
+
+import framework.lib.Point;
+import framework.lib.State;
+import framework.lib.StepMetrics;
+
+
+/**
+ * Is told how each generation went: how long the step took and what it did,
+ * and, in a Simulation, how long drawing it took. Register one with
+ * {@link State#addStepListener(StepListener)}. While no listener is
+ * registered, a State doesn't measure anything. Listeners are called on the
+ * thread that steps or draws, so they should be quick.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point in the concrete dimension (i.e. 1D, 2D) that the automaton
+ *            runs in. Should be a strict subclass of Point.
+ */
+public interface StepListener<T extends Point>
+{
+
+	/**
+	 * Called after every step of the State.
+	 * 
+	 * @param state the state after the step. It should not be modified.
+	 * @param metrics what the step took and did
+	 */
+	void stepped(State<T> state, StepMetrics metrics);
+
+	/**
+	 * Called after a Simulation's Viewport has drawn the State.
+	 * 
+	 * @param state the state that was drawn
+	 * @param nanos how long drawState took, in nanoseconds
+	 */
+	void rendered(State<T> state, long nanos);
+
+}
@@ -0,0 +1,29 @@
+package framework.interfaces;
+
+import framework.lib.Point;
+import framework.lib.State;
+
+
+/**
+ * Decides when a batch run should end before it reaches its limit of
+ * generations, for instance once the world has died out or a cell at the edge
+ * has come to life. It is checked after every step, so it should be cheap
+ * compared to a step.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point in the concrete dimension (i.e. 1D, 2D) that the automaton
+ *            runs in. Should be a strict subclass of Point.
+ */
+public interface StopCondition<T extends Point>
+{
+
+	/**
+	 * Checks whether the run should end.
+	 * 
+	 * @param state the state after the latest step. It should not be modified.
+	 * @param generation the number of steps taken so far in this run
+	 * @return true to end the run
+	 */
+	boolean shouldStop(State<T> state, long generation);
+
+}
@@ -0,0 +1,341 @@
+package framework.lib;
+
+import framework.interfaces.Rule;
+import framework.interfaces.StopCondition;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+
+/**
+ * Steps a State on a thread of its own, as fast as it can or with a delay
+ * between steps, and keeps a separate copy of it for something like a
+ * ViewportPanel to draw. Drawing never slows stepping down, and stepping never
+ * changes cells while they are being drawn. <br>
+ * <br>
+ * The copy is only changed by {@link #publish()}, which brings it up to the
+ * latest generation that has been completed, copying just the parts that
+ * changed since it was last published (see {@link DirtyRegions}). Calling
+ * publish at a fixed frame rate from the thread that draws, and drawing only
+ * when it returns true, shows the latest generation each frame and skips the
+ * ones in between. Publish never waits for a step: if one is in progress,
+ * the frame is skipped, and the stepper lets the next publish in before it
+ * starts another step. <br>
+ * <br>
+ * The stepped State must not be touched by other threads while the stepper
+ * is running, except to add or remove step listeners. Pause it first.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension that the stepped
+ *            State holds.
+ */
+public class BackgroundStepper<T extends Point>
+{
+
+	/**
+	 * The longest the stepping thread waits for a publish that was turned
+	 * away, in milliseconds, in case nothing publishes again.
+	 */
+	private static final long		MAX_PUBLISH_WAIT	= 100;
+
+	private final State<T>			state;
+	private final State<T>			snapshot;
+	private final DirtyRegions<T>	changes;
+
+	// Held for each step and each publish. Publish only tries it, so the
+	// drawing thread never waits out a step; a publish that was turned away
+	// sets publishWanted, and the stepping thread then waits on published
+	// between steps rather than taking the lock straight back
+	private final ReentrantLock		lock		= new ReentrantLock();
+	private final Condition			published	= lock.newCondition();
+	private volatile boolean		publishWanted;
+	private volatile Runnable		publishRequest;
+
+	private volatile Rule<T>		rule;
+	private volatile StopCondition<T>	stopCondition;
+	private volatile long			delay;
+	private volatile boolean		running;
+	private volatile RuntimeException	failure;
+	private Thread					thread;
+
+	/**
+	 * Creates a stepper for a State, which starts out paused.
+	 *
+	 * @param state the State to step
+	 * @param rule the rule to step it by
+	 * @throws IllegalArgumentException if state or rule is null
+	 */
+	public BackgroundStepper(State<T> state, Rule<T> rule)
+	{
+		if (state == null)
+			throw new IllegalArgumentException("Need a state to step");
+		setRule(rule);
+
+		this.state = state;
+		this.snapshot = state.copy();
+		this.changes = state.trackChanges();
+		changes.take();
+	}
+
+	/**
+	 * Gets the State being stepped.
+	 *
+	 * @return the stepped State, which may only be changed while paused
+	 */
+	public State<T> getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Gets the copy of the State that publish keeps up to date. It is the
+	 * same object every time, so a Viewport can keep track of its changes.
+	 *
+	 * @return the published copy
+	 */
+	public State<T> getSnapshot()
+	{
+		return snapshot;
+	}
+
+	/**
+	 * Sets the rule to step by, which takes effect from the next step.
+	 *
+	 * @param rule the rule
+	 * @throws IllegalArgumentException if rule is null
+	 */
+	public void setRule(Rule<T> rule)
+	{
+		if (rule == null)
+			throw new IllegalArgumentException("Need a rule to step by");
+
+		this.rule = rule;
+	}
+
+	/**
+	 * Sets a condition that is checked after every step, on the stepping
+	 * thread. Once it says to stop, the stepper pauses.
+	 *
+	 * @param condition the condition, or null to step until paused
+	 */
+	public void setStopCondition(StopCondition<T> condition)
+	{
+		this.stopCondition = condition;
+	}
+
+	/**
+	 * Sets what to do when a publish was turned away because a step was in
+	 * progress, and that step has finished. It is run on the stepping thread,
+	 * which then waits for the publish, so it should only ask the drawing
+	 * thread to publish again, like a Simulation does. Without one, the
+	 * stepping thread waits for the next publish.
+	 *
+	 * @param request what to run, or null to wait for the next publish
+	 */
+	public void setPublishRequest(Runnable request)
+	{
+		this.publishRequest = request;
+	}
+
+	/**
+	 * Sets how long to wait between steps while running.
+	 *
+	 * @param millis the delay in milliseconds, or 0 to step as fast as
+	 *            possible
+	 * @throws IllegalArgumentException if millis is negative
+	 */
+	public void setDelay(long millis)
+	{
+		if (millis < 0)
+			throw new IllegalArgumentException("Delay can't be negative");
+
+		this.delay = millis;
+	}
+
+	/**
+	 * Gets how long the stepper waits between steps.
+	 *
+	 * @return the delay in milliseconds
+	 */
+	public long getDelay()
+	{
+		return delay;
+	}
+
+	/**
+	 * Starts stepping on a new thread, if it isn't already.
+	 */
+	public synchronized void start()
+	{
+		if (running) return;
+
+		failure = null;
+		running = true;
+		thread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				runSteps();
+			}
+		}, "Stepper");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**
+	 * Stops stepping, and waits for the step in progress to finish.
+	 */
+	public synchronized void pause()
+	{
+		running = false;
+		if (thread == null) return;
+
+		thread.interrupt();
+		try {
+			thread.join();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		thread = null;
+	}
+
+	/**
+	 * Tells you whether the stepper is stepping. It stops by itself when the
+	 * stop condition is met or the rule throws.
+	 *
+	 * @return true if the stepping thread is running
+	 */
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * Gets what the rule or stop condition threw, if that is why the stepper
+	 * stopped.
+	 *
+	 * @return the exception, or null if the stepper didn't stop because of one
+	 */
+	public RuntimeException getFailure()
+	{
+		return failure;
+	}
+
+	/**
+	 * Steps on the calling thread, for stepping by hand while paused. Stops
+	 * early if the stop condition is met.
+	 *
+	 * @param times the number of steps to take
+	 * @return the number of steps that were taken
+	 * @throws IllegalStateException if the stepper is running
+	 */
+	public int step(int times)
+	{
+		if (running)
+			throw new IllegalStateException("Can't step by hand while running");
+
+		for (int i = 0; i < times; i++) {
+			if (stepOnce()) return i + 1;
+		}
+		return times;
+	}
+
+	/**
+	 * Brings the snapshot up to the latest completed generation. Only one
+	 * thread should call this, and it is the only one that should read the
+	 * snapshot. If a step is in progress, nothing is copied, and the stepper
+	 * waits for a publish once the step is done.
+	 *
+	 * @return true if the snapshot changed, false if nothing has happened
+	 *         since the last publish or a step is in progress
+	 */
+	public boolean publish()
+	{
+		if (!lock.tryLock()) {
+			publishWanted = true;
+			return false;
+		}
+		try {
+			publishWanted = false;
+			published.signalAll();
+			if (!changes.hasChanges() && snapshot.getGeneration() == state.getGeneration())
+				return false;
+
+			snapshot.copyChanges(state, changes.take());
+			return true;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Private helper method that steps until paused or stopped.
+	 */
+	private void runSteps()
+	{
+		try {
+			while (running) {
+				if (stepOnce()) break;
+				if (publishWanted) awaitPublish();
+
+				long delay = this.delay;
+				if (delay > 0) Thread.sleep(delay);
+			}
+		}
+		catch (InterruptedException e) {
+			// Paused while waiting between steps
+		}
+		catch (RuntimeException e) {
+			failure = e;
+		}
+		finally {
+			running = false;
+		}
+	}
+
+	/**
+	 * Private helper method that waits between steps for a publish that was
+	 * turned away during the last step, asking for it first if there is a
+	 * publish request. Gives up after MAX_PUBLISH_WAIT.
+	 *
+	 * @throws InterruptedException if the stepper is paused while waiting
+	 */
+	private void awaitPublish() throws InterruptedException
+	{
+		Runnable request = publishRequest;
+		if (request != null) request.run();
+
+		lock.lock();
+		try {
+			long nanos = TimeUnit.MILLISECONDS.toNanos(MAX_PUBLISH_WAIT);
+			while (publishWanted && nanos > 0)
+				nanos = published.awaitNanos(nanos);
+			publishWanted = false;
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Private helper method that takes one step while holding the lock.
+	 *
+	 * @return true if the stop condition says to stop
+	 */
+	private boolean stepOnce()
+	{
+		lock.lock();
+		try {
+			state.step(rule);
+			StopCondition<T> condition = stopCondition;
+			return condition != null
+					&& condition.shouldStop(state, state.getGeneration());
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+}
@@ -0,0 +1,368 @@
+package framework.lib;
+
+import framework.interfaces.Rule;
+import framework.interfaces.StopCondition;
+
+import java.io.File;
+
+
+/**
+ * Runs a cellular automaton without any GUI, for batch jobs on machines with
+ * no display. Where a Simulation paces its steps with a Swing timer, a
+ * BatchRunner steps as fast as it can for a given number of generations, or
+ * until a StopCondition says to stop, and reports how long that took. Nothing
+ * in this class touches AWT or Swing, so it runs on a headless JVM. <br>
+ * <br>
+ * Like Simulation, the rule is compiled into a transition table when it is
+ * small enough. The state being stepped is available through getState, so it
+ * can be configured (see {@link State#setParallelism(int)}) or inspected
+ * between runs. A long run can be checkpointed as it goes with a Checkpointer,
+ * and picked up again from the last checkpoint with
+ * {@link Checkpointer#resume(java.io.File, Point)}. It can also be run from
+ * the command line, see main.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension that this runner will
+ *            support. Should be a strict subclass of Point.
+ */
+public class BatchRunner<T extends Point>
+{
+
+	/**
+	 * What happened in one call to run or fastForward.
+	 */
+	public static class Report
+	{
+		private final long	generations;
+		private final long	nanos;
+		private final long	cells;
+		private final long	population;
+		private final boolean	stopped;
+		private final long	skipped;
+
+		Report(long generations, long nanos, long cells, long population,
+				boolean stopped, long skipped)
+		{
+			this.generations = generations;
+			this.skipped = skipped;
+			this.nanos = nanos;
+			this.cells = cells;
+			this.population = population;
+			this.stopped = stopped;
+		}
+
+		/**
+		 * @return the number of steps taken
+		 */
+		public long getGenerations()
+		{
+			return generations;
+		}
+
+		/**
+		 * @return the time the steps took, in nanoseconds
+		 */
+		public long getNanos()
+		{
+			return nanos;
+		}
+
+		/**
+		 * @return the number of non-zero cells after the last step
+		 */
+		public long getPopulation()
+		{
+			return population;
+		}
+
+		/**
+		 * @return true if the run ended because the stop condition was met,
+		 *         false if it ran for all the generations it was given
+		 */
+		public boolean isStopped()
+		{
+			return stopped;
+		}
+
+		/**
+		 * @return the number of generations that were skipped over without
+		 *         being stepped, because the state was in a cycle
+		 */
+		public long getSkipped()
+		{
+			return skipped;
+		}
+
+		/**
+		 * @return the number of steps taken per second
+		 */
+		public double getGenerationsPerSecond()
+		{
+			return nanos == 0 ? 0 : generations * 1e9 / nanos;
+		}
+
+		/**
+		 * @return the number of cells stepped per second
+		 */
+		public double getCellsPerSecond()
+		{
+			return getGenerationsPerSecond() * cells;
+		}
+
+		@Override
+		public String toString()
+		{
+			return String.format("%d generations in %.3f s (%.1f generations/s, %.4g cells/s), population %d%s",
+					generations, nanos / 1e9, getGenerationsPerSecond(),
+					getCellsPerSecond(), population, stopped ? ", stopped" : "")
+					+ (skipped > 0 ? ", skipped " + skipped + " generations" : "");
+		}
+	}
+
+	private final Rule<T>	rule;
+	private final State<T>	state;
+	private Checkpointer<T>	checkpointer;
+
+	/**
+	 * Creates a runner that starts from the rule's initial state.
+	 * 
+	 * @param r the rule to run
+	 * @throws IllegalArgumentException if the rule has no initial state
+	 */
+	public BatchRunner(Rule<T> r)
+	{
+		this(r, r.getInitialState());
+	}
+
+	/**
+	 * Creates a runner that steps the given state, in place.
+	 * 
+	 * @param r the rule to run
+	 * @param s the state to start from
+	 * @throws IllegalArgumentException if r or s is null
+	 */
+	public BatchRunner(Rule<T> r, State<T> s)
+	{
+		if (r == null || s == null)
+			throw new IllegalArgumentException("Need a rule and a state");
+
+		this.state = s;
+		this.rule = CompiledRule.compile(r, s.getNumStates());
+	}
+
+	/**
+	 * Gets the state being stepped.
+	 * 
+	 * @return the state, which holds the latest generation after a run
+	 */
+	public State<T> getState()
+	{
+		return state;
+	}
+
+	/**
+	 * Sets a Checkpointer to tell about every step, so that it can checkpoint
+	 * the state as the run goes.
+	 * 
+	 * @param checkpointer the Checkpointer, or null for none
+	 */
+	public void setCheckpointer(Checkpointer<T> checkpointer)
+	{
+		this.checkpointer = checkpointer;
+	}
+
+	/**
+	 * Gets the Checkpointer the state's steps are reported to.
+	 * 
+	 * @return the Checkpointer, or null if there is none
+	 */
+	public Checkpointer<T> getCheckpointer()
+	{
+		return checkpointer;
+	}
+
+	/**
+	 * Steps the state the given number of times, as fast as possible.
+	 * 
+	 * @param generations the number of steps
+	 * @return how many steps were taken and how long they took
+	 * @throws IllegalArgumentException if generations is negative
+	 */
+	public Report run(long generations)
+	{
+		return run(generations, null);
+	}
+
+	/**
+	 * Steps the state until the stop condition is met, or until the given
+	 * number of steps have been taken. The condition is checked after every
+	 * step, and the time it takes is counted along with the steps.
+	 * 
+	 * @param maxGenerations the most steps to take
+	 * @param stop the condition to stop at. A null condition never stops the
+	 *            run early.
+	 * @return how many steps were taken and how long they took
+	 * @throws IllegalArgumentException if maxGenerations is negative
+	 */
+	public Report run(long maxGenerations, StopCondition<T> stop)
+	{
+		if (maxGenerations < 0)
+			throw new IllegalArgumentException("Can't run a negative number of generations");
+
+		long generation = 0;
+		boolean stopped = false;
+		long start = System.nanoTime();
+		while (generation < maxGenerations && !stopped) {
+			state.step(rule);
+			generation++;
+			if (checkpointer != null) checkpointer.stepped(state);
+			stopped = stop != null && stop.shouldStop(state, generation);
+		}
+		long nanos = System.nanoTime() - start;
+
+		return new Report(generation, nanos, numCells(), state.getPopulation(),
+				stopped, 0);
+	}
+
+	/**
+	 * Advances the state by the given number of generations, like run, but
+	 * stops stepping once the detector finds that the state is in a cycle.
+	 * Whole periods of the cycle are then skipped, and only the generations
+	 * left over are stepped, so the state ends up exactly as if every
+	 * generation had been stepped, and so does its generation counter.
+	 * 
+	 * @param generations the number of generations to advance by
+	 * @param detector the detector to find cycles with, which should have
+	 *            been reset if the state was changed since it last saw it
+	 * @return how many steps were taken, how long they took and how many
+	 *         generations were skipped
+	 * @throws IllegalArgumentException if generations is negative
+	 */
+	public Report fastForward(long generations, CycleDetector<T> detector)
+	{
+		Report head = run(generations, detector);
+		if (!head.isStopped()) return head;
+
+		long left = generations - head.getGenerations();
+		long skipped = left - left % detector.getPeriod();
+		state.setGeneration(state.getGeneration() + skipped);
+		Report tail = run(left - skipped);
+
+		return new Report(head.getGenerations() + tail.getGenerations(),
+				head.getNanos() + tail.getNanos(), numCells(),
+				state.getPopulation(), false, skipped);
+	}
+
+	/**
+	 * Private helper method that gives the number of cells stepped per step.
+	 */
+	private long numCells()
+	{
+		long cells = 1;
+		T size = state.getSize();
+		for (int i = 0; i < size.numDimensions(); i++)
+			cells *= size.getCoord(i);
+		return cells;
+	}
+
+	/**
+	 * Runs a rule from its initial state, headless, and prints the timing.
+	 * The arguments are the name of a Rule class with a no argument
+	 * constructor, then the number of generations. With the option
+	 * {@code -threads n} the state is stepped in parallel on n threads, and
+	 * with {@code -untilEmpty} the run stops once every cell is in state 0.
+	 * With {@code -untilCycle} it stops once the state is a still life or an
+	 * oscillator, and with {@code -skipCycles} it skips ahead once it is.
+	 * With {@code -checkpoint dir} the state is checkpointed to dir every
+	 * {@code -every n} generations (1000 by default) and at the end. If dir
+	 * already holds a checkpoint, the run resumes from it and only steps up
+	 * to the given number of generations in all.
+	 * 
+	 * @param args command line arguments, as described above
+	 * @throws Exception if the checkpoint can't be read or written
+	 */
+	@SuppressWarnings("unchecked")
+	public static void main(String[] args) throws Exception
+	{
+		int threads = 1;
+		boolean untilEmpty = false;
+		boolean untilCycle = false;
+		boolean skipCycles = false;
+		String ruleName = null;
+		long generations = -1;
+		File checkpointDir = null;
+		long every = 1000;
+		for (int i = 0; i < args.length; i++) {
+			if (args[i].equals("-threads") && i + 1 < args.length)
+				threads = Integer.parseInt(args[++i]);
+			else if (args[i].equals("-checkpoint") && i + 1 < args.length)
+				checkpointDir = new File(args[++i]);
+			else if (args[i].equals("-every") && i + 1 < args.length)
+				every = Long.parseLong(args[++i]);
+			else if (args[i].equals("-untilEmpty"))
+				untilEmpty = true;
+			else if (args[i].equals("-untilCycle"))
+				untilCycle = true;
+			else if (args[i].equals("-skipCycles"))
+				skipCycles = true;
+			else if (ruleName == null)
+				ruleName = args[i];
+			else
+				generations = Long.parseLong(args[i]);
+		}
+		if (ruleName == null || generations < 0) {
+			System.err.println("Usage: BatchRunner [-threads n] [-untilEmpty | -untilCycle | -skipCycles] [-checkpoint dir [-every n]] <rule class> <generations>");
+			System.exit(2);
+		}
+
+		Rule<Point> r;
+		try {
+			r = (Rule<Point>) Class.forName(ruleName).getDeclaredConstructor()
+					.newInstance();
+		}
+		catch (ReflectiveOperationException e) {
+			System.err.println("Can't create rule " + ruleName + ": " + e);
+			System.exit(2);
+			return;
+		}
+		State<Point> resumed = null;
+		if (checkpointDir != null)
+			resumed = Checkpointer.resume(checkpointDir, r.getOrigin());
+		BatchRunner<Point> runner = resumed == null ? new BatchRunner<Point>(r)
+				: new BatchRunner<Point>(r, resumed);
+		runner.getState().setParallelism(threads);
+		if (resumed != null) {
+			System.out.println("Resuming from generation " + resumed.getGeneration());
+			generations = Math.max(0, generations - resumed.getGeneration());
+		}
+		if (checkpointDir != null)
+			runner.setCheckpointer(new Checkpointer<Point>(checkpointDir, every, 0));
+
+		CycleDetector<Point> detector = new CycleDetector<Point>();
+		StopCondition<Point> stop = null;
+		if (untilCycle)
+			stop = detector;
+		else if (untilEmpty) {
+			stop = new StopCondition<Point>() {
+				@Override
+				public boolean shouldStop(State<Point> state, long generation)
+				{
+					return state.getPopulation() == 0;
+				}
+			};
+		}
+		if (skipCycles)
+			System.out.println(runner.fastForward(generations, detector));
+		else
+			System.out.println(runner.run(generations, stop));
+		if (detector.isCycleFound())
+			System.out.println("Cycle of period " + detector.getPeriod()
+					+ " from generation " + detector.getCycleStart());
+
+		Checkpointer<Point> checkpointer = runner.getCheckpointer();
+		if (checkpointer != null) {
+			checkpointer.checkpoint(runner.getState());
+			checkpointer.close();
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package framework.lib;
+
+import java.util.Arrays;
+
+import framework.interfaces.Rule;
+
+
+/**
+ * A one dimensional, two state, radius 1 world, with cells packed 64 to a
+ * long so that one step advances 64 cells with a handful of bitwise
+ * operations. These are the elementary cellular automata, each described by
+ * its Wolfram rule number: bit {@code 4 * left + 2 * center + right} of the
+ * number is the new state of a cell whose left neighbor, self and right
+ * neighbor have the given states. Rule 110 is one example. <br>
+ * <br>
+ * The row wraps the same way it would in a State with the same wraps.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public class BitElementary
+{
+
+	private final int		width;
+	private final int		words;
+	private final boolean	wrap;
+	private final int		rule;
+
+	private long[]			cells;
+	private long[]			next;
+	private final long[]	left;
+	private final long[]	right;
+
+	/**
+	 * Creates an empty world.
+	 *
+	 * @param rule the Wolfram number of the rule, from 0 to 255
+	 * @param size the number of cells
+	 * @param wrap whether the ends of the row wrap around
+	 * @throws IllegalArgumentException if rule or size is out of range
+	 */
+	public BitElementary(int rule, Point1D size, boolean wrap)
+	{
+		if (rule < 0 || rule > 255)
+			throw new IllegalArgumentException("Rule number must be between 0 and 255");
+		if (size.getCoord() < 0)
+			throw new IllegalArgumentException("Can't have negative size");
+
+		this.rule = rule;
+		this.width = size.getCoord();
+		this.wrap = wrap;
+		this.words = BitRows.words(width);
+
+		cells = new long[words];
+		next = new long[words];
+		left = new long[words];
+		right = new long[words];
+	}
+
+	/**
+	 * Creates a world with the size, wrapping and cells of s, for the rule
+	 * that r computes.
+	 *
+	 * @param r a two state rule with radius at most 1
+	 * @param s the initial world
+	 * @throws IllegalArgumentException if r has a larger radius or more than 2
+	 *             states, or s has more than 2 states
+	 */
+	public BitElementary(Rule<Point1D> r, State<Point1D> s)
+	{
+		this(ruleNumber(r), s.getSize(), s.getWraps()[0]);
+		setState(s);
+	}
+
+	/**
+	 * Replaces the cells of this world with those of s.
+	 *
+	 * @param s a state with the same size as this world and at most 2 states
+	 * @throws IllegalArgumentException if s is the wrong size or has too many
+	 *             states
+	 */
+	public void setState(State<Point1D> s)
+	{
+		if (s.getNumStates() > 2)
+			throw new IllegalArgumentException("Must have at most 2 states");
+		if (s.getSize().getCoord() != width)
+			throw new IllegalArgumentException("State is the wrong size");
+
+		Arrays.fill(cells, 0);
+		CellStore.Cursor c = s.liveCells();
+		while (c.next())
+			BitRows.set(cells, 0, (int) c.index(), true);
+	}
+
+	/**
+	 * Copies the cells of this world into s, which must be the same size.
+	 *
+	 * @param s the state to overwrite
+	 * @throws IllegalArgumentException if s is the wrong size
+	 */
+	public void writeTo(State<Point1D> s)
+	{
+		if (s.getSize().getCoord() != width)
+			throw new IllegalArgumentException("State is the wrong size");
+
+		s.setState(null);
+		for (int w = 0; w < words; w++) {
+			long word = cells[w];
+			while (word != 0) {
+				s.setCell(w * 64 + Long.numberOfTrailingZeros(word), 1);
+				word &= word - 1;
+			}
+		}
+	}
+
+	/**
+	 * @param x the coordinate of a cell
+	 * @return true if the cell is alive
+	 * @throws IllegalArgumentException if the cell is outside the world
+	 */
+	public boolean getCell(int x)
+	{
+		checkBounds(x);
+		return BitRows.get(cells, 0, x);
+	}
+
+	/**
+	 * @param x the coordinate of a cell
+	 * @param alive the new state of the cell
+	 * @throws IllegalArgumentException if the cell is outside the world
+	 */
+	public void setCell(int x, boolean alive)
+	{
+		checkBounds(x);
+		BitRows.set(cells, 0, x, alive);
+	}
+
+	/**
+	 * @return the Wolfram number of the rule
+	 */
+	public int getRule()
+	{
+		return rule;
+	}
+
+	/**
+	 * @return the number of live cells
+	 */
+	public long getPopulation()
+	{
+		long count = 0;
+		for (long word : cells)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Steps the world the given number of times.
+	 *
+	 * @param generations the number of steps
+	 */
+	public void step(int generations)
+	{
+		for (int i = 0; i < generations; i++)
+			step();
+	}
+
+	/**
+	 * Steps the world once.
+	 */
+	public void step()
+	{
+		BitRows.shift(cells, 0, width, wrap, left, right);
+
+		for (int w = 0; w < words; w++) {
+			long l = left[w];
+			long c = cells[w];
+			long r = right[w];
+
+			long out = 0;
+			for (int pattern = 0; pattern < 8; pattern++) {
+				if ((rule >> pattern & 1) == 0) continue;
+				out |= ((pattern & 4) != 0 ? l : ~l)
+						& ((pattern & 2) != 0 ? c : ~c)
+						& ((pattern & 1) != 0 ? r : ~r);
+			}
+			next[w] = out;
+		}
+		if (words > 0) next[words - 1] &= BitRows.lastMask(width);
+
+		long[] t = cells;
+		cells = next;
+		next = t;
+	}
+
+	/**
+	 * Private helper method that finds the Wolfram number of a rule by
+	 * evaluating it on all 8 neighborhoods.
+	 */
+	private static int ruleNumber(Rule<Point1D> r)
+	{
+		if (r.getNeighborhoodSize() > 1)
+			throw new IllegalArgumentException("Rule must have radius at most 1");
+
+		// A packed neighborhood has the leftmost cell as its lowest digit
+		int[] table = new CompiledRule<Point1D>(r, 2).table;
+		int number = 0;
+		for (int pattern = 0; pattern < 8; pattern++) {
+			int l = pattern >> 2 & 1, c = pattern >> 1 & 1, rt = pattern & 1;
+			int s = table.length == 2 ? table[c] : table[l | c << 1 | rt << 2];
+			if (s != 0 && s != 1)
+				throw new IllegalArgumentException("Rule must have 2 states");
+			number |= s << pattern;
+		}
+		return number;
+	}
+
+	private void checkBounds(int x)
+	{
+		if (x < 0 || x >= width)
+			throw new IllegalArgumentException("Point is not in bounds");
+	}
+}
@@ -0,0 +1,297 @@
+package framework.lib;
+
+import java.util.Arrays;
+
+import framework.interfaces.Rule;
+
+
+/**
+ * A two dimensional, two state world for Life-like rules, with cells packed
+ * 64 to a long so that one step advances 64 cells with a handful of bitwise
+ * operations. A Life-like rule is one where the new state of a cell depends
+ * only on whether it is alive and on how many of its 8 neighbors are alive,
+ * so it is described by the neighbor counts that bring a dead cell to life
+ * (birth) and that keep a live cell alive (survival). Conway's Game of Life
+ * is B3/S23, and Seeds is B2/S. <br>
+ * <br>
+ * Each step adds up the 8 shifted copies of the neighboring rows with a
+ * bit-sliced adder, giving the neighbor count of every cell as 4 bit planes,
+ * and then picks out the counts in the birth and survival sets. Rows and
+ * columns wrap the same way they would in a State with the same wraps.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public class BitLife
+{
+
+	private final int		width;
+	private final int		height;
+	private final int		words;
+	private final boolean[]	wraps;
+	private final boolean[]	birth;
+	private final boolean[]	survival;
+
+	private long[]			cells;
+	private long[]			next;
+	private final long[]	left;
+	private final long[]	right;
+
+	/**
+	 * Creates an empty world.
+	 *
+	 * @param birth birth[n] is true if a dead cell with n live neighbors
+	 *            becomes alive, for n from 0 to 8
+	 * @param survival survival[n] is true if a live cell with n live neighbors
+	 *            stays alive, for n from 0 to 8
+	 * @param size the width and height of the world
+	 * @param wraps whether the x and y axes wrap around. A null array results
+	 *            in no wrapping.
+	 * @throws IllegalArgumentException if birth or survival don't have 9
+	 *             entries, size is negative, or wraps doesn't have 2 entries
+	 */
+	public BitLife(boolean[] birth, boolean[] survival, Point2D size,
+			boolean[] wraps)
+	{
+		if (birth.length != 9 || survival.length != 9)
+			throw new IllegalArgumentException("Need an entry for each count from 0 to 8");
+		if (size.getX() < 0 || size.getY() < 0)
+			throw new IllegalArgumentException("Can't have negative size");
+		if (wraps == null) wraps = new boolean[2];
+		if (wraps.length != 2)
+			throw new IllegalArgumentException("Does not match the state's dimensions");
+
+		this.birth = birth.clone();
+		this.survival = survival.clone();
+		this.wraps = wraps.clone();
+		this.width = size.getX();
+		this.height = size.getY();
+		this.words = BitRows.words(width);
+
+		cells = new long[words * height];
+		next = new long[cells.length];
+		left = new long[cells.length];
+		right = new long[cells.length];
+	}
+
+	/**
+	 * Creates a world with the size, wrapping and cells of s, for a rule that
+	 * is found by evaluating r on every neighborhood.
+	 *
+	 * @param r a two state, radius 1 rule that only depends on the state of
+	 *            the center and the number of live neighbors
+	 * @param s the initial world
+	 * @throws IllegalArgumentException if r isn't Life-like, or s has more
+	 *             than 2 states
+	 */
+	public BitLife(Rule<Point2D> r, State<Point2D> s)
+	{
+		this(new boolean[9], new boolean[9], s.getSize(), s.getWraps());
+
+		if (r.getNeighborhoodSize() != 1)
+			throw new IllegalArgumentException("Rule must have radius 1");
+
+		// Bit 4 of a packed neighborhood is the center
+		int[] table = new CompiledRule<Point2D>(r, 2).table;
+		boolean[][] seen = new boolean[2][9];
+		for (int hood = 0; hood < table.length; hood++) {
+			int center = hood >> 4 & 1;
+			int count = Integer.bitCount(hood & ~(1 << 4));
+			boolean alive = table[hood] == 1;
+			if (table[hood] != 0 && table[hood] != 1)
+				throw new IllegalArgumentException("Rule must have 2 states");
+
+			boolean[] set = center == 0 ? birth : survival;
+			if (seen[center][count] && set[count] != alive)
+				throw new IllegalArgumentException("Rule is not Life-like");
+			seen[center][count] = true;
+			set[count] = alive;
+		}
+
+		setState(s);
+	}
+
+	/**
+	 * Replaces the cells of this world with those of s.
+	 *
+	 * @param s a state with the same size as this world and at most 2 states
+	 * @throws IllegalArgumentException if s is the wrong size or has too many
+	 *             states
+	 */
+	public void setState(State<Point2D> s)
+	{
+		if (s.getNumStates() > 2)
+			throw new IllegalArgumentException("Must have at most 2 states");
+		if (!s.getSize().equals(new Point2D(width, height)))
+			throw new IllegalArgumentException("State is the wrong size");
+
+		Arrays.fill(cells, 0);
+		CellStore.Cursor c = s.liveCells();
+		while (c.next()) {
+			int x = (int) (c.index() % width);
+			int y = (int) (c.index() / width);
+			BitRows.set(cells, y * words, x, true);
+		}
+	}
+
+	/**
+	 * Copies the cells of this world into s, which must be the same size.
+	 *
+	 * @param s the state to overwrite
+	 * @throws IllegalArgumentException if s is the wrong size
+	 */
+	public void writeTo(State<Point2D> s)
+	{
+		if (!s.getSize().equals(new Point2D(width, height)))
+			throw new IllegalArgumentException("State is the wrong size");
+
+		s.setState(null);
+		for (int y = 0; y < height; y++) {
+			for (int w = 0; w < words; w++) {
+				long word = cells[y * words + w];
+				while (word != 0) {
+					int x = w * 64 + Long.numberOfTrailingZeros(word);
+					s.setCell((long) y * width + x, 1);
+					word &= word - 1;
+				}
+			}
+		}
+	}
+
+	/**
+	 * @param x the x-coordinate of a cell
+	 * @param y the y-coordinate of a cell
+	 * @return true if the cell is alive
+	 * @throws IllegalArgumentException if the cell is outside the world
+	 */
+	public boolean getCell(int x, int y)
+	{
+		checkBounds(x, y);
+		return BitRows.get(cells, y * words, x);
+	}
+
+	/**
+	 * @param x the x-coordinate of a cell
+	 * @param y the y-coordinate of a cell
+	 * @param alive the new state of the cell
+	 * @throws IllegalArgumentException if the cell is outside the world
+	 */
+	public void setCell(int x, int y, boolean alive)
+	{
+		checkBounds(x, y);
+		BitRows.set(cells, y * words, x, alive);
+	}
+
+	/**
+	 * @return the number of live cells
+	 */
+	public long getPopulation()
+	{
+		long count = 0;
+		for (long word : cells)
+			count += Long.bitCount(word);
+		return count;
+	}
+
+	/**
+	 * Steps the world the given number of times.
+	 *
+	 * @param generations the number of steps
+	 */
+	public void step(int generations)
+	{
+		for (int i = 0; i < generations; i++)
+			step();
+	}
+
+	/**
+	 * Steps the world once.
+	 */
+	public void step()
+	{
+		for (int y = 0; y < height; y++)
+			BitRows.shift(cells, y * words, width, wraps[0], left, right);
+
+		long mask = BitRows.lastMask(width);
+		for (int y = 0; y < height; y++) {
+			int up = row(y - 1);
+			int down = row(y + 1);
+			int mid = y * words;
+
+			for (int w = 0; w < words; w++) {
+				long ul = 0, uc = 0, ur = 0, dl = 0, dc = 0, dr = 0;
+				if (up >= 0) {
+					ul = left[up + w];
+					uc = cells[up + w];
+					ur = right[up + w];
+				}
+				if (down >= 0) {
+					dl = left[down + w];
+					dc = cells[down + w];
+					dr = right[down + w];
+				}
+				long ml = left[mid + w];
+				long mr = right[mid + w];
+				long center = cells[mid + w];
+
+				// Each row's count as bit planes: up and down are 0 to 3, the
+				// middle row 0 to 2
+				long u0 = ul ^ uc ^ ur;
+				long u1 = (ul & uc) | (ul & ur) | (uc & ur);
+				long d0 = dl ^ dc ^ dr;
+				long d1 = (dl & dc) | (dl & dr) | (dc & dr);
+				long m0 = ml ^ mr;
+				long m1 = ml & mr;
+
+				// Add them up into a 4 bit count
+				long s0 = u0 ^ m0 ^ d0;
+				long c0 = (u0 & m0) | (u0 & d0) | (m0 & d0);
+				long p0 = u1 ^ m1 ^ d1;
+				long p1 = (u1 & m1) | (u1 & d1) | (m1 & d1);
+				long s1 = p0 ^ c0;
+				long c1 = p0 & c0;
+				long s2 = p1 ^ c1;
+				long s3 = p1 & c1;
+
+				long out = 0;
+				for (int n = 0; n <= 8; n++) {
+					if (!birth[n] && !survival[n]) continue;
+
+					long eq = ((n & 1) != 0 ? s0 : ~s0)
+							& ((n & 2) != 0 ? s1 : ~s1)
+							& ((n & 4) != 0 ? s2 : ~s2)
+							& ((n & 8) != 0 ? s3 : ~s3);
+					if (!survival[n])
+						eq &= ~center;
+					else if (!birth[n]) eq &= center;
+					out |= eq;
+				}
+				if (w == words - 1) out &= mask;
+				next[mid + w] = out;
+			}
+		}
+
+		long[] t = cells;
+		cells = next;
+		next = t;
+	}
+
+	/**
+	 * Private helper method that finds the first word of row y, wrapping if
+	 * the y axis wraps.
+	 *
+	 * @return the index of the first word, or -1 if the row is outside the
+	 *         world
+	 */
+	private int row(int y)
+	{
+		if (wraps[1]) y = (y + height) % height;
+		if (y < 0 || y >= height) return -1;
+		return y * words;
+	}
+
+	private void checkBounds(int x, int y)
+	{
+		if (x < 0 || y < 0 || x >= width || y >= height)
+			throw new IllegalArgumentException("Point is not in bounds");
+	}
+}
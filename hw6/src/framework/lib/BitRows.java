@@ -0,0 +1,88 @@
+package framework.lib;
+
+/**
+ * Helpers for rows of two state cells packed 64 to a long, with the cell at
+ * x in bit {@code x % 64} of word {@code x / 64}. Bits past the end of a row
+ * in its last word are always kept 0.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+final class BitRows
+{
+
+	private BitRows()
+	{
+	}
+
+	/**
+	 * @param width the number of cells in a row
+	 * @return the number of words a row takes up
+	 */
+	static int words(int width)
+	{
+		return (width + 63) >>> 6;
+	}
+
+	/**
+	 * @param width the number of cells in a row
+	 * @return the bits of the last word of a row that hold cells
+	 */
+	static long lastMask(int width)
+	{
+		int used = width & 63;
+		return used == 0 ? -1L : (1L << used) - 1;
+	}
+
+	/**
+	 * @return true if the cell at x in the row starting at word off is alive
+	 */
+	static boolean get(long[] cells, int off, int x)
+	{
+		return (cells[off + (x >>> 6)] >>> x & 1) != 0;
+	}
+
+	/**
+	 * Sets the cell at x in the row starting at word off.
+	 */
+	static void set(long[] cells, int off, int x, boolean alive)
+	{
+		if (alive)
+			cells[off + (x >>> 6)] |= 1L << x;
+		else
+			cells[off + (x >>> 6)] &= ~(1L << x);
+	}
+
+	/**
+	 * Shifts a row by one cell in each direction, so that bit x of left is the
+	 * cell at x - 1 and bit x of right is the cell at x + 1. Cells past either
+	 * end of the row are the cells at the other end if the row wraps, and dead
+	 * otherwise. The bits of left and right past the end of the row are
+	 * garbage.
+	 * 
+	 * @param cells the packed rows
+	 * @param off the index of the first word of the row
+	 * @param width the number of cells in the row
+	 * @param wrap whether the row wraps around
+	 * @param left receives the row shifted right by one cell, at off
+	 * @param right receives the row shifted left by one cell, at off
+	 */
+	static void shift(long[] cells, int off, int width, boolean wrap,
+			long[] left, long[] right)
+	{
+		int words = words(width);
+		if (words == 0) return;
+
+		int last = off + words - 1;
+		long first = wrap && get(cells, off, 0) ? 1 : 0;
+		long end = wrap && get(cells, off, width - 1) ? 1 : 0;
+
+		for (int w = off; w <= last; w++) {
+			long cur = cells[w];
+			long before = w > off ? cells[w - 1] >>> 63 : end;
+			long after = w < last ? cells[w + 1] << 63 : 0;
+			left[w] = cur << 1 | before;
+			right[w] = cur >>> 1 | after;
+		}
+		right[last] |= first << ((width - 1) & 63);
+	}
+}
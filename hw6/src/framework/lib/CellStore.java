@@ -0,0 +1,123 @@
+package framework.lib;
+
+/**
+ * The backing storage for the cells of a State. Cells are addressed by their
+ * row-major linear index, where the first axis varies fastest, so in 2D the
+ * index of (x, y) is {@code y * width + x}. State is responsible for wrapping
+ * and bounds checking a point before turning it into an index, so a store
+ * never sees an index outside of {@code [0, size())}. Any cell that was never
+ * set has state 0.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+abstract class CellStore
+{
+
+	/**
+	 * Visits every cell with a non-zero state, in no particular order. A
+	 * cursor starts positioned before the first cell, so {@code next()} must
+	 * be called before reading {@code index()} or {@code state()}. The store
+	 * must not be modified while a cursor over it is in use.
+	 */
+	abstract static class Cursor
+	{
+		/**
+		 * Moves to the next non-zero cell.
+		 * 
+		 * @return false if there are no more non-zero cells
+		 */
+		abstract boolean next();
+
+		/**
+		 * @return the linear index of the current cell
+		 */
+		abstract long index();
+
+		/**
+		 * @return the state of the current cell, never 0
+		 */
+		abstract int state();
+	}
+
+	private final long	size;
+
+	/**
+	 * @param size the number of cells this store addresses
+	 */
+	protected CellStore(long size)
+	{
+		this.size = size;
+	}
+
+	/**
+	 * @return the number of cells this store addresses
+	 */
+	final long size()
+	{
+		return size;
+	}
+
+	/**
+	 * @param index the linear index of a cell
+	 * @return the state of the cell
+	 */
+	abstract int get(long index);
+
+	/**
+	 * @param index the linear index of a cell
+	 * @param state the new state of the cell
+	 */
+	abstract void set(long index, int state);
+
+	/**
+	 * @return the number of cells with a non-zero state
+	 */
+	abstract long population();
+
+	/**
+	 * Sets every cell back to 0.
+	 */
+	abstract void clear();
+
+	/**
+	 * @return true if every cell has its own slot in an array, false if only
+	 *         non-zero cells take up space
+	 */
+	abstract boolean isDense();
+
+	/**
+	 * @return an empty store of the same kind as this one, addressing the same
+	 *         number of cells
+	 */
+	abstract CellStore blank();
+
+	/**
+	 * @return a cursor over the non-zero cells of this store
+	 */
+	abstract Cursor cursor();
+
+	/**
+	 * Like {@code cursor()}, but visits the cells in increasing index order.
+	 * Stores whose cursor is already in order don't need to override this.
+	 * 
+	 * @return a cursor over the non-zero cells of this store, in order
+	 */
+	Cursor orderedCursor()
+	{
+		return cursor();
+	}
+
+	/**
+	 * Copies every non-zero cell of this store into {@code dest}, which must
+	 * be empty and address the same number of cells.
+	 * 
+	 * @param dest the store to copy into
+	 */
+	void copyInto(CellStore dest)
+	{
+		Cursor c = cursor();
+		while (c.next()) {
+			dest.set(c.index(), c.state());
+		}
+	}
+}
@@ -0,0 +1,573 @@
+package framework.lib;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+
+/**
+ * Saves a State every so many generations or seconds while it is being
+ * stepped, so that a long run can be resumed from its last checkpoint after a
+ * crash or a restart, with its generation counter intact. <br>
+ * <br>
+ * The stepping thread calls {@link #stepped(State)} after each step. When a
+ * checkpoint is due, the State is copied in memory, which for dense storage is
+ * a single array copy, and the copy is written out on a background thread
+ * while stepping carries on. If the last checkpoint is still being written
+ * when the next is due, it waits for the step after. <br>
+ * <br>
+ * Checkpoints are written to a directory as a series of numbered files. Every
+ * so often (see {@link #setFullEvery(int)}) a checkpoint is a full
+ * StateSnapshot, and the ones in between are deltas from the checkpoint before
+ * them, holding only the tiles that changed since (see TileTracker). A delta
+ * is:
+ *
+ * <pre>
+ * int      DELTA_MAGIC
+ * int      DELTA_VERSION
+ * long     the number of the checkpoint it applies to
+ * long     the generation
+ * long     the number of non-zero cells
+ * then, for each changed tile in increasing order, the tile's number plus
+ * one, and the state of each of its cells, row by row, all as varints,
+ * followed by a 0 varint
+ * int      CRC32 of everything before it
+ * </pre>
+ *
+ * Each file is written under a temporary name and renamed once complete, and
+ * the files from before a full checkpoint are deleted once it is written.
+ * {@link #resume(File, Point)} loads the newest full checkpoint that is valid
+ * and applies the valid deltas after it, in order. <br>
+ * <br>
+ * Writing deltas means the last checkpoint is kept in memory to compare
+ * against, so while a checkpoint is being written there can be three copies
+ * of the cells: the State, the one being written and the one before it.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension that the checkpointed
+ *            State holds.
+ */
+public class Checkpointer<T extends Point>
+{
+
+	static final int			DELTA_MAGIC			= 0x43414344;
+	static final int			DELTA_VERSION		= 1;
+
+	/**
+	 * The default number of checkpoints from one full checkpoint to the next.
+	 */
+	public static final int		DEFAULT_FULL_EVERY	= 16;
+
+	private static final String	PREFIX				= "checkpoint-";
+	private static final String	FULL				= ".full";
+	private static final String	DELTA				= ".delta";
+	private static final String	TEMP				= ".tmp";
+
+	private final File			directory;
+	private final long			everyGenerations;
+	private final long			everyNanos;
+	private int					fullEvery			= DEFAULT_FULL_EVERY;
+
+	private final ExecutorService	writer;
+	private Future<Void>		pending;
+	private Throwable			failure;
+	private boolean				started;
+	private long				lastGeneration;
+	private long				lastTime;
+
+	// Only used by tasks on the writer thread, which run one at a time
+	private State<T>			previous;
+	private long				sequence;
+	private int					deltas;
+
+	/**
+	 * Creates a Checkpointer that writes to the given directory, creating it
+	 * if needed. Checkpoints already in the directory are kept until the
+	 * first full checkpoint this one writes.
+	 *
+	 * @param directory where to write the checkpoints
+	 * @param everyGenerations how many generations to step between
+	 *            checkpoints, or 0 to only go by time
+	 * @param everyMillis how many milliseconds to step for between
+	 *            checkpoints, or 0 to only go by generations
+	 * @throws IllegalArgumentException if directory is null or can't be
+	 *             created, if either interval is negative or if both are 0
+	 */
+	public Checkpointer(File directory, long everyGenerations, long everyMillis)
+	{
+		if (directory == null)
+			throw new IllegalArgumentException("Need a directory");
+		if (everyGenerations < 0 || everyMillis < 0)
+			throw new IllegalArgumentException("Intervals can't be negative");
+		if (everyGenerations == 0 && everyMillis == 0)
+			throw new IllegalArgumentException("Need an interval");
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IllegalArgumentException("Can't create " + directory);
+
+		this.directory = directory;
+		this.everyGenerations = everyGenerations;
+		this.everyNanos = everyMillis * 1000000;
+
+		// Number on from anything already there, so that a stale chain of
+		// deltas can never be mistaken for one following this one's files
+		long last = -1;
+		for (long seq : sequences(directory, FULL))
+			last = Math.max(last, seq);
+		for (long seq : sequences(directory, DELTA))
+			last = Math.max(last, seq);
+		sequence = last + 1;
+
+		writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r)
+			{
+				Thread t = new Thread(r, "Checkpointer " + Checkpointer.this.directory);
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Sets how often a checkpoint is a full snapshot rather than a delta.
+	 * Resuming has to read the full checkpoint and every delta after it, so
+	 * this bounds the work of resuming against the size of the checkpoints.
+	 *
+	 * @param fullEvery the number of checkpoints from one full checkpoint to
+	 *            the next. 1 makes every checkpoint full.
+	 * @throws IllegalArgumentException if fullEvery is less than 1
+	 */
+	public void setFullEvery(int fullEvery)
+	{
+		if (fullEvery < 1)
+			throw new IllegalArgumentException("Must be at least 1");
+
+		this.fullEvery = fullEvery;
+	}
+
+	/**
+	 * Gets how often a checkpoint is a full snapshot.
+	 *
+	 * @return the number of checkpoints from one full checkpoint to the next
+	 */
+	public int getFullEvery()
+	{
+		return fullEvery;
+	}
+
+	/**
+	 * Tells the Checkpointer that the State has been stepped, starting a
+	 * checkpoint in the background if one is due. The intervals are counted
+	 * from the first call, or from the last checkpoint. A failure to write a
+	 * checkpoint doesn't stop the run; it is thrown by the next call to
+	 * checkpoint, await or close, and the next checkpoint is a full one.
+	 *
+	 * @param state the State being stepped
+	 * @return true if a checkpoint was started
+	 */
+	public boolean stepped(State<T> state)
+	{
+		if (pending != null && pending.isDone()) collect();
+
+		long now = System.nanoTime();
+		if (!started) {
+			started = true;
+			lastGeneration = state.getGeneration();
+			lastTime = now;
+			return false;
+		}
+
+		boolean due = everyGenerations > 0
+				&& state.getGeneration() - lastGeneration >= everyGenerations
+				|| everyNanos > 0 && now - lastTime >= everyNanos;
+		if (!due || pending != null) return false;
+
+		start(state);
+		return true;
+	}
+
+	/**
+	 * Starts a checkpoint of the State now, once any checkpoint already being
+	 * written is done. Call await to wait for it to be written.
+	 *
+	 * @param state the State to checkpoint
+	 * @throws IOException if an earlier checkpoint couldn't be written
+	 */
+	public void checkpoint(State<T> state) throws IOException
+	{
+		await();
+		started = true;
+		start(state);
+	}
+
+	/**
+	 * Waits for the checkpoint being written, if there is one.
+	 *
+	 * @throws IOException if a checkpoint couldn't be written since the last
+	 *             call to checkpoint, await or close
+	 */
+	public void await() throws IOException
+	{
+		if (pending != null) {
+			try {
+				pending.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for a checkpoint");
+			}
+			catch (ExecutionException e) {
+				if (failure == null) failure = e.getCause();
+			}
+			pending = null;
+		}
+
+		if (failure != null) {
+			Throwable f = failure;
+			failure = null;
+			if (f instanceof IOException) throw (IOException) f;
+			if (f instanceof RuntimeException) throw (RuntimeException) f;
+			if (f instanceof Error) throw (Error) f;
+			throw new IOException(f);
+		}
+	}
+
+	/**
+	 * Waits for the checkpoint being written and stops the background thread.
+	 * The Checkpointer can't be used afterwards.
+	 *
+	 * @throws IOException if a checkpoint couldn't be written
+	 */
+	public void close() throws IOException
+	{
+		try {
+			await();
+		}
+		finally {
+			writer.shutdown();
+		}
+	}
+
+	/**
+	 * Loads the most recent valid checkpoint from a directory. Checkpoints
+	 * that are truncated or fail their CRC are skipped: a bad delta ends the
+	 * chain at the checkpoint before it, and a bad full checkpoint falls back
+	 * to an older one, if it is still there.
+	 *
+	 * @param directory the directory the checkpoints were written to
+	 * @param origin any point of the type the State holds, such as the origin
+	 *            of the rule it will be stepped with
+	 * @return the checkpointed State, with its generation, or null if there
+	 *         is no valid checkpoint
+	 * @throws IOException if the files can't be read
+	 * @throws IllegalArgumentException if the checkpoints are of a State with
+	 *             a different number of dimensions than origin
+	 */
+	public static <T extends Point> State<T> resume(File directory, T origin)
+			throws IOException
+	{
+		TreeSet<Long> deltas = sequences(directory, DELTA);
+		for (long seq : sequences(directory, FULL).descendingSet()) {
+			State<T> state;
+			try {
+				state = StateSnapshot.load(file(directory, seq, FULL), origin);
+			}
+			catch (IOException e) {
+				continue;
+			}
+
+			TileTracker tiles = tilesFor(state.getSize());
+			for (long s = seq + 1; deltas.contains(s); s++) {
+				File f = file(directory, s, DELTA);
+				if (!readDelta(f, s - 1, state, tiles, false)) break;
+				readDelta(f, s - 1, state, tiles, true);
+			}
+			return state;
+		}
+		return null;
+	}
+
+	/**
+	 * Private helper method that copies the State and hands the copy to the
+	 * writer thread.
+	 */
+	private void start(State<T> state)
+	{
+		final State<T> snapshot = state.copy();
+		final int full = fullEvery;
+		lastGeneration = snapshot.getGeneration();
+		lastTime = System.nanoTime();
+		pending = writer.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws IOException
+			{
+				write(snapshot, full);
+				return null;
+			}
+		});
+	}
+
+	/**
+	 * Private helper method that keeps the failure of a finished checkpoint,
+	 * if it failed, to be thrown later.
+	 */
+	private void collect()
+	{
+		try {
+			pending.get();
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		catch (ExecutionException e) {
+			if (failure == null) failure = e.getCause();
+		}
+		pending = null;
+	}
+
+	/**
+	 * Writes a checkpoint, on the writer thread.
+	 *
+	 * @param snapshot a copy of the State that nothing else uses
+	 * @param full how many checkpoints from one full checkpoint to the next
+	 */
+	private void write(State<T> snapshot, int full) throws IOException
+	{
+		long seq = sequence++;
+		boolean ok = false;
+		try {
+			boolean[] changed = null;
+			TileTracker tiles = null;
+			if (previous != null && deltas + 1 < full
+					&& previous.getSize().equals(snapshot.getSize())
+					&& previous.getNumStates() == snapshot.getNumStates()) {
+				tiles = tilesFor(snapshot.getSize());
+				changed = changedTiles(previous, snapshot, tiles);
+			}
+
+			if (changed != null) {
+				writeDelta(file(directory, seq, DELTA), seq - 1, snapshot, tiles, changed);
+				deltas++;
+			}
+			else {
+				File f = file(directory, seq, FULL);
+				File temp = new File(f.getPath() + TEMP);
+				try {
+					StateSnapshot.save(snapshot, temp);
+					rename(temp, f);
+				}
+				finally {
+					temp.delete();
+				}
+				deltas = 0;
+
+				for (String ext : new String[] { FULL, DELTA }) {
+					for (long old : sequences(directory, ext).headSet(seq))
+						file(directory, old, ext).delete();
+				}
+			}
+			previous = snapshot;
+			ok = true;
+		}
+		finally {
+			// The next delta would have nothing to apply to
+			if (!ok) previous = null;
+		}
+	}
+
+	/**
+	 * Private helper method that finds the tiles whose cells differ between
+	 * two States of the same size, visiting only their non-zero cells.
+	 *
+	 * @return the changed tiles, or null if so many changed that a full
+	 *         checkpoint would be as small
+	 */
+	private static boolean[] changedTiles(State<?> before, State<?> after,
+			TileTracker tiles)
+	{
+		boolean[] changed = new boolean[tiles.numTiles()];
+		int count = 0;
+		CellStore.Cursor c = after.liveCells();
+		while (c.next()) {
+			if (before.getCell(c.index()) != c.state()) {
+				int tile = tiles.tileOf(c.index());
+				if (!changed[tile]) count++;
+				changed[tile] = true;
+			}
+		}
+		c = before.liveCells();
+		while (c.next()) {
+			if (after.getCell(c.index()) == 0) {
+				int tile = tiles.tileOf(c.index());
+				if (!changed[tile]) count++;
+				changed[tile] = true;
+			}
+		}
+		return count * 2 > changed.length ? null : changed;
+	}
+
+	/**
+	 * Private helper method that writes a delta, under a temporary name until
+	 * it is complete.
+	 */
+	private static void writeDelta(File f, long base, State<?> state,
+			TileTracker tiles, boolean[] changed) throws IOException
+	{
+		File temp = new File(f.getPath() + TEMP);
+		try {
+			FileOutputStream out = new FileOutputStream(temp);
+			try {
+				StateSnapshot.Writer w = new StateSnapshot.Writer(out.getChannel());
+				w.putInt(DELTA_MAGIC);
+				w.putInt(DELTA_VERSION);
+				w.putLong(base);
+				w.putLong(state.getGeneration());
+				w.putLong(state.getPopulation());
+				for (int tile = 0; tile < changed.length; tile++) {
+					if (!changed[tile]) continue;
+
+					w.putVarLong(tile + 1L);
+					int rowLength = tiles.rowLength(tile);
+					for (int row = 0; row < tiles.numRows(tile); row++) {
+						long start = tiles.rowStart(tile, row);
+						for (int i = 0; i < rowLength; i++)
+							w.putVarLong(state.getCell(start + i));
+					}
+				}
+				w.putVarLong(0);
+				w.finish();
+			}
+			finally {
+				out.close();
+			}
+			rename(temp, f);
+		}
+		finally {
+			temp.delete();
+		}
+	}
+
+	/**
+	 * Private helper method that reads a delta, either to check that it is
+	 * valid without changing the State, or to apply it to the State once it
+	 * is known to be valid.
+	 *
+	 * @param f the delta
+	 * @param base the number of the checkpoint the State is at
+	 * @param state the State to apply it to
+	 * @param tiles the tiles of the State
+	 * @param apply whether to change the State
+	 * @return true if the delta is valid
+	 * @throws IOException if the file can't be read, or if a delta that
+	 *             checked out doesn't give the population it said it would
+	 */
+	private static boolean readDelta(File f, long base, State<?> state,
+			TileTracker tiles, boolean apply) throws IOException
+	{
+		FileInputStream in = new FileInputStream(f);
+		try {
+			StateSnapshot.Reader r = new StateSnapshot.Reader(in.getChannel());
+			if (r.getInt() != DELTA_MAGIC || r.getInt() != DELTA_VERSION
+					|| r.getLong() != base)
+				return false;
+			long generation = r.getLong();
+			long population = r.getLong();
+			if (generation < 0) return false;
+
+			int numStates = state.getNumStates();
+			long last = 0;
+			while (true) {
+				long tile = r.getVarLong();
+				if (tile == 0) break;
+				if (tile <= last || tile > tiles.numTiles()) return false;
+				last = tile;
+
+				int t = (int) tile - 1;
+				int rowLength = tiles.rowLength(t);
+				for (int row = 0; row < tiles.numRows(t); row++) {
+					long start = tiles.rowStart(t, row);
+					for (int i = 0; i < rowLength; i++) {
+						long s = r.getVarLong();
+						if (s < 0 || s >= numStates) return false;
+						if (apply) state.setCell(start + i, (int) s);
+					}
+				}
+			}
+			r.finish();
+
+			if (apply) {
+				state.setGeneration(generation);
+				if (state.getPopulation() != population)
+					throw new IOException("Checkpoint " + f + " is inconsistent");
+			}
+			return true;
+		}
+		catch (IOException e) {
+			if (apply) throw e;
+			return false;
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Private helper method that tiles a State of the given size the way its
+	 * own TileTracker would.
+	 */
+	private static TileTracker tilesFor(Point size)
+	{
+		int dims = size.numDimensions();
+		int[] extents = new int[dims];
+		long[] strides = new long[dims];
+		long stride = 1;
+		for (int i = 0; i < dims; i++) {
+			extents[i] = size.getCoord(i);
+			strides[i] = stride;
+			stride *= extents[i];
+		}
+		return new TileTracker(extents, strides, new boolean[dims], 0);
+	}
+
+	private static File file(File directory, long seq, String ext)
+	{
+		return new File(directory, String.format("%s%019d%s", PREFIX, seq, ext));
+	}
+
+	/**
+	 * Private helper method that finds the numbers of the checkpoints of one
+	 * kind in a directory.
+	 */
+	private static TreeSet<Long> sequences(File directory, String ext)
+	{
+		TreeSet<Long> seqs = new TreeSet<Long>();
+		String[] names = directory.list();
+		if (names == null) return seqs;
+
+		for (String name : names) {
+			if (!name.startsWith(PREFIX) || !name.endsWith(ext)) continue;
+			try {
+				seqs.add(Long.parseLong(name.substring(PREFIX.length(),
+						name.length() - ext.length())));
+			}
+			catch (NumberFormatException e) {
+			}
+		}
+		return seqs;
+	}
+
+	private static void rename(File from, File to) throws IOException
+	{
+		if (!from.renameTo(to))
+			throw new IOException("Can't rename " + from + " to " + to);
+	}
+}
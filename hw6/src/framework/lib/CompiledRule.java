@@ -0,0 +1,299 @@
+package framework.lib;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import framework.interfaces.Rule;
+
+
+/**
+ * A Rule that has been compiled into a transition table. Since a rule's
+ * stepCell is a function of the neighborhood alone, a rule with a small
+ * radius and few states can be evaluated on every possible neighborhood ahead
+ * of time. The neighborhood is then packed into a table index by treating the
+ * cells as the digits of a base numStates number, in the same order the
+ * Neighborhood iterator gives them, the first being the least significant. <br>
+ * <br>
+ * A CompiledRule can be used anywhere the original rule can. When a State with
+ * dense storage steps a CompiledRule, it packs the neighborhoods of interior
+ * cells straight out of its array and never calls stepCell for them.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point in the concrete dimension that the rule runs in.
+ */
+public class CompiledRule<T extends Point> implements Rule<T>
+{
+
+	/**
+	 * A neighborhood whose cells are read out of an array, in the order the
+	 * iterator gives them. Used to evaluate a rule on a neighborhood that
+	 * isn't part of any State.
+	 */
+	private class ArrayHood implements Neighborhood<T>
+	{
+		final int[]	states	= new int[offsets.length];
+
+		@Override
+		public Iterator<T> iterator()
+		{
+			return new Iterator<T>() {
+				int	i;
+
+				@Override
+				public boolean hasNext()
+				{
+					return i < offsets.length;
+				}
+
+				@Override
+				public T next()
+				{
+					if (!hasNext())
+						throw new NoSuchElementException("No more elements in the iterator.");
+					return offsets[i++];
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int getCellState(T relPoint)
+		{
+			if (relPoint.numDimensions() != dims)
+				throw new IllegalArgumentException("Incorrect number of dimensions");
+
+			int index = 0;
+			for (int i = dims - 1; i >= 0; i--) {
+				int c = relPoint.getCoord(i);
+				if (c < -radius || c > radius)
+					throw new IllegalArgumentException("Requested point out of bounds of radius");
+				index = index * (2 * radius + 1) + c + radius;
+			}
+			return states[index];
+		}
+
+		@Override
+		public int getRadius()
+		{
+			return radius;
+		}
+
+		@Override
+		public int copyStates(int[] states)
+		{
+			if (states.length < this.states.length)
+				throw new IllegalArgumentException("Array is too small for the neighborhood");
+
+			System.arraycopy(this.states, 0, states, 0, this.states.length);
+			return this.states.length;
+		}
+
+		@Override
+		public int countState(int state)
+		{
+			int count = 0;
+			for (int s : states) {
+				if (s == state) count++;
+			}
+			return count;
+		}
+
+		@Override
+		public int sumStates()
+		{
+			int sum = 0;
+			for (int s : states)
+				sum += s;
+			return sum;
+		}
+
+		@Override
+		public int boxSum(int radius)
+		{
+			if (radius < 0 || radius > CompiledRule.this.radius)
+				throw new IllegalArgumentException("Requested box out of bounds of radius");
+
+			int sum = 0;
+			for (int i = 0; i < offsets.length; i++) {
+				boolean inside = true;
+				for (int d = 0; d < dims && inside; d++)
+					inside = Math.abs(offsets[i].getCoord(d)) <= radius;
+				if (inside) sum += states[i];
+			}
+			return sum;
+		}
+	}
+
+	/**
+	 * The largest transition table a rule can be compiled into.
+	 */
+	public static final int	MAX_TABLE_SIZE	= 1 << 22;
+
+	private final Rule<T>	rule;
+	private final int		numStates;
+	private final int		radius;
+	private final int		dims;
+	private final T[]		offsets;
+
+	/**
+	 * The new state of the center cell, indexed by the packed neighborhood.
+	 */
+	final int[]				table;
+
+	/**
+	 * Compiles a rule by evaluating it on every neighborhood whose cells have
+	 * states between 0 and numStates - 1.
+	 *
+	 * @param rule the rule to compile
+	 * @param numStates the number of states a cell can be in
+	 * @throws IllegalArgumentException if numStates is not positive, or if
+	 *             the table would have more than MAX_TABLE_SIZE entries
+	 */
+	@SuppressWarnings("unchecked")
+	public CompiledRule(Rule<T> rule, int numStates)
+	{
+		if (numStates <= 0)
+			throw new IllegalArgumentException("Must have at least one state");
+
+		this.rule = rule;
+		this.numStates = numStates;
+		this.radius = rule.getNeighborhoodSize();
+
+		T origin = rule.getOrigin();
+		this.dims = origin.numDimensions();
+
+		long cells = 1;
+		for (int i = 0; i < dims; i++)
+			cells *= 2 * radius + 1;
+		long size = 1;
+		for (long i = 0; i < cells && size <= MAX_TABLE_SIZE; i++)
+			size *= numStates;
+		if (radius < 0 || size > MAX_TABLE_SIZE)
+			throw new IllegalArgumentException("Rule has too many neighborhoods to compile");
+
+		// The relative points, first axis varying fastest
+		offsets = (T[]) new Point[(int) cells];
+		for (int i = 0; i < offsets.length; i++) {
+			T p = (T) origin.copy();
+			int rest = i;
+			for (int d = 0; d < dims; d++) {
+				p.setCoord(d, rest % (2 * radius + 1) - radius);
+				rest /= 2 * radius + 1;
+			}
+			offsets[i] = p;
+		}
+
+		table = new int[(int) size];
+		ArrayHood hood = new ArrayHood();
+		for (int index = 0; index < table.length; index++) {
+			table[index] = rule.stepCell(hood);
+
+			// Count up in base numStates
+			for (int i = 0; i < hood.states.length; i++) {
+				if (++hood.states[i] < numStates) break;
+				hood.states[i] = 0;
+			}
+		}
+	}
+
+	/**
+	 * Compiles a rule if it is small enough, so that callers can use the
+	 * result in place of the rule without caring whether compilation was
+	 * possible.
+	 *
+	 * @param rule the rule to compile
+	 * @param numStates the number of states a cell can be in
+	 * @return a CompiledRule for rule, or rule itself if it has too many
+	 *         neighborhoods or can't be evaluated on all of them
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends Point> Rule<T> compile(Rule<T> rule, int numStates)
+	{
+		if (rule instanceof CompiledRule
+				&& ((CompiledRule<T>) rule).numStates >= numStates)
+			return rule;
+
+		try {
+			return new CompiledRule<T>(rule, numStates);
+		}
+		catch (RuntimeException e) {
+			return rule;
+		}
+	}
+
+	/**
+	 * Gets the rule this was compiled from.
+	 *
+	 * @return the original rule
+	 */
+	public Rule<T> getRule()
+	{
+		return rule;
+	}
+
+	/**
+	 * Gets the number of states the table covers.
+	 *
+	 * @return the number of states given at construction
+	 */
+	public int getNumStates()
+	{
+		return numStates;
+	}
+
+	/**
+	 * Tells you whether the rule keeps a cell whose whole neighborhood is in
+	 * state 0 in state 0, which a State uses the same way as a rule that
+	 * implements QuiescentRule. Since the whole rule is in the table, this
+	 * doesn't need to be declared.
+	 *
+	 * @return true if the all zero neighborhood steps to 0
+	 */
+	public boolean isQuiescent()
+	{
+		return table[0] == 0;
+	}
+
+	/**
+	 * Looks up the new state of the center of n in the table.
+	 *
+	 * @throws IllegalArgumentException if a cell of n has a state that the
+	 *             table doesn't cover
+	 */
+	@Override
+	public int stepCell(Neighborhood<T> n)
+	{
+		int index = 0;
+		for (int i = offsets.length - 1; i >= 0; i--) {
+			int s = n.getCellState(offsets[i]);
+			if (s < 0 || s >= numStates)
+				throw new IllegalArgumentException("State was not compiled");
+			index = index * numStates + s;
+		}
+		return table[index];
+	}
+
+	@Override
+	public T getOrigin()
+	{
+		return rule.getOrigin();
+	}
+
+	@Override
+	public int getNeighborhoodSize()
+	{
+		return radius;
+	}
+
+	@Override
+	public State<T> getInitialState()
+	{
+		return rule.getInitialState();
+	}
+
+}
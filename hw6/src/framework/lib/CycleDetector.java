@@ -0,0 +1,169 @@
+package framework.lib;
+
+import framework.interfaces.StopCondition;
+
+import java.util.HashMap;
+
+
+/**
+ * Notices when a State being stepped has settled into a still life or an
+ * oscillator, so that a run can stop or skip ahead rather than step the same
+ * generations over and over. It remembers the hash (see
+ * {@link State#getHash()}), population and generation of the last few
+ * generations it was shown, and reports a cycle as soon as a generation
+ * repeats one of them. Since a step only depends on the cells, every
+ * generation after that repeats too, with the same period. <br>
+ * <br>
+ * Show it every generation, by calling observe after each step or by using it
+ * as the StopCondition of a BatchRunner. It only finds cycles whose period is
+ * at most the number of generations it remembers. If the State is changed
+ * other than by stepping, call reset.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension that the observed
+ *            State holds.
+ */
+public class CycleDetector<T extends Point> implements StopCondition<T>
+{
+
+	/**
+	 * The default number of generations to remember.
+	 */
+	public static final int				DEFAULT_HISTORY	= 1024;
+
+	private final long[]				hashes;
+	private final long[]				populations;
+	private final long[]				generations;
+	private final HashMap<Long, Integer>	slots;
+	private int							next;
+	private int							count;
+	private long						period;
+	private long						cycleStart;
+
+	/**
+	 * Creates a detector that remembers DEFAULT_HISTORY generations.
+	 */
+	public CycleDetector()
+	{
+		this(DEFAULT_HISTORY);
+	}
+
+	/**
+	 * Creates a detector that remembers the given number of generations, and
+	 * so finds cycles of up to that period.
+	 *
+	 * @param history the number of generations to remember
+	 * @throws IllegalArgumentException if history is less than 1
+	 */
+	public CycleDetector(int history)
+	{
+		if (history < 1)
+			throw new IllegalArgumentException("Must remember at least one generation");
+
+		hashes = new long[history];
+		populations = new long[history];
+		generations = new long[history];
+		slots = new HashMap<Long, Integer>();
+	}
+
+	/**
+	 * Records the current generation of a State, and checks whether it
+	 * repeats a remembered one. Once a cycle has been found, this keeps
+	 * returning true without recording anything until reset.
+	 *
+	 * @param state the State being stepped
+	 * @return true if the State is in a cycle
+	 */
+	public boolean observe(State<T> state)
+	{
+		if (period > 0) return true;
+
+		long hash = state.getHash();
+		long population = state.getPopulation();
+		long generation = state.getGeneration();
+
+		Integer slot = slots.get(hash);
+		if (slot != null && populations[slot] == population
+				&& generations[slot] < generation) {
+			period = generation - generations[slot];
+			cycleStart = generations[slot];
+			return true;
+		}
+
+		if (count == hashes.length) {
+			Integer oldest = slots.get(hashes[next]);
+			if (oldest != null && oldest == next) slots.remove(hashes[next]);
+		}
+		else
+			count++;
+		hashes[next] = hash;
+		populations[next] = population;
+		generations[next] = generation;
+		slots.put(hash, next);
+		next = (next + 1) % hashes.length;
+		return false;
+	}
+
+	/**
+	 * Stops a BatchRunner once the State is in a cycle.
+	 */
+	@Override
+	public boolean shouldStop(State<T> state, long generation)
+	{
+		return observe(state);
+	}
+
+	/**
+	 * Tells you whether a cycle has been found.
+	 *
+	 * @return true if observe has found a cycle since the last reset
+	 */
+	public boolean isCycleFound()
+	{
+		return period > 0;
+	}
+
+	/**
+	 * Gets the period of the cycle that was found.
+	 *
+	 * @return the number of generations before the State repeats, 1 for a
+	 *         still life, or 0 if no cycle has been found
+	 */
+	public long getPeriod()
+	{
+		return period;
+	}
+
+	/**
+	 * Tells you whether the State has stopped changing.
+	 *
+	 * @return true if the cycle that was found has period 1
+	 */
+	public boolean isStatic()
+	{
+		return period == 1;
+	}
+
+	/**
+	 * Gets the first remembered generation of the cycle that was found.
+	 *
+	 * @return the generation the cycle was first seen at, which the State
+	 *         has repeated since, or -1 if no cycle has been found
+	 */
+	public long getCycleStart()
+	{
+		return period > 0 ? cycleStart : -1;
+	}
+
+	/**
+	 * Forgets every generation and any cycle that was found.
+	 */
+	public void reset()
+	{
+		slots.clear();
+		next = 0;
+		count = 0;
+		period = 0;
+		cycleStart = 0;
+	}
+}
@@ -0,0 +1,282 @@
+package framework.lib;
+
+import java.util.Arrays;
+
+
+/**
+ * Stores every cell of a State in a flat primitive array, indexed by the cell's
+ * row-major linear index. The narrowest element type that can hold all of the
+ * states is used, so automata with at most 256 states take a single byte per
+ * cell.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+abstract class DenseCellStore extends CellStore
+{
+
+	/**
+	 * The largest number of cells a dense store can hold, which is bounded by
+	 * the maximum length of a Java array.
+	 */
+	static final long	MAX_CELLS	= Integer.MAX_VALUE - 8;
+
+	private long		population;
+
+	private DenseCellStore(long size)
+	{
+		super(size);
+		if (size > MAX_CELLS)
+			throw new IllegalArgumentException("Too many cells for dense storage");
+	}
+
+	/**
+	 * Creates a dense store using the narrowest array type that can hold
+	 * states 0 through numStates - 1.
+	 * 
+	 * @param size the number of cells
+	 * @param numStates the number of states a cell can be in
+	 * @return an all-zero dense store
+	 * @throws IllegalArgumentException if size is larger than MAX_CELLS
+	 */
+	static DenseCellStore create(long size, int numStates)
+	{
+		if (numStates <= 1 << 8)
+			return new Bytes(size);
+		else if (numStates <= 1 << 16)
+			return new Shorts(size);
+		else
+			return new Ints(size);
+	}
+
+	/**
+	 * Reads a cell without going through the virtual {@code get(long)}.
+	 * 
+	 * @param index the linear index of a cell
+	 * @return the state of the cell
+	 */
+	abstract int getAt(int index);
+
+	/**
+	 * Writes a cell without maintaining the population count.
+	 * 
+	 * @param index the linear index of a cell
+	 * @param state the new state of the cell
+	 */
+	abstract void setAt(int index, int state);
+
+	/**
+	 * Sets the population count after a series of {@code setAt} calls.
+	 * 
+	 * @param population the number of non-zero cells
+	 */
+	final void setPopulation(long population)
+	{
+		this.population = population;
+	}
+
+	@Override
+	final int get(long index)
+	{
+		return getAt((int) index);
+	}
+
+	@Override
+	final void set(long index, int state)
+	{
+		int i = (int) index;
+		int old = getAt(i);
+		setAt(i, state);
+		if (old == 0 && state != 0)
+			population++;
+		else if (old != 0 && state == 0) population--;
+	}
+
+	@Override
+	final long population()
+	{
+		return population;
+	}
+
+	@Override
+	void clear()
+	{
+		population = 0;
+	}
+
+	@Override
+	final boolean isDense()
+	{
+		return true;
+	}
+
+	@Override
+	final Cursor cursor()
+	{
+		return new Cursor() {
+			int	i	= -1;
+
+			@Override
+			boolean next()
+			{
+				int n = (int) size();
+				for (i++; i < n; i++) {
+					if (getAt(i) != 0) return true;
+				}
+				return false;
+			}
+
+			@Override
+			long index()
+			{
+				return i;
+			}
+
+			@Override
+			int state()
+			{
+				return getAt(i);
+			}
+		};
+	}
+
+	private static final class Bytes extends DenseCellStore
+	{
+		private final byte[]	cells;
+
+		@Override
+		CellStore blank()
+		{
+			return new Bytes(size());
+		}
+
+		private Bytes(long size)
+		{
+			super(size);
+			cells = new byte[(int) size];
+		}
+
+		@Override
+		int getAt(int index)
+		{
+			return cells[index] & 0xFF;
+		}
+
+		@Override
+		void setAt(int index, int state)
+		{
+			cells[index] = (byte) state;
+		}
+
+		@Override
+		void clear()
+		{
+			super.clear();
+			Arrays.fill(cells, (byte) 0);
+		}
+
+		@Override
+		void copyInto(CellStore dest)
+		{
+			if (dest instanceof Bytes) {
+				System.arraycopy(cells, 0, ((Bytes) dest).cells, 0, cells.length);
+				((Bytes) dest).setPopulation(population());
+			}
+			else
+				super.copyInto(dest);
+		}
+	}
+
+	private static final class Shorts extends DenseCellStore
+	{
+		private final short[]	cells;
+
+		@Override
+		CellStore blank()
+		{
+			return new Shorts(size());
+		}
+
+		private Shorts(long size)
+		{
+			super(size);
+			cells = new short[(int) size];
+		}
+
+		@Override
+		int getAt(int index)
+		{
+			return cells[index] & 0xFFFF;
+		}
+
+		@Override
+		void setAt(int index, int state)
+		{
+			cells[index] = (short) state;
+		}
+
+		@Override
+		void clear()
+		{
+			super.clear();
+			Arrays.fill(cells, (short) 0);
+		}
+
+		@Override
+		void copyInto(CellStore dest)
+		{
+			if (dest instanceof Shorts) {
+				System.arraycopy(cells, 0, ((Shorts) dest).cells, 0, cells.length);
+				((Shorts) dest).setPopulation(population());
+			}
+			else
+				super.copyInto(dest);
+		}
+	}
+
+	private static final class Ints extends DenseCellStore
+	{
+		private final int[]	cells;
+
+		@Override
+		CellStore blank()
+		{
+			return new Ints(size());
+		}
+
+		private Ints(long size)
+		{
+			super(size);
+			cells = new int[(int) size];
+		}
+
+		@Override
+		int getAt(int index)
+		{
+			return cells[index];
+		}
+
+		@Override
+		void setAt(int index, int state)
+		{
+			cells[index] = state;
+		}
+
+		@Override
+		void clear()
+		{
+			super.clear();
+			Arrays.fill(cells, 0);
+		}
+
+		@Override
+		void copyInto(CellStore dest)
+		{
+			if (dest instanceof Ints) {
+				System.arraycopy(cells, 0, ((Ints) dest).cells, 0, cells.length);
+				((Ints) dest).setPopulation(population());
+			}
+			else
+				super.copyInto(dest);
+		}
+	}
+}
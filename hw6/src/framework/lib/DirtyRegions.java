@@ -0,0 +1,167 @@
+package framework.lib;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * Collects the parts of a State that have changed, for something like a
+ * Viewport that only wants to redraw those. Get one from
+ * {@link State#trackChanges()}; from then on the State marks every tile (see
+ * TileTracker) holding a cell that is set or that changes in a step, and
+ * {@link #take()} hands over the marked parts as Regions and starts afresh.
+ * <br>
+ * <br>
+ * Steps of a quiescent rule (see QuiescentRule) already know which tiles
+ * changed, so they only mark those. Other steps, and anything that replaces
+ * all of the cells, mark the whole State. A new DirtyRegions starts out with
+ * the whole State marked, so the first take covers everything. <br>
+ * <br>
+ * Marking and taking are synchronized, so the State can be stepped on one
+ * thread while another takes the changes.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension that the tracked
+ *            State holds.
+ */
+public final class DirtyRegions<T extends Point>
+{
+
+	private T			size;
+	private TileTracker	tiles;
+	private boolean[]	dirty;
+	private int[]		list;
+	private int			count;
+	private boolean		all;
+
+	/**
+	 * @param size the size of the State
+	 * @param extents the size of the State along each axis
+	 * @param strides the stride of each axis in the State's linear index
+	 */
+	DirtyRegions(T size, int[] extents, long[] strides)
+	{
+		resize(size, extents, strides);
+	}
+
+	/**
+	 * Takes every region that has changed since the last call. Neighboring
+	 * tiles along the first axis are merged into one region.
+	 *
+	 * @return the changed regions, which don't overlap, or an empty list if
+	 *         nothing has changed
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized List<Region<T>> take()
+	{
+		List<Region<T>> regions = new ArrayList<Region<T>>();
+		int dims = size.numDimensions();
+		if (all) {
+			T min = (T) size.copy();
+			for (int i = 0; i < dims; i++)
+				min.setCoord(i, 0);
+			regions.add(new Region<T>(min, size));
+		}
+		else {
+			Arrays.sort(list, 0, count);
+			int[] min = new int[dims], max = new int[dims];
+			int[] nextMin = new int[dims], nextMax = new int[dims];
+			for (int k = 0; k < count; k++) {
+				tiles.tileBounds(list[k], min, max);
+
+				// Tiles next to each other in a row have consecutive numbers
+				while (k + 1 < count && list[k + 1] == list[k] + 1) {
+					tiles.tileBounds(list[k + 1], nextMin, nextMax);
+					if (nextMin[0] != max[0]) break;
+					max[0] = nextMax[0];
+					k++;
+				}
+				regions.add(new Region<T>(point(min), point(max)));
+			}
+		}
+		clear();
+		return regions;
+	}
+
+	/**
+	 * Tells you whether anything has changed since the last take, without
+	 * taking it.
+	 *
+	 * @return true if take would return at least one region
+	 */
+	public synchronized boolean hasChanges()
+	{
+		return all || count > 0;
+	}
+
+	/**
+	 * Marks the tile holding a cell.
+	 *
+	 * @param index the linear index of the cell
+	 */
+	synchronized void markCell(long index)
+	{
+		if (all) return;
+
+		int tile = tiles.tileOf(index);
+		if (!dirty[tile]) {
+			dirty[tile] = true;
+			list[count++] = tile;
+		}
+	}
+
+	/**
+	 * Marks the tiles that changed in the last step of a TileTracker with the
+	 * same geometry.
+	 */
+	synchronized void markTiles(TileTracker changed)
+	{
+		if (all) return;
+
+		for (int tile = 0; tile < dirty.length; tile++) {
+			if (changed.isDirty(tile) && !dirty[tile]) {
+				dirty[tile] = true;
+				list[count++] = tile;
+			}
+		}
+	}
+
+	/**
+	 * Marks the whole State.
+	 */
+	synchronized void markAll()
+	{
+		all = true;
+	}
+
+	/**
+	 * Starts over for a State that has changed size, with all of it marked.
+	 */
+	synchronized void resize(T size, int[] extents, long[] strides)
+	{
+		this.size = size;
+		tiles = new TileTracker(extents, strides, new boolean[extents.length], 0);
+		dirty = new boolean[tiles.numTiles()];
+		list = new int[dirty.length];
+		count = 0;
+		all = true;
+	}
+
+	private void clear()
+	{
+		for (int k = 0; k < count; k++)
+			dirty[list[k]] = false;
+		count = 0;
+		all = false;
+	}
+
+	@SuppressWarnings("unchecked")
+	private T point(int[] coords)
+	{
+		T p = (T) size.copy();
+		for (int i = 0; i < coords.length; i++)
+			p.setCoord(i, coords[i]);
+		return p;
+	}
+}
@@ -0,0 +1,563 @@
+package framework.lib;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import framework.interfaces.Rule;
+
+
+/**
+ * Runs a two state, radius 1 two dimensional automaton with the Hashlife
+ * algorithm, which can jump ahead billions of generations for patterns with
+ * enough repetition in space and time. The world is stored as a quadtree whose
+ * nodes are canonicalized, so identical regions are stored once, and each node
+ * remembers its own future so identical regions are only ever computed once.
+ * <br>
+ * <br>
+ * Unlike State, the world is an infinite plane with no wrapping. The results
+ * match repeated calls to {@link State#step(Rule)} as long as nothing
+ * interesting reaches the edges of the State. The rule must be quiescent,
+ * meaning a dead cell surrounded by dead cells stays dead, since otherwise the
+ * infinite plane would fill up in a single step.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public class HashLife
+{
+
+	/**
+	 * A square of 2^level by 2^level cells. Level 0 nodes are single cells,
+	 * and there are only two of them. Every other node is made from four
+	 * nodes one level down, and is canonical: two nodes with the same
+	 * children are the same object, so nodes can be compared by identity.
+	 */
+	private static final class Node
+	{
+		final Node	nw, ne, sw, se;
+		final int	level;
+		final long	population;
+		final int	hash;
+
+		/**
+		 * The center of this node, advanced 2^resultStep generations.
+		 */
+		Node		result;
+		int			resultStep;
+
+		Node(int population)
+		{
+			nw = ne = sw = se = null;
+			level = 0;
+			this.population = population;
+			hash = population;
+		}
+
+		Node(Node nw, Node ne, Node sw, Node se)
+		{
+			this.nw = nw;
+			this.ne = ne;
+			this.sw = sw;
+			this.se = se;
+			level = nw.level + 1;
+			population = nw.population + ne.population + sw.population
+					+ se.population;
+
+			int h = System.identityHashCode(nw);
+			h = h * 31 + System.identityHashCode(ne);
+			h = h * 31 + System.identityHashCode(sw);
+			h = h * 31 + System.identityHashCode(se);
+			hash = h;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Node)) return false;
+			Node n = (Node) o;
+			return nw == n.nw && ne == n.ne && sw == n.sw && se == n.se;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return hash;
+		}
+	}
+
+	/**
+	 * The default bound on the number of canonical nodes kept around.
+	 */
+	public static final int			DEFAULT_MAX_NODES	= 1 << 20;
+
+	/**
+	 * The largest power of two a single advance can step by. Larger steps are
+	 * made of several advances, which keeps coordinates within a long.
+	 */
+	private static final int		MAX_STEP_LOG		= 56;
+
+	private static final Node		DEAD				= new Node(0);
+	private static final Node		ALIVE				= new Node(1);
+
+	private final int[]				table;
+	private final Node[]			level1;
+	private final Node[]			base;
+	private final int				maxNodes;
+
+	private HashMap<Node, Node>		nodes;
+	private final ArrayList<Node>	empties;
+
+	private Node					root;
+	private long					originX, originY;
+	private long					generation;
+
+	/**
+	 * Creates an empty Hashlife world for the given rule.
+	 *
+	 * @param rule a two state rule with a neighborhood radius of at most 1
+	 * @throws IllegalArgumentException if the rule has the wrong radius, steps
+	 *             a cell to something other than 0 or 1, or brings a cell to
+	 *             life with no live neighbors
+	 */
+	public HashLife(Rule<Point2D> rule)
+	{
+		this(rule, DEFAULT_MAX_NODES);
+	}
+
+	/**
+	 * Creates an empty Hashlife world for the given rule, which keeps around
+	 * roughly at most maxNodes nodes. Once there are more than that after a
+	 * step, every node that isn't part of the current world is dropped, along
+	 * with all of the memoized results.
+	 *
+	 * @param rule a two state rule with a neighborhood radius of at most 1
+	 * @param maxNodes the number of nodes after which memory is reclaimed
+	 * @throws IllegalArgumentException if the rule has the wrong radius, steps
+	 *             a cell to something other than 0 or 1, or brings a cell to
+	 *             life with no live neighbors, or if maxNodes is not positive
+	 */
+	public HashLife(Rule<Point2D> rule, int maxNodes)
+	{
+		if (maxNodes <= 0)
+			throw new IllegalArgumentException("Must allow at least one node");
+		if (rule.getNeighborhoodSize() > 1)
+			throw new IllegalArgumentException("Hashlife only supports rules with radius at most 1");
+
+		this.maxNodes = maxNodes;
+		this.table = probe(rule);
+		if (table[0] != 0)
+			throw new IllegalArgumentException("Rule brings empty space to life");
+
+		nodes = new HashMap<Node, Node>();
+		empties = new ArrayList<Node>();
+		empties.add(DEAD);
+
+		// Every level 1 node, indexed by its cells in the order nw, ne, sw, se
+		level1 = new Node[16];
+		for (int cells = 0; cells < level1.length; cells++) {
+			level1[cells] = join(cell(cells, 0), cell(cells, 1),
+					cell(cells, 2), cell(cells, 3));
+		}
+
+		base = new Node[1 << 16];
+		for (int cells = 0; cells < base.length; cells++)
+			base[cells] = stepBase(cells);
+
+		root = empty(3);
+		originX = originY = -4;
+	}
+
+	/**
+	 * Replaces the world with the live cells of s. The cell at (x, y) in s is
+	 * put at (x, y) in this world, and the generation counter is reset to 0.
+	 *
+	 * @param s a state with 2 states
+	 * @throws IllegalArgumentException if s has more than 2 states
+	 */
+	public void setState(State<Point2D> s)
+	{
+		if (s.getNumStates() > 2)
+			throw new IllegalArgumentException("Hashlife only supports 2 states");
+
+		clear();
+		long width = s.getSize().getX();
+		CellStore.Cursor c = s.liveCells();
+		while (c.next()) {
+			setCell(c.index() % width, c.index() / width, true);
+		}
+	}
+
+	/**
+	 * Copies this world into s. Cells outside of the bounds of s are left out,
+	 * no matter whether s wraps.
+	 *
+	 * @param s a state to overwrite with this world
+	 */
+	public void writeTo(State<Point2D> s)
+	{
+		s.setState(null);
+		Point2D size = s.getSize();
+		writeTo(s, root, originX, originY, size.getX(), size.getY());
+	}
+
+	/**
+	 * Empties the world and resets the generation counter to 0.
+	 */
+	public void clear()
+	{
+		root = empty(3);
+		originX = originY = -4;
+		generation = 0;
+	}
+
+	/**
+	 * Gets the state of a cell.
+	 *
+	 * @param x the x-coordinate of the cell
+	 * @param y the y-coordinate of the cell
+	 * @return true if the cell is alive
+	 */
+	public boolean getCell(long x, long y)
+	{
+		x -= originX;
+		y -= originY;
+		Node n = root;
+		long half = 1L << (n.level - 1);
+		if (x < 0 || y < 0 || x >= 2 * half || y >= 2 * half) return false;
+
+		while (n.level > 0) {
+			half = 1L << (n.level - 1);
+			if (y < half)
+				n = x < half ? n.nw : n.ne;
+			else
+				n = x < half ? n.sw : n.se;
+			x %= half;
+			y %= half;
+		}
+		return n == ALIVE;
+	}
+
+	/**
+	 * Sets the state of a cell, growing the world to cover it if needed.
+	 *
+	 * @param x the x-coordinate of the cell
+	 * @param y the y-coordinate of the cell
+	 * @param alive true to make the cell alive, false to make it dead
+	 */
+	public void setCell(long x, long y, boolean alive)
+	{
+		while (x < originX || y < originY
+				|| x - originX >= 1L << root.level
+				|| y - originY >= 1L << root.level) {
+			expand();
+		}
+		root = setCell(root, x - originX, y - originY, alive ? ALIVE : DEAD);
+	}
+
+	/**
+	 * Advances the world by the given number of generations. The advance is
+	 * made of one jump for each power of two in generations, so stepping by a
+	 * power of two is the cheapest.
+	 *
+	 * @param generations the number of generations to step
+	 * @throws IllegalArgumentException if generations is negative
+	 */
+	public void step(long generations)
+	{
+		if (generations < 0)
+			throw new IllegalArgumentException("Can't step backwards");
+
+		for (int j = 62; j >= 0; j--) {
+			if ((generations & (1L << j)) == 0) continue;
+
+			long jumps = j > MAX_STEP_LOG ? 1L << (j - MAX_STEP_LOG) : 1;
+			for (long i = 0; i < jumps; i++)
+				advance(Math.min(j, MAX_STEP_LOG));
+		}
+	}
+
+	/**
+	 * Gets the number of generations stepped since the world was last set.
+	 *
+	 * @return the generation counter
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * Gets the number of live cells.
+	 *
+	 * @return the population of the world
+	 */
+	public long getPopulation()
+	{
+		return root.population;
+	}
+
+	/**
+	 * Private helper method that advances the world by 2^j generations.
+	 *
+	 * @param j the log of the number of generations to step
+	 */
+	private void advance(int j)
+	{
+		// The result of a node is its center half, and nothing can travel more
+		// than one cell per generation, so the world needs a margin of 2^j
+		// empty cells around the pattern before it is advanced
+		while (root.level < j + 2 || !centered(root))
+			expand();
+		expand();
+
+		long shift = 1L << (root.level - 2);
+		root = result(root, j);
+		originX += shift;
+		originY += shift;
+		generation += 1L << j;
+
+		if (nodes.size() > maxNodes) collect();
+	}
+
+	/**
+	 * Private helper method that computes the center of node n, advanced 2^j
+	 * generations, where j is at most n.level - 2.
+	 *
+	 * @param n a node of level at least 2
+	 * @param j the log of the number of generations to step
+	 * @return a node one level down from n
+	 */
+	private Node result(Node n, int j)
+	{
+		if (n.population == 0) return empty(n.level - 1);
+		if (n.result != null && n.resultStep == j) return n.result;
+
+		Node r;
+		if (n.level == 2) {
+			r = base[cells4x4(n)];
+		}
+		else {
+			// Nine overlapping subnodes, one level down
+			Node n00 = n.nw;
+			Node n01 = join(n.nw.ne, n.ne.nw, n.nw.se, n.ne.sw);
+			Node n02 = n.ne;
+			Node n10 = join(n.nw.sw, n.nw.se, n.sw.nw, n.sw.ne);
+			Node n11 = join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+			Node n12 = join(n.ne.sw, n.ne.se, n.se.nw, n.se.ne);
+			Node n20 = n.sw;
+			Node n21 = join(n.sw.ne, n.se.nw, n.sw.se, n.se.sw);
+			Node n22 = n.se;
+
+			// Either both halves advance 2^(j-1) generations, or only the
+			// second half advances, by the full 2^j
+			boolean full = j == n.level - 2;
+			int half = full ? j - 1 : j;
+			Node r00 = full ? result(n00, half) : center(n00);
+			Node r01 = full ? result(n01, half) : center(n01);
+			Node r02 = full ? result(n02, half) : center(n02);
+			Node r10 = full ? result(n10, half) : center(n10);
+			Node r11 = full ? result(n11, half) : center(n11);
+			Node r12 = full ? result(n12, half) : center(n12);
+			Node r20 = full ? result(n20, half) : center(n20);
+			Node r21 = full ? result(n21, half) : center(n21);
+			Node r22 = full ? result(n22, half) : center(n22);
+
+			r = join(result(join(r00, r01, r10, r11), half),
+					result(join(r01, r02, r11, r12), half),
+					result(join(r10, r11, r20, r21), half),
+					result(join(r11, r12, r21, r22), half));
+		}
+
+		n.result = r;
+		n.resultStep = j;
+		return r;
+	}
+
+	/**
+	 * Private helper method that gets the canonical node with the given
+	 * children.
+	 */
+	private Node join(Node nw, Node ne, Node sw, Node se)
+	{
+		Node n = new Node(nw, ne, sw, se);
+		Node canonical = nodes.get(n);
+		if (canonical != null) return canonical;
+
+		nodes.put(n, n);
+		return n;
+	}
+
+	/**
+	 * Private helper method that gets the canonical empty node of a level.
+	 */
+	private Node empty(int level)
+	{
+		while (empties.size() <= level) {
+			Node e = empties.get(empties.size() - 1);
+			empties.add(join(e, e, e, e));
+		}
+		return empties.get(level);
+	}
+
+	/**
+	 * Private helper method that gets the center half of a node.
+	 */
+	private Node center(Node n)
+	{
+		return join(n.nw.se, n.ne.sw, n.sw.ne, n.se.nw);
+	}
+
+	/**
+	 * Private helper method that checks that every live cell of n is in its
+	 * center half.
+	 */
+	private boolean centered(Node n)
+	{
+		return n.nw.se.population + n.ne.sw.population + n.sw.ne.population
+				+ n.se.nw.population == n.population;
+	}
+
+	/**
+	 * Private helper method that doubles the size of the world, keeping the
+	 * current world in the center.
+	 */
+	private void expand()
+	{
+		Node e = empty(root.level - 1);
+		root = join(join(e, e, e, root.nw), join(e, e, root.ne, e),
+				join(e, root.sw, e, e), join(root.se, e, e, e));
+
+		long shift = 1L << (root.level - 2);
+		originX -= shift;
+		originY -= shift;
+	}
+
+	private Node setCell(Node n, long x, long y, Node cell)
+	{
+		if (n.level == 0) return cell;
+
+		long half = 1L << (n.level - 1);
+		if (y < half) {
+			if (x < half)
+				return join(setCell(n.nw, x, y, cell), n.ne, n.sw, n.se);
+			else
+				return join(n.nw, setCell(n.ne, x - half, y, cell), n.sw, n.se);
+		}
+		else {
+			if (x < half)
+				return join(n.nw, n.ne, setCell(n.sw, x, y - half, cell), n.se);
+			else
+				return join(n.nw, n.ne, n.sw, setCell(n.se, x - half, y - half, cell));
+		}
+	}
+
+	private void writeTo(State<Point2D> s, Node n, long x, long y, int width,
+			int height)
+	{
+		long side = 1L << n.level;
+		if (n.population == 0 || x >= width || y >= height || x + side <= 0
+				|| y + side <= 0) return;
+
+		if (n.level == 0) {
+			s.setCellState(new Point2D((int) x, (int) y), 1);
+			return;
+		}
+
+		long half = side / 2;
+		writeTo(s, n.nw, x, y, width, height);
+		writeTo(s, n.ne, x + half, y, width, height);
+		writeTo(s, n.sw, x, y + half, width, height);
+		writeTo(s, n.se, x + half, y + half, width, height);
+	}
+
+	/**
+	 * Private helper method that drops every node that isn't part of the
+	 * current world, and forgets every memoized result.
+	 */
+	private void collect()
+	{
+		nodes = new HashMap<Node, Node>();
+		for (Node n : level1)
+			keep(n);
+		for (int i = 1; i < empties.size(); i++)
+			keep(empties.get(i));
+		keep(root);
+	}
+
+	private void keep(Node n)
+	{
+		if (n.level == 0 || nodes.containsKey(n)) return;
+
+		n.result = null;
+		nodes.put(n, n);
+		keep(n.nw);
+		keep(n.ne);
+		keep(n.sw);
+		keep(n.se);
+	}
+
+	/**
+	 * Private helper method that packs the cells of a level 2 node into 16
+	 * bits, with the cell at (x, y) in bit 4y + x.
+	 */
+	private static int cells4x4(Node n)
+	{
+		return cells2x2(n.nw) | cells2x2(n.ne) << 2 | cells2x2(n.sw) << 8
+				| cells2x2(n.se) << 10;
+	}
+
+	private static int cells2x2(Node n)
+	{
+		return (int) (n.nw.population | n.ne.population << 1
+				| n.sw.population << 4 | n.se.population << 5);
+	}
+
+	/**
+	 * Private helper method that steps the center 2x2 of a 4x4 block once.
+	 */
+	private Node stepBase(int cells)
+	{
+		int out = 0;
+		for (int i = 0; i < 4; i++) {
+			int cx = 1 + i % 2;
+			int cy = 1 + i / 2;
+			int hood = 0;
+			for (int dy = -1; dy <= 1; dy++) {
+				for (int dx = -1; dx <= 1; dx++) {
+					int bit = (cy + dy) * 4 + cx + dx;
+					if ((cells >> bit & 1) != 0)
+						hood |= 1 << ((dy + 1) * 3 + dx + 1);
+				}
+			}
+			out |= table[hood] << i;
+		}
+		return level1[out];
+	}
+
+	private static Node cell(int cells, int bit)
+	{
+		return (cells >> bit & 1) == 0 ? DEAD : ALIVE;
+	}
+
+	/**
+	 * Private helper method that evaluates a rule on every possible 3x3
+	 * neighborhood. The cell at relative point (dx, dy) is bit
+	 * {@code 3 * (dy + 1) + dx + 1} of the table index.
+	 */
+	private static int[] probe(Rule<Point2D> rule)
+	{
+		int[] compiled = new CompiledRule<Point2D>(rule, 2).table;
+		int[] table = compiled;
+		if (rule.getNeighborhoodSize() == 0) {
+			// Only the center cell, bit 4, matters
+			table = new int[1 << 9];
+			for (int hood = 0; hood < table.length; hood++)
+				table[hood] = compiled[hood >> 4 & 1];
+		}
+
+		for (int s : table) {
+			if (s != 0 && s != 1)
+				throw new IllegalArgumentException("Rule must have 2 states");
+		}
+		return table;
+	}
+}
@@ -0,0 +1,248 @@
+package framework.lib;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+
+/**
+ * A file that holds the cells of a State, mapped into memory so that the
+ * operating system pages parts of it in and out as they are used, rather than
+ * the cells taking up heap. The file has room for two generations, so that a
+ * step can read one while it writes the other, and a header that records the
+ * shape of the world and which generation is the current one, so the file can
+ * be reopened later to carry on from where it was left. <br>
+ * <br>
+ * The file is laid out as: the header, padded to HEADER_BYTES, then the cells
+ * of generation slot 0, then those of slot 1. Each cell takes 1, 2 or 4 bytes,
+ * the narrowest that can hold all of the states. Since a single
+ * MappedByteBuffer can't be larger than 2GB, the file is mapped as a series of
+ * SEGMENT_BYTES segments. The header is:
+ *
+ * <pre>
+ * int      MAGIC
+ * int      VERSION
+ * int      number of states
+ * int      number of dimensions
+ * int[]    the size along each dimension
+ * int      the current slot
+ * long[2]  the population of each slot
+ * </pre>
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+final class MappedCellFile
+{
+
+	static final int					MAGIC			= 0x43414D46;
+	static final int					VERSION			= 1;
+
+	/**
+	 * Room for the header, which leaves space for hundreds of dimensions and
+	 * keeps the cells page aligned.
+	 */
+	static final int					HEADER_BYTES	= 4096;
+
+	/**
+	 * The size of each mapped segment. A power of two, so a cell never
+	 * straddles two segments.
+	 */
+	static final int					SEGMENT_SHIFT	= 30;
+	static final long					SEGMENT_BYTES	= 1L << SEGMENT_SHIFT;
+
+	private final RandomAccessFile		file;
+	private final FileChannel			channel;
+	private final MappedByteBuffer[]	segments;
+	private final int					width;
+	private final MappedCellStore[]		slots;
+	private final int					currentOffset;
+	private final int					populationOffset;
+
+	/**
+	 * Opens a file for the cells of a world, creating it if it doesn't exist
+	 * or is empty. An existing file is reused with the cells it holds.
+	 *
+	 * @param f the file
+	 * @param numStates the number of states a cell can be in
+	 * @param extents the size of the world along each dimension
+	 * @throws IOException if the file can't be opened or mapped
+	 * @throws IllegalArgumentException if the file exists but isn't a cell
+	 *             file for a world of this shape and number of states
+	 */
+	MappedCellFile(File f, int numStates, int[] extents) throws IOException
+	{
+		if (16 + 4 * extents.length + 20 > HEADER_BYTES)
+			throw new IllegalArgumentException("Too many dimensions for a mapped state");
+
+		if (numStates <= 1 << 8)
+			width = 1;
+		else if (numStates <= 1 << 16)
+			width = 2;
+		else
+			width = 4;
+
+		long numCells = 1;
+		for (int e : extents)
+			numCells *= e;
+		currentOffset = 16 + 4 * extents.length;
+		populationOffset = currentOffset + 4;
+
+		file = new RandomAccessFile(f, "rw");
+		boolean fresh = file.length() == 0;
+		long length = HEADER_BYTES + 2 * numCells * width;
+		if (!fresh && file.length() != length) {
+			file.close();
+			throw new IllegalArgumentException("File holds a different world");
+		}
+		if (fresh) file.setLength(length);
+
+		channel = file.getChannel();
+		segments = new MappedByteBuffer[(int) ((length + SEGMENT_BYTES - 1) >> SEGMENT_SHIFT)];
+		for (int i = 0; i < segments.length; i++) {
+			long start = (long) i << SEGMENT_SHIFT;
+			segments[i] = channel.map(FileChannel.MapMode.READ_WRITE, start,
+					Math.min(SEGMENT_BYTES, length - start));
+		}
+
+		slots = new MappedCellStore[2];
+		for (int i = 0; i < 2; i++)
+			slots[i] = new MappedCellStore(this, HEADER_BYTES + i * numCells * width, numCells);
+
+		MappedByteBuffer header = segments[0];
+		if (fresh) {
+			header.putInt(0, MAGIC);
+			header.putInt(4, VERSION);
+			header.putInt(8, numStates);
+			header.putInt(12, extents.length);
+			for (int i = 0; i < extents.length; i++)
+				header.putInt(16 + 4 * i, extents[i]);
+			setCurrent(slots[0]);
+		}
+		else {
+			int dims = header.getInt(12);
+			int[] stored = new int[Math.max(0, Math.min(dims, extents.length + 1))];
+			for (int i = 0; i < stored.length; i++)
+				stored[i] = header.getInt(16 + 4 * i);
+			if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION
+					|| header.getInt(8) != numStates
+					|| !Arrays.equals(stored, extents)) {
+				close();
+				throw new IllegalArgumentException("File holds a different world");
+			}
+			for (int i = 0; i < 2; i++)
+				slots[i].setPopulation(header.getLong(populationOffset + 8 * i));
+		}
+	}
+
+	/**
+	 * @return the store holding the generation the header calls current
+	 */
+	MappedCellStore current()
+	{
+		return slots[segments[0].getInt(currentOffset) & 1];
+	}
+
+	/**
+	 * @param store any store
+	 * @return the slot of this file that isn't store, so slot 0 for a store
+	 *         from somewhere else
+	 */
+	MappedCellStore other(CellStore store)
+	{
+		return store == slots[0] ? slots[1] : slots[0];
+	}
+
+	/**
+	 * Records a slot as the current generation, along with the population of
+	 * both slots.
+	 */
+	void setCurrent(MappedCellStore store)
+	{
+		MappedByteBuffer header = segments[0];
+		header.putInt(currentOffset, store == slots[1] ? 1 : 0);
+		for (int i = 0; i < 2; i++)
+			header.putLong(populationOffset + 8 * i, slots[i].population());
+	}
+
+	/**
+	 * Writes every change out to the disk.
+	 */
+	void force()
+	{
+		for (MappedByteBuffer segment : segments)
+			segment.force();
+	}
+
+	/**
+	 * Writes every change out and closes the file. The mappings stay valid
+	 * until they are garbage collected, but must not be used.
+	 *
+	 * @throws IOException if the file can't be closed
+	 */
+	void close() throws IOException
+	{
+		force();
+		channel.close();
+		file.close();
+	}
+
+	/**
+	 * @return the number of bytes per cell
+	 */
+	int width()
+	{
+		return width;
+	}
+
+	/**
+	 * Reads a cell at a byte offset in the file.
+	 */
+	int read(long offset)
+	{
+		MappedByteBuffer segment = segments[(int) (offset >> SEGMENT_SHIFT)];
+		int i = (int) (offset & (SEGMENT_BYTES - 1));
+		if (width == 1)
+			return segment.get(i) & 0xFF;
+		else if (width == 2)
+			return segment.getShort(i) & 0xFFFF;
+		else
+			return segment.getInt(i);
+	}
+
+	/**
+	 * Writes a cell at a byte offset in the file.
+	 */
+	void write(long offset, int state)
+	{
+		MappedByteBuffer segment = segments[(int) (offset >> SEGMENT_SHIFT)];
+		int i = (int) (offset & (SEGMENT_BYTES - 1));
+		if (width == 1)
+			segment.put(i, (byte) state);
+		else if (width == 2)
+			segment.putShort(i, (short) state);
+		else
+			segment.putInt(i, state);
+	}
+
+	/**
+	 * Zeroes a range of bytes, which must lie within one slot.
+	 */
+	void zero(long from, long to)
+	{
+		while (from < to) {
+			MappedByteBuffer segment = segments[(int) (from >> SEGMENT_SHIFT)];
+			int i = (int) (from & (SEGMENT_BYTES - 1));
+			int end = (int) Math.min(to - from + i, segment.capacity());
+			for (; i < end && (i & 7) != 0; i++)
+				segment.put(i, (byte) 0);
+			for (; i + 8 <= end; i += 8)
+				segment.putLong(i, 0);
+			for (; i < end; i++)
+				segment.put(i, (byte) 0);
+			from = ((from >> SEGMENT_SHIFT) << SEGMENT_SHIFT) + end;
+		}
+	}
+}
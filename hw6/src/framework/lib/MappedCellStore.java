@@ -0,0 +1,138 @@
+package framework.lib;
+
+/**
+ * Stores every cell of a State in one generation slot of a MappedCellFile,
+ * indexed by the cell's row-major linear index, so the world can be far larger
+ * than the Java heap. Like a DenseCellStore, every cell has its own slot, but
+ * the cells are addressed by a long and live outside the heap.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+final class MappedCellStore extends CellStore
+{
+
+	private final MappedCellFile	file;
+	private final long				start;
+	private final int				width;
+	private long					population;
+
+	/**
+	 * @param file the file holding the cells
+	 * @param start the byte offset of the first cell in the file
+	 * @param size the number of cells
+	 */
+	MappedCellStore(MappedCellFile file, long start, long size)
+	{
+		super(size);
+		this.file = file;
+		this.start = start;
+		this.width = file.width();
+	}
+
+	/**
+	 * @return the file holding the cells
+	 */
+	MappedCellFile file()
+	{
+		return file;
+	}
+
+	/**
+	 * Writes a cell without maintaining the population count.
+	 *
+	 * @param index the linear index of a cell
+	 * @param state the new state of the cell
+	 */
+	void setAt(long index, int state)
+	{
+		file.write(start + index * width, state);
+	}
+
+	/**
+	 * Sets the population count after a series of {@code setAt} calls.
+	 *
+	 * @param population the number of non-zero cells
+	 */
+	void setPopulation(long population)
+	{
+		this.population = population;
+	}
+
+	@Override
+	int get(long index)
+	{
+		return file.read(start + index * width);
+	}
+
+	@Override
+	void set(long index, int state)
+	{
+		long offset = start + index * width;
+		int old = file.read(offset);
+		file.write(offset, state);
+		if (old == 0 && state != 0)
+			population++;
+		else if (old != 0 && state == 0) population--;
+	}
+
+	@Override
+	long population()
+	{
+		return population;
+	}
+
+	@Override
+	void clear()
+	{
+		file.zero(start, start + size() * width);
+		population = 0;
+	}
+
+	@Override
+	boolean isDense()
+	{
+		return true;
+	}
+
+	/**
+	 * Gives the other slot of the same file, cleared, since a file only has
+	 * room for two generations.
+	 */
+	@Override
+	CellStore blank()
+	{
+		MappedCellStore other = file.other(this);
+		other.clear();
+		return other;
+	}
+
+	@Override
+	Cursor cursor()
+	{
+		return new Cursor() {
+			long	i	= -1;
+
+			@Override
+			boolean next()
+			{
+				long n = size();
+				for (i++; i < n; i++) {
+					if (get(i) != 0) return true;
+				}
+				return false;
+			}
+
+			@Override
+			long index()
+			{
+				return i;
+			}
+
+			@Override
+			int state()
+			{
+				return get(i);
+			}
+		};
+	}
+}
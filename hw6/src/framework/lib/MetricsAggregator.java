@@ -0,0 +1,218 @@
+package framework.lib;
+
+import framework.interfaces.StepListener;
+
+import java.util.Arrays;
+
+
+/**
+ * A StepListener that keeps the metrics of the last so many generations and
+ * summarizes them: means, and percentiles such as the median or the 99th
+ * percentile step time. Memory use is fixed by the size of the window. <br>
+ * <br>
+ * It can be read from a different thread than the one stepping, for instance
+ * to log a summary every few seconds.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension that the observed
+ *            State holds.
+ */
+public class MetricsAggregator<T extends Point> implements StepListener<T>
+{
+
+	/**
+	 * The quantities that are kept for each generation.
+	 */
+	public enum Metric
+	{
+		/**
+		 * How long the step took, in nanoseconds.
+		 */
+		STEP_NANOS,
+
+		/**
+		 * The number of cells the rule was evaluated for.
+		 */
+		CELLS_EVALUATED,
+
+		/**
+		 * The number of non-zero cells after the step.
+		 */
+		POPULATION,
+
+		/**
+		 * The bytes allocated by the stepping thread during the step.
+		 * Generations where the JVM couldn't tell are left out.
+		 */
+		ALLOCATED_BYTES,
+
+		/**
+		 * How long drawing the State took, in nanoseconds. Only generations
+		 * that were drawn count.
+		 */
+		RENDER_NANOS
+	}
+
+	/**
+	 * The default number of generations to keep.
+	 */
+	public static final int	DEFAULT_WINDOW	= 1000;
+
+	private final long[][]	values;
+	private final int[]		next;
+	private final int[]		count;
+	private long			total;
+
+	/**
+	 * Creates an aggregator over the last DEFAULT_WINDOW generations.
+	 */
+	public MetricsAggregator()
+	{
+		this(DEFAULT_WINDOW);
+	}
+
+	/**
+	 * Creates an aggregator over the given number of generations.
+	 *
+	 * @param window the number of generations to keep
+	 * @throws IllegalArgumentException if window is less than 1
+	 */
+	public MetricsAggregator(int window)
+	{
+		if (window < 1)
+			throw new IllegalArgumentException("Window must hold at least one generation");
+
+		int n = Metric.values().length;
+		values = new long[n][window];
+		next = new int[n];
+		count = new int[n];
+	}
+
+	@Override
+	public synchronized void stepped(State<T> state, StepMetrics metrics)
+	{
+		add(Metric.STEP_NANOS, metrics.getStepNanos());
+		add(Metric.CELLS_EVALUATED, metrics.getCellsEvaluated());
+		add(Metric.POPULATION, metrics.getPopulation());
+		if (metrics.getAllocatedBytes() >= 0)
+			add(Metric.ALLOCATED_BYTES, metrics.getAllocatedBytes());
+		total++;
+	}
+
+	@Override
+	public synchronized void rendered(State<T> state, long nanos)
+	{
+		add(Metric.RENDER_NANOS, nanos);
+	}
+
+	/**
+	 * Gets the number of values of a metric in the window.
+	 *
+	 * @param metric the metric
+	 * @return the number of generations the metric was recorded for, at most
+	 *         the size of the window
+	 */
+	public synchronized int getCount(Metric metric)
+	{
+		return count[metric.ordinal()];
+	}
+
+	/**
+	 * Gets the number of steps seen since the aggregator was created or
+	 * cleared, including those that have left the window.
+	 *
+	 * @return the number of steps
+	 */
+	public synchronized long getTotalSteps()
+	{
+		return total;
+	}
+
+	/**
+	 * Gets the mean of a metric over the window.
+	 *
+	 * @param metric the metric
+	 * @return the mean, or NaN if there are no values
+	 */
+	public synchronized double mean(Metric metric)
+	{
+		int m = metric.ordinal();
+		if (count[m] == 0) return Double.NaN;
+
+		double sum = 0;
+		for (int i = 0; i < count[m]; i++)
+			sum += values[m][i];
+		return sum / count[m];
+	}
+
+	/**
+	 * Gets a percentile of a metric over the window, using the nearest rank,
+	 * so the result is always one of the values.
+	 *
+	 * @param metric the metric
+	 * @param percentile the percentile, from 0 to 100. 50 gives the median.
+	 * @return the value at that percentile, or -1 if there are no values
+	 * @throws IllegalArgumentException if percentile is out of range
+	 */
+	public synchronized long percentile(Metric metric, double percentile)
+	{
+		if (!(percentile >= 0 && percentile <= 100))
+			throw new IllegalArgumentException("Percentile must be between 0 and 100");
+
+		int m = metric.ordinal();
+		if (count[m] == 0) return -1;
+
+		long[] sorted = Arrays.copyOf(values[m], count[m]);
+		Arrays.sort(sorted);
+		int rank = (int) Math.ceil(percentile / 100 * sorted.length);
+		return sorted[Math.max(0, rank - 1)];
+	}
+
+	/**
+	 * Forgets every generation.
+	 */
+	public synchronized void clear()
+	{
+		Arrays.fill(next, 0);
+		Arrays.fill(count, 0);
+		total = 0;
+	}
+
+	/**
+	 * Summarizes the step and render times and the throughput.
+	 */
+	@Override
+	public synchronized String toString()
+	{
+		StringBuilder b = new StringBuilder();
+		b.append(String.format("%d steps, step ms p50 %.3f p90 %.3f p99 %.3f max %.3f",
+				count[Metric.STEP_NANOS.ordinal()],
+				percentile(Metric.STEP_NANOS, 50) / 1e6,
+				percentile(Metric.STEP_NANOS, 90) / 1e6,
+				percentile(Metric.STEP_NANOS, 99) / 1e6,
+				percentile(Metric.STEP_NANOS, 100) / 1e6));
+
+		double nanos = mean(Metric.STEP_NANOS);
+		if (nanos > 0)
+			b.append(String.format(", %.4g cells/s", mean(Metric.CELLS_EVALUATED) * 1e9 / nanos));
+		if (count[Metric.ALLOCATED_BYTES.ordinal()] > 0)
+			b.append(String.format(", %.0f bytes allocated/step", mean(Metric.ALLOCATED_BYTES)));
+		if (count[Metric.RENDER_NANOS.ordinal()] > 0)
+			b.append(String.format(", render ms p50 %.3f p99 %.3f",
+					percentile(Metric.RENDER_NANOS, 50) / 1e6,
+					percentile(Metric.RENDER_NANOS, 99) / 1e6));
+		return b.toString();
+	}
+
+	/**
+	 * Private helper method that adds a value to the window of a metric,
+	 * replacing the oldest once it is full.
+	 */
+	private void add(Metric metric, long value)
+	{
+		int m = metric.ordinal();
+		values[m][next[m]] = value;
+		next[m] = (next[m] + 1) % values[m].length;
+		if (count[m] < values[m].length) count[m]++;
+	}
+}
@@ -39,4 +39,52 @@ public interface Neighborhood<T extends Point> extends Iterable<T>
 	 */
 	public int getRadius();
 
+	/**
+	 * Copies the states of all of the cells of the neighborhood, the center
+	 * included, into an array, in the same order the iterator gives their
+	 * points: the first axis varies fastest, so the center is in the middle,
+	 * at index (2r+1)^d / 2. This is much cheaper than calling getCellState
+	 * for each point. Rules that are stepped on several threads should not
+	 * share the array between them.
+	 * 
+	 * @param states an array with room for at least (2r+1)^d states
+	 * @return the number of states copied, (2r+1)^d
+	 * @throws IllegalArgumentException if states is too small
+	 */
+	public int copyStates(int[] states);
+
+	/**
+	 * Counts the cells of the neighborhood, the center included, that are in
+	 * a given state.
+	 * 
+	 * @param state the state to look for
+	 * @return the number of cells in that state
+	 */
+	public int countState(int state);
+
+	/**
+	 * Adds up the states of all of the cells of the neighborhood, the center
+	 * included. For a two state rule this is the number of live cells.
+	 * 
+	 * @return the sum of the states
+	 */
+	public int sumStates();
+
+	/**
+	 * Adds up the states of the cells that are at most a given distance from
+	 * the center along every axis, the center included, so boxSum(getRadius())
+	 * is the same as sumStates(). A State answers this from a summed-area
+	 * table of the generation being stepped, which it builds the first time a
+	 * rule asks, so each box sum takes the same time whatever the radius. This
+	 * makes rules with a large radius that only need such sums, like Larger
+	 * than Life, practical.
+	 * 
+	 * @param radius the distance from the center, from 0 up to the radius of
+	 *            the neighborhood
+	 * @return the sum of the states of the (2 radius + 1)^d cells of the box
+	 * @throws IllegalArgumentException if radius is negative or greater than
+	 *             the radius of the neighborhood
+	 */
+	public int boxSum(int radius);
+
 }
@@ -0,0 +1,484 @@
+package framework.lib;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.Arrays;
+
+
+/**
+ * Reads and writes two dimensional patterns in the RLE and plaintext formats
+ * used by Golly and most other Life software. Patterns are read in a single
+ * pass, straight into the cells of a State, without going through Points or
+ * validating each cell, so multi-megabyte pattern files load quickly. <br>
+ * <br>
+ * RLE starts with a header line {@code x = width, y = height}, optionally
+ * followed by {@code , rule = ...}, which is ignored. Lines starting with #
+ * are comments. The cells follow as runs: an optional count, then a tag,
+ * where {@code b} or {@code .} is state 0, {@code o} is state 1, {@code A} to
+ * {@code X} are states 1 to 24, and a prefix {@code p} to {@code y} before one
+ * of those adds 24 times one more than the prefix's place after p, for states
+ * up to 255. {@code $} ends a row and {@code !} ends the pattern. <br>
+ * <br>
+ * Plaintext has a line per row, with {@code .} for state 0 and {@code O} or
+ * {@code *} for state 1. Lines starting with ! are comments.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public final class PatternIO
+{
+
+	/**
+	 * The longest line written to an RLE file, as the format recommends.
+	 */
+	private static final int	RLE_LINE	= 70;
+
+	/**
+	 * Reads characters from a Reader through a buffer, keeping track of the
+	 * line for error messages.
+	 */
+	private static final class Source
+	{
+		private final Reader	in;
+		private final char[]	buf	= new char[1 << 16];
+		private int				pos;
+		private int				len;
+		int						line	= 1;
+
+		Source(Reader in)
+		{
+			this.in = in;
+		}
+
+		/**
+		 * @return the next character, or -1 at the end of the input
+		 */
+		int next() throws IOException
+		{
+			if (pos == len) {
+				len = in.read(buf, 0, buf.length);
+				pos = 0;
+				if (len <= 0) {
+					len = 0;
+					return -1;
+				}
+			}
+			char c = buf[pos++];
+			if (c == '\n') line++;
+			return c;
+		}
+
+		/**
+		 * Reads the rest of the current line.
+		 *
+		 * @return the line, or null at the end of the input
+		 */
+		String restOfLine() throws IOException
+		{
+			StringBuilder b = new StringBuilder();
+			int c;
+			while ((c = next()) >= 0 && c != '\n')
+				b.append((char) c);
+			return c < 0 && b.length() == 0 ? null : b.toString();
+		}
+
+		IOException error(String message)
+		{
+			return new IOException(message + " on line " + line);
+		}
+	}
+
+	/**
+	 * Writes the cells of a pattern into a State, at an offset.
+	 */
+	private static final class Target
+	{
+		State<Point2D>		state;
+		final int			width;
+		final int			height;
+		final int			left;
+		final int			top;
+		int					numStates;
+		boolean				growable;
+
+		/**
+		 * @param growable whether state can be replaced by one with more
+		 *            states if the pattern needs them
+		 */
+		Target(State<Point2D> state, int left, int top, boolean growable)
+		{
+			if (state.getDimension() != 2)
+				throw new IllegalArgumentException("State must be 2 dimensional");
+
+			this.state = state;
+			this.width = state.getSize().getX();
+			this.height = state.getSize().getY();
+			this.left = left;
+			this.top = top;
+			this.numStates = state.getNumStates();
+			this.growable = growable;
+		}
+
+		/**
+		 * Sets a run of cells in one row to a non-zero state.
+		 */
+		void setRun(int x, int y, int count, int s, Source src)
+				throws IOException
+		{
+			x += left;
+			y += top;
+			if (s >= numStates && growable) {
+				// The most states RLE can describe, trimmed once the whole
+				// pattern has been read
+				State<Point2D> bigger = new State<Point2D>(state.getSize(), 256);
+				copyCells(state, bigger);
+				state = bigger;
+				numStates = 256;
+				growable = false;
+			}
+			if (s >= numStates) throw src.error("State " + s + " is too large");
+			if (x < 0 || y < 0 || y >= height || count > width - x)
+				throw src.error("Pattern doesn't fit in the state");
+
+			long index = (long) y * width + x;
+			for (int i = 0; i < count; i++)
+				state.setCell(index + i, s);
+		}
+	}
+
+	private PatternIO()
+	{
+	}
+
+	/**
+	 * Reads an RLE pattern into a new State the size given in its header,
+	 * with 2 states or as many as the pattern uses, and no wrapping.
+	 *
+	 * @param in the pattern
+	 * @return a State holding the pattern
+	 * @throws IOException if in can't be read or isn't valid RLE
+	 */
+	public static State<Point2D> readRle(Reader in) throws IOException
+	{
+		Source src = new Source(in);
+		int[] size = readRleHeader(src);
+
+		Target target = new Target(new State<Point2D>(new Point2D(size[0], size[1]), 2), 0, 0, true);
+		int maxState = readRleCells(src, target);
+		State<Point2D> state = target.state;
+		int numStates = Math.max(2, maxState + 1);
+		if (state.getNumStates() > numStates) {
+			State<Point2D> trimmed = new State<Point2D>(state.getSize(), numStates);
+			copyCells(state, trimmed);
+			state = trimmed;
+		}
+
+		// The population wasn't known when the cells were stored, so let AUTO
+		// storage pick again now that it is
+		state.setStorage(state.getStorage());
+		return state;
+	}
+
+	/**
+	 * Reads an RLE pattern into an existing State, with its top left corner at
+	 * the given point. The pattern's cells in state 0 are left alone, so
+	 * several patterns can be placed in one State.
+	 *
+	 * @param in the pattern
+	 * @param state the State to write the pattern's cells into
+	 * @param left the x-coordinate of the pattern's left edge in the State
+	 * @param top the y-coordinate of the pattern's top edge in the State
+	 * @throws IOException if in can't be read or isn't valid RLE, or if the
+	 *             pattern doesn't fit in state or uses too many states
+	 */
+	public static void readRle(Reader in, State<Point2D> state, int left,
+			int top) throws IOException
+	{
+		Source src = new Source(in);
+		readRleHeader(src);
+		readRleCells(src, new Target(state, left, top, false));
+	}
+
+	/**
+	 * Writes the whole of a State as an RLE pattern, so that reading it back
+	 * gives a State of the same size. Two state patterns use {@code b} and
+	 * {@code o}, others the {@code .} and letter tags.
+	 *
+	 * @param state the State to write
+	 * @param out where to write it
+	 * @throws IOException if out can't be written to
+	 * @throws IllegalArgumentException if state isn't 2 dimensional, or has
+	 *             more than 256 states
+	 */
+	public static void writeRle(State<Point2D> state, Writer out)
+			throws IOException
+	{
+		if (state.getDimension() != 2)
+			throw new IllegalArgumentException("State must be 2 dimensional");
+		if (state.getNumStates() > 256)
+			throw new IllegalArgumentException("RLE can only describe 256 states");
+
+		int width = state.getSize().getX();
+		boolean twoState = state.getNumStates() <= 2;
+		out.write("x = " + width + ", y = " + state.getSize().getY() + "\n");
+
+		// Runs of dead cells and ends of rows are only written once a live
+		// cell follows them, which drops them from the ends of rows and from
+		// the end of the pattern
+		StringBuilder line = new StringBuilder();
+		long x = 0, y = 0;
+		int runState = 0;
+		long runStart = 0, runLength = 0;
+		CellStore.Cursor c = state.liveCellsInOrder();
+		while (true) {
+			boolean more = c.next();
+			long cx = more ? c.index() % width : 0;
+			long cy = more ? c.index() / width : -1;
+			int s = more ? c.state() : 0;
+
+			if (more && s == runState && cy == y && cx == runStart + runLength) {
+				runLength++;
+				continue;
+			}
+			if (runLength > 0) {
+				if (runStart > x) emit(out, line, runStart - x, twoState ? "b" : ".");
+				emit(out, line, runLength, tag(runState, twoState));
+				x = runStart + runLength;
+			}
+			if (!more) break;
+
+			if (cy > y) {
+				emit(out, line, cy - y, "$");
+				y = cy;
+				x = 0;
+			}
+			runState = s;
+			runStart = cx;
+			runLength = 1;
+		}
+		line.append('!');
+		out.write(line.toString());
+		out.write('\n');
+		out.flush();
+	}
+
+	/**
+	 * Reads a plaintext pattern into a new two state State just big enough to
+	 * hold it, with no wrapping.
+	 *
+	 * @param in the pattern
+	 * @return a State holding the pattern
+	 * @throws IOException if in can't be read or isn't valid plaintext
+	 */
+	public static State<Point2D> readPlaintext(Reader in) throws IOException
+	{
+		// The size isn't known until the end, so the live cells are kept
+		// packed until then
+		Source src = new Source(in);
+		long[] live = new long[1024];
+		int count = 0;
+		int width = 0, height = 0;
+		int x = 0;
+		boolean comment = false, lineStart = true;
+		int c;
+		while (true) {
+			c = src.next();
+			if (c == '\r') continue;
+			if (lineStart && c == '!') {
+				comment = true;
+				lineStart = false;
+				continue;
+			}
+			if (c == '\n' || c < 0) {
+				if (!comment && !(c < 0 && lineStart)) {
+					width = Math.max(width, x);
+					height++;
+				}
+				if (c < 0) break;
+				x = 0;
+				comment = false;
+				lineStart = true;
+				continue;
+			}
+			lineStart = false;
+			if (comment) continue;
+
+			if (c == 'O' || c == '*') {
+				if (count == live.length) live = Arrays.copyOf(live, count * 2);
+				live[count++] = Point2D.pack(x, height);
+			}
+			else if (c != '.')
+				throw src.error("Unexpected '" + (char) c + "'");
+			x++;
+		}
+
+		State<Point2D> state = new State<Point2D>(new Point2D(width, height), 2);
+		state.clearForLoad(count);
+		for (int i = 0; i < count; i++) {
+			long index = (long) Point2D.unpackY(live[i]) * width
+					+ Point2D.unpackX(live[i]);
+			state.setCell(index, 1);
+		}
+		return state;
+	}
+
+	/**
+	 * Writes the whole of a two state State as a plaintext pattern.
+	 *
+	 * @param state the State to write
+	 * @param out where to write it
+	 * @throws IOException if out can't be written to
+	 * @throws IllegalArgumentException if state isn't 2 dimensional, or has
+	 *             more than 2 states
+	 */
+	public static void writePlaintext(State<Point2D> state, Writer out)
+			throws IOException
+	{
+		if (state.getDimension() != 2)
+			throw new IllegalArgumentException("State must be 2 dimensional");
+		if (state.getNumStates() > 2)
+			throw new IllegalArgumentException("Plaintext can only describe 2 states");
+
+		int width = state.getSize().getX();
+		int height = state.getSize().getY();
+		char[] row = new char[width + 1];
+		row[width] = '\n';
+		CellStore.Cursor c = state.liveCellsInOrder();
+		boolean more = c.next();
+		for (int y = 0; y < height; y++) {
+			Arrays.fill(row, 0, width, '.');
+			while (more && c.index() / width == y) {
+				row[(int) (c.index() % width)] = 'O';
+				more = c.next();
+			}
+			out.write(row);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Private helper method that skips comments and reads the header line.
+	 *
+	 * @return the width and height
+	 */
+	private static int[] readRleHeader(Source src) throws IOException
+	{
+		String header;
+		do {
+			header = src.restOfLine();
+			if (header == null) throw src.error("Missing header");
+			header = header.trim();
+		} while (header.length() == 0 || header.charAt(0) == '#');
+
+		int[] size = { -1, -1 };
+		for (String part : header.split(",")) {
+			String[] kv = part.split("=");
+			if (kv.length != 2) throw src.error("Bad header");
+			String key = kv[0].trim();
+			try {
+				if (key.equals("x"))
+					size[0] = Integer.parseInt(kv[1].trim());
+				else if (key.equals("y")) size[1] = Integer.parseInt(kv[1].trim());
+			}
+			catch (NumberFormatException e) {
+				throw src.error("Bad header");
+			}
+		}
+		if (size[0] < 0 || size[1] < 0) throw src.error("Bad header");
+		return size;
+	}
+
+	/**
+	 * Private helper method that reads the cells after the header.
+	 *
+	 * @return the largest state read
+	 */
+	private static int readRleCells(Source src, Target target)
+			throws IOException
+	{
+		int x = 0, y = 0;
+		int count = 0;
+		int prefix = 0;
+		int maxState = 0;
+		int c;
+		while ((c = src.next()) >= 0 && c != '!') {
+			if (c >= '0' && c <= '9') {
+				count = count * 10 + c - '0';
+				if (count < 0) throw src.error("Run is too long");
+				continue;
+			}
+			if (Character.isWhitespace(c)) continue;
+
+			int run = count == 0 ? 1 : count;
+			count = 0;
+			int s;
+			if (c >= 'p' && c <= 'y') {
+				prefix = c - 'p' + 1;
+				count = run == 1 ? 0 : run;
+				continue;
+			}
+			else if (c == '$') {
+				y += run;
+				x = 0;
+				continue;
+			}
+			else if (c == 'b' || c == '.')
+				s = 0;
+			else if (c == 'o')
+				s = 1;
+			else if (c >= 'A' && c <= 'X')
+				s = prefix * 24 + c - 'A' + 1;
+			else if (c == '#') {
+				src.restOfLine();
+				continue;
+			}
+			else
+				throw src.error("Unexpected '" + (char) c + "'");
+			prefix = 0;
+
+			if (s != 0) target.setRun(x, y, run, s, src);
+			maxState = Math.max(maxState, s);
+			x += run;
+		}
+		return maxState;
+	}
+
+	/**
+	 * Private helper method that appends a run to an RLE line, starting a new
+	 * line first if it would be too long.
+	 */
+	private static void emit(Writer out, StringBuilder line, long count,
+			String tag) throws IOException
+	{
+		String run = count == 1 ? tag : count + tag;
+		if (line.length() + run.length() > RLE_LINE) {
+			line.append('\n');
+			out.write(line.toString());
+			line.setLength(0);
+		}
+		line.append(run);
+	}
+
+	/**
+	 * Private helper method that gives the RLE tag for a non-zero state.
+	 */
+	private static String tag(int s, boolean twoState)
+	{
+		if (twoState) return "o";
+		char letter = (char) ('A' + (s - 1) % 24);
+		if (s <= 24) return String.valueOf(letter);
+		return "" + (char) ('p' + (s - 1) / 24 - 1) + letter;
+	}
+
+	/**
+	 * Private helper method that copies every non-zero cell of one State into
+	 * another with the same size.
+	 */
+	private static void copyCells(State<Point2D> from, State<Point2D> to)
+	{
+		to.clearForLoad(from.getPopulation());
+		CellStore.Cursor c = from.liveCells();
+		while (c.next())
+			to.setCell(c.index(), c.state());
+	}
+}
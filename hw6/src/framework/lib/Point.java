@@ -1,8 +1,5 @@
 package framework.lib;
 
-import java.util.Arrays;
-
-
 /**
  * An abstract representation of a point, that supports dimensions as large as
  * the maximum array length. This class should be subclassed to represent a
@@ -17,7 +14,7 @@ import java.util.Arrays;
 public abstract class Point implements Comparable<Point>
 {
 
-	private int[]	coords;
+	private final int[]	coords;
 
 	/**
 	 * Constructs a point with a given dimension.
@@ -32,6 +29,16 @@ public abstract class Point implements Comparable<Point>
 		coords = new int[dim];
 	}
 
+	/**
+	 * Constructs a point without a coordinate array, for the subclasses in
+	 * this package that keep their coordinates in fields. They must override
+	 * getCoord, setCoord and numDimensions.
+	 */
+	Point()
+	{
+		coords = null;
+	}
+
 	/**
 	 * Gets the coordinate of the {@code dim}th dimension.
 	 * 
@@ -91,9 +98,10 @@ public abstract class Point implements Comparable<Point>
 	{
 		if (other instanceof Point) {
 			Point o = (Point) other;
-			if (o.coords.length == coords.length) {
-				for (int i = 0; i < coords.length; i++) {
-					if (coords[i] != o.coords[i]) {
+			int dims = numDimensions();
+			if (o.numDimensions() == dims) {
+				for (int i = 0; i < dims; i++) {
+					if (getCoord(i) != o.getCoord(i)) {
 						return false;
 					}
 				}
@@ -128,15 +136,15 @@ public abstract class Point implements Comparable<Point>
 	{
 		if (p == null)
 			throw new IllegalArgumentException("Cannot compareTo null value");
-		if (this.coords.length != p.coords.length)
+		if (this.numDimensions() != p.numDimensions())
 			return 0;
 		else {
-			int c = Integer.signum(this.coords[0] - p.coords[0]);
+			int c = Integer.signum(this.getCoord(0) - p.getCoord(0));
 			if (c == 0) // strictly speaking unnecessary, but prevents extra
 						// checks
 				return c;
-			for (int i = 1; i < coords.length; i++) {
-				if (Integer.signum(this.coords[i] - p.coords[i]) != c)
+			for (int i = 1; i < numDimensions(); i++) {
+				if (Integer.signum(this.getCoord(i) - p.getCoord(i)) != c)
 					return 0;
 			}
 			return c;
@@ -155,8 +163,8 @@ public abstract class Point implements Comparable<Point>
 		if (!this.getClass().isInstance(o))
 			throw new IllegalArgumentException("Point addition is only defined for Points of the same class");
 		Point p = this.copy();
-		for (int i = 0; i < coords.length; i++) {
-			p.coords[i] += o.coords[i];
+		for (int i = 0; i < p.numDimensions(); i++) {
+			p.setCoord(i, p.getCoord(i) + o.getCoord(i));
 		}
 		return p;
 	}
@@ -172,21 +180,33 @@ public abstract class Point implements Comparable<Point>
 		if (!this.getClass().isInstance(o))
 			throw new IllegalArgumentException("Point addition is only defined for Points of the same class");
 		Point p = this.copy();
-		for (int i = 0; i < coords.length; i++) {
-			p.coords[i] -= o.coords[i];
+		for (int i = 0; i < p.numDimensions(); i++) {
+			p.setCoord(i, p.getCoord(i) - o.getCoord(i));
 		}
 		return p;
 	}
 
+	/**
+	 * Hashes the coordinates the same way as {@code Arrays.hashCode(int[])},
+	 * so that equal points hash the same whatever class they are.
+	 */
 	@Override
 	public int hashCode()
 	{
-		return Arrays.hashCode(coords);
+		int h = 1;
+		for (int i = 0; i < numDimensions(); i++)
+			h = 31 * h + getCoord(i);
+		return h;
 	}
 
 	@Override
 	public String toString()
 	{
-		return Arrays.toString(coords);
+		StringBuilder b = new StringBuilder("[");
+		for (int i = 0; i < numDimensions(); i++) {
+			if (i > 0) b.append(", ");
+			b.append(getCoord(i));
+		}
+		return b.append(']').toString();
 	}
 }
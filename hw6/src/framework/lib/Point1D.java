@@ -3,13 +3,16 @@ package framework.lib;
 /**
  * A concrete 1 dimensional point that acts like a facade for the Point abstract
  * class. Gives a constructor to set the one coordinate, and a method to
- * retrieve the value. The origin of a Point1D has value 0.
+ * retrieve the value. The origin of a Point1D has value 0. The coordinate is
+ * kept in a field rather than an array.
  * 
  * @author Kunal Desai, James Grugett, Prasanth Somasundar
  */
 public final class Point1D extends Point
 {
 
+	private int	coord;
+
 	/**
 	 * Constructs a one dimensional Point with coordinate given by {@code val}
 	 * 
@@ -17,8 +20,7 @@ public final class Point1D extends Point
 	 */
 	public Point1D(int coord)
 	{
-		super(1);
-		setCoord(0, coord);
+		this.coord = coord;
 	}
 
 	/**
@@ -29,13 +31,52 @@ public final class Point1D extends Point
 	 */
 	public int getCoord()
 	{
-		return getCoord(0);
+		return coord;
+	}
+
+	@Override
+	protected int getCoord(int dim)
+	{
+		if (dim != 0) throw new IllegalArgumentException("Invalid Dimension");
+		return coord;
+	}
+
+	@Override
+	protected void setCoord(int dim, int val)
+	{
+		if (dim != 0) throw new IllegalArgumentException("Invalid Dimension");
+		coord = val;
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return 1;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (other instanceof Point1D) return coord == ((Point1D) other).coord;
+		return super.equals(other);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return 31 + coord;
 	}
 
 	@Override
 	public Point copy()
 	{
-		return new Point1D(getCoord());
+		return new Point1D(coord);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[" + coord + "]";
 	}
 
 }
@@ -2,13 +2,21 @@ package framework.lib;
 
 /**
  * Creates a concrete 2 dimensional point implementation. (0,0) is considered
- * the origin. Gives functions to get the x and y coordinates of the point.
+ * the origin. Gives functions to get the x and y coordinates of the point. <br>
+ * <br>
+ * The coordinates are kept in two fields rather than an array, and a pair of
+ * coordinates can be packed into a single long with {@code pack}, so that
+ * code that handles many points can keep them in primitive arrays or use
+ * them as keys without creating Point2D objects.
  * 
  * @author Kunal Desai, James Grugett, Prasanth Somasundar
  */
 public final class Point2D extends Point
 {
 
+	private int	x;
+	private int	y;
+
 	/**
 	 * Constructs a new Point object representing the point (x, y)
 	 * 
@@ -17,9 +25,58 @@ public final class Point2D extends Point
 	 */
 	public Point2D(int x, int y)
 	{
-		super(2);
-		setCoord(0, x);
-		setCoord(1, y);
+		this.x = x;
+		this.y = y;
+	}
+
+	/**
+	 * Packs a pair of coordinates into a long, x in the low 32 bits and y in
+	 * the high 32 bits. Every pair of ints packs to a different long.
+	 * 
+	 * @param x an x-coordinate
+	 * @param y a y-coordinate
+	 * @return the packed coordinates
+	 */
+	public static long pack(int x, int y)
+	{
+		return ((long) y << 32) | (x & 0xffffffffL);
+	}
+
+	/**
+	 * @param packed coordinates packed by {@code pack}
+	 * @return the x-coordinate
+	 */
+	public static int unpackX(long packed)
+	{
+		return (int) packed;
+	}
+
+	/**
+	 * @param packed coordinates packed by {@code pack}
+	 * @return the y-coordinate
+	 */
+	public static int unpackY(long packed)
+	{
+		return (int) (packed >>> 32);
+	}
+
+	/**
+	 * @param packed coordinates packed by {@code pack}
+	 * @return a new point with the packed coordinates
+	 */
+	public static Point2D unpack(long packed)
+	{
+		return new Point2D(unpackX(packed), unpackY(packed));
+	}
+
+	/**
+	 * Packs the coordinates of this point into a long.
+	 * 
+	 * @return {@code pack(getX(), getY())}
+	 */
+	public long pack()
+	{
+		return pack(x, y);
 	}
 
 	/**
@@ -29,7 +86,7 @@ public final class Point2D extends Point
 	 */
 	public int getX()
 	{
-		return getCoord(0);
+		return x;
 	}
 
 	/**
@@ -39,13 +96,60 @@ public final class Point2D extends Point
 	 */
 	public int getY()
 	{
-		return getCoord(1);
+		return y;
+	}
+
+	@Override
+	protected int getCoord(int dim)
+	{
+		if (dim == 0) return x;
+		if (dim == 1) return y;
+		throw new IllegalArgumentException("Invalid Dimension");
+	}
+
+	@Override
+	protected void setCoord(int dim, int val)
+	{
+		if (dim == 0)
+			x = val;
+		else if (dim == 1)
+			y = val;
+		else
+			throw new IllegalArgumentException("Invalid Dimension");
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return 2;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (other instanceof Point2D) {
+			Point2D o = (Point2D) other;
+			return x == o.x && y == o.y;
+		}
+		return super.equals(other);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return (31 + x) * 31 + y;
 	}
 
 	@Override
 	public Point copy()
 	{
-		return new Point2D(getX(), getY());
+		return new Point2D(x, y);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[" + x + ", " + y + "]";
 	}
 
 }
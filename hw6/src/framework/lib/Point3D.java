@@ -0,0 +1,119 @@
+package framework.lib;
+
+/**
+ * Creates a concrete 3 dimensional point implementation. (0,0,0) is considered
+ * the origin. Gives functions to get the x, y and z coordinates of the point. <br>
+ * <br>
+ * Like Point2D, the coordinates are kept in fields rather than an array, so
+ * reading them is as cheap as for the lower dimensions.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public final class Point3D extends Point
+{
+
+	private int	x;
+	private int	y;
+	private int	z;
+
+	/**
+	 * Constructs a new Point object representing the point (x, y, z)
+	 * 
+	 * @param x The x-coordinate of the point being constructed
+	 * @param y The y-coordinate of the point being constructed
+	 * @param z The z-coordinate of the point being constructed
+	 */
+	public Point3D(int x, int y, int z)
+	{
+		this.x = x;
+		this.y = y;
+		this.z = z;
+	}
+
+	/**
+	 * Gets the x-coordinate of the given point.
+	 * 
+	 * @return the x-coordinate
+	 */
+	public int getX()
+	{
+		return x;
+	}
+
+	/**
+	 * Gets the y-coordinate of the given point.
+	 * 
+	 * @return the y-coordinate
+	 */
+	public int getY()
+	{
+		return y;
+	}
+
+	/**
+	 * Gets the z-coordinate of the given point.
+	 * 
+	 * @return the z-coordinate
+	 */
+	public int getZ()
+	{
+		return z;
+	}
+
+	@Override
+	protected int getCoord(int dim)
+	{
+		if (dim == 0) return x;
+		if (dim == 1) return y;
+		if (dim == 2) return z;
+		throw new IllegalArgumentException("Invalid Dimension");
+	}
+
+	@Override
+	protected void setCoord(int dim, int val)
+	{
+		if (dim == 0)
+			x = val;
+		else if (dim == 1)
+			y = val;
+		else if (dim == 2)
+			z = val;
+		else
+			throw new IllegalArgumentException("Invalid Dimension");
+	}
+
+	@Override
+	public int numDimensions()
+	{
+		return 3;
+	}
+
+	@Override
+	public boolean equals(Object other)
+	{
+		if (other instanceof Point3D) {
+			Point3D o = (Point3D) other;
+			return x == o.x && y == o.y && z == o.z;
+		}
+		return super.equals(other);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return ((31 + x) * 31 + y) * 31 + z;
+	}
+
+	@Override
+	public Point copy()
+	{
+		return new Point3D(x, y, z);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[" + x + ", " + y + ", " + z + "]";
+	}
+
+}
@@ -0,0 +1,143 @@
+package framework.lib;
+
+/**
+ * A box of cells, given by its lowest corner and the corner just past its
+ * highest, so that the cells it holds have each coordinate at least that of
+ * min and less than that of max. A Region can be empty, when max equals min
+ * along some axis.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> A point that specifies a concrete dimension for the region.
+ *            Should be a strict subclass of Point.
+ */
+public final class Region<T extends Point>
+{
+
+	private final T	min;
+	private final T	max;
+
+	/**
+	 * Creates a region holding the cells from min up to, but not including,
+	 * max.
+	 *
+	 * @param min the lowest corner
+	 * @param max the corner just past the highest
+	 * @throws IllegalArgumentException if min or max is null, if they have
+	 *             different numbers of dimensions, or if max is less than min
+	 *             along some axis
+	 */
+	@SuppressWarnings("unchecked")
+	public Region(T min, T max)
+	{
+		if (min == null || max == null)
+			throw new IllegalArgumentException("Need both corners");
+		if (min.numDimensions() != max.numDimensions())
+			throw new IllegalArgumentException("Corners have different dimensions");
+		for (int i = 0; i < min.numDimensions(); i++) {
+			if (max.getCoord(i) < min.getCoord(i))
+				throw new IllegalArgumentException("Max is less than min");
+		}
+
+		this.min = (T) min.copy();
+		this.max = (T) max.copy();
+	}
+
+	/**
+	 * @return the lowest corner of the region
+	 */
+	@SuppressWarnings("unchecked")
+	public T getMin()
+	{
+		return (T) min.copy();
+	}
+
+	/**
+	 * @return the corner just past the highest corner of the region
+	 */
+	@SuppressWarnings("unchecked")
+	public T getMax()
+	{
+		return (T) max.copy();
+	}
+
+	/**
+	 * @return the number of dimensions of the region
+	 */
+	public int numDimensions()
+	{
+		return min.numDimensions();
+	}
+
+	/**
+	 * Gets the lowest coordinate along an axis, without copying a Point.
+	 *
+	 * @param axis the axis
+	 * @return the coordinate of min along axis
+	 */
+	public int getMin(int axis)
+	{
+		return min.getCoord(axis);
+	}
+
+	/**
+	 * Gets the coordinate just past the highest along an axis, without
+	 * copying a Point.
+	 *
+	 * @param axis the axis
+	 * @return the coordinate of max along axis
+	 */
+	public int getMax(int axis)
+	{
+		return max.getCoord(axis);
+	}
+
+	/**
+	 * @return the number of cells in the region
+	 */
+	public long numCells()
+	{
+		long n = 1;
+		for (int i = 0; i < min.numDimensions(); i++)
+			n *= max.getCoord(i) - min.getCoord(i);
+		return n;
+	}
+
+	/**
+	 * Tells you whether a point is in the region.
+	 *
+	 * @param p a point with as many dimensions as the region
+	 * @return true if each coordinate of p is at least min's and less than
+	 *         max's
+	 */
+	public boolean contains(T p)
+	{
+		if (p.numDimensions() != min.numDimensions()) return false;
+
+		for (int i = 0; i < min.numDimensions(); i++) {
+			int c = p.getCoord(i);
+			if (c < min.getCoord(i) || c >= max.getCoord(i)) return false;
+		}
+		return true;
+	}
+
+	@Override
+	public boolean equals(Object o)
+	{
+		if (!(o instanceof Region)) return false;
+
+		Region<?> r = (Region<?>) o;
+		return min.equals(r.min) && max.equals(r.max);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return min.hashCode() * 31 + max.hashCode();
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[" + min + ", " + max + ")";
+	}
+}
@@ -10,9 +10,13 @@ import javax.swing.JButton;
 import javax.swing.JFrame;
 import javax.swing.JPanel;
 import javax.swing.JSlider;
+import javax.swing.JToolBar;
+import javax.swing.SwingUtilities;
 import javax.swing.Timer;
 
 import framework.interfaces.Rule;
+import framework.interfaces.StepListener;
+import framework.interfaces.StopCondition;
 import framework.interfaces.Viewport;
 import framework.interfaces.Visualization;
 
@@ -20,12 +24,18 @@ import framework.interfaces.Visualization;
 /**
  * Defines a simulation for a cellular automaton. This class handles the GUI
  * elements for simulations of arbitrary dimension. Implementations are given
- * for 1 and 2 dimensional simulations, but one can easily create a simulation
- * for a higher dimension. <br>
+ * for 1, 2 and 3 dimensional simulations, but one can easily create a
+ * simulation for a higher dimension. <br>
  * <br>
  * This class offers a factory method that can create a simulation for
- * {@code Rule<Point1D>} and {@code Rule<Point2D>}, as well as a way to create
- * simulations for other types of Points.
+ * {@code Rule<Point1D>}, {@code Rule<Point2D>} and {@code Rule<Point3D>}, as
+ * well as a way to create simulations for other types of Points. A simulation
+ * can also be stepped without a window, see {@link #runHeadless(int)}. <br>
+ * <br>
+ * While playing, the automaton is stepped on a thread of its own by a
+ * BackgroundStepper, and the view is redrawn at most a fixed number of times a
+ * second with whatever generation is the latest, so painting doesn't hold
+ * stepping back.
  * 
  * @author Kunal Desai, James Grugett, Prasanth Somasundar
  * @param <T> A point that specifies a concrete dimension that this simulation
@@ -34,9 +44,18 @@ import framework.interfaces.Visualization;
 public abstract class Simulation<T extends Point> implements ActionListener
 {
 
+	/**
+	 * The default number of times a second the view is redrawn.
+	 */
+	public static final int	DEFAULT_FRAME_RATE	= 30;
+
 	private Rule<T>		rule;
 	private Viewport<T>	viewport;
+	private Visualization	visualization;
 	private State<T>	state;
+	private volatile CycleDetector<T>	cycleDetector;
+	private BackgroundStepper<T>	stepper;
+	private int			frameRate	= DEFAULT_FRAME_RATE;
 
 	private boolean		playing;
 
@@ -45,14 +64,14 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	private JPanel		view;
 	private JButton		playBtn, pauseBtn, stepBtn;
 	private JSlider		speedSlider;
-	private Timer		playTimer;
+	private Timer		frameTimer;
 
 	/**
 	 * This is a factory method takes a rule and a visualization and produces a
 	 * Simulation suitable for viewing the automaton.
 	 * 
-	 * @param r A Rule, which must be of Point1D or Point2D, otherwise this
-	 *            method will fail
+	 * @param r A Rule, which must be of Point1D, Point2D or Point3D, otherwise
+	 *            this method will fail
 	 * @param v a visualization to use for coloring the states
 	 * @return a Simulation that can be used to visualize a cellular automaton.
 	 */
@@ -66,6 +85,8 @@ public abstract class Simulation<T extends Point> implements ActionListener
 			sim = (Simulation<T>) new Simulation1D((Rule<Point1D>) r, v);
 		else if (Point2D.class.isInstance(p))
 			sim = (Simulation<T>) new Simulation2D((Rule<Point2D>) r, v);
+		else if (Point3D.class.isInstance(p))
+			sim = (Simulation<T>) new Simulation3D((Rule<Point3D>) r, v);
 		else
 			throw new RuntimeException("Illegal Point");
 		return sim;
@@ -76,11 +97,35 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	 */
 	protected Simulation(Rule<T> r, Visualization vis, Viewport<T> viewport)
 	{
-		this.rule = r;
 		this.viewport = viewport;
 		setVisualization(vis);
 
 		this.state = r.getInitialState();
+		setRule(r);
+
+		stepper = new BackgroundStepper<T>(state, rule);
+		stepper.setStopCondition(new StopCondition<T>() {
+			@Override
+			public boolean shouldStop(State<T> state, long generation)
+			{
+				return checkCycle();
+			}
+		});
+		// A frame that came during a step is shown as soon as the step is done
+		final Runnable publish = new Runnable() {
+			@Override
+			public void run()
+			{
+				if (view != null && stepper.publish()) view.repaint();
+			}
+		};
+		stepper.setPublishRequest(new Runnable() {
+			@Override
+			public void run()
+			{
+				SwingUtilities.invokeLater(publish);
+			}
+		});
 
 		playing = false;
 	}
@@ -117,9 +162,8 @@ public abstract class Simulation<T extends Point> implements ActionListener
 		speedSlider.setSnapToTicks(true);
 		speedSlider.setValue(1);
 
-		playTimer = new Timer(0, this);
-		playTimer.setRepeats(false);
-		playTimer.setActionCommand("step");
+		frameTimer = new Timer(1000 / frameRate, this);
+		frameTimer.setActionCommand("frame");
 
 		controls = new JPanel();
 		controls.add(stepBtn);
@@ -136,10 +180,12 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	{
 		initControlsGUI();
 
-		view = new ViewportPanel<T>(viewport, state);
+		view = new ViewportPanel<T>(viewport, stepper.getSnapshot(), state);
 		view.setMinimumSize(new Dimension(500, 500));
 
 		JPanel mainPanel = new JPanel();
+		JToolBar toolbar = viewport.getToolbar();
+		if (toolbar != null) mainPanel.add(toolbar);
 		mainPanel.add(view);
 		mainPanel.add(controls);
 		mainPanel.setLayout(new BoxLayout(mainPanel, BoxLayout.PAGE_AXIS));
@@ -151,11 +197,13 @@ public abstract class Simulation<T extends Point> implements ActionListener
 		frame.setContentPane(mainPanel);
 		frame.pack();
 		frame.setVisible(true);
+		frameTimer.start();
 	}
 
 	/**
 	 * @return the number of milliseconds of delay between steps in the
-	 *         play-back based on the speedSlider setting
+	 *         play-back based on the speedSlider setting. The fastest setting
+	 *         has no delay at all.
 	 */
 	private int getSpeed()
 	{
@@ -163,18 +211,7 @@ public abstract class Simulation<T extends Point> implements ActionListener
 		int range = speedSlider.getMaximum() - speedSlider.getMinimum();
 		double fraction = 1 - ((double) val) / range; // smaller values give
 														// larger delay
-		return (int) (Math.pow(fraction * 10, 3)) + 50;
-	}
-
-	/**
-	 * Has the timer start and send its event after getSpeed() delay
-	 */
-	private void timerNextStep()
-	{
-		if (!playTimer.isRunning()) {
-			playTimer.setInitialDelay(getSpeed());
-			playTimer.start();
-		}
+		return (int) (Math.pow(fraction * 10, 3));
 	}
 
 	/**
@@ -189,13 +226,13 @@ public abstract class Simulation<T extends Point> implements ActionListener
 		playBtn.setEnabled(!playing);
 		pauseBtn.setEnabled(playing);
 
+		this.playing = playing;
 		if (playing) {
-			timerNextStep();
+			stepper.setDelay(getSpeed());
+			stepper.start();
 		}
 		else
-			playTimer.stop();
-
-		this.playing = playing;
+			stepper.pause();
 	}
 
 	/**
@@ -208,8 +245,7 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	 */
 	protected void step()
 	{
-		this.state.step(this.rule);
-		view.repaint();
+		step(1);
 	}
 
 	/**
@@ -219,10 +255,89 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	 */
 	protected void step(int times)
 	{
-		for (int i = 0; i < times; i++) {
-			this.state.step(this.rule);
+		stepper.step(times);
+		if (view != null && stepper.publish()) view.repaint();
+	}
+
+	/**
+	 * Shows the latest generation if it hasn't been shown, and notices when
+	 * the stepper has stopped by itself. Called frameRate times a second.
+	 */
+	private void nextFrame()
+	{
+		if (playing) {
+			if (stepper.isRunning())
+				stepper.setDelay(getSpeed());
+			else
+				setPlaying(false);
 		}
-		view.repaint();
+		if (stepper.publish()) view.repaint();
+	}
+
+	/**
+	 * Shows the generation to the cycle detector, on whichever thread is
+	 * stepping.
+	 * 
+	 * @return true if the cycle detector has just found a cycle, so that
+	 *         playing should pause
+	 */
+	private boolean checkCycle()
+	{
+		CycleDetector<T> detector = cycleDetector;
+		return detector != null && !detector.isCycleFound()
+				&& detector.observe(state);
+	}
+
+	/**
+	 * Sets how many times a second the view is redrawn while playing.
+	 * Generations stepped in between are not drawn.
+	 * 
+	 * @param frameRate the number of frames a second, from 1 to 1000
+	 * @throws IllegalArgumentException if frameRate is out of range
+	 */
+	public void setFrameRate(int frameRate)
+	{
+		if (frameRate < 1 || frameRate > 1000)
+			throw new IllegalArgumentException("Frame rate must be from 1 to 1000");
+
+		this.frameRate = frameRate;
+		if (frameTimer != null) frameTimer.setDelay(1000 / frameRate);
+	}
+
+	/**
+	 * @return how many times a second the view is redrawn
+	 */
+	public int getFrameRate()
+	{
+		return frameRate;
+	}
+
+	/**
+	 * Sets a detector to show every generation to, so that playing pauses as
+	 * soon as the automaton settles into a still life or an oscillator. The
+	 * detector is reset, and can be asked for the period once it pauses.
+	 * 
+	 * @param detector the detector to use, or null to play without one
+	 */
+	public void setCycleDetector(CycleDetector<T> detector)
+	{
+		// The detector is used on the stepping thread, so that has to stop
+		// while it is swapped
+		boolean running = stepper.isRunning();
+		stepper.pause();
+		if (detector != null) detector.reset();
+		this.cycleDetector = detector;
+		if (running) stepper.start();
+	}
+
+	/**
+	 * Gets the cycle detector that the simulation pauses by.
+	 * 
+	 * @return the detector, or null if there is none
+	 */
+	public CycleDetector<T> getCycleDetector()
+	{
+		return cycleDetector;
 	}
 
 	/**
@@ -239,13 +354,33 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	}
 
 	/**
-	 * Allows you to swap Viewports of the program out.
+	 * Steps the automaton on the calling thread without opening a window, for
+	 * machines with no display or dimensions that can't be drawn well. Call
+	 * this instead of run, and look at the result with getState. Stops early
+	 * if the cycle detector finds a cycle.
+	 * 
+	 * @param generations the number of steps to take
+	 * @return the number of steps that were taken
+	 * @throws IllegalArgumentException if generations is negative
+	 */
+	public int runHeadless(int generations)
+	{
+		if (generations < 0)
+			throw new IllegalArgumentException("Can't step a negative number of times");
+
+		return stepper.step(generations);
+	}
+
+	/**
+	 * Allows you to swap Viewports of the program out, before calling run.
+	 * The new Viewport is given the current Visualization.
 	 * 
 	 * @param v a Viewport you want to use to visualize the data.
 	 */
 	public void setViewport(Viewport<T> v)
 	{
 		this.viewport = v;
+		v.setVisualization(visualization);
 	}
 
 	/**
@@ -255,22 +390,47 @@ public abstract class Simulation<T extends Point> implements ActionListener
 	 */
 	public void setVisualization(Visualization v)
 	{
+		this.visualization = v;
 		this.viewport.setVisualization(v);
 	}
 
 	/**
 	 * This method allows for on-the-fly switching with rules, as well as
-	 * setting the initial rule.
+	 * setting the initial rule. Rules with a small enough neighborhood are
+	 * compiled into a transition table, see {@link CompiledRule}.
 	 * 
 	 * @param r the new Rule to use for the simulation.
 	 */
 	public void setRule(Rule<T> r)
 	{
-		rule = r;
+		rule = CompiledRule.compile(r, state.getNumStates());
+		if (stepper != null) stepper.setRule(rule);
 	}
 
 	/**
-	 * Gets the current state of the simulation
+	 * Registers a listener to be told how long each step and each redraw of
+	 * the simulation takes, see {@link State#addStepListener(StepListener)}.
+	 * 
+	 * @param listener the listener to add, such as a MetricsAggregator
+	 */
+	public void addStepListener(StepListener<T> listener)
+	{
+		state.addStepListener(listener);
+	}
+
+	/**
+	 * Stops telling a listener about steps and redraws.
+	 * 
+	 * @param listener the listener to remove
+	 */
+	public void removeStepListener(StepListener<T> listener)
+	{
+		state.removeStepListener(listener);
+	}
+
+	/**
+	 * Gets the current state of the simulation. While playing it is being
+	 * stepped on another thread, so only look at it while paused.
 	 * 
 	 * @return the current state of the simulation
 	 */
@@ -287,9 +447,8 @@ public abstract class Simulation<T extends Point> implements ActionListener
 			setPlaying(true);
 		else if (action.equals("pause"))
 			setPlaying(false);
-		else if (action.equals("step")) {
+		else if (action.equals("step"))
 			step();
-			if (playing) timerNextStep();
-		}
+		else if (action.equals("frame")) nextFrame();
 	}
 }
@@ -1,6 +1,7 @@
 package framework.lib;
 
 import example.DefaultViewport2D;
+import example.ZoomViewport2D;
 import framework.interfaces.Rule;
 import framework.interfaces.Visualization;
 
@@ -13,6 +14,13 @@ import framework.interfaces.Visualization;
 public class Simulation2D extends Simulation<Point2D>
 {
 
+	/**
+	 * States wider or taller than this many cells are drawn with a
+	 * ZoomViewport2D, since the default viewport would have cells less than
+	 * two pixels across.
+	 */
+	public static final int	ZOOM_THRESHOLD	= 250;
+
 	/**
 	 * Constructs a Simulation2D with the given rule and visualization.
 	 * 
@@ -22,6 +30,10 @@ public class Simulation2D extends Simulation<Point2D>
 	public Simulation2D(Rule<Point2D> r, Visualization v)
 	{
 		super(r, v, new DefaultViewport2D());
+
+		Point2D size = getState().getSize();
+		if (Math.max(size.getX(), size.getY()) > ZOOM_THRESHOLD)
+			setViewport(new ZoomViewport2D());
 	}
 
 }
@@ -0,0 +1,31 @@
+package framework.lib;
+
+import example.DefaultViewport3D;
+import framework.interfaces.Rule;
+import framework.interfaces.Visualization;
+
+
+/**
+ * Gives a concrete simulation for 3 dimensional cellular automata. The
+ * default Viewport shows one layer at a time, and a 3D automaton is often
+ * more practical to step without a window, see
+ * {@link Simulation#runHeadless(int)}.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public class Simulation3D extends Simulation<Point3D>
+{
+
+	/**
+	 * Constructs a Simulation for a given ruleset and visualization using the
+	 * default Viewport
+	 * 
+	 * @param r the Rule to abide by
+	 * @param v the Visualization specifying colors
+	 */
+	public Simulation3D(Rule<Point3D> r, Visualization v)
+	{
+		super(r, v, new DefaultViewport3D());
+	}
+
+}
@@ -0,0 +1,136 @@
+package framework.lib;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+
+/**
+ * Stores only the non-zero cells of a State, in a map keyed by the cell's
+ * row-major linear index. This takes far less memory than a DenseCellStore for
+ * mostly empty worlds, and can address worlds with more cells than fit in an
+ * array.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+final class SparseCellStore extends CellStore
+{
+
+	private final HashMap<Long, Integer>	cells;
+
+	/**
+	 * @param size the number of cells this store addresses
+	 */
+	SparseCellStore(long size)
+	{
+		super(size);
+		cells = new HashMap<Long, Integer>();
+	}
+
+	@Override
+	int get(long index)
+	{
+		Integer s = cells.get(index);
+		return s == null ? 0 : s;
+	}
+
+	@Override
+	void set(long index, int state)
+	{
+		// Maintains the sparse structure
+		if (state != 0)
+			cells.put(index, state);
+		else
+			cells.remove(index);
+	}
+
+	@Override
+	long population()
+	{
+		return cells.size();
+	}
+
+	@Override
+	void clear()
+	{
+		cells.clear();
+	}
+
+	@Override
+	boolean isDense()
+	{
+		return false;
+	}
+
+	@Override
+	CellStore blank()
+	{
+		return new SparseCellStore(size());
+	}
+
+	@Override
+	Cursor cursor()
+	{
+		final Iterator<Map.Entry<Long, Integer>> it = cells.entrySet().iterator();
+		return new Cursor() {
+			Map.Entry<Long, Integer>	e;
+
+			@Override
+			boolean next()
+			{
+				if (!it.hasNext()) return false;
+				e = it.next();
+				return true;
+			}
+
+			@Override
+			long index()
+			{
+				return e.getKey();
+			}
+
+			@Override
+			int state()
+			{
+				return e.getValue();
+			}
+		};
+	}
+
+	/**
+	 * Sorts the indices of the non-zero cells, since the map keeps them in no
+	 * particular order.
+	 */
+	@Override
+	Cursor orderedCursor()
+	{
+		final long[] indices = new long[cells.size()];
+		int n = 0;
+		for (Long index : cells.keySet())
+			indices[n++] = index;
+		Arrays.sort(indices);
+
+		return new Cursor() {
+			int	i	= -1;
+
+			@Override
+			boolean next()
+			{
+				return ++i < indices.length;
+			}
+
+			@Override
+			long index()
+			{
+				return indices[i];
+			}
+
+			@Override
+			int state()
+			{
+				return cells.get(indices[i]);
+			}
+		};
+	}
+}
@@ -1,10 +1,23 @@
 package framework.lib;
 
+import framework.interfaces.CellVisitor;
+import framework.interfaces.OuterTotalisticRule;
+import framework.interfaces.QuiescentRule;
 import framework.interfaces.Rule;
-
+import framework.interfaces.StepListener;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 
 /**
@@ -15,7 +28,11 @@ import java.util.NoSuchElementException;
  * It also supports wrapping around (going back to 0 after reaching the end of
  * the axis) on any or all of the axes. <br>
  * <br>
- * Lets you iterate over all of the points in the state
+ * Lets you iterate over all of the points in the state <br>
+ * <br>
+ * Cells can be stored sparsely, so that only non-zero cells take up memory,
+ * densely in a flat array, or in a memory-mapped file for worlds too big for
+ * the heap. See {@link Storage}.
  * 
  * @author Kunal Desai, James Grugett, Prasanth Somasundar
  * @param <T> Specifies the number of dimensions this state should represent.
@@ -24,52 +41,186 @@ import java.util.NoSuchElementException;
 public class State<T extends Point> implements Iterable<T>
 {
 
+	/**
+	 * A mutable cursor over the neighborhood of one cell at a time. Stepping
+	 * reuses a single Hood for every cell, moving it along with
+	 * {@code advance()}, so that evaluating a cell allocates nothing. The
+	 * relative points handed out by the iterator are built once per radius and
+	 * shared, which is safe since Points can't be modified from outside this
+	 * package.
+	 */
 	private class Hood implements Neighborhood<T>
 	{
-		Point	offset;
-		int		radius;
+		final int[]		center;
+		long			centerIndex;
+		boolean			interior;
+		final int		radius;
+		final T[]		offsets;
+		final long[]	deltas;
+		final Offsets	iter;
+
+		/**
+		 * The coordinates of every offset, flattened so that finding a
+		 * neighbor doesn't go through the Points. Index {@code i * dims + d}
+		 * holds coordinate d of offset i, where dims is the number of
+		 * dimensions.
+		 */
+		final int[]		offsetCoords;
+
+		/**
+		 * For a cell near an edge, the part of a neighbor's index that comes
+		 * from each axis, for each coordinate from -radius to radius along
+		 * it, or -1 past an edge that doesn't wrap. It is worked out the
+		 * first time the cell's neighbors are looked at.
+		 */
+		final long[]	edgeParts;
+		boolean			edgeReady;
+
+		/**
+		 * For each axis, the ranges of the summed-area table a box covers,
+		 * as [lo, hi) pairs, and how many times each is covered.
+		 */
+		final int[][]	boxLo;
+		final int[][]	boxHi;
+		final int[][]	boxTimes;
+		final int[]		numRanges;
+
+		/**
+		 * The sum of the cell hashes of what the last stepRange or stepTiles
+		 * with this Hood wrote, or the change in it for stepTiles.
+		 */
+		long			hash;
 
 		public Hood(T p, int radius)
 		{
-			offset = p.copy();
-			this.radius = radius;
+			this(radius);
+			for (int i = 0; i < center.length; i++)
+				center[i] = p.getCoord(i);
+			centerIndex = -1;
+			interior = false;
 		}
 
 		@SuppressWarnings("unchecked")
-		@Override
-		public Iterator<T> iterator()
+		private Hood(int radius)
 		{
-			T p1 = (T) offset.copy();
-			T p2 = (T) offset.copy();
+			this.radius = radius;
+			this.center = new int[strides.length];
+
+			T p1 = (T) size.copy();
+			T p2 = (T) size.copy();
+			int count = 1;
 			for (int i = 0; i < p1.numDimensions(); i++) {
 				p1.setCoord(i, -radius);
 				p2.setCoord(i, radius + 1);
+				count *= 2 * radius + 1;
+			}
+			offsets = (T[]) new Point[count];
+			deltas = new long[count];
+			offsetCoords = new int[count * strides.length];
+			PointIterator it = new PointIterator(p1, p2);
+			for (int i = 0; i < count; i++) {
+				offsets[i] = it.next();
+				for (int d = 0; d < strides.length; d++) {
+					offsetCoords[i * strides.length + d] = offsets[i].getCoord(d);
+					deltas[i] += offsets[i].getCoord(d) * strides[d];
+				}
 			}
-			return new PointIterator(p1, p2);
+			edgeParts = new long[strides.length * (2 * radius + 1)];
+			iter = new Offsets();
+			iter.i = count;
+
+			boxLo = new int[center.length][3];
+			boxHi = new int[center.length][3];
+			boxTimes = new int[center.length][3];
+			numRanges = new int[center.length];
+		}
+
+		/**
+		 * Moves the center of this neighborhood to the cell with the given
+		 * linear index.
+		 * 
+		 * @param index an index in [0, numCells)
+		 */
+		void moveTo(long index)
+		{
+			centerIndex = index;
+			for (int i = center.length - 1; i >= 0; i--) {
+				center[i] = (int) (index / strides[i]);
+				index %= strides[i];
+			}
+			checkInterior();
+			iter.i = offsets.length;
+		}
+
+		/**
+		 * Moves the center of this neighborhood to the next cell in row-major
+		 * order.
+		 */
+		void advance()
+		{
+			centerIndex++;
+			int i = 0;
+			center[0]++;
+			while (center[i] >= extents[i] && i + 1 < center.length) {
+				center[i] = 0;
+				center[++i]++;
+			}
+			checkInterior();
+			iter.i = offsets.length;
+		}
+
+		/**
+		 * Neighbors of an interior cell can be found by adding a fixed offset
+		 * to its index, without wrapping or bounds checks.
+		 */
+		private void checkInterior()
+		{
+			edgeReady = false;
+			interior = true;
+			for (int i = 0; i < center.length && interior; i++) {
+				interior = center[i] >= radius
+						&& center[i] < extents[i] - radius;
+			}
+		}
+
+		@Override
+		public Iterator<T> iterator()
+		{
+			// The shared iterator is free again once the cursor moves on. Rules
+			// that nest iterations over their neighborhood get a fresh
+			// iterator for the inner loop.
+			if (iter.i < offsets.length) return new Offsets();
+			iter.i = 0;
+			return iter;
 		}
 
-		@SuppressWarnings("unchecked")
 		@Override
 		public int getCellState(T relPoint)
 		{
-			if (relPoint.numDimensions() != offset.numDimensions()) {
+			if (relPoint.numDimensions() != center.length) {
 				throw new IllegalArgumentException("Incorrect number of dimensions");
 			}
 
-			for (int i = 0; i < relPoint.numDimensions(); i++) {
+			if (!interior && !edgeReady) findEdgeParts();
+			long index = interior ? centerIndex : 0;
+			boolean outside = false;
+			for (int i = 0; i < center.length; i++) {
 				int c = relPoint.getCoord(i);
 				if (c < -radius || c > radius) {
 					throw new IllegalArgumentException("Requested point out of bounds of radius");
 				}
-			}
 
-			T p = (T) relPoint.add(offset);
-			p = modPoint(p);
+				if (interior) {
+					index += c * strides[i];
+					continue;
+				}
 
-			Integer i = grid.get(p);
-			if (i == null) i = 0;
+				long part = edgeParts[i * (2 * radius + 1) + c + radius];
+				if (part < 0) outside = true;
+				index += part;
+			}
 
-			return i;
+			return outside ? 0 : cells.get(index);
 		}
 
 		@Override
@@ -78,6 +229,204 @@ public class State<T extends Point> implements Iterable<T>
 			return radius;
 		}
 
+		@Override
+		public int copyStates(int[] states)
+		{
+			if (states.length < offsets.length)
+				throw new IllegalArgumentException("Array is too small for the neighborhood");
+
+			for (int i = 0; i < offsets.length; i++)
+				states[i] = stateAt(i);
+			return offsets.length;
+		}
+
+		@Override
+		public int countState(int state)
+		{
+			int count = 0;
+			for (int i = 0; i < offsets.length; i++) {
+				if (stateAt(i) == state) count++;
+			}
+			return count;
+		}
+
+		@Override
+		public int sumStates()
+		{
+			int sum = 0;
+			for (int i = 0; i < offsets.length; i++)
+				sum += stateAt(i);
+			return sum;
+		}
+
+		@Override
+		public int boxSum(int radius)
+		{
+			if (radius < 0 || radius > this.radius)
+				throw new IllegalArgumentException("Requested box out of bounds of radius");
+
+			int[] table = summedArea();
+			if (table == null) {
+				int sum = 0;
+				for (int i = 0; i < offsets.length; i++) {
+					boolean inside = true;
+					for (int d = 0; d < center.length && inside; d++)
+						inside = Math.abs(offsets[i].getCoord(d)) <= radius;
+					if (inside) sum += stateAt(i);
+				}
+				return sum;
+			}
+
+			for (int d = 0; d < center.length; d++) {
+				if (!boxRanges(d, radius)) return 0;
+			}
+			return boxSum(table, center.length - 1, 0);
+		}
+
+		/**
+		 * Works out the ranges of cells along an axis that a box covers.
+		 * Along an axis that wraps, a box wider than the world covers all of
+		 * it some number of times, and the rest may be split in two by the
+		 * edge.
+		 * 
+		 * @return false if the box is past an edge that doesn't wrap
+		 */
+		private boolean boxRanges(int d, int radius)
+		{
+			int n = extents[d];
+			int first = center[d] - radius;
+			numRanges[d] = 0;
+			if (!wraps[d]) {
+				int lo = Math.max(0, first);
+				int hi = Math.min(n, center[d] + radius + 1);
+				if (lo >= hi) return false;
+				addRange(d, lo, hi, 1);
+				return true;
+			}
+
+			int width = 2 * radius + 1;
+			if (width >= n) addRange(d, 0, n, width / n);
+			int rest = width % n;
+			if (rest == 0) return true;
+
+			int lo = first % n;
+			if (lo < 0) lo += n;
+			if (lo + rest <= n)
+				addRange(d, lo, lo + rest, 1);
+			else {
+				addRange(d, lo, n, 1);
+				addRange(d, 0, lo + rest - n, 1);
+			}
+			return true;
+		}
+
+		private void addRange(int d, int lo, int hi, int times)
+		{
+			int k = numRanges[d]++;
+			boxLo[d][k] = lo;
+			boxHi[d][k] = hi;
+			boxTimes[d][k] = times;
+		}
+
+		/**
+		 * Adds up the box from the summed-area table, one axis at a time
+		 * from the last: the sum over [lo, hi) along an axis is the
+		 * difference of the prefix sums at hi and lo. The table wraps on
+		 * overflow, which cancels out as long as the box sum itself fits.
+		 */
+		private int boxSum(int[] table, int d, int index)
+		{
+			if (d < 0) return table[index];
+
+			int sum = 0;
+			for (int k = 0; k < numRanges[d]; k++) {
+				sum += boxTimes[d][k]
+						* (boxSum(table, d - 1, index + boxHi[d][k] * sumStrides[d])
+						- boxSum(table, d - 1, index + boxLo[d][k] * sumStrides[d]));
+			}
+			return sum;
+		}
+
+		/**
+		 * Gets the state of the ith cell in iteration order, by a fixed offset
+		 * from the center for interior cells.
+		 */
+		private int stateAt(int i)
+		{
+			if (interior) return cells.get(centerIndex + deltas[i]);
+			long index = indexAt(i);
+			return index < 0 ? 0 : cells.get(index);
+		}
+
+		/**
+		 * Gets the linear index of the ith cell in iteration order, wrapping
+		 * around the axes that wrap.
+		 * 
+		 * @return the index, or -1 if the cell is past an edge that doesn't
+		 *         wrap
+		 */
+		long indexAt(int i)
+		{
+			if (interior) return centerIndex + deltas[i];
+			if (!edgeReady) findEdgeParts();
+
+			long index = 0;
+			int width = 2 * radius + 1;
+			int base = i * center.length;
+			for (int d = 0; d < center.length; d++) {
+				long part = edgeParts[d * width + offsetCoords[base + d] + radius];
+				if (part < 0) return -1;
+				index += part;
+			}
+			return index;
+		}
+
+		/**
+		 * Works out edgeParts for the current center, wrapping around the
+		 * axes that wrap.
+		 */
+		private void findEdgeParts()
+		{
+			int width = 2 * radius + 1;
+			for (int d = 0; d < center.length; d++) {
+				int n = extents[d];
+				for (int o = -radius; o <= radius; o++) {
+					int c = center[d] + o;
+					if (wraps[d] && n > 0) {
+						c %= n;
+						if (c < 0) c += n;
+					}
+					edgeParts[d * width + o + radius] = c < 0 || c >= n ? -1 : c * strides[d];
+				}
+			}
+			edgeReady = true;
+		}
+
+		private class Offsets implements Iterator<T>
+		{
+			int	i;
+
+			@Override
+			public boolean hasNext()
+			{
+				return i < offsets.length;
+			}
+
+			@Override
+			public T next()
+			{
+				if (!hasNext())
+					throw new NoSuchElementException("No more elements in the iterator.");
+				return offsets[i++];
+			}
+
+			@Override
+			public void remove()
+			{
+				throw new UnsupportedOperationException();
+			}
+		}
+
 	}
 
 	private class PointIterator implements Iterator<T>
@@ -145,10 +494,233 @@ public class State<T extends Point> implements Iterable<T>
 
 	}
 
-	private HashMap<T, Integer>	grid;
+	private class NonZeroIterator implements Iterator<T>
+	{
+		private final CellStore.Cursor	cursor	= cells.cursor();
+		private boolean					ready;
+		private boolean					more;
+
+		@Override
+		public boolean hasNext()
+		{
+			if (!ready) {
+				more = cursor.next();
+				ready = true;
+			}
+			return more;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException("No more elements in the iterator.");
+			ready = false;
+
+			T p = (T) size.copy();
+			long index = cursor.index();
+			for (int i = strides.length - 1; i >= 0; i--) {
+				int c = (int) (index / strides[i]);
+				p.setCoord(i, c);
+				index -= c * strides[i];
+			}
+			return p;
+		}
+
+		@Override
+		public void remove()
+		{
+			throw new UnsupportedOperationException();
+		}
+
+	}
+
+	/**
+	 * The ways a State can store its cells.
+	 */
+	public enum Storage
+	{
+		/**
+		 * Only non-zero cells take up memory, in a hash map. Best for mostly
+		 * empty worlds.
+		 */
+		SPARSE,
+
+		/**
+		 * Every cell takes up one slot in a flat array of the narrowest
+		 * primitive type that can hold all the states, e.g. one byte per cell
+		 * for up to 256 states. Best for busy worlds, and for anything small
+		 * enough that the array is cheap.
+		 */
+		DENSE,
+
+		/**
+		 * Picks SPARSE or DENSE based on the number of cells and the fraction
+		 * of them that are non-zero, and switches between them after a step
+		 * when the population moves far enough.
+		 */
+		AUTO,
+
+		/**
+		 * Every cell takes up one slot in a memory-mapped file, which the
+		 * operating system pages in and out as the cells are used, so the
+		 * world can be much larger than the heap. The file can be reopened to
+		 * carry on from the last generation. Only a State constructed with
+		 * {@link State#mapped(Point, int, boolean[], File)} can use this.
+		 */
+		MAPPED
+	}
+
+	/**
+	 * With AUTO storage, worlds with at most this many cells are always dense,
+	 * since the array costs less than a handful of hash map entries would.
+	 */
+	private static final long	AUTO_DENSE_CELLS	= 1 << 16;
+
+	/**
+	 * With AUTO storage, a sparse world switches to dense once more than
+	 * 1/AUTO_DENSE_RATIO of its cells are non-zero. A map entry, boxed key and
+	 * boxed state cost well over 32 bytes, against 1 byte per cell when dense.
+	 */
+	private static final long	AUTO_DENSE_RATIO	= 32;
+
+	/**
+	 * With AUTO storage, a dense world switches back to sparse once fewer than
+	 * 1/AUTO_SPARSE_RATIO of its cells are non-zero. This is lower than the
+	 * dense threshold so that a world hovering near it doesn't flip back and
+	 * forth every step.
+	 */
+	private static final long	AUTO_SPARSE_RATIO	= 128;
+
+	/**
+	 * An outer-totalistic step only looks at the cells that flipped in the
+	 * last step and their neighbors, until more than 1/COUNT_FULL_RATIO of
+	 * the cells flipped, when going through every cell in order is cheaper.
+	 */
+	private static final long	COUNT_FULL_RATIO	= 16;
+
+	private CellStore			cells;
+	private CellStore			spare;
+	private Hood				stepHood;
+	private Storage				storage;
 	private T					size;
+	private long[]				strides;
+	private int[]				extents;
+	private long				numCells;
 	private boolean[]			wraps;
 	private int					numStates;
+	private long				generation;
+	private long				hash;
+	private boolean				hashValid			= true;
+
+	private volatile ArrayList<StepListener<T>>	listeners;
+	private long				evaluated;
+	private ArrayList<DirtyRegions<T>>	changeTrackers;
+
+	private int					parallelism			= 1;
+	private long				parallelThreshold	= DEFAULT_PARALLEL_THRESHOLD;
+	private ForkJoinPool		pool;
+	private MappedCellFile		mappedFile;
+	private Hood[]				bandHoods;
+	private CellStore[]			bandStores;
+
+	private TileTracker			tiles;
+	private boolean				tilesValid;
+	private Rule<T>				tileRule;
+
+	private byte[]				counts;
+	private boolean				countsValid;
+	private Hood				countHood;
+	private long[]				flips;
+	private int					numFlips;
+	private long[]				nextFlips;
+	private BitSet				seen;
+
+	private int[]				sums;
+	private int[]				sumStrides;
+	private volatile boolean	sumsValid;
+
+	/**
+	 * Evaluates a run of bands of the grid in parallel. A band is a slab of
+	 * consecutive rows along the last axis, so it covers a contiguous range of
+	 * linear indices and bands never write to the same cell. When only some
+	 * tiles are being stepped, a band is instead a share of the list of
+	 * active tiles. The run is split in half until each task has a single
+	 * band, which it evaluates with its own Hood.
+	 */
+	private class Bands extends RecursiveAction
+	{
+		private static final long	serialVersionUID	= 1L;
+
+		final Rule<T>				rule;
+		final CellStore				out;
+		final int					first;
+		final int					last;
+		final int					numActive;
+		long						population;
+		long						hash;
+
+		Bands(Rule<T> rule, CellStore out, int first, int last, int numActive)
+		{
+			this.rule = rule;
+			this.out = out;
+			this.first = first;
+			this.last = last;
+			this.numActive = numActive;
+		}
+
+		@Override
+		protected void compute()
+		{
+			if (last - first > 1) {
+				int mid = (first + last) >>> 1;
+				Bands left = new Bands(rule, out, first, mid, numActive);
+				Bands right = new Bands(rule, out, mid, last, numActive);
+				invokeAll(left, right);
+				population = left.population + right.population;
+				hash = left.hash + right.hash;
+				return;
+			}
+
+			if (numActive >= 0) {
+				int from = (int) ((long) numActive * first / bandHoods.length);
+				int to = (int) ((long) numActive * (first + 1) / bandHoods.length);
+				population = stepTiles(rule, bandHoods[first], out,
+						tiles.activeList(), from, to);
+				hash = bandHoods[first].hash;
+				return;
+			}
+
+			// Sparse stores can't be written to concurrently, so each band
+			// gets its own, which are merged once all the bands are done
+			CellStore dest = out;
+			if (!out.isDense()) {
+				dest = bandStores[first];
+				dest.clear();
+			}
+
+			long rows = size.getCoord(strides.length - 1);
+			long rowSize = strides[strides.length - 1];
+			long from = rows * first / bandHoods.length * rowSize;
+			long to = rows * (first + 1) / bandHoods.length * rowSize;
+			population = stepRange(rule, bandHoods[first], dest, from, to);
+			hash = bandHoods[first].hash;
+		}
+	}
+
+	/**
+	 * The default number of cells below which a step runs serially no matter
+	 * what the parallelism is set to, since handing work to other threads
+	 * costs more than it saves on small grids.
+	 */
+	public static final long	DEFAULT_PARALLEL_THRESHOLD	= 1 << 16;
+
+	/**
+	 * The number of bands the grid is split into per thread, so that threads
+	 * that finish early can steal work from the others.
+	 */
+	private static final int	BANDS_PER_THREAD			= 4;
 
 	/**
 	 * Creates a new State with default no wrapping
@@ -197,20 +769,121 @@ public class State<T extends Point> implements Iterable<T>
 	public State(T size, int numStates, boolean[] wraps,
 			HashMap<T, Integer> grid)
 	{
+		this(size, numStates, wraps, grid, Storage.AUTO);
+	}
+
+	/**
+	 * Creates a new State like {@link #State(Point, int, boolean[], HashMap)},
+	 * but lets you choose how the cells are stored. This only affects memory
+	 * use and speed, never the results of any method.
+	 * 
+	 * @param size The point farthest from the origin, giving the bounds
+	 * @param numStates The total number of states a cell can be in.
+	 * @param wraps A boolean array specifying which axes should wrap around.
+	 *            Treat a null array as an array of falses.
+	 * @param grid The initial state, or null for an empty state.
+	 * @param storage How to store the cells. A null storage is treated as
+	 *            AUTO.
+	 * @throws IllegalArgumentException under the same conditions as the other
+	 *             constructors, or if storage is DENSE and the state has too
+	 *             many cells to fit in an array
+	 */
+	public State(T size, int numStates, boolean[] wraps,
+			HashMap<T, Integer> grid, Storage storage)
+	{
+		if (size == null)
+			throw new IllegalArgumentException("Passed a null size");
+
 		if (!isNonNegative(size))
 			throw new IllegalArgumentException("Can't have negative size");
 
 		if (numStates <= 0)
 			throw new IllegalArgumentException("Must have at least one state");
 
-		this.size = size;
 		this.numStates = numStates;
+		this.storage = storage == null ? Storage.AUTO : storage;
+		setBounds(size);
 
 		setWraps(wraps);
 
 		setState(grid);
 	}
 
+	/**
+	 * Creates a State whose cells are kept in a memory-mapped file
+	 * rather than on the heap, using {@link Storage#MAPPED} storage. If the
+	 * file already holds the cells of a world of this size and number of
+	 * states, the State starts from the last generation that was flushed to
+	 * it, so a long run can be resumed. Otherwise the file is created. Call
+	 * {@link #flush()} to make the file safe to reopen, and {@link #close()}
+	 * when done with the State.
+	 * 
+	 * @param size The point farthest from the origin, giving the bounds
+	 * @param numStates The total number of states a cell can be in.
+	 * @param wraps A boolean array specifying which axes should wrap around.
+	 *            Treat a null array as an array of falses.
+	 * @param file the file to keep the cells in
+	 * @throws IOException if the file can't be created, opened or mapped
+	 * @return a State with MAPPED storage
+	 * @throws IllegalArgumentException under the same conditions as the
+	 *             constructors, or if the file is not empty and doesn't hold
+	 *             a world of this size and number of states
+	 */
+	public static <T extends Point> State<T> mapped(T size, int numStates,
+			boolean[] wraps, File file) throws IOException
+	{
+		if (file == null)
+			throw new IllegalArgumentException("Passed a null file");
+
+		State<T> st = new State<T>(size, numStates, wraps, null, Storage.SPARSE);
+		st.mappedFile = new MappedCellFile(file, numStates, st.extents);
+		st.storage = Storage.MAPPED;
+		st.cells = st.mappedFile.current();
+		st.hashValid = false;
+		return st;
+	}
+
+	/**
+	 * Writes the cells of a State with MAPPED storage out to its file, and
+	 * records the current generation, so that the file can be reopened. Does
+	 * nothing for other storage.
+	 */
+	public void flush()
+	{
+		if (cells instanceof MappedCellStore) {
+			mappedFile.setCurrent((MappedCellStore) cells);
+			mappedFile.force();
+		}
+	}
+
+	/**
+	 * Flushes and closes the file of a State that was constructed with one,
+	 * and shuts down the threads that a parallel step started. The State can't
+	 * be used after closing a file, but other States can keep stepping, and
+	 * start new threads if they need them.
+	 * 
+	 * @throws IOException if the file can't be closed
+	 */
+	public void close() throws IOException
+	{
+		if (pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		if (mappedFile == null) return;
+
+		flush();
+		mappedFile.close();
+		mappedFile = null;
+		cells = new SparseCellStore(numCells);
+		spare = null;
+		countsValid = false;
+		sumsValid = false;
+		hash = 0;
+		hashValid = true;
+		markAllChanged();
+	}
+
 	/**
 	 * Allows you to set whether each axis wraps all at once.
 	 * 
@@ -227,6 +900,18 @@ public class State<T extends Point> implements Iterable<T>
 			throw new IllegalArgumentException("Does not match the state's dimensions");
 
 		this.wraps = wraps;
+		tilesValid = false;
+		countsValid = false;
+	}
+
+	/**
+	 * Gets whether each axis wraps around.
+	 * 
+	 * @return a new array where the ith value is true if the ith axis wraps
+	 */
+	public boolean[] getWraps()
+	{
+		return wraps.clone();
 	}
 
 	/**
@@ -244,6 +929,76 @@ public class State<T extends Point> implements Iterable<T>
 		}
 
 		wraps[dimension] = wrap;
+		tilesValid = false;
+		countsValid = false;
+	}
+
+	/**
+	 * Gets the number of cells that are not in state 0.
+	 * 
+	 * @return the population of the current generation
+	 */
+	public long getPopulation()
+	{
+		return cells.population();
+	}
+
+	/**
+	 * Gets the number of steps taken since the State was created, or since the
+	 * generation was last set.
+	 * 
+	 * @return the generation counter
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * Sets the generation counter, which each step then adds one to.
+	 * 
+	 * @param generation the new value of the counter
+	 * @throws IllegalArgumentException if generation is negative
+	 */
+	public void setGeneration(long generation)
+	{
+		if (generation < 0)
+			throw new IllegalArgumentException("Generation can't be negative");
+
+		this.generation = generation;
+	}
+
+	/**
+	 * Gets a 64-bit hash of the cells, which is kept up to date as cells are
+	 * set and as the State steps, so it costs nothing to ask for. It is the
+	 * sum of a hash of the index and state of each non-zero cell, so States
+	 * of the same size with the same cells have the same hash, whatever their
+	 * storage or history. Different cells give the same hash with a chance of
+	 * about 1 in 2^64.
+	 * 
+	 * @return the hash of the current generation
+	 */
+	public long getHash()
+	{
+		if (!hashValid) {
+			long h = 0;
+			CellStore.Cursor c = cells.cursor();
+			while (c.next())
+				h += cellHash(c.index(), c.state());
+			hash = h;
+			hashValid = true;
+		}
+		return hash;
+	}
+
+	/**
+	 * Gets the number of states a cell can be in.
+	 * 
+	 * @return the number of states, given at construction
+	 */
+	public int getNumStates()
+	{
+		return numStates;
 	}
 
 	/**
@@ -281,25 +1036,103 @@ public class State<T extends Point> implements Iterable<T>
 	 * all cells outside of the new bounds will be thrown out.
 	 * 
 	 * @param size the new dimensions of the State
+	 * @throws IllegalArgumentException if size is null or negative
+	 * @throws UnsupportedOperationException if the storage is MAPPED, since
+	 *             the size of a mapped State is fixed by its file
 	 */
 	public void setSize(T size)
 	{
-		if (size == null) {
+		if (storage == Storage.MAPPED) {
+			throw new UnsupportedOperationException("Can't resize a mapped state");
+		}
+		else if (size == null) {
 			throw new IllegalArgumentException("Passed a null size");
 		}
 		else if (!isNonNegative(size)) {
 			throw new IllegalArgumentException("Can't have negative grid size");
 		}
 
-		this.size = size;
-
-		Iterator<T> i = grid.keySet().iterator();
-		while (i.hasNext()) {
-			T p = i.next();
-			if (!isInBounds(p)) {
-				i.remove();
+		int dims = this.size.numDimensions();
+		long[] oldStrides = strides;
+		CellStore old = cells;
+
+		setBounds(size);
+		cells = newStore(old.population());
+		tilesValid = false;
+		countsValid = false;
+		sumsValid = false;
+		hash = 0;
+		hashValid = true;
+		if (changeTrackers != null) {
+			for (int i = 0; i < changeTrackers.size(); i++)
+				changeTrackers.get(i).resize(getSize(), extents, strides);
+		}
+		if (size.numDimensions() != dims) return;
+
+		// Cells keep their coordinates, which gives them new linear indices
+		CellStore.Cursor c = old.cursor();
+		while (c.next()) {
+			long index = c.index();
+			long newIndex = 0;
+			for (int i = dims - 1; i >= 0 && newIndex >= 0; i--) {
+				int coord = (int) (index / oldStrides[i]);
+				index %= oldStrides[i];
+				if (coord < size.getCoord(i))
+					newIndex += coord * strides[i];
+				else
+					newIndex = -1;
 			}
+			if (newIndex >= 0) {
+				cells.set(newIndex, c.state());
+				hash += cellHash(newIndex, c.state());
+			}
+		}
+	}
+
+	/**
+	 * Gets how this State was asked to store its cells.
+	 * 
+	 * @return the storage passed in at construction or to setStorage
+	 */
+	public Storage getStorage()
+	{
+		return storage;
+	}
+
+	/**
+	 * Changes how the cells are stored, converting the existing cells over.
+	 * 
+	 * @param storage the new storage. A null storage is treated as AUTO.
+	 * @throws IllegalArgumentException if storage is DENSE and the state has
+	 *             too many cells to fit in an array, or if storage is MAPPED
+	 *             and the State wasn't constructed with a file
+	 */
+	public void setStorage(Storage storage)
+	{
+		Storage previous = this.storage;
+		this.storage = storage == null ? Storage.AUTO : storage;
+		CellStore old = cells;
+		try {
+			cells = newStore(old.population());
 		}
+		catch (IllegalArgumentException e) {
+			this.storage = previous;
+			throw e;
+		}
+		old.copyInto(cells);
+		tilesValid = false;
+	}
+
+	/**
+	 * Tells you whether the cells are currently stored densely. With AUTO
+	 * storage this can change from step to step.
+	 * 
+	 * @return true if every cell has its own array slot, false if only
+	 *         non-zero cells are stored
+	 */
+	public boolean isDense()
+	{
+		return cells.isDense();
 	}
 
 	/**
@@ -313,12 +1146,13 @@ public class State<T extends Point> implements Iterable<T>
 	 */
 	public void setState(HashMap<T, Integer> grid)
 	{
+		CellStore newCells;
+		long newHash = 0;
 		if (grid == null) {
-			this.grid = new HashMap<T, Integer>();
+			newCells = newStore(0);
 		}
 		else {
-			HashMap<T, Integer> newGrid = new HashMap<T, Integer>();
-
+			// Check the whole grid first, so a bad one leaves this State alone
 			for (T p : grid.keySet()) {
 				Integer s = grid.get(p);
 
@@ -330,10 +1164,26 @@ public class State<T extends Point> implements Iterable<T>
 				else if (s < 0 || s >= this.numStates) {
 					throw new IllegalArgumentException("Grid contains invalid states");
 				}
-				if (s != 0) newGrid.put(p, s);
 			}
-			this.grid = newGrid;
+
+			newCells = newStore(grid.size());
+			for (T p : grid.keySet()) {
+				Integer s = grid.get(p);
+				if (s != null && s != 0) {
+					long index = indexOf(p);
+					newCells.set(index, s);
+					newHash += cellHash(index, s);
+				}
+			}
 		}
+
+		this.cells = newCells;
+		tilesValid = false;
+		countsValid = false;
+		sumsValid = false;
+		hash = newHash;
+		hashValid = true;
+		markAllChanged();
 	}
 
 	/**
@@ -351,18 +1201,37 @@ public class State<T extends Point> implements Iterable<T>
 		if (cell == null)
 			throw new IllegalArgumentException("Can't set null to a state");
 
-		T modded = modPoint(cell);
+		long index = indexOf(cell);
 
-		if (!isInBounds(modded))
+		if (index < 0)
 			throw new IllegalArgumentException("Invalid point passed in");
 
-		if (state < 0 || state > this.numStates)
+		if (state < 0 || state >= this.numStates)
 			throw new IllegalArgumentException("State is out of bounds");
 
-		// Maintains the sparse structure
-		if (state != 0)
-			grid.put(modded, state);
-		else if (grid.get(modded) != null) grid.remove(modded);
+		setCell(index, state);
+	}
+
+	/**
+	 * Sets the state of a cell by its row-major index, without any of the
+	 * checks setCellState makes, for classes in this package that load many
+	 * cells at once from a trusted source.
+	 * 
+	 * @param index the linear index of the cell, in [0, number of cells)
+	 * @param state the new state, in [0, numStates)
+	 */
+	void setCell(long index, int state)
+	{
+		int old = cells.get(index);
+		hash += cellHash(index, state) - cellHash(index, old);
+		cells.set(index, state);
+		sumsValid = false;
+		if (countsValid && (old == 0) != (state == 0)) flipped(index, state != 0);
+		if (tiles != null) tiles.markDirty(index);
+		if (changeTrackers != null) {
+			for (int i = 0; i < changeTrackers.size(); i++)
+				changeTrackers.get(i).markCell(index);
+		}
 	}
 
 	/**
@@ -379,14 +1248,12 @@ public class State<T extends Point> implements Iterable<T>
 		if (cell == null)
 			throw new IllegalArgumentException("Can't get a state for null");
 
-		T modded = modPoint(cell);
+		long index = indexOf(cell);
 
-		if (!isInBounds(modded))
+		if (index < 0)
 			throw new IllegalArgumentException("Point is not in bounds");
 
-		Integer i = grid.get(modded);
-
-		return i == null ? 0 : i;
+		return cells.get(index);
 	}
 
 	/**
@@ -399,25 +1266,945 @@ public class State<T extends Point> implements Iterable<T>
 	 */
 	public Neighborhood<T> getNeighborhood(T cell, int radius)
 	{
+		if (cell.numDimensions() != strides.length)
+			throw new IllegalArgumentException("Incorrect number of dimensions");
+
 		return new Hood(cell, radius);
 	}
 
 	/**
 	 * Steps the world once based on the rules specified in r. This modifies the
-	 * state in place, but the modification is atomic.
+	 * state in place, but the modification is atomic: if the rule throws, the
+	 * state is left as it was. Once the buffers have been allocated by the
+	 * first step, stepping allocates nothing per cell. Any step listeners are
+	 * told about the step once it is done.
 	 * 
 	 * @param r the rule used to step the state once.
 	 */
 	public void step(Rule<T> r)
 	{
-		HashMap<T, Integer> newgrid = new HashMap<T, Integer>();
-		for (T p : this) {
-			int i = r.stepCell(getNeighborhood(p, r.getNeighborhoodSize()));
-			if (i != 0) {
-				newgrid.put(p, i);
+		ArrayList<StepListener<T>> listeners = this.listeners;
+		if (listeners == null) {
+			stepOnce(r);
+			return;
+		}
+
+		long bytes = StepMetrics.allocatedBytes();
+		long start = System.nanoTime();
+		stepOnce(r);
+		long nanos = System.nanoTime() - start;
+		if (bytes >= 0) bytes = StepMetrics.allocatedBytes() - bytes;
+
+		StepMetrics metrics = new StepMetrics(generation, nanos, evaluated,
+				cells.population(), bytes);
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).stepped(this, metrics);
+	}
+
+	/**
+	 * Registers a listener to be told about every step. Measuring a step has
+	 * a small cost, which is only paid while a listener is registered.
+	 * 
+	 * @param listener the listener to add
+	 * @throws IllegalArgumentException if listener is null
+	 */
+	public void addStepListener(StepListener<T> listener)
+	{
+		if (listener == null)
+			throw new IllegalArgumentException("Can't add a null listener");
+
+		// The list is replaced rather than changed, so a listener can be
+		// added from another thread than the one stepping
+		ArrayList<StepListener<T>> list = listeners == null
+				? new ArrayList<StepListener<T>>()
+				: new ArrayList<StepListener<T>>(listeners);
+		list.add(listener);
+		listeners = list;
+	}
+
+	/**
+	 * Stops telling a listener about steps.
+	 * 
+	 * @param listener the listener to remove
+	 * @return true if the listener was registered
+	 */
+	public boolean removeStepListener(StepListener<T> listener)
+	{
+		if (listeners == null || !listeners.contains(listener)) return false;
+
+		ArrayList<StepListener<T>> list = new ArrayList<StepListener<T>>(listeners);
+		list.remove(listener);
+		listeners = list.isEmpty() ? null : list;
+		return true;
+	}
+
+	/**
+	 * Starts keeping track of which parts of the State change, for something
+	 * that only wants to look at those, like a Viewport redrawing the cells
+	 * that changed since it last drew.
+	 * 
+	 * @return a new DirtyRegions with the whole State marked as changed
+	 */
+	public DirtyRegions<T> trackChanges()
+	{
+		DirtyRegions<T> regions = new DirtyRegions<T>(getSize(), extents, strides);
+		if (changeTrackers == null)
+			changeTrackers = new ArrayList<DirtyRegions<T>>();
+		changeTrackers.add(regions);
+		return regions;
+	}
+
+	/**
+	 * Stops marking changes in a DirtyRegions from trackChanges.
+	 * 
+	 * @param regions the DirtyRegions to stop marking
+	 * @return true if it was being marked
+	 */
+	public boolean stopTrackingChanges(DirtyRegions<T> regions)
+	{
+		if (changeTrackers == null || !changeTrackers.remove(regions))
+			return false;
+
+		if (changeTrackers.isEmpty()) changeTrackers = null;
+		return true;
+	}
+
+	/**
+	 * Private helper method that marks every cell as changed for all of the
+	 * DirtyRegions.
+	 */
+	private void markAllChanged()
+	{
+		if (changeTrackers == null) return;
+
+		for (int i = 0; i < changeTrackers.size(); i++)
+			changeTrackers.get(i).markAll();
+	}
+
+	/**
+	 * Tells the step listeners that the State was drawn, for a Viewport
+	 * that is timing how long that took.
+	 * 
+	 * @param nanos how long drawing took, in nanoseconds
+	 */
+	void fireRendered(long nanos)
+	{
+		ArrayList<StepListener<T>> listeners = this.listeners;
+		if (listeners == null) return;
+
+		for (int i = 0; i < listeners.size(); i++)
+			listeners.get(i).rendered(this, nanos);
+	}
+
+	/**
+	 * @return true if any step listener is registered
+	 */
+	boolean hasStepListeners()
+	{
+		return listeners != null;
+	}
+
+	/**
+	 * Private helper method that does the work of step.
+	 */
+	private void stepOnce(Rule<T> r)
+	{
+		OuterTotalisticRule<T> ot = outerTotalistic(r);
+		if (ot != null) {
+			stepCounts(ot);
+			return;
+		}
+		// The counts are as big as the grid, so they aren't kept around
+		// while they aren't used
+		counts = null;
+		seen = null;
+
+		// The new generation is built in a spare buffer that is kept between
+		// steps, and only swapped in once it is complete
+		int radius = r.getNeighborhoodSize();
+		if (stepHood == null || stepHood.radius != radius
+				|| stepHood.center.length != strides.length)
+			stepHood = new Hood(radius);
+		if (spare == null || spare.getClass() != cells.getClass()
+				|| spare.size() != numCells) {
+			spare = cells.blank();
+			tilesValid = false;
+		}
+
+		CellStore out = spare;
+		long population;
+		long newHash;
+		if (isQuiescent(r) && numCells > 0) {
+			population = stepTiled(r, out);
+			newHash = hash + stepHood.hash;
+		}
+		else {
+			tilesValid = false;
+			if (!out.isDense()) out.clear();
+			if (parallelism > 1 && numCells >= parallelThreshold && numCells > 0)
+				population = stepParallel(r, out, -1);
+			else
+				population = stepRange(r, stepHood, out, 0, numCells);
+			newHash = stepHood.hash;
+			evaluated = numCells;
+			markAllChanged();
+			hashValid = true;
+		}
+		if (out instanceof DenseCellStore)
+			((DenseCellStore) out).setPopulation(population);
+		else if (out instanceof MappedCellStore)
+			((MappedCellStore) out).setPopulation(population);
+
+		spare = cells;
+		cells = out;
+		hash = newHash;
+		generation++;
+		countsValid = false;
+		sumsValid = false;
+		if (cells instanceof MappedCellStore)
+			mappedFile.setCurrent((MappedCellStore) cells);
+
+		if (storage == Storage.AUTO && autoDense(cells.population()) != cells.isDense())
+			setStorage(storage);
+	}
+
+	/**
+	 * Private helper method that gets a rule as an OuterTotalisticRule, if it
+	 * is one (or a CompiledRule of one) and this State can step it by
+	 * neighbor counts: two states, few enough cells for an array of counts,
+	 * no more than 255 neighbors so a count fits in a byte, and dense cells
+	 * that aren't MAPPED. The counts take a byte per cell, which a sparse
+	 * State can't afford, and a MAPPED file holds whole generations. Stepping
+	 * by counts is serial, so a State big enough to step in parallel is
+	 * stepped cell by cell instead.
+	 * 
+	 * @return the rule, or null if it has to be stepped cell by cell
+	 */
+	@SuppressWarnings("unchecked")
+	private OuterTotalisticRule<T> outerTotalistic(Rule<T> r)
+	{
+		if (r instanceof CompiledRule) r = ((CompiledRule<T>) r).getRule();
+		if (!(r instanceof OuterTotalisticRule) || numStates != 2
+				|| numCells == 0 || numCells > Integer.MAX_VALUE
+				|| storage == Storage.MAPPED || !cells.isDense()
+				|| (parallelism > 1 && numCells >= parallelThreshold))
+			return null;
+
+		long neighbors = 1;
+		for (int i = 0; i < extents.length; i++)
+			neighbors *= 2 * r.getNeighborhoodSize() + 1;
+		if (neighbors - 1 > 255) return null;
+		return (OuterTotalisticRule<T>) r;
+	}
+
+	/**
+	 * Private helper method that steps an outer-totalistic rule by the
+	 * number of live neighbors of each cell, which is kept in counts between
+	 * steps. A cell can only change if it or one of its neighbors flipped in
+	 * the last step (or was set since), so only those cells are looked at.
+	 * The cells that flip are found first, from the old states and counts,
+	 * and then set with setCell, which updates the counts around them and
+	 * records them as the flips for the next step. Once many cells have
+	 * flipped, or if cells with no live neighbors are born, every cell is
+	 * looked at instead.
+	 * 
+	 * @param r an outer-totalistic rule
+	 * @throws IllegalArgumentException if the birth or survival set doesn't
+	 *             have an entry for each neighbor count
+	 */
+	private void stepCounts(OuterTotalisticRule<T> r)
+	{
+		int radius = r.getNeighborhoodSize();
+		boolean[] birth = r.getBirth();
+		boolean[] survival = r.getSurvival();
+		if (countHood == null || countHood.radius != radius
+				|| countHood.center.length != strides.length) {
+			countHood = new Hood(radius);
+			countsValid = false;
+		}
+		int size = countHood.offsets.length;
+		if (birth == null || survival == null || birth.length != size
+				|| survival.length != size)
+			throw new IllegalArgumentException("Birth and survival need an entry for each neighbor count");
+
+		if (!countsValid) countAll();
+		// With birth on no neighbors, cells nowhere near a flip come to life
+		if (birth[0]) numFlips = -1;
+		if (seen == null) seen = new BitSet();
+
+		if (numFlips < 0) {
+			// The cells that flip are marked in seen until they are set
+			for (int i = 0; i < numCells; i++) {
+				if (flips(i, birth, survival)) seen.set(i);
+			}
+			evaluated = numCells;
+			numFlips = 0;
+			for (int i = seen.nextSetBit(0); i >= 0; i = seen.nextSetBit(i + 1))
+				setCell(i, 1 - cells.get(i));
+		}
+		else {
+			int numChanges = 0;
+			evaluated = 0;
+			for (int k = 0; k < numFlips; k++) {
+				countHood.moveTo(flips[k]);
+				for (int i = 0; i < size; i++) {
+					long index = countHood.indexAt(i);
+					if (index < 0 || seen.get((int) index)) continue;
+
+					seen.set((int) index);
+					evaluated++;
+					if (!flips((int) index, birth, survival)) continue;
+
+					if (nextFlips == null || nextFlips.length == numChanges)
+						nextFlips = grow(nextFlips, numChanges);
+					nextFlips[numChanges++] = index;
+				}
+			}
+
+			// Setting the cells records them as the flips for the next step
+			numFlips = 0;
+			for (int k = 0; k < numChanges; k++) {
+				long index = nextFlips[k];
+				setCell(index, 1 - cells.get(index));
+			}
+		}
+		seen.clear();
+		generation++;
+		tilesValid = false;
+
+		if (storage == Storage.AUTO && autoDense(cells.population()) != cells.isDense())
+			setStorage(storage);
+	}
+
+	/**
+	 * Private helper method that tells whether a cell flips in this step of
+	 * an outer-totalistic rule, from its state and its count of live
+	 * neighbors.
+	 */
+	private boolean flips(int index, boolean[] birth, boolean[] survival)
+	{
+		int count = counts[index] & 0xff;
+		return cells.get(index) == 0 ? birth[count] : !survival[count];
+	}
+
+	/**
+	 * Private helper method that counts the live neighbors of every cell
+	 * from scratch, visiting only the live cells, and records the live cells
+	 * as flipped, since nothing else can change in the next step.
+	 */
+	private void countAll()
+	{
+		if (counts == null || counts.length != numCells)
+			counts = new byte[(int) numCells];
+		else
+			Arrays.fill(counts, (byte) 0);
+
+		int center = countHood.offsets.length / 2;
+		CellStore.Cursor c = cells.cursor();
+		while (c.next()) {
+			countHood.moveTo(c.index());
+			for (int i = 0; i < countHood.offsets.length; i++) {
+				long index = countHood.indexAt(i);
+				if (i != center && index >= 0) counts[(int) index]++;
+			}
+		}
+		countsValid = true;
+
+		numFlips = 0;
+		c = cells.cursor();
+		while (c.next() && numFlips >= 0)
+			addFlip(c.index());
+	}
+
+	/**
+	 * Private helper method that updates the neighbor counts around a cell
+	 * that has just become live or dead, and records it as flipped.
+	 */
+	private void flipped(long cell, boolean live)
+	{
+		int center = countHood.offsets.length / 2;
+		countHood.moveTo(cell);
+		for (int i = 0; i < countHood.offsets.length; i++) {
+			long index = countHood.indexAt(i);
+			if (i != center && index >= 0) counts[(int) index] += live ? 1 : -1;
+		}
+
+		addFlip(cell);
+	}
+
+	/**
+	 * Private helper method that records a cell to be looked at along with
+	 * its neighbors in the next step. Once the list holds more than
+	 * 1/COUNT_FULL_RATIO of the cells, it is dropped and the next step looks
+	 * at every cell.
+	 */
+	private void addFlip(long cell)
+	{
+		if (numFlips < 0) return;
+		if (numFlips >= numCells / COUNT_FULL_RATIO) {
+			numFlips = -1;
+			return;
+		}
+		if (flips == null || flips.length == numFlips) flips = grow(flips, numFlips);
+		flips[numFlips++] = cell;
+	}
+
+	/**
+	 * Private helper method that doubles the length of a list of cells.
+	 */
+	private static long[] grow(long[] list, int length)
+	{
+		return list == null ? new long[16] : Arrays.copyOf(list, Math.max(16, length * 2));
+	}
+
+	/**
+	 * Private helper method that gets the summed-area table of the current
+	 * cells, building it if they have changed since it was last built. Entry
+	 * (x_0 .. x_d-1) of the table, at index x_0 * sumStrides[0] + ..., is the
+	 * sum of the states of the cells below x_i along every axis i, so the
+	 * table has one more entry than the State has cells along each axis.
+	 * Neighborhoods on several threads may ask for it at once during a
+	 * parallel step, so it is built by only one of them.
+	 * 
+	 * @return the table, or null if the State is too big for one
+	 */
+	private int[] summedArea()
+	{
+		if (sumsValid) return sums;
+
+		long length = 1;
+		for (int i = 0; i < extents.length; i++)
+			length *= extents[i] + 1L;
+		if (length > Integer.MAX_VALUE) return null;
+
+		synchronized (this) {
+			if (sumsValid) return sums;
+
+			if (sums == null || sums.length != length)
+				sums = new int[(int) length];
+			else
+				Arrays.fill(sums, 0);
+			sumStrides = new int[extents.length];
+			int stride = 1;
+			for (int i = 0; i < extents.length; i++) {
+				sumStrides[i] = stride;
+				stride *= extents[i] + 1;
+			}
+
+			CellStore.Cursor c = cells.cursor();
+			while (c.next()) {
+				long index = c.index();
+				int at = 0;
+				for (int i = extents.length - 1; i >= 0; i--) {
+					at += ((int) (index / strides[i]) + 1) * sumStrides[i];
+					index %= strides[i];
+				}
+				sums[at] = c.state();
+			}
+
+			// Prefix sums along each axis in turn, skipping the leading zeros
+			for (int i = 0; i < extents.length; i++) {
+				int step = sumStrides[i];
+				int block = step * (extents[i] + 1);
+				for (int base = 0; base < sums.length; base += block) {
+					for (int j = base + step; j < base + block; j++)
+						sums[j] += sums[j - step];
+				}
+			}
+			sumsValid = true;
+		}
+		return sums;
+	}
+
+	/**
+	 * Private helper method that steps a quiescent rule, only evaluating the
+	 * tiles in the halo of a tile that is dirty. Every other tile is known not
+	 * to change, and already has the right states in out, since out holds the
+	 * generation before the current one and the tile didn't change in the
+	 * last step. The first time through, or after the cells or the rule were
+	 * replaced, there is no last step to go by, so out is cleared and the
+	 * tiles holding non-zero cells are treated as dirty instead.
+	 * 
+	 * @param r a quiescent rule
+	 * @param out the store the new generation is written into
+	 * @return the number of non-zero cells in the new generation
+	 */
+	private long stepTiled(Rule<T> r, CellStore out)
+	{
+		int radius = r.getNeighborhoodSize();
+		if (tiles == null || !tiles.matches(extents, wraps, radius)) {
+			tiles = new TileTracker(extents, strides, wraps, radius);
+			tilesValid = false;
+		}
+		// Until the step completes, out doesn't hold the last generation
+		boolean valid = tilesValid && r == tileRule;
+		tilesValid = false;
+		if (!valid) {
+			out.clear();
+			tiles.clearDirty();
+			CellStore.Cursor c = cells.cursor();
+			while (c.next())
+				tiles.markDirty(c.index());
+		}
+
+		int numActive = tiles.findActive();
+		long cellsPerTile = 1;
+		for (int i = 0; i < extents.length; i++)
+			cellsPerTile *= TileTracker.TILE;
+		if (listeners != null) {
+			int[] list = tiles.activeList();
+			evaluated = 0;
+			for (int i = 0; i < numActive; i++)
+				evaluated += (long) tiles.rowLength(list[i]) * tiles.numRows(list[i]);
+		}
+
+		long delta;
+		if (parallelism > 1 && out instanceof DenseCellStore
+				&& numActive * cellsPerTile >= parallelThreshold)
+			delta = stepParallel(r, out, numActive);
+		else
+			delta = stepTiles(r, stepHood, out, tiles.activeList(), 0, numActive);
+
+		tiles.finishStep();
+		tileRule = r;
+		tilesValid = true;
+		if (changeTrackers != null) {
+			for (int i = 0; i < changeTrackers.size(); i++)
+				changeTrackers.get(i).markTiles(tiles);
+		}
+		return cells.population() + delta;
+	}
+
+	/**
+	 * Private helper method that evaluates the rule for every cell of some of
+	 * the active tiles, writes their new states into out, and marks the tiles
+	 * whose cells changed.
+	 * 
+	 * @param r the rule to evaluate
+	 * @param hood the cursor to evaluate it with
+	 * @param out the store the new generation is written into
+	 * @param list the active tiles
+	 * @param from the first entry of list to evaluate
+	 * @param to one past the last entry of list to evaluate
+	 * @return the number of cells that became non-zero, minus the number that
+	 *         became zero. The change in the hash is left in hood.
+	 */
+	@SuppressWarnings("unchecked")
+	private long stepTiles(Rule<T> r, Hood hood, CellStore out, int[] list,
+			int from, int to)
+	{
+		DenseCellStore in = cells instanceof DenseCellStore ? (DenseCellStore) cells : null;
+		DenseCellStore dense = out instanceof DenseCellStore ? (DenseCellStore) out : null;
+		CompiledRule<T> compiled = null;
+		if (r instanceof CompiledRule && in != null
+				&& ((CompiledRule<T>) r).getNumStates() >= numStates)
+			compiled = (CompiledRule<T>) r;
+
+		long delta = 0;
+		long hashDelta = 0;
+		for (int k = from; k < to; k++) {
+			int tile = list[k];
+			int length = tiles.rowLength(tile);
+			int rows = tiles.numRows(tile);
+			boolean changed = false;
+
+			for (int row = 0; row < rows; row++) {
+				long start = tiles.rowStart(tile, row);
+				hood.moveTo(start);
+				for (long i = start; i < start + length; i++) {
+					int s;
+					if (compiled != null && hood.interior) {
+						int index = 0;
+						for (int d = hood.deltas.length - 1; d >= 0; d--)
+							index = index * compiled.getNumStates()
+									+ in.getAt((int) (i + hood.deltas[d]));
+						s = compiled.table[index];
+					}
+					else
+						s = r.stepCell(hood);
+
+					int old = cells.get(i);
+					if (s != old) {
+						changed = true;
+						delta += (s != 0 ? 1 : 0) - (old != 0 ? 1 : 0);
+						hashDelta += cellHash(i, s) - cellHash(i, old);
+					}
+					if (dense != null)
+						dense.setAt((int) i, s);
+					else
+						out.set(i, s);
+
+					if (i + 1 < start + length) hood.advance();
+				}
+			}
+			if (changed) tiles.markChanged(tile);
+		}
+		hood.hash = hashDelta;
+		return delta;
+	}
+
+	/**
+	 * Private helper method that checks whether a rule has declared itself
+	 * quiescent.
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean isQuiescent(Rule<T> r)
+	{
+		if (r instanceof CompiledRule)
+			return ((CompiledRule<T>) r).isQuiescent();
+		return r instanceof QuiescentRule;
+	}
+
+	/**
+	 * Private helper method that evaluates the rule on the fork-join pool.
+	 * Either every cell is evaluated, split into bands of rows, or the active
+	 * tiles are split into bands and evaluated like stepTiles.
+	 * 
+	 * @param r the rule to evaluate
+	 * @param out the store the new generation is written into
+	 * @param numActive the number of active tiles to evaluate, or -1 to
+	 *            evaluate every cell
+	 * @return the number of non-zero cells written, or the change in
+	 *         population when evaluating tiles. The matching hash, or change
+	 *         in hash, is left in stepHood.
+	 */
+	private long stepParallel(Rule<T> r, CellStore out, int numActive)
+	{
+		int radius = r.getNeighborhoodSize();
+		int rows = numActive >= 0 ? numActive : size.getCoord(strides.length - 1);
+		int numBands = Math.max(1, Math.min(rows, parallelism * BANDS_PER_THREAD));
+
+		if (bandHoods == null || bandHoods.length != numBands
+				|| bandHoods[0].radius != radius
+				|| bandHoods[0].center.length != strides.length) {
+			bandHoods = newHoods(numBands);
+			for (int i = 0; i < numBands; i++)
+				bandHoods[i] = new Hood(radius);
+		}
+		if (!out.isDense() && numActive < 0
+				&& (bandStores == null || bandStores.length != numBands
+						|| bandStores[0].size() != numCells)) {
+			bandStores = new CellStore[numBands];
+			for (int i = 0; i < numBands; i++)
+				bandStores[i] = out.blank();
+		}
+		if (pool == null) pool = new ForkJoinPool(parallelism);
+
+		Bands all = new Bands(r, out, 0, numBands, numActive);
+		pool.invoke(all);
+		stepHood.hash = all.hash;
+
+		if (!out.isDense() && numActive < 0) {
+			for (CellStore band : bandStores) {
+				band.copyInto(out);
+				band.clear();
+			}
+		}
+		return all.population;
+	}
+
+	/**
+	 * Private helper method that makes an array of Hoods. Hood is an inner
+	 * class of a generic class, so its arrays can't be created directly.
+	 * 
+	 * @param length the length of the array
+	 * @return an array of length nulls
+	 */
+	@SuppressWarnings("unchecked")
+	private Hood[] newHoods(int length)
+	{
+		return (Hood[]) Array.newInstance(Hood.class, length);
+	}
+
+	/**
+	 * Private helper method that evaluates the rule for the cells with linear
+	 * indices in [from, to), and writes their new states into out. A dense out
+	 * has every cell in the range written through {@code setAt}, so its
+	 * population has to be fixed up afterwards. A sparse out only has its
+	 * non-zero cells written, so it must start out clear.
+	 * 
+	 * @param r the rule to evaluate
+	 * @param hood the cursor to evaluate it with
+	 * @param out the store the new generation is written into
+	 * @param from the first index to evaluate
+	 * @param to one past the last index to evaluate
+	 * @return the number of non-zero cells written. The sum of their hashes
+	 *         is left in hood.
+	 */
+	@SuppressWarnings("unchecked")
+	private long stepRange(Rule<T> r, Hood hood, CellStore out, long from,
+			long to)
+	{
+		hood.hash = 0;
+		if (from >= to) return 0;
+
+		long population = 0;
+		long hash = 0;
+		hood.moveTo(from);
+		if (r instanceof CompiledRule && out instanceof DenseCellStore
+				&& cells instanceof DenseCellStore
+				&& ((CompiledRule<T>) r).getNumStates() >= numStates) {
+			return stepCompiled((CompiledRule<T>) r, hood,
+					(DenseCellStore) out, (int) from, (int) to);
+		}
+		else if (out instanceof DenseCellStore) {
+			DenseCellStore dense = (DenseCellStore) out;
+			for (int i = (int) from; i < to; i++) {
+				int s = r.stepCell(hood);
+				dense.setAt(i, s);
+				if (s != 0) {
+					population++;
+					hash += cellHash(i, s);
+				}
+				if (i + 1 < to) hood.advance();
+			}
+		}
+		else if (out instanceof MappedCellStore) {
+			MappedCellStore mapped = (MappedCellStore) out;
+			for (long i = from; i < to; i++) {
+				int s = r.stepCell(hood);
+				mapped.setAt(i, s);
+				if (s != 0) {
+					population++;
+					hash += cellHash(i, s);
+				}
+				if (i + 1 < to) hood.advance();
+			}
+		}
+		else {
+			for (long i = from; i < to; i++) {
+				int s = r.stepCell(hood);
+				if (s != 0) {
+					out.set(i, s);
+					population++;
+					hash += cellHash(i, s);
+				}
+				if (i + 1 < to) hood.advance();
+			}
+		}
+		hood.hash = hash;
+		return population;
+	}
+
+	/**
+	 * Private helper method like stepRange, for a compiled rule on dense
+	 * storage. Interior cells have their neighborhood packed into a table index
+	 * straight from the array, using the index deltas of the Hood's offsets,
+	 * and only cells near an edge go through stepCell.
+	 */
+	private long stepCompiled(CompiledRule<T> r, Hood hood,
+			DenseCellStore out, int from, int to)
+	{
+		DenseCellStore in = (DenseCellStore) cells;
+		int[] table = r.table;
+		int base = r.getNumStates();
+		long[] deltas = hood.deltas;
+
+		long population = 0;
+		long hash = 0;
+		for (int i = from; i < to; i++) {
+			int s;
+			if (hood.interior) {
+				int index = 0;
+				for (int k = deltas.length - 1; k >= 0; k--)
+					index = index * base + in.getAt(i + (int) deltas[k]);
+				s = table[index];
+			}
+			else
+				s = r.stepCell(hood);
+
+			out.setAt(i, s);
+			if (s != 0) {
+				population++;
+				hash += cellHash(i, s);
+			}
+			if (i + 1 < to) hood.advance();
+		}
+		hood.hash = hash;
+		return population;
+	}
+
+	/**
+	 * Sets how many threads step uses. With more than one thread, the grid is
+	 * split into bands of rows that are evaluated on a fork-join pool, writing
+	 * into the same spare buffer as a serial step, so the result is identical.
+	 * The rule's stepCell may then be called from several threads at once, so
+	 * it must not modify any shared state.
+	 * 
+	 * @param parallelism the number of threads to step with, 1 for serial
+	 * @throws IllegalArgumentException if parallelism is less than 1
+	 */
+	public void setParallelism(int parallelism)
+	{
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be at least 1");
+
+		if (parallelism != this.parallelism && pool != null) {
+			pool.shutdown();
+			pool = null;
+		}
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Gets how many threads step uses.
+	 * 
+	 * @return the parallelism, 1 if stepping is serial
+	 */
+	public int getParallelism()
+	{
+		return parallelism;
+	}
+
+	/**
+	 * Sets the number of cells below which a step runs serially even if the
+	 * parallelism is more than 1.
+	 * 
+	 * @param cells the smallest number of cells to step in parallel
+	 * @throws IllegalArgumentException if cells is negative
+	 */
+	public void setParallelThreshold(long cells)
+	{
+		if (cells < 0)
+			throw new IllegalArgumentException("Threshold can't be negative");
+
+		this.parallelThreshold = cells;
+	}
+
+	/**
+	 * Gets the number of cells below which a step runs serially.
+	 * 
+	 * @return the smallest number of cells that is stepped in parallel
+	 */
+	public long getParallelThreshold()
+	{
+		return parallelThreshold;
+	}
+
+	/**
+	 * Like liveCells, but visits the cells in increasing index order.
+	 * 
+	 * @return a cursor giving the row-major index and state of each non-zero
+	 *         cell, in order
+	 */
+	CellStore.Cursor liveCellsInOrder()
+	{
+		return cells.orderedCursor();
+	}
+
+	/**
+	 * Empties the State to have a given number of cells loaded into it with
+	 * setCell, so that AUTO storage can pick a store suited to them up front.
+	 * 
+	 * @param population the number of non-zero cells about to be loaded
+	 */
+	void clearForLoad(long population)
+	{
+		cells = newStore(population);
+		tilesValid = false;
+		countsValid = false;
+		sumsValid = false;
+		hash = 0;
+		hashValid = true;
+		markAllChanged();
+	}
+
+	/**
+	 * Gets the state of a cell by its row-major index, without any checks.
+	 * 
+	 * @param index the linear index of the cell, in [0, number of cells)
+	 * @return the state of the cell
+	 */
+	int getCell(long index)
+	{
+		return cells.get(index);
+	}
+
+	/**
+	 * Makes an independent copy of this State in memory, with the same cells,
+	 * generation and settings, so it can be read on another thread while this
+	 * one carries on stepping. A MAPPED State is copied with AUTO storage.
+	 * 
+	 * @return the copy
+	 */
+	State<T> copy()
+	{
+		State<T> copy = new State<T>(size, numStates, wraps, null,
+				storage == Storage.MAPPED ? Storage.AUTO : storage);
+		copy.clearForLoad(cells.population());
+		cells.copyInto(copy.cells);
+		copy.generation = generation;
+		copy.hash = hash;
+		copy.hashValid = hashValid;
+		return copy;
+	}
+
+	/**
+	 * Brings this State up to date with another, copying only the cells in
+	 * the regions of it that have changed, as given by a DirtyRegions on the
+	 * other State. Cells that differ are set with setCell, so anything
+	 * tracking changes to this State sees just those. If the sizes differ, or
+	 * a region covers everything, all of the cells are copied.
+	 * 
+	 * @param source the State to copy from, with as many states as this one
+	 * @param changed the regions of source that have changed since this State
+	 *            last matched it
+	 */
+	void copyChanges(State<T> source, List<Region<T>> changed)
+	{
+		boolean all = !size.equals(source.size);
+		for (int k = 0; k < changed.size() && !all; k++)
+			all = changed.get(k).numCells() == numCells;
+
+		if (all) {
+			if (!size.equals(source.size)) setSize(source.getSize());
+			clearForLoad(source.cells.population());
+			source.cells.copyInto(cells);
+			hash = source.hash;
+			hashValid = source.hashValid;
+		}
+		else {
+			int[] c = new int[extents.length];
+			for (int k = 0; k < changed.size(); k++) {
+				Region<T> region = changed.get(k);
+				if (region.numCells() == 0) continue;
+
+				for (int i = 0; i < c.length; i++)
+					c[i] = region.getMin(i);
+				while (true) {
+					// One row along the first axis at a time, whose cells are
+					// next to each other
+					long index = 0;
+					for (int i = 1; i < c.length; i++)
+						index += c[i] * strides[i];
+					for (int x = region.getMin(0); x < region.getMax(0); x++) {
+						int s = source.cells.get(index + x);
+						if (cells.get(index + x) != s) setCell(index + x, s);
+					}
+
+					int i = 1;
+					while (i < c.length && ++c[i] == region.getMax(i)) {
+						c[i] = region.getMin(i);
+						i++;
+					}
+					if (i >= c.length) break;
+				}
 			}
 		}
-		grid = newgrid;
+		generation = source.generation;
+	}
+
+	/**
+	 * Gets a cursor over the non-zero cells, for classes in this package that
+	 * need to read a whole State without going through Points. The cursor is
+	 * invalidated by any change to the State.
+	 * 
+	 * @return a cursor giving the row-major index and state of each non-zero
+	 *         cell
+	 */
+	CellStore.Cursor liveCells()
+	{
+		return cells.cursor();
 	}
 
 	/**
@@ -432,24 +2219,243 @@ public class State<T extends Point> implements Iterable<T>
 	}
 
 	/**
-	 * Private helper method that takes a point and mods dimension i of p by the
-	 * dimension i of size, if wraps[i] is true
+	 * Iterates over just the non-zero cells, in no particular order. Only
+	 * those cells get a Point, so for a mostly empty State this is much
+	 * cheaper than iterating over all of it. The State must not be changed
+	 * while iterating.
 	 * 
-	 * @param ret the point to mod
-	 * @return point p, selectively modded by size
+	 * @return the Points of the non-zero cells
 	 */
-	@SuppressWarnings("unchecked")
-	private T modPoint(T p)
+	public Iterable<T> nonZeroCells()
+	{
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator()
+			{
+				return new NonZeroIterator();
+			}
+		};
+	}
+
+	/**
+	 * Iterates over the Points of a region of this State, in the same order
+	 * as iterating over the whole State.
+	 * 
+	 * @param region a region inside this State
+	 * @return the Points in the region
+	 * @throws IllegalArgumentException if the region isn't inside this State
+	 */
+	public Iterable<T> cellsIn(Region<T> region)
+	{
+		checkRegion(region);
+		final T min = region.getMin();
+		final T max = region.getMax();
+		final boolean empty = region.numCells() == 0;
+		return new Iterable<T>() {
+			@Override
+			public Iterator<T> iterator()
+			{
+				if (empty) return new ArrayList<T>().iterator();
+				return new PointIterator(min, max);
+			}
+		};
+	}
+
+	/**
+	 * Shows each non-zero cell to a visitor, in no particular order, without
+	 * making any Points.
+	 * 
+	 * @param visitor the visitor
+	 */
+	public void visitCells(CellVisitor visitor)
+	{
+		int[] coords = new int[extents.length];
+		CellStore.Cursor c = cells.cursor();
+		while (c.next()) {
+			long index = c.index();
+			for (int i = coords.length - 1; i >= 0; i--) {
+				coords[i] = (int) (index / strides[i]);
+				index -= coords[i] * strides[i];
+			}
+			visitor.visitCell(coords, c.state());
+		}
+	}
+
+	/**
+	 * Shows every cell of a region to a visitor, zero or not, in the same
+	 * order as iterating over the whole State, without making any Points.
+	 * 
+	 * @param region a region inside this State
+	 * @param visitor the visitor
+	 * @throws IllegalArgumentException if the region isn't inside this State
+	 */
+	public void visitCells(Region<T> region, CellVisitor visitor)
+	{
+		checkRegion(region);
+		if (region.numCells() == 0) return;
+
+		int[] coords = new int[extents.length];
+		for (int i = 0; i < coords.length; i++)
+			coords[i] = region.getMin(i);
+		int minX = region.getMin(0), maxX = region.getMax(0);
+		while (true) {
+			// One row along the first axis at a time
+			long row = 0;
+			for (int i = 1; i < coords.length; i++)
+				row += coords[i] * strides[i];
+			for (int x = minX; x < maxX; x++) {
+				coords[0] = x;
+				visitor.visitCell(coords, cells.get(row + x));
+			}
+
+			int i = 1;
+			while (i < coords.length && ++coords[i] == region.getMax(i)) {
+				coords[i] = region.getMin(i);
+				i++;
+			}
+			if (i >= coords.length) break;
+		}
+	}
+
+	/**
+	 * Private helper method that checks that a region lies inside this State.
+	 */
+	private void checkRegion(Region<T> region)
+	{
+		if (region == null)
+			throw new IllegalArgumentException("Need a region");
+		if (region.numDimensions() != extents.length)
+			throw new IllegalArgumentException("Incorrect number of dimensions");
+		for (int i = 0; i < extents.length; i++) {
+			if (region.getMin(i) < 0 || region.getMax(i) > extents[i])
+				throw new IllegalArgumentException("Region is not inside the state");
+		}
+	}
+
+	/**
+	 * Private helper method that wraps each axis of p that is set to wrap, and
+	 * turns the result into a row-major linear index into the cells.
+	 * 
+	 * @param p the point to find the index of
+	 * @return the index of p, or -1 if p is out of bounds or has the wrong
+	 *         number of dimensions
+	 */
+	private long indexOf(T p)
 	{
-		T ret = (T) p.copy();
-		for (int i = 0; i < ret.numDimensions(); i++) {
-			if (wraps[i]) {
-				int mod = ret.getCoord(i) % size.getCoord(i);
-				mod = (mod < 0) ? mod + size.getCoord(i) : mod;
-				ret.setCoord(i, mod);
+		if (p.numDimensions() != strides.length) return -1;
+
+		long index = 0;
+		for (int i = 0; i < strides.length; i++) {
+			int c = p.getCoord(i);
+			int n = extents[i];
+			if (wraps[i] && n > 0) {
+				c %= n;
+				if (c < 0) c += n;
 			}
+			if (c < 0 || c >= n) return -1;
+			index += c * strides[i];
 		}
-		return ret;
+		return index;
+	}
+
+	/**
+	 * Private helper method that sets size, and the strides and cell count
+	 * derived from it.
+	 * 
+	 * @param size the new size
+	 */
+	private void setBounds(T size)
+	{
+		long[] strides = new long[size.numDimensions()];
+		int[] extents = new int[strides.length];
+		long n = 1;
+		for (int i = 0; i < strides.length; i++) {
+			strides[i] = n;
+			extents[i] = size.getCoord(i);
+			n *= extents[i];
+		}
+
+		this.size = size;
+		this.strides = strides;
+		this.extents = extents;
+		this.numCells = n;
+	}
+
+	/**
+	 * Private helper method that makes an empty store of the kind the storage
+	 * setting asks for.
+	 * 
+	 * @param population the number of non-zero cells about to be stored
+	 * @return an empty store for this State's cells
+	 */
+	private CellStore newStore(long population)
+	{
+		if (storage == Storage.MAPPED) {
+			if (mappedFile == null)
+				throw new IllegalArgumentException("Mapped storage needs a file");
+
+			// The file only has two slots, so the spare can't be kept
+			MappedCellStore store = mappedFile.other(cells);
+			store.clear();
+			spare = null;
+			return store;
+		}
+
+		boolean dense;
+		if (storage == Storage.DENSE) {
+			if (numCells > DenseCellStore.MAX_CELLS)
+				throw new IllegalArgumentException("Too many cells for dense storage");
+			dense = true;
+		}
+		else if (storage == Storage.SPARSE)
+			dense = false;
+		else
+			dense = autoDense(population);
+
+		if (dense)
+			return DenseCellStore.create(numCells, numStates);
+		else
+			return new SparseCellStore(numCells);
+	}
+
+	/**
+	 * Private helper method that hashes one cell for getHash, mixing its index
+	 * and state with the finalizer of MurmurHash3 so that nearby cells give
+	 * unrelated hashes.
+	 * 
+	 * @param index the linear index of the cell
+	 * @param state the state of the cell
+	 * @return the hash of the cell, which is 0 for state 0
+	 */
+	private static long cellHash(long index, int state)
+	{
+		if (state == 0) return 0;
+
+		long h = index * 0x9E3779B97F4A7C15L + state * 0xC2B2AE3D27D4EB4FL;
+		h ^= h >>> 33;
+		h *= 0xFF51AFD7ED558CCDL;
+		h ^= h >>> 33;
+		h *= 0xC4CEB9FE1A85EC53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	/**
+	 * Private helper method that decides whether AUTO storage should be dense
+	 * for a given number of non-zero cells.
+	 * 
+	 * @param population the number of non-zero cells
+	 * @return true if the cells should be stored densely
+	 */
+	private boolean autoDense(long population)
+	{
+		if (numCells > DenseCellStore.MAX_CELLS) return false;
+
+		if (cells != null && cells.isDense() && numCells > AUTO_DENSE_CELLS)
+			return population * AUTO_SPARSE_RATIO >= numCells;
+
+		return numCells <= AUTO_DENSE_CELLS
+				|| population * AUTO_DENSE_RATIO >= numCells;
 	}
 
 	private boolean isInBounds(T pt)
@@ -0,0 +1,471 @@
+package framework.lib;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.zip.CRC32;
+
+
+/**
+ * Saves a State to a compact binary snapshot, and restores it, streaming the
+ * cells through an NIO channel so that neither side needs more memory than
+ * the State itself. A restored State is equal to the original in every
+ * observable way: size, number of states, wraps, storage, generation and
+ * the state of every cell. <br>
+ * <br>
+ * A snapshot is a header, the cells, and a CRC32 of everything before it. All
+ * numbers are big-endian. The header is:
+ *
+ * <pre>
+ * int      MAGIC
+ * int      VERSION
+ * int      number of dimensions
+ * int[]    the size along each dimension
+ * int      number of states
+ * byte[]   1 if the axis wraps, for each dimension
+ * byte     the Storage, by ordinal
+ * long     the generation (from VERSION 2 on)
+ * </pre>
+ *
+ * followed by the number of non-zero cells as a long, and a byte giving the
+ * encoding of the cells, BITS or RUNS. <br>
+ * <br>
+ * BITS is only used for two state worlds with many live cells: one bit per
+ * cell in row-major order, 64 to a long, the lowest bit first. Otherwise the
+ * cells are written as RUNS of consecutive cells in the same non-zero state,
+ * in increasing order. Each run is three unsigned LEB128 varints: one more
+ * than the number of zero cells skipped since the end of the last run, the
+ * length of the run, and its state. A 0 in place of the first varint ends the
+ * list, so an empty world of any size takes a single byte.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public final class StateSnapshot
+{
+
+	static final int	MAGIC		= 0x4341534E;
+	static final int	VERSION		= 2;
+
+	static final byte	BITS		= 0;
+	static final byte	RUNS		= 1;
+
+	private static final int	BUFFER_SIZE	= 1 << 16;
+
+	/**
+	 * Buffers writes to a channel, keeping a CRC of everything written.
+	 */
+	static final class Writer
+	{
+		private final WritableByteChannel	out;
+		private final ByteBuffer			buf	= ByteBuffer.allocate(BUFFER_SIZE);
+		private final CRC32					crc	= new CRC32();
+
+		Writer(WritableByteChannel out)
+		{
+			this.out = out;
+		}
+
+		private void ensure(int n) throws IOException
+		{
+			if (buf.remaining() < n) flush();
+		}
+
+		void putByte(int b) throws IOException
+		{
+			ensure(1);
+			buf.put((byte) b);
+		}
+
+		void putInt(int i) throws IOException
+		{
+			ensure(4);
+			buf.putInt(i);
+		}
+
+		void putLong(long l) throws IOException
+		{
+			ensure(8);
+			buf.putLong(l);
+		}
+
+		void putVarLong(long l) throws IOException
+		{
+			ensure(10);
+			while ((l & ~0x7FL) != 0) {
+				buf.put((byte) (l & 0x7F | 0x80));
+				l >>>= 7;
+			}
+			buf.put((byte) l);
+		}
+
+		void flush() throws IOException
+		{
+			buf.flip();
+			crc.update(buf.array(), 0, buf.limit());
+			while (buf.hasRemaining())
+				out.write(buf);
+			buf.clear();
+		}
+
+		/**
+		 * Writes the CRC of everything so far, and flushes.
+		 */
+		void finish() throws IOException
+		{
+			flush();
+			buf.putInt((int) crc.getValue());
+			buf.flip();
+			while (buf.hasRemaining())
+				out.write(buf);
+			buf.clear();
+		}
+	}
+
+	/**
+	 * Buffers reads from a channel, keeping a CRC of everything read.
+	 */
+	static final class Reader
+	{
+		private final ReadableByteChannel	in;
+		private final ByteBuffer			buf	= ByteBuffer.allocate(BUFFER_SIZE);
+		private final CRC32					crc	= new CRC32();
+		private int							crcMark;
+
+		Reader(ReadableByteChannel in)
+		{
+			this.in = in;
+			buf.flip();
+		}
+
+		private void ensure(int n) throws IOException
+		{
+			if (buf.remaining() >= n) return;
+
+			updateCrc();
+			buf.compact();
+			while (buf.position() < n) {
+				if (in.read(buf) < 0) throw new EOFException("Snapshot is truncated");
+			}
+			buf.flip();
+			crcMark = 0;
+		}
+
+		private void updateCrc()
+		{
+			crc.update(buf.array(), crcMark, buf.position() - crcMark);
+			crcMark = buf.position();
+		}
+
+		int getByte() throws IOException
+		{
+			ensure(1);
+			return buf.get() & 0xFF;
+		}
+
+		int getInt() throws IOException
+		{
+			ensure(4);
+			return buf.getInt();
+		}
+
+		long getLong() throws IOException
+		{
+			ensure(8);
+			return buf.getLong();
+		}
+
+		long getVarLong() throws IOException
+		{
+			long l = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				int b = getByte();
+				l |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) return l;
+			}
+			throw new IOException("Snapshot is corrupt");
+		}
+
+		/**
+		 * Reads the CRC at the end of a snapshot and checks it against the
+		 * CRC of everything read before it.
+		 */
+		void finish() throws IOException
+		{
+			updateCrc();
+			int expected = (int) crc.getValue();
+			if (getInt() != expected) throw new IOException("Snapshot is corrupt");
+		}
+	}
+
+	private StateSnapshot()
+	{
+	}
+
+	/**
+	 * Writes a snapshot of a State to a channel. The channel is left open.
+	 *
+	 * @param state the State to save
+	 * @param out the channel to write to
+	 * @throws IOException if the channel can't be written to
+	 */
+	public static void write(State<?> state, WritableByteChannel out)
+			throws IOException
+	{
+		Writer w = new Writer(out);
+		writeHeader(state, w);
+		writeCells(state, w);
+		w.finish();
+	}
+
+	/**
+	 * Reads a snapshot from a channel. The channel is left open, but may have
+	 * been read past the end of the snapshot.
+	 *
+	 * @param in the channel to read from
+	 * @param origin any point of the type the State holds, such as the origin
+	 *            of the rule it will be stepped with
+	 * @return the State the snapshot was taken of
+	 * @throws IOException if the channel can't be read from, or doesn't hold
+	 *             a valid snapshot
+	 * @throws IllegalArgumentException if the snapshot is of a State with a
+	 *             different number of dimensions than origin
+	 */
+	public static <T extends Point> State<T> read(ReadableByteChannel in,
+			T origin) throws IOException
+	{
+		Reader r = new Reader(in);
+		State<T> state = readHeader(r, origin);
+		readCells(state, r);
+		r.finish();
+		return state;
+	}
+
+	/**
+	 * Saves a State to a file, replacing anything already there.
+	 *
+	 * @param state the State to save
+	 * @param file the file to write
+	 * @throws IOException if the file can't be written
+	 */
+	public static void save(State<?> state, File file) throws IOException
+	{
+		FileOutputStream out = new FileOutputStream(file);
+		try {
+			write(state, out.getChannel());
+		}
+		finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Loads a State from a file written by save.
+	 *
+	 * @param file the file to read
+	 * @param origin any point of the type the State holds
+	 * @return the saved State
+	 * @throws IOException if the file can't be read or isn't a valid snapshot
+	 */
+	public static <T extends Point> State<T> load(File file, T origin)
+			throws IOException
+	{
+		FileInputStream in = new FileInputStream(file);
+		try {
+			return read(in.getChannel(), origin);
+		}
+		finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the header, up to and including the generation.
+	 */
+	static void writeHeader(State<?> state, Writer w) throws IOException
+	{
+		Point size = state.getSize();
+		boolean[] wraps = state.getWraps();
+
+		w.putInt(MAGIC);
+		w.putInt(VERSION);
+		w.putInt(size.numDimensions());
+		for (int i = 0; i < size.numDimensions(); i++)
+			w.putInt(size.getCoord(i));
+		w.putInt(state.getNumStates());
+		for (boolean wrap : wraps)
+			w.putByte(wrap ? 1 : 0);
+		w.putByte(state.getStorage().ordinal());
+		w.putLong(state.getGeneration());
+	}
+
+	/**
+	 * Writes the population, the encoding byte and the cells.
+	 */
+	static void writeCells(State<?> state, Writer w) throws IOException
+	{
+		long numCells = numCells(state.getSize());
+		long population = state.getPopulation();
+		CellStore.Cursor c = state.liveCellsInOrder();
+		w.putLong(population);
+
+		if (state.getNumStates() == 2 && population * 24 > numCells) {
+			w.putByte(BITS);
+			long word = 0;
+			long wordIndex = 0;
+			while (c.next()) {
+				long index = c.index();
+				for (; wordIndex < index >>> 6; wordIndex++) {
+					w.putLong(word);
+					word = 0;
+				}
+				word |= 1L << (index & 63);
+			}
+			for (; wordIndex < (numCells + 63) >>> 6; wordIndex++) {
+				w.putLong(word);
+				word = 0;
+			}
+		}
+		else {
+			w.putByte(RUNS);
+			long end = 0;
+			long start = 0, length = 0;
+			int runState = 0;
+			while (c.next()) {
+				long index = c.index();
+				int s = c.state();
+				if (s == runState && index == start + length) {
+					length++;
+					continue;
+				}
+				if (runState != 0) {
+					writeRun(w, start - end, length, runState);
+					end = start + length;
+				}
+				start = index;
+				length = 1;
+				runState = s;
+			}
+			if (runState != 0) writeRun(w, start - end, length, runState);
+			w.putVarLong(0);
+		}
+	}
+
+	private static void writeRun(Writer w, long gap, long length, int state)
+			throws IOException
+	{
+		w.putVarLong(gap + 1);
+		w.putVarLong(length);
+		w.putVarLong(state);
+	}
+
+	/**
+	 * Reads the header, up to and including the generation, and makes an
+	 * empty State to match it. Version 1 snapshots have no generation, so
+	 * they start from 0.
+	 */
+	@SuppressWarnings("unchecked")
+	static <T extends Point> State<T> readHeader(Reader r, T origin)
+			throws IOException
+	{
+		if (r.getInt() != MAGIC) throw new IOException("Not a snapshot");
+		int version = r.getInt();
+		if (version < 1 || version > VERSION)
+			throw new IOException("Unsupported snapshot version " + version);
+
+		int dims = r.getInt();
+		if (dims != origin.numDimensions())
+			throw new IllegalArgumentException("Snapshot has " + dims + " dimensions");
+		T size = (T) origin.copy();
+		for (int i = 0; i < dims; i++) {
+			int n = r.getInt();
+			if (n < 0) throw new IOException("Snapshot is corrupt");
+			size.setCoord(i, n);
+		}
+		int numStates = r.getInt();
+		if (numStates <= 0) throw new IOException("Snapshot is corrupt");
+		boolean[] wraps = new boolean[dims];
+		for (int i = 0; i < dims; i++)
+			wraps[i] = r.getByte() != 0;
+		int ordinal = r.getByte();
+		State.Storage[] storages = State.Storage.values();
+		if (ordinal < 0 || ordinal >= storages.length)
+			throw new IOException("Snapshot is corrupt");
+
+		// A mapped State needs its own file, so it comes back in memory
+		State.Storage storage = storages[ordinal];
+		if (storage == State.Storage.MAPPED) storage = State.Storage.AUTO;
+
+		long generation = version >= 2 ? r.getLong() : 0;
+		if (generation < 0) throw new IOException("Snapshot is corrupt");
+
+		State<T> state = new State<T>(size, numStates, wraps, null, storage);
+		state.setGeneration(generation);
+		return state;
+	}
+
+	/**
+	 * Reads the population, the encoding byte and the cells into a State,
+	 * replacing its cells, and checks that there were as many cells as the
+	 * population said.
+	 */
+	static void readCells(State<?> state, Reader r) throws IOException
+	{
+		long numCells = numCells(state.getSize());
+		int numStates = state.getNumStates();
+		long expected = r.getLong();
+		if (expected < 0 || expected > numCells)
+			throw new IOException("Snapshot is corrupt");
+		state.clearForLoad(expected);
+
+		long population = 0;
+		int encoding = r.getByte();
+		if (encoding == BITS) {
+			if (numStates < 2) throw new IOException("Snapshot is corrupt");
+			long words = (numCells + 63) >>> 6;
+			for (long w = 0; w < words; w++) {
+				long word = r.getLong();
+				while (word != 0) {
+					long index = (w << 6) + Long.numberOfTrailingZeros(word);
+					if (index >= numCells) throw new IOException("Snapshot is corrupt");
+					state.setCell(index, 1);
+					population++;
+					word &= word - 1;
+				}
+			}
+		}
+		else if (encoding == RUNS) {
+			long end = 0;
+			while (true) {
+				long gap = r.getVarLong();
+				if (gap == 0) break;
+				long start = end + gap - 1;
+				long length = r.getVarLong();
+				long s = r.getVarLong();
+				if (gap < 0 || length <= 0 || start < end
+						|| length > numCells - start || s <= 0 || s >= numStates)
+					throw new IOException("Snapshot is corrupt");
+				for (long i = start; i < start + length; i++)
+					state.setCell(i, (int) s);
+				population += length;
+				end = start + length;
+			}
+		}
+		else
+			throw new IOException("Snapshot is corrupt");
+
+		if (population != expected) throw new IOException("Snapshot is corrupt");
+	}
+
+	private static long numCells(Point size)
+	{
+		long n = 1;
+		for (int i = 0; i < size.numDimensions(); i++)
+			n *= size.getCoord(i);
+		return n;
+	}
+}
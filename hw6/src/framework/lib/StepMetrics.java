@@ -0,0 +1,101 @@
+package framework.lib;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+
+/**
+ * What one step of a State took and did, as handed to a StepListener.
+ * 
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public final class StepMetrics
+{
+
+	private static final ThreadMXBean	THREADS	= ManagementFactory.getThreadMXBean();
+
+	private final long					generation;
+	private final long					stepNanos;
+	private final long					cellsEvaluated;
+	private final long					population;
+	private final long					allocatedBytes;
+
+	StepMetrics(long generation, long stepNanos, long cellsEvaluated,
+			long population, long allocatedBytes)
+	{
+		this.generation = generation;
+		this.stepNanos = stepNanos;
+		this.cellsEvaluated = cellsEvaluated;
+		this.population = population;
+		this.allocatedBytes = allocatedBytes;
+	}
+
+	/**
+	 * @return the generation the step produced
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * @return how long the step took, in nanoseconds
+	 */
+	public long getStepNanos()
+	{
+		return stepNanos;
+	}
+
+	/**
+	 * @return the number of cells the rule was evaluated for. A quiescent
+	 *         rule is only evaluated near cells that changed, so this can be
+	 *         far less than the size of the State.
+	 */
+	public long getCellsEvaluated()
+	{
+		return cellsEvaluated;
+	}
+
+	/**
+	 * @return the number of non-zero cells after the step
+	 */
+	public long getPopulation()
+	{
+		return population;
+	}
+
+	/**
+	 * @return an estimate of the bytes allocated on the heap by the thread
+	 *         that stepped, during the step, or -1 if the JVM can't tell.
+	 *         Allocations on the threads of a parallel step aren't counted.
+	 */
+	public long getAllocatedBytes()
+	{
+		return allocatedBytes;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("generation %d: %.3f ms, %d cells evaluated, population %d%s",
+				generation, stepNanos / 1e6, cellsEvaluated, population,
+				allocatedBytes >= 0 ? ", " + allocatedBytes + " bytes allocated" : "");
+	}
+
+	/**
+	 * Gets the number of bytes the current thread has allocated so far, if
+	 * the JVM keeps count.
+	 * 
+	 * @return the count, or -1 if it isn't available
+	 */
+	static long allocatedBytes()
+	{
+		if (THREADS instanceof com.sun.management.ThreadMXBean) {
+			com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+			if (threads.isThreadAllocatedMemorySupported()
+					&& threads.isThreadAllocatedMemoryEnabled())
+				return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
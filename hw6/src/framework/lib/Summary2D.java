@@ -0,0 +1,323 @@
+package framework.lib;
+
+import java.util.Arrays;
+import java.util.List;
+
+
+/**
+ * A multi-resolution summary of a 2D State, for drawing a State that is much
+ * bigger than the screen. Level k splits the State into blocks of 2^k by 2^k
+ * cells, and for each block gives the highest state in it and how many of its
+ * cells are non-zero, so a Viewport that is zoomed out can color one pixel
+ * per block without looking at the cells. Level 0 is the cells themselves,
+ * and the top level is a single block holding the whole State. <br>
+ * <br>
+ * The levels from FIRST_STORED up are kept in arrays, which together take
+ * about a twentieth of the memory of a dense State of ints. The lower levels
+ * are worked out from the cells when asked for, which takes at most a few
+ * cells per block. <br>
+ * <br>
+ * The summary keeps track of changes to the State (see DirtyRegions), and
+ * {@link #update()} only works out the blocks that have changed again, so
+ * keeping it up to date costs about as much as the change. Like the State,
+ * it is not safe to use from several threads at once.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+public final class Summary2D
+{
+
+	/**
+	 * The lowest level that is kept in arrays rather than worked out.
+	 */
+	public static final int			FIRST_STORED	= 3;
+
+	private final State<Point2D>	state;
+	private final DirtyRegions<Point2D>	changes;
+	private int						width;
+	private int						height;
+	private int						numLevels;
+	private int[]					widths;
+	private int[]					heights;
+	private int[][]					counts;
+	private int[][]					maxes;
+
+	/**
+	 * Creates a summary of a State, and starts keeping track of its changes.
+	 * Call close once it is no longer needed, so the State stops telling it
+	 * about them.
+	 *
+	 * @param state the State to summarize
+	 * @throws IllegalArgumentException if state is null
+	 */
+	public Summary2D(State<Point2D> state)
+	{
+		if (state == null)
+			throw new IllegalArgumentException("Need a state to summarize");
+
+		this.state = state;
+		this.changes = state.trackChanges();
+		update();
+	}
+
+	/**
+	 * Brings the summary up to date with the State, working out again the
+	 * blocks holding cells that changed since the last update.
+	 */
+	public void update()
+	{
+		Point2D size = state.getSize();
+		if (widths == null || size.getX() != width || size.getY() != height)
+			allocate(size.getX(), size.getY());
+
+		List<Region<Point2D>> changed = changes.take();
+		if (changed.isEmpty() || counts.length <= FIRST_STORED) return;
+
+		for (int k = 0; k < changed.size(); k++) {
+			if (changed.get(k).numCells() == (long) width * height) {
+				rebuild();
+				return;
+			}
+		}
+
+		for (int k = 0; k < changed.size(); k++) {
+			Region<Point2D> r = changed.get(k);
+			if (r.numCells() == 0) continue;
+
+			int x0 = r.getMin(0) >> FIRST_STORED;
+			int y0 = r.getMin(1) >> FIRST_STORED;
+			int x1 = (r.getMax(0) - 1) >> FIRST_STORED;
+			int y1 = (r.getMax(1) - 1) >> FIRST_STORED;
+			for (int y = y0; y <= y1; y++) {
+				for (int x = x0; x <= x1; x++)
+					summarizeCells(x, y);
+			}
+
+			for (int level = FIRST_STORED + 1; level < numLevels; level++) {
+				x0 >>= 1;
+				y0 >>= 1;
+				x1 >>= 1;
+				y1 >>= 1;
+				for (int y = y0; y <= y1; y++) {
+					for (int x = x0; x <= x1; x++)
+						summarizeBlocks(level, x, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Stops keeping track of changes to the State. The summary can't be
+	 * updated after this.
+	 */
+	public void close()
+	{
+		state.stopTrackingChanges(changes);
+	}
+
+	/**
+	 * Gets the number of levels, from level 0 for single cells to the level
+	 * whose one block covers the whole State.
+	 *
+	 * @return the number of levels
+	 */
+	public int numLevels()
+	{
+		return numLevels;
+	}
+
+	/**
+	 * Gets the number of blocks across a level.
+	 *
+	 * @param level the level
+	 * @return the width of the State in blocks of that level, rounded up
+	 */
+	public int getWidth(int level)
+	{
+		checkLevel(level);
+		return widths[level];
+	}
+
+	/**
+	 * Gets the number of blocks down a level.
+	 *
+	 * @param level the level
+	 * @return the height of the State in blocks of that level, rounded up
+	 */
+	public int getHeight(int level)
+	{
+		checkLevel(level);
+		return heights[level];
+	}
+
+	/**
+	 * Gets the highest state of the cells in a block.
+	 *
+	 * @param level the level of the block
+	 * @param x the column of the block
+	 * @param y the row of the block
+	 * @return the highest state in the block, the state of the cell at level
+	 *         0, or 0 for a block outside the State
+	 */
+	public int getMaxState(int level, int x, int y)
+	{
+		checkLevel(level);
+		if (x < 0 || y < 0 || x >= widths[level] || y >= heights[level]) return 0;
+
+		if (level == 0) return state.getCell((long) y * width + x);
+		if (level >= FIRST_STORED) return maxes[level][y * widths[level] + x];
+
+		int max = 0;
+		int xEnd = Math.min(width, (x + 1) << level);
+		int yEnd = Math.min(height, (y + 1) << level);
+		for (int cy = y << level; cy < yEnd; cy++) {
+			for (int cx = x << level; cx < xEnd; cx++)
+				max = Math.max(max, state.getCell((long) cy * width + cx));
+		}
+		return max;
+	}
+
+	/**
+	 * Gets the number of non-zero cells in a block.
+	 *
+	 * @param level the level of the block
+	 * @param x the column of the block
+	 * @param y the row of the block
+	 * @return the number of non-zero cells, at most Integer.MAX_VALUE, or 0
+	 *         for a block outside the State
+	 */
+	public int getCount(int level, int x, int y)
+	{
+		checkLevel(level);
+		if (x < 0 || y < 0 || x >= widths[level] || y >= heights[level]) return 0;
+
+		if (level >= FIRST_STORED) return counts[level][y * widths[level] + x];
+
+		int count = 0;
+		int xEnd = Math.min(width, (x + 1) << level);
+		int yEnd = Math.min(height, (y + 1) << level);
+		for (int cy = y << level; cy < yEnd; cy++) {
+			for (int cx = x << level; cx < xEnd; cx++) {
+				if (state.getCell((long) cy * width + cx) != 0) count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Private helper method that makes the arrays for a State of a new size,
+	 * and marks everything to be worked out.
+	 */
+	private void allocate(int width, int height)
+	{
+		this.width = width;
+		this.height = height;
+
+		numLevels = 1;
+		while ((1L << (numLevels - 1)) < Math.max(width, height))
+			numLevels++;
+
+		widths = new int[numLevels];
+		heights = new int[numLevels];
+		counts = new int[numLevels][];
+		maxes = new int[numLevels][];
+		for (int level = 0; level < numLevels; level++) {
+			widths[level] = (int) ((width + (1L << level) - 1) >> level);
+			heights[level] = (int) ((height + (1L << level) - 1) >> level);
+			if (level >= FIRST_STORED) {
+				counts[level] = new int[widths[level] * heights[level]];
+				maxes[level] = new int[counts[level].length];
+			}
+		}
+		rebuild();
+		changes.take();
+	}
+
+	/**
+	 * Private helper method that works out every stored block, visiting only
+	 * the non-zero cells.
+	 */
+	private void rebuild()
+	{
+		if (counts.length <= FIRST_STORED) return;
+
+		int[] count = counts[FIRST_STORED];
+		int[] max = maxes[FIRST_STORED];
+		int w = widths[FIRST_STORED];
+		Arrays.fill(count, 0);
+		Arrays.fill(max, 0);
+
+		CellStore.Cursor c = state.liveCells();
+		while (c.next()) {
+			long index = c.index();
+			int x = (int) (index % width) >> FIRST_STORED;
+			int y = (int) (index / width) >> FIRST_STORED;
+			int b = y * w + x;
+			count[b]++;
+			if (c.state() > max[b]) max[b] = c.state();
+		}
+
+		for (int level = FIRST_STORED + 1; level < numLevels; level++) {
+			for (int y = 0; y < heights[level]; y++) {
+				for (int x = 0; x < widths[level]; x++)
+					summarizeBlocks(level, x, y);
+			}
+		}
+	}
+
+	/**
+	 * Private helper method that works out a block of the first stored level
+	 * from its cells.
+	 */
+	private void summarizeCells(int x, int y)
+	{
+		int count = 0, max = 0;
+		int xEnd = Math.min(width, (x + 1) << FIRST_STORED);
+		int yEnd = Math.min(height, (y + 1) << FIRST_STORED);
+		for (int cy = y << FIRST_STORED; cy < yEnd; cy++) {
+			long row = (long) cy * width;
+			for (int cx = x << FIRST_STORED; cx < xEnd; cx++) {
+				int s = state.getCell(row + cx);
+				if (s != 0) {
+					count++;
+					if (s > max) max = s;
+				}
+			}
+		}
+
+		int b = y * widths[FIRST_STORED] + x;
+		counts[FIRST_STORED][b] = count;
+		maxes[FIRST_STORED][b] = max;
+	}
+
+	/**
+	 * Private helper method that works out a block from the up to four blocks
+	 * of the level below it.
+	 */
+	private void summarizeBlocks(int level, int x, int y)
+	{
+		int[] count = counts[level - 1];
+		int[] max = maxes[level - 1];
+		int w = widths[level - 1];
+		int h = heights[level - 1];
+
+		long c = 0;
+		int m = 0;
+		for (int cy = 2 * y; cy < Math.min(h, 2 * y + 2); cy++) {
+			for (int cx = 2 * x; cx < Math.min(w, 2 * x + 2); cx++) {
+				c += count[cy * w + cx];
+				m = Math.max(m, max[cy * w + cx]);
+			}
+		}
+
+		int b = y * widths[level] + x;
+		counts[level][b] = (int) Math.min(c, Integer.MAX_VALUE);
+		maxes[level][b] = m;
+	}
+
+	private void checkLevel(int level)
+	{
+		if (level < 0 || level >= numLevels)
+			throw new IllegalArgumentException("No such level");
+	}
+}
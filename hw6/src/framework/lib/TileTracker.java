@@ -0,0 +1,269 @@
+package framework.lib;
+
+import java.util.Arrays;
+
+
+/**
+ * Splits the cells of a State into square tiles, TILE cells on a side, and
+ * keeps track of which tiles are dirty: changed in the last step, or modified
+ * from outside since. A cell can only change in the next step if something in
+ * its neighborhood changed in the last one, so only the tiles within a
+ * neighborhood radius of a dirty tile (its halo) need to be stepped. <br>
+ * <br>
+ * Tiles are numbered like cells, in row-major order with the first axis
+ * varying fastest. Tiles at the far end of an axis can be smaller than TILE
+ * when the size of the axis isn't a multiple of it.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ */
+final class TileTracker
+{
+
+	/**
+	 * The length of a side of a tile, in cells.
+	 */
+	static final int		TILE	= 16;
+
+	private final int[]		extents;
+	private final long[]	strides;
+	private final int[]		tiles;
+	private final int[]		tileStrides;
+	private final int[]		halo;
+	private final boolean[]	wraps;
+	final int				radius;
+
+	private boolean[]		dirty;
+	private boolean[]		changed;
+	private final boolean[]	active;
+	private final int[]		activeList;
+	private int				numActive;
+
+	/**
+	 * @param extents the size of the State along each axis
+	 * @param strides the stride of each axis in the State's linear index
+	 * @param wraps which axes wrap around
+	 * @param radius the radius of the neighborhood of the rule being stepped
+	 */
+	TileTracker(int[] extents, long[] strides, boolean[] wraps, int radius)
+	{
+		this.extents = extents;
+		this.strides = strides;
+		this.wraps = wraps.clone();
+		this.radius = radius;
+
+		int dims = extents.length;
+		tiles = new int[dims];
+		tileStrides = new int[dims];
+		halo = new int[dims];
+		int n = 1;
+		for (int i = 0; i < dims; i++) {
+			tiles[i] = (extents[i] + TILE - 1) / TILE;
+			tileStrides[i] = n;
+			n *= tiles[i];
+
+			// A partial tile at the end of a wrapping axis can let a
+			// neighborhood reach one tile further across the seam
+			halo[i] = (radius + TILE - 1) / TILE;
+			if (wraps[i] && extents[i] % TILE != 0) halo[i]++;
+		}
+
+		dirty = new boolean[n];
+		changed = new boolean[n];
+		active = new boolean[n];
+		activeList = new int[n];
+	}
+
+	/**
+	 * @return the number of tiles
+	 */
+	int numTiles()
+	{
+		return dirty.length;
+	}
+
+	/**
+	 * Checks whether this tracker was built for the given geometry, so it can
+	 * be kept.
+	 */
+	boolean matches(int[] extents, boolean[] wraps, int radius)
+	{
+		return this.radius == radius && Arrays.equals(this.extents, extents)
+				&& Arrays.equals(this.wraps, wraps);
+	}
+
+	/**
+	 * @param index the linear index of a cell
+	 * @return the number of the tile holding the cell
+	 */
+	int tileOf(long index)
+	{
+		int tile = 0;
+		for (int i = 0; i < extents.length; i++) {
+			int c = (int) (index / strides[i] % extents[i]);
+			tile += c / TILE * tileStrides[i];
+		}
+		return tile;
+	}
+
+	/**
+	 * Marks the tile holding a cell as dirty.
+	 *
+	 * @param index the linear index of the cell
+	 */
+	void markDirty(long index)
+	{
+		dirty[tileOf(index)] = true;
+	}
+
+	/**
+	 * Marks a tile as changed in the step in progress.
+	 */
+	void markChanged(int tile)
+	{
+		changed[tile] = true;
+	}
+
+	/**
+	 * @return true if the tile changed in the last step, or was modified since
+	 */
+	boolean isDirty(int tile)
+	{
+		return dirty[tile];
+	}
+
+	/**
+	 * Forgets every dirty tile, and any changes from a step that didn't finish.
+	 */
+	void clearDirty()
+	{
+		Arrays.fill(dirty, false);
+		Arrays.fill(changed, false);
+	}
+
+	/**
+	 * Finds every tile within the halo of a dirty tile.
+	 *
+	 * @return the number of active tiles, which are listed in
+	 *         {@code activeList()}
+	 */
+	int findActive()
+	{
+		for (int i = 0; i < numActive; i++)
+			active[activeList[i]] = false;
+		numActive = 0;
+
+		int dims = tiles.length;
+		int[] t = new int[dims];
+		int[] d = new int[dims];
+		for (int tile = 0; tile < dirty.length; tile++) {
+			if (!dirty[tile]) continue;
+
+			for (int i = 0; i < dims; i++) {
+				t[i] = tile / tileStrides[i] % tiles[i];
+				d[i] = -halo[i];
+			}
+
+			// Count through every offset in the halo box
+			while (true) {
+				int neighbor = 0;
+				for (int i = 0; i < dims && neighbor >= 0; i++) {
+					int c = t[i] + d[i];
+					if (wraps[i]) c = ((c % tiles[i]) + tiles[i]) % tiles[i];
+					if (c < 0 || c >= tiles[i])
+						neighbor = -1;
+					else
+						neighbor += c * tileStrides[i];
+				}
+				if (neighbor >= 0 && !active[neighbor]) {
+					active[neighbor] = true;
+					activeList[numActive++] = neighbor;
+				}
+
+				int i = 0;
+				while (i < dims && ++d[i] > halo[i]) {
+					d[i] = -halo[i];
+					i++;
+				}
+				if (i == dims) break;
+			}
+		}
+		return numActive;
+	}
+
+	/**
+	 * @return the tiles found by the last call to findActive, in its first
+	 *         numActive entries
+	 */
+	int[] activeList()
+	{
+		return activeList;
+	}
+
+	/**
+	 * Ends a step: the tiles that changed during it become the dirty tiles.
+	 */
+	void finishStep()
+	{
+		boolean[] t = dirty;
+		dirty = changed;
+		changed = t;
+		Arrays.fill(changed, false);
+	}
+
+	/**
+	 * Gets the box of cells a tile covers.
+	 *
+	 * @param tile a tile number
+	 * @param min filled with the lowest coordinate of the tile on each axis
+	 * @param max filled with the coordinate just past the highest on each
+	 *            axis
+	 */
+	void tileBounds(int tile, int[] min, int[] max)
+	{
+		for (int i = 0; i < tiles.length; i++) {
+			int t = tile / tileStrides[i] % tiles[i];
+			min[i] = t * TILE;
+			max[i] = Math.min(extents[i], min[i] + TILE);
+		}
+	}
+
+	/**
+	 * @param tile a tile number
+	 * @return the number of cells in each row of the tile along the first axis
+	 */
+	int rowLength(int tile)
+	{
+		return Math.min(TILE, extents[0] - tile % tiles[0] * TILE);
+	}
+
+	/**
+	 * @param tile a tile number
+	 * @return the number of rows along the first axis in the tile
+	 */
+	int numRows(int tile)
+	{
+		int rows = 1;
+		for (int i = 1; i < tiles.length; i++) {
+			int t = tile / tileStrides[i] % tiles[i];
+			rows *= Math.min(TILE, extents[i] - t * TILE);
+		}
+		return rows;
+	}
+
+	/**
+	 * @param tile a tile number
+	 * @param row a row number in [0, numRows(tile))
+	 * @return the linear index of the first cell of the row
+	 */
+	long rowStart(int tile, int row)
+	{
+		long index = (long) (tile % tiles[0]) * TILE * strides[0];
+		for (int i = 1; i < tiles.length; i++) {
+			int t = tile / tileStrides[i] % tiles[i];
+			int h = Math.min(TILE, extents[i] - t * TILE);
+			index += (long) (t * TILE + row % h) * strides[i];
+			row /= h;
+		}
+		return index;
+	}
+}
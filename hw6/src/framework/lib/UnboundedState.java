@@ -0,0 +1,644 @@
+package framework.lib;
+
+import framework.interfaces.CellVisitor;
+import framework.interfaces.Rule;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+
+/**
+ * A 1 or 2 dimensional world with no edges, for patterns like guns and
+ * spaceships that would sooner or later run into the edge of a State. Cells
+ * can be anywhere a Point can reach. <br>
+ * <br>
+ * The plane is cut into tiles of a fixed size (256 cells in 1D, 16 by 16 in
+ * 2D), kept in a hash map keyed by the tile's packed coordinates. A tile only
+ * exists while it has a non-zero cell: tiles are made as activity reaches
+ * them, and dropped as soon as they are all zero. <br>
+ * <br>
+ * A step only works out again the tiles within reach of a tile that changed
+ * in the last step, or that was set since. Every other tile would come out the
+ * same, so it is kept as it is, and the cost of a step follows the part of the
+ * world that is changing rather than its bounding box. As with HashLife, the
+ * rule must be quiescent, meaning a cell whose whole neighborhood is 0 stays
+ * 0, since otherwise the infinite plane would fill up in a single step.
+ *
+ * @author Kunal Desai, James Grugett, Prasanth Somasundar
+ * @param <T> Point1D or Point2D.
+ */
+public class UnboundedState<T extends Point>
+{
+
+	/**
+	 * The cells of one tile, first axis varying fastest.
+	 */
+	private static final class Tile
+	{
+		final int[]	cells;
+		int			population;
+
+		Tile(int[] cells, int population)
+		{
+			this.cells = cells;
+			this.population = population;
+		}
+	}
+
+	/**
+	 * A neighborhood whose cells are read out of the window of cells that
+	 * stepTile gathers around a tile.
+	 */
+	private class Hood implements Neighborhood<T>
+	{
+		final int	radius;
+		final T[]	offsets;
+		final int[]	deltas;
+		int			center;
+
+		@SuppressWarnings("unchecked")
+		Hood(int radius)
+		{
+			this.radius = radius;
+			int n = 2 * radius + 1;
+			offsets = (T[]) new Point[dims == 1 ? n : n * n];
+			for (int i = 0; i < offsets.length; i++) {
+				T p = (T) origin.copy();
+				p.setCoord(0, i % n - radius);
+				if (dims == 2) p.setCoord(1, i / n - radius);
+				offsets[i] = p;
+			}
+
+			// Where each cell is in the window, relative to the center
+			int width = side + 2 * radius;
+			deltas = new int[offsets.length];
+			for (int i = 0; i < offsets.length; i++)
+				deltas[i] = i % n - radius + (dims == 2 ? (i / n - radius) * width : 0);
+		}
+
+		@Override
+		public Iterator<T> iterator()
+		{
+			return new Iterator<T>() {
+				int	i;
+
+				@Override
+				public boolean hasNext()
+				{
+					return i < offsets.length;
+				}
+
+				@Override
+				public T next()
+				{
+					if (!hasNext())
+						throw new NoSuchElementException("No more elements in the iterator.");
+					return offsets[i++];
+				}
+
+				@Override
+				public void remove()
+				{
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+
+		@Override
+		public int getCellState(T relPoint)
+		{
+			if (relPoint.numDimensions() != dims)
+				throw new IllegalArgumentException("Incorrect number of dimensions");
+
+			int dx = relPoint.getCoord(0);
+			int dy = dims == 2 ? relPoint.getCoord(1) : 0;
+			if (Math.abs(dx) > radius || Math.abs(dy) > radius)
+				throw new IllegalArgumentException("Requested point out of bounds of radius");
+			return window[center + dy * windowWidth + dx];
+		}
+
+		@Override
+		public int getRadius()
+		{
+			return radius;
+		}
+
+		@Override
+		public int copyStates(int[] states)
+		{
+			if (states.length < deltas.length)
+				throw new IllegalArgumentException("Array is too small for the neighborhood");
+
+			for (int i = 0; i < deltas.length; i++)
+				states[i] = window[center + deltas[i]];
+			return deltas.length;
+		}
+
+		@Override
+		public int countState(int state)
+		{
+			int count = 0;
+			for (int i = 0; i < deltas.length; i++) {
+				if (window[center + deltas[i]] == state) count++;
+			}
+			return count;
+		}
+
+		@Override
+		public int sumStates()
+		{
+			int sum = 0;
+			for (int i = 0; i < deltas.length; i++)
+				sum += window[center + deltas[i]];
+			return sum;
+		}
+
+		@Override
+		public int boxSum(int radius)
+		{
+			if (radius < 0 || radius > this.radius)
+				throw new IllegalArgumentException("Requested box out of bounds of radius");
+
+			int sum = 0;
+			int rows = dims == 2 ? radius : 0;
+			for (int dy = -rows; dy <= rows; dy++) {
+				int row = center + dy * windowWidth;
+				for (int dx = -radius; dx <= radius; dx++)
+					sum += window[row + dx];
+			}
+			return sum;
+		}
+	}
+
+	private static final int	SHIFT_1D	= 8;
+	private static final int	SHIFT_2D	= 4;
+
+	private final T				origin;
+	private final int			dims;
+	private final int			numStates;
+	private final int			shift;
+	private final int			side;
+	private final int			tileCells;
+
+	private HashMap<Long, Tile>	tiles		= new HashMap<Long, Tile>();
+	private HashSet<Long>		changed		= new HashSet<Long>();
+	private long				population;
+	private long				generation;
+
+	private Hood				hood;
+	private int[]				window;
+	private int					windowWidth;
+
+	/**
+	 * Creates an empty world.
+	 *
+	 * @param origin any point of the dimension the world should have, such as
+	 *            {@code new Point2D(0, 0)} or a rule's getOrigin
+	 * @param numStates the number of states a cell can be in
+	 * @throws IllegalArgumentException if origin is not 1 or 2 dimensional, or
+	 *             numStates is not positive
+	 */
+	@SuppressWarnings("unchecked")
+	public UnboundedState(T origin, int numStates)
+	{
+		if (origin == null || origin.numDimensions() < 1 || origin.numDimensions() > 2)
+			throw new IllegalArgumentException("Only 1 and 2 dimensional worlds are supported");
+		if (numStates <= 0)
+			throw new IllegalArgumentException("Must have at least one state");
+
+		this.origin = (T) origin.copy();
+		this.dims = origin.numDimensions();
+		this.numStates = numStates;
+		this.shift = dims == 1 ? SHIFT_1D : SHIFT_2D;
+		this.side = 1 << shift;
+		this.tileCells = dims == 1 ? side : side * side;
+	}
+
+	/**
+	 * Gets the state of a cell.
+	 *
+	 * @param cell the coordinates of the cell, which can be anything
+	 * @return the state of the cell, 0 if it was never set
+	 * @throws IllegalArgumentException if cell is null or of the wrong
+	 *             dimension
+	 */
+	public int getCellState(T cell)
+	{
+		checkPoint(cell);
+		int x = cell.getCoord(0);
+		int y = dims == 2 ? cell.getCoord(1) : 0;
+		Tile t = tiles.get(key(x >> shift, y >> shift));
+		return t == null ? 0 : t.cells[local(x, y)];
+	}
+
+	/**
+	 * Sets the state of a cell, making its tile if needed.
+	 *
+	 * @param cell the coordinates of the cell, which can be anything
+	 * @param state the new state
+	 * @throws IllegalArgumentException if cell is null or of the wrong
+	 *             dimension, or state is negative or at least the number of
+	 *             states
+	 */
+	public void setCellState(T cell, int state)
+	{
+		checkPoint(cell);
+		if (state < 0 || state >= numStates)
+			throw new IllegalArgumentException("State is out of bounds");
+
+		int x = cell.getCoord(0);
+		int y = dims == 2 ? cell.getCoord(1) : 0;
+		setCell(x, y, state);
+	}
+
+	/**
+	 * Steps the world once. Like {@link State#step(Rule)}, the step is atomic:
+	 * if the rule throws, the world is left as it was.
+	 *
+	 * @param r the rule to step by
+	 * @throws IllegalArgumentException if the rule brings empty space to life,
+	 *             or gives a state that is out of bounds
+	 */
+	@SuppressWarnings("unchecked")
+	public void step(Rule<T> r)
+	{
+		int radius = r.getNeighborhoodSize();
+		if (radius < 0)
+			throw new IllegalArgumentException("Rule has a negative radius");
+
+		if (hood == null || hood.radius != radius) {
+			hood = new Hood(radius);
+			windowWidth = side + 2 * radius;
+			window = new int[dims == 1 ? windowWidth : windowWidth * windowWidth];
+		}
+
+		// Compiled rules are looked up straight out of the window, packing
+		// the neighborhood in the base of the rule's number of states
+		int[] table = null;
+		int base = numStates;
+		if (r instanceof CompiledRule
+				&& ((CompiledRule<T>) r).getNumStates() >= numStates) {
+			CompiledRule<T> c = (CompiledRule<T>) r;
+			if (!c.isQuiescent())
+				throw new IllegalArgumentException("Rule brings empty space to life");
+			table = c.table;
+			base = c.getNumStates();
+		}
+		else {
+			Arrays.fill(window, 0);
+			hood.center = dims == 1 ? radius : radius * windowWidth + radius;
+			if (r.stepCell(hood) != 0)
+				throw new IllegalArgumentException("Rule brings empty space to life");
+		}
+
+		// Every tile that a changed tile is within reach of
+		int reach = (radius + side - 1) >> shift;
+		HashSet<Long> candidates = new HashSet<Long>();
+		for (Long key : changed) {
+			int tx = tileX(key), ty = tileY(key);
+			for (int dy = dims == 2 ? -reach : 0; dy <= (dims == 2 ? reach : 0); dy++) {
+				for (int dx = -reach; dx <= reach; dx++)
+					candidates.add(key(tx + dx, ty + dy));
+			}
+		}
+
+		HashMap<Long, Tile> next = new HashMap<Long, Tile>(tiles);
+		HashSet<Long> nextChanged = new HashSet<Long>();
+		long nextPopulation = population;
+		for (Long key : candidates) {
+			Tile t = stepTile(key, r, radius, table, base);
+			Tile old = tiles.get(key);
+			if (sameCells(old, t)) continue;
+
+			nextChanged.add(key);
+			nextPopulation += (t == null ? 0 : t.population) - (old == null ? 0 : old.population);
+			if (t == null)
+				next.remove(key);
+			else
+				next.put(key, t);
+		}
+
+		tiles = next;
+		changed = nextChanged;
+		population = nextPopulation;
+		generation++;
+	}
+
+	/**
+	 * Replaces the world with the non-zero cells of s, at the same
+	 * coordinates, and takes on its generation.
+	 *
+	 * @param s a state with at most as many states as this world
+	 * @throws IllegalArgumentException if s has a different dimension or more
+	 *             states
+	 */
+	public void setState(State<T> s)
+	{
+		if (s.getDimension() != dims)
+			throw new IllegalArgumentException("Does not match the world's dimensions");
+		if (s.getNumStates() > numStates)
+			throw new IllegalArgumentException("State has too many states");
+
+		clear();
+		s.visitCells(new CellVisitor() {
+			@Override
+			public void visitCell(int[] coords, int state)
+			{
+				setCell(coords[0], dims == 2 ? coords[1] : 0, state);
+			}
+		});
+		generation = s.getGeneration();
+	}
+
+	/**
+	 * Copies this world into s. Cells outside of the bounds of s are left out,
+	 * no matter whether s wraps.
+	 *
+	 * @param s a state to overwrite with this world
+	 * @throws IllegalArgumentException if s has a different dimension, or
+	 *             fewer states than a cell that lands in it
+	 */
+	public void writeTo(State<T> s)
+	{
+		if (s.getDimension() != dims)
+			throw new IllegalArgumentException("Does not match the world's dimensions");
+
+		s.setState(null);
+		T size = s.getSize();
+		int width = size.getCoord(0);
+		int height = dims == 2 ? size.getCoord(1) : 1;
+		for (Map.Entry<Long, Tile> e : tiles.entrySet()) {
+			int x0 = tileX(e.getKey()) << shift;
+			int y0 = tileY(e.getKey()) << shift;
+			int[] cells = e.getValue().cells;
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] == 0) continue;
+
+				int x = x0 + (i & (side - 1));
+				int y = y0 + (dims == 2 ? i >> shift : 0);
+				if (x < 0 || y < 0 || x >= width || y >= height) continue;
+				if (cells[i] >= s.getNumStates())
+					throw new IllegalArgumentException("State has too few states");
+				s.setCell((long) y * width + x, cells[i]);
+			}
+		}
+		s.setGeneration(generation);
+	}
+
+	/**
+	 * Shows each non-zero cell to a visitor, in no particular order.
+	 *
+	 * @param visitor the visitor
+	 */
+	public void visitCells(CellVisitor visitor)
+	{
+		int[] coords = new int[dims];
+		for (Map.Entry<Long, Tile> e : tiles.entrySet()) {
+			int x0 = tileX(e.getKey()) << shift;
+			int y0 = tileY(e.getKey()) << shift;
+			int[] cells = e.getValue().cells;
+			for (int i = 0; i < cells.length; i++) {
+				if (cells[i] == 0) continue;
+
+				coords[0] = x0 + (i & (side - 1));
+				if (dims == 2) coords[1] = y0 + (i >> shift);
+				visitor.visitCell(coords, cells[i]);
+			}
+		}
+	}
+
+	/**
+	 * Gets the smallest box holding every non-zero cell.
+	 *
+	 * @return the bounding box, or null if every cell is 0
+	 */
+	@SuppressWarnings("unchecked")
+	public Region<T> getBounds()
+	{
+		if (population == 0) return null;
+
+		final int[] min = { Integer.MAX_VALUE, Integer.MAX_VALUE };
+		final int[] max = { Integer.MIN_VALUE, Integer.MIN_VALUE };
+		visitCells(new CellVisitor() {
+			@Override
+			public void visitCell(int[] coords, int state)
+			{
+				for (int i = 0; i < coords.length; i++) {
+					min[i] = Math.min(min[i], coords[i]);
+					max[i] = Math.max(max[i], coords[i]);
+				}
+			}
+		});
+
+		T lo = (T) origin.copy(), hi = (T) origin.copy();
+		for (int i = 0; i < dims; i++) {
+			lo.setCoord(i, min[i]);
+			hi.setCoord(i, max[i] + 1);
+		}
+		return new Region<T>(lo, hi);
+	}
+
+	/**
+	 * Empties the world and resets the generation counter to 0.
+	 */
+	public void clear()
+	{
+		tiles = new HashMap<Long, Tile>();
+		changed = new HashSet<Long>();
+		population = 0;
+		generation = 0;
+	}
+
+	/**
+	 * @return the number of non-zero cells
+	 */
+	public long getPopulation()
+	{
+		return population;
+	}
+
+	/**
+	 * @return the number of steps since the world was created, cleared or set
+	 */
+	public long getGeneration()
+	{
+		return generation;
+	}
+
+	/**
+	 * @return the number of states a cell can be in
+	 */
+	public int getNumStates()
+	{
+		return numStates;
+	}
+
+	/**
+	 * @return the number of dimensions of the world, 1 or 2
+	 */
+	public int getDimension()
+	{
+		return dims;
+	}
+
+	/**
+	 * Gets the number of tiles that are allocated, which is the number that
+	 * hold a non-zero cell.
+	 *
+	 * @return the number of tiles
+	 */
+	public int numTiles()
+	{
+		return tiles.size();
+	}
+
+	/**
+	 * Private helper method that sets a cell, keeping the tile map, the
+	 * population and the changed tiles up to date.
+	 */
+	private void setCell(int x, int y, int state)
+	{
+		long key = key(x >> shift, y >> shift);
+		Tile t = tiles.get(key);
+		if (t == null) {
+			if (state == 0) return;
+			t = new Tile(new int[tileCells], 0);
+			tiles.put(key, t);
+		}
+
+		int i = local(x, y);
+		int old = t.cells[i];
+		if (old == state) return;
+
+		t.cells[i] = state;
+		if (old == 0) {
+			t.population++;
+			population++;
+		}
+		else if (state == 0) {
+			t.population--;
+			population--;
+		}
+		if (t.population == 0) tiles.remove(key);
+		changed.add(key);
+	}
+
+	/**
+	 * Private helper method that works out the next generation of one tile
+	 * from the window of cells around it.
+	 *
+	 * @param table the table of a compiled rule, or null to call stepCell
+	 * @param base the number of states the table was compiled for
+	 * @return the new tile, or null if it is all 0
+	 */
+	private Tile stepTile(long key, Rule<T> r, int radius, int[] table, int base)
+	{
+		int[] deltas = hood.deltas;
+		if (!fillWindow(key, radius)) return null;
+
+		int[] out = new int[tileCells];
+		int count = 0;
+		int rows = dims == 1 ? 1 : side;
+		for (int y = 0; y < rows; y++) {
+			int center = (dims == 1 ? 0 : (y + radius) * windowWidth) + radius;
+			for (int x = 0; x < side; x++, center++) {
+				int s;
+				if (table != null) {
+					int index = 0;
+					for (int i = deltas.length - 1; i >= 0; i--)
+						index = index * base + window[center + deltas[i]];
+					s = table[index];
+				}
+				else {
+					hood.center = center;
+					s = r.stepCell(hood);
+				}
+
+				if (s != 0) {
+					if (s < 0 || s >= numStates)
+						throw new IllegalArgumentException("Rule gave a state that is out of bounds");
+					out[y * side + x] = s;
+					count++;
+				}
+			}
+		}
+		return count == 0 ? null : new Tile(out, count);
+	}
+
+	/**
+	 * Private helper method that copies the cells of a tile and those within
+	 * radius of it into the window, a row at a time.
+	 *
+	 * @return false if they are all 0
+	 */
+	private boolean fillWindow(long key, int radius)
+	{
+		int x0 = (tileX(key) << shift) - radius;
+		int y0 = dims == 1 ? 0 : (tileY(key) << shift) - radius;
+		int rows = dims == 1 ? 1 : windowWidth;
+		boolean any = false;
+		for (int row = 0; row < rows; row++) {
+			int y = y0 + row;
+			int ty = y >> shift;
+			int ly = dims == 1 ? 0 : (y & (side - 1)) * side;
+			int bx = 0;
+			while (bx < windowWidth) {
+				int x = x0 + bx;
+				int lx = x & (side - 1);
+				int n = Math.min(windowWidth - bx, side - lx);
+				Tile t = tiles.get(key(x >> shift, ty));
+				if (t == null)
+					Arrays.fill(window, row * windowWidth + bx, row * windowWidth + bx + n, 0);
+				else {
+					System.arraycopy(t.cells, ly + lx, window, row * windowWidth + bx, n);
+					any = true;
+				}
+				bx += n;
+			}
+		}
+		return any;
+	}
+
+	private static boolean sameCells(Tile a, Tile b)
+	{
+		if (a == null || b == null) return a == b;
+		return a.population == b.population && Arrays.equals(a.cells, b.cells);
+	}
+
+	private int local(int x, int y)
+	{
+		int lx = x & (side - 1);
+		return dims == 1 ? lx : (y & (side - 1)) * side + lx;
+	}
+
+	private void checkPoint(T p)
+	{
+		if (p == null)
+			throw new IllegalArgumentException("Need a point");
+		if (p.numDimensions() != dims)
+			throw new IllegalArgumentException("Incorrect number of dimensions");
+	}
+
+	/**
+	 * Private helper method that packs the coordinates of a tile into a key,
+	 * x in the high half and y in the low half.
+	 */
+	private static long key(int tx, int ty)
+	{
+		return ((long) tx << 32) | (ty & 0xffffffffL);
+	}
+
+	private static int tileX(long key)
+	{
+		return (int) (key >> 32);
+	}
+
+	private static int tileY(long key)
+	{
+		return (int) key;
+	}
+}
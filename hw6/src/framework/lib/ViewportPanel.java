@@ -21,6 +21,7 @@ public class ViewportPanel<T extends Point> extends JPanel
 	private static final Dimension	dimensions			= new Dimension(500, 500);
 	private Viewport<T>				viewport;
 	private State<T>				state;
+	private State<T>				timed;
 
 	/**
 	 * Constructs ViewportPanel
@@ -29,10 +30,25 @@ public class ViewportPanel<T extends Point> extends JPanel
 	 * @param state a state of the cellular automata
 	 */
 	public ViewportPanel(Viewport<T> v, State<T> state)
+	{
+		this(v, state, state);
+	}
+
+	/**
+	 * Constructs a ViewportPanel that draws a copy of a State, such as the
+	 * snapshot of a BackgroundStepper, and tells the step listeners of the
+	 * original how long drawing takes.
+	 * 
+	 * @param v a Viewport which can draw the state
+	 * @param state the state to draw
+	 * @param timed the state whose step listeners are told about drawing
+	 */
+	public ViewportPanel(Viewport<T> v, State<T> state, State<T> timed)
 	{
 		super();
 		this.viewport = v;
 		this.state = state;
+		this.timed = timed;
 		this.setMinimumSize(dimensions);
 		this.setPreferredSize(dimensions);
 	}
@@ -41,6 +57,13 @@ public class ViewportPanel<T extends Point> extends JPanel
 	public void paintComponent(Graphics g)
 	{
 		super.paintComponent(g);
+		if (!timed.hasStepListeners()) {
+			viewport.drawState(state, g);
+			return;
+		}
+
+		long start = System.nanoTime();
 		viewport.drawState(state, g);
+		timed.fireRendered(System.nanoTime() - start);
 	}
 }
@@ -0,0 +1,186 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.concurrent.CountDownLatch;
+
+import example.LifeRule;
+import framework.interfaces.Rule;
+import framework.interfaces.StopCondition;
+import framework.lib.BackgroundStepper;
+import framework.lib.Neighborhood;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class BackgroundStepperTest
+{
+
+	private static final Point2D	SIZE	= new Point2D(40, 40);
+	private static final boolean[]	TORUS	= { true, true };
+
+	@Test
+	public void testStepByHand()
+	{
+		BackgroundStepper<Point2D> stepper = new BackgroundStepper<Point2D>(Fixtures.glider(SIZE, TORUS),
+				new LifeRule());
+		assertFalse(stepper.publish());
+
+		assertEquals(7, stepper.step(7));
+		assertEquals(0, stepper.getSnapshot().getGeneration());
+		assertTrue(stepper.publish());
+		assertFalse(stepper.publish());
+
+		State<Point2D> expected = Fixtures.glider(SIZE, TORUS);
+		for (int i = 0; i < 7; i++)
+			expected.step(new LifeRule());
+		Fixtures.assertSameGeneration(expected, stepper.getSnapshot());
+	}
+
+	@Test
+	public void testRunWhilePublishing() throws InterruptedException
+	{
+		BackgroundStepper<Point2D> stepper = new BackgroundStepper<Point2D>(Fixtures.glider(SIZE, TORUS),
+				new LifeRule());
+		stepper.setStopCondition(new StopCondition<Point2D>() {
+			@Override
+			public boolean shouldStop(State<Point2D> state, long generation)
+			{
+				return generation == 500;
+			}
+		});
+
+		// Every snapshot is a whole generation, which for a glider always
+		// has five live cells
+		stepper.start();
+		while (stepper.isRunning()) {
+			if (stepper.publish())
+				assertEquals(5, stepper.getSnapshot().getPopulation());
+			Thread.sleep(1);
+		}
+		assertNull(stepper.getFailure());
+
+		stepper.publish();
+		State<Point2D> expected = Fixtures.glider(SIZE, TORUS);
+		for (int i = 0; i < 500; i++)
+			expected.step(new LifeRule());
+		Fixtures.assertSameGeneration(expected, stepper.getSnapshot());
+		Fixtures.assertSameGeneration(expected, stepper.getState());
+	}
+
+	/**
+	 * LifeRule, evaluated cell by cell, that holds up its first step until
+	 * it is released.
+	 */
+	private static class HeldRule implements Rule<Point2D>
+	{
+		final CountDownLatch	entered	= new CountDownLatch(1);
+		final CountDownLatch	release	= new CountDownLatch(1);
+		final LifeRule			life	= new LifeRule();
+
+		@Override
+		public int stepCell(Neighborhood<Point2D> n)
+		{
+			entered.countDown();
+			try {
+				release.await();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			return life.stepCell(n);
+		}
+
+		@Override
+		public Point2D getOrigin()
+		{
+			return life.getOrigin();
+		}
+
+		@Override
+		public int getNeighborhoodSize()
+		{
+			return life.getNeighborhoodSize();
+		}
+
+		@Override
+		public State<Point2D> getInitialState()
+		{
+			return null;
+		}
+	}
+
+	@Test(timeout = 10000)
+	public void testPublishDuringStep() throws InterruptedException
+	{
+		HeldRule rule = new HeldRule();
+		BackgroundStepper<Point2D> stepper = new BackgroundStepper<Point2D>(Fixtures.glider(SIZE, TORUS), rule);
+		final CountDownLatch requested = new CountDownLatch(1);
+		stepper.setPublishRequest(new Runnable() {
+			@Override
+			public void run()
+			{
+				requested.countDown();
+			}
+		});
+		stepper.setStopCondition(new StopCondition<Point2D>() {
+			@Override
+			public boolean shouldStop(State<Point2D> state, long generation)
+			{
+				return generation == 3;
+			}
+		});
+
+		// Publishing in the middle of a step skips the frame instead of
+		// waiting for the step, and the stepper asks for it again after
+		stepper.start();
+		rule.entered.await();
+		assertFalse(stepper.publish());
+		rule.release.countDown();
+		requested.await();
+		while (!stepper.publish())
+			Thread.sleep(1);
+		assertTrue(stepper.getSnapshot().getGeneration() >= 1);
+
+		while (stepper.isRunning())
+			Thread.sleep(1);
+		assertNull(stepper.getFailure());
+		assertTrue(stepper.publish());
+		State<Point2D> expected = Fixtures.glider(SIZE, TORUS);
+		for (int i = 0; i < 3; i++)
+			expected.step(new LifeRule());
+		Fixtures.assertSameGeneration(expected, stepper.getSnapshot());
+	}
+
+	@Test
+	public void testPause()
+	{
+		BackgroundStepper<Point2D> stepper = new BackgroundStepper<Point2D>(Fixtures.glider(SIZE, TORUS),
+				new LifeRule());
+		stepper.start();
+		assertTrue(stepper.isRunning());
+		stepper.pause();
+		assertFalse(stepper.isRunning());
+
+		long generation = stepper.getState().getGeneration();
+		assertEquals(1, stepper.step(1));
+		assertEquals(generation + 1, stepper.getState().getGeneration());
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testStepWhileRunning()
+	{
+		BackgroundStepper<Point2D> stepper = new BackgroundStepper<Point2D>(Fixtures.glider(SIZE, TORUS),
+				new LifeRule());
+		stepper.setDelay(1000);
+		stepper.start();
+		try {
+			stepper.step(1);
+		}
+		finally {
+			stepper.pause();
+		}
+	}
+}
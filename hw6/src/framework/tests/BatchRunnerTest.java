@@ -0,0 +1,83 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import example.LifeRule;
+import framework.interfaces.StopCondition;
+import framework.lib.BatchRunner;
+import framework.lib.CycleDetector;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class BatchRunnerTest
+{
+
+	private State<Point2D> blinker()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(10, 10), 2);
+		for (int x = 3; x < 6; x++)
+			st.setCellState(new Point2D(x, 5), 1);
+		return st;
+	}
+
+	@Test
+	public void testRunMatchesStep()
+	{
+		State<Point2D> expected = blinker();
+		for (int i = 0; i < 7; i++)
+			expected.step(new LifeRule());
+
+		BatchRunner<Point2D> runner = new BatchRunner<Point2D>(new LifeRule(), blinker());
+		BatchRunner.Report report = runner.run(7);
+		assertEquals(7, report.getGenerations());
+		assertEquals(3, report.getPopulation());
+		assertFalse(report.isStopped());
+		Fixtures.assertSameGeneration(expected, runner.getState());
+	}
+
+	@Test
+	public void testStopCondition()
+	{
+		BatchRunner<Point2D> runner = new BatchRunner<Point2D>(new LifeRule(), blinker());
+		BatchRunner.Report report = runner.run(100, new StopCondition<Point2D>() {
+			@Override
+			public boolean shouldStop(State<Point2D> state, long generation)
+			{
+				return state.getCellState(new Point2D(4, 4)) == 1;
+			}
+		});
+		assertTrue(report.isStopped());
+		assertEquals(1, report.getGenerations());
+	}
+
+	@Test
+	public void testFastForwardMatchesStep()
+	{
+		// A glider on a torus comes back to where it started every 24 steps
+		boolean[] wraps = { true, true };
+		State<Point2D> expected = Fixtures.glider(new Point2D(6, 6), wraps);
+		for (int i = 0; i < 1001; i++)
+			expected.step(new LifeRule());
+
+		BatchRunner<Point2D> runner = new BatchRunner<Point2D>(new LifeRule(), Fixtures.glider(new Point2D(6, 6), wraps));
+		CycleDetector<Point2D> detector = new CycleDetector<Point2D>();
+		BatchRunner.Report report = runner.fastForward(1001, detector);
+		assertEquals(24, detector.getPeriod());
+		assertTrue(report.getSkipped() > 0);
+		assertEquals(1001, report.getGenerations() + report.getSkipped());
+		assertEquals(1001, runner.getState().getGeneration());
+		assertEquals(expected.getGeneration(), runner.getState().getGeneration());
+		assertEquals(5, runner.getState().getPopulation());
+		Fixtures.assertSameGeneration(expected, runner.getState());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNegativeGenerations()
+	{
+		new BatchRunner<Point2D>(new LifeRule(), blinker()).run(-1);
+	}
+
+}
@@ -0,0 +1,129 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import example.LifeRule;
+import example.Rule110;
+import example.Seeds;
+import framework.interfaces.Rule;
+import framework.lib.BitElementary;
+import framework.lib.BitLife;
+import framework.lib.Neighborhood;
+import framework.lib.Point1D;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class BitEngineTest
+{
+
+	/**
+	 * Rule 110 as a one dimensional rule.
+	 */
+	private static class Elementary110 implements Rule<Point1D>
+	{
+		@Override
+		public int stepCell(Neighborhood<Point1D> n)
+		{
+			int l = n.getCellState(new Point1D(-1));
+			int c = n.getCellState(new Point1D(0));
+			int r = n.getCellState(new Point1D(1));
+			return 110 >> (4 * l + 2 * c + r) & 1;
+		}
+
+		@Override
+		public Point1D getOrigin()
+		{
+			return new Point1D(0);
+		}
+
+		@Override
+		public int getNeighborhoodSize()
+		{
+			return 1;
+		}
+
+		@Override
+		public State<Point1D> getInitialState()
+		{
+			return null;
+		}
+	}
+
+	private void checkLife(Rule<Point2D> rule, int width, int height,
+			boolean[] wraps)
+	{
+		State<Point2D> expected = new State<Point2D>(new Point2D(width, height),
+				2, wraps);
+		Random r = new Random(width * 31 + height);
+		for (Point2D p : expected)
+			expected.setCellState(p, r.nextInt(4) == 0 ? 1 : 0);
+
+		BitLife bits = new BitLife(rule, expected);
+		State<Point2D> actual = new State<Point2D>(new Point2D(width, height), 2);
+		for (int i = 0; i < 12; i++) {
+			expected.step(rule);
+			bits.step();
+			bits.writeTo(actual);
+			for (Point2D p : expected)
+				assertEquals(expected.getCellState(p), actual.getCellState(p));
+		}
+	}
+
+	@Test
+	public void testLife()
+	{
+		boolean[][] wraps = { { true, true }, { false, false }, { true, false },
+				{ false, true } };
+		for (boolean[] w : wraps) {
+			checkLife(new LifeRule(), 70, 9, w);
+			checkLife(new LifeRule(), 64, 5, w);
+			checkLife(new LifeRule(), 3, 4, w);
+		}
+	}
+
+	@Test
+	public void testSeeds()
+	{
+		boolean[] wraps = { true, false };
+		checkLife(new Seeds(), 130, 20, wraps);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotLifeLike()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(5, 5), 2);
+		new BitLife(new Rule110(), st);
+	}
+
+	@Test
+	public void testElementary()
+	{
+		for (int width : new int[] { 1, 63, 64, 65, 200 }) {
+			for (boolean wrap : new boolean[] { true, false }) {
+				boolean[] wraps = { wrap };
+				State<Point1D> expected = new State<Point1D>(new Point1D(width),
+						2, wraps);
+				expected.setCellState(new Point1D(width - 1), 1);
+				expected.setCellState(new Point1D(width / 2), 1);
+
+				BitElementary bits = new BitElementary(new Elementary110(), expected);
+				assertEquals(110, bits.getRule());
+
+				State<Point1D> actual = new State<Point1D>(new Point1D(width), 2);
+				for (int i = 0; i < 100; i++) {
+					expected.step(new Elementary110());
+					bits.step();
+				}
+				bits.writeTo(actual);
+				for (Point1D p : expected)
+					assertEquals(expected.getCellState(p), actual.getCellState(p));
+			}
+		}
+	}
+
+}
@@ -0,0 +1,126 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import example.LifeRule;
+import framework.lib.Checkpointer;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class CheckpointerTest
+{
+
+	private File	dir;
+
+	@Before
+	public void makeDir() throws IOException
+	{
+		dir = File.createTempFile("checkpoints", "");
+		dir.delete();
+		dir.mkdir();
+	}
+
+	@After
+	public void deleteDir()
+	{
+		for (File f : dir.listFiles())
+			f.delete();
+		dir.delete();
+	}
+
+	private State<Point2D> glider(int generations)
+	{
+		boolean[] wraps = { true, true };
+		State<Point2D> st = Fixtures.glider(new Point2D(70, 50), wraps);
+		for (int i = 0; i < generations; i++)
+			st.step(new LifeRule());
+		return st;
+	}
+
+	private int count(String ext)
+	{
+		int n = 0;
+		for (String name : dir.list())
+			n += name.endsWith(ext) ? 1 : 0;
+		return n;
+	}
+
+	/**
+	 * Checkpoints every 3 generations up to 30, with a full checkpoint every
+	 * 4.
+	 */
+	private void runWithCheckpoints() throws IOException
+	{
+		Checkpointer<Point2D> cp = new Checkpointer<Point2D>(dir, 3, 0);
+		cp.setFullEvery(4);
+		State<Point2D> st = glider(0);
+		for (int i = 1; i <= 30; i++) {
+			st.step(new LifeRule());
+			if (i % 3 == 0) cp.checkpoint(st);
+		}
+		cp.close();
+	}
+
+	@Test
+	public void testResume() throws IOException
+	{
+		assertNull(Checkpointer.resume(dir, new Point2D(0, 0)));
+
+		runWithCheckpoints();
+		assertEquals(1, count(".full"));
+		assertEquals(1, count(".delta"));
+
+		State<Point2D> resumed = Checkpointer.resume(dir, new Point2D(0, 0));
+		Fixtures.assertSameGeneration(glider(30), resumed);
+		assertTrue(resumed.getWraps()[0]);
+	}
+
+	@Test
+	public void testCorruptDelta() throws IOException
+	{
+		runWithCheckpoints();
+		for (File f : dir.listFiles()) {
+			if (!f.getName().endsWith(".delta")) continue;
+			RandomAccessFile raf = new RandomAccessFile(f, "rw");
+			try {
+				raf.seek(raf.length() / 2);
+				int b = raf.read();
+				raf.seek(raf.length() / 2);
+				raf.write(b ^ 1);
+			}
+			finally {
+				raf.close();
+			}
+		}
+
+		// The delta is ignored, leaving the full checkpoint before it
+		Fixtures.assertSameGeneration(glider(27), Checkpointer.resume(dir, new Point2D(0, 0)));
+	}
+
+	@Test
+	public void testStepped() throws IOException
+	{
+		Checkpointer<Point2D> cp = new Checkpointer<Point2D>(dir, 5, 0);
+		State<Point2D> st = glider(0);
+		int started = 0;
+		for (int i = 0; i < 12; i++) {
+			st.step(new LifeRule());
+			if (cp.stepped(st)) {
+				started++;
+				cp.await();
+			}
+		}
+		cp.close();
+		assertEquals(2, started);
+		Fixtures.assertSameGeneration(glider(11), Checkpointer.resume(dir, new Point2D(0, 0)));
+	}
+}
@@ -0,0 +1,73 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import example.BriansBrainRule;
+import example.LifeRule;
+import framework.interfaces.Rule;
+import framework.lib.CompiledRule;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class CompiledRuleTest
+{
+
+	private static final State.Storage[]	IN_MEMORY	= { State.Storage.SPARSE,
+			State.Storage.DENSE, State.Storage.AUTO };
+
+	private static final Point2D	SIZE	= new Point2D(20, 15);
+	private static final boolean[]	WRAPS	= { true, false };
+
+	private void checkMatches(Rule<Point2D> rule, int numStates)
+	{
+		Rule<Point2D> compiled = new CompiledRule<Point2D>(rule, numStates);
+		for (State.Storage storage : IN_MEMORY) {
+			State<Point2D> expected = Fixtures.random(SIZE, numStates, 0.5, WRAPS, storage, 7);
+			State<Point2D> actual = Fixtures.random(SIZE, numStates, 0.5, WRAPS, storage, 7);
+			for (int i = 0; i < 10; i++) {
+				expected.step(rule);
+				actual.step(compiled);
+				Fixtures.assertSameCells(expected, actual);
+			}
+		}
+	}
+
+	@Test
+	public void testLife()
+	{
+		checkMatches(new LifeRule(), 2);
+	}
+
+	@Test
+	public void testBriansBrain()
+	{
+		checkMatches(new BriansBrainRule(), 3);
+	}
+
+	@Test
+	public void testCompileTooLarge()
+	{
+		Rule<Point2D> rule = new LifeRule() {
+			@Override
+			public int getNeighborhoodSize()
+			{
+				return 3;
+			}
+		};
+		assertSame(rule, CompiledRule.compile(rule, 2));
+
+		Rule<Point2D> life = new LifeRule();
+		assertTrue(CompiledRule.compile(life, 2) instanceof CompiledRule);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUncompiledState()
+	{
+		State<Point2D> st = Fixtures.random(SIZE, 3, 0.5, WRAPS, State.Storage.SPARSE, 7);
+		st.step(new CompiledRule<Point2D>(new LifeRule(), 2));
+	}
+
+}
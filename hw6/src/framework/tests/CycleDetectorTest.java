@@ -0,0 +1,91 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import example.LifeRule;
+import framework.lib.BatchRunner;
+import framework.lib.CycleDetector;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class CycleDetectorTest
+{
+
+	private static final Point2D	SIZE	= new Point2D(8, 8);
+	private static final boolean[]	TORUS	= { true, true };
+	private static final int[][]	BLOCK	= { { 2, 2 }, { 3, 2 }, { 2, 3 }, { 3, 3 } };
+	private static final int[][]	BLINKER	= { { 2, 3 }, { 3, 3 }, { 4, 3 } };
+
+	private long stepsToCycle(State<Point2D> st, CycleDetector<Point2D> detector)
+	{
+		detector.observe(st);
+		int steps = 0;
+		while (!detector.observe(st)) {
+			st.step(new LifeRule());
+			steps++;
+			assertTrue(steps < 1000);
+		}
+		return steps;
+	}
+
+	@Test
+	public void testStillLife()
+	{
+		CycleDetector<Point2D> detector = new CycleDetector<Point2D>();
+		assertEquals(1, stepsToCycle(Fixtures.pattern(SIZE, null, BLOCK), detector));
+		assertTrue(detector.isStatic());
+		assertEquals(0, detector.getCycleStart());
+	}
+
+	@Test
+	public void testOscillator()
+	{
+		CycleDetector<Point2D> detector = new CycleDetector<Point2D>();
+		stepsToCycle(Fixtures.pattern(SIZE, null, BLINKER), detector);
+		assertEquals(2, detector.getPeriod());
+		assertFalse(detector.isStatic());
+
+		detector.reset();
+		assertFalse(detector.isCycleFound());
+		assertEquals(-1, detector.getCycleStart());
+
+		// A glider on a torus comes back to where it started
+		stepsToCycle(Fixtures.glider(SIZE, TORUS), detector);
+		assertEquals(32, detector.getPeriod());
+	}
+
+	@Test
+	public void testShortHistory()
+	{
+		CycleDetector<Point2D> detector = new CycleDetector<Point2D>(16);
+		State<Point2D> st = Fixtures.glider(SIZE, TORUS);
+		for (int i = 0; i < 100; i++) {
+			assertFalse(detector.observe(st));
+			st.step(new LifeRule());
+		}
+	}
+
+	@Test
+	public void testFastForward()
+	{
+		State<Point2D> expected = Fixtures.glider(SIZE, TORUS);
+		for (int i = 0; i < 1000; i++)
+			expected.step(new LifeRule());
+
+		BatchRunner<Point2D> runner = new BatchRunner<Point2D>(new LifeRule(),
+				Fixtures.glider(SIZE, TORUS));
+		CycleDetector<Point2D> detector = new CycleDetector<Point2D>();
+		BatchRunner.Report report = runner.fastForward(1000, detector);
+		assertTrue(report.getSkipped() > 0);
+		assertEquals(1000, report.getGenerations() + report.getSkipped());
+
+		State<Point2D> st = runner.getState();
+		assertEquals(1000, st.getGeneration());
+		assertEquals(expected.getHash(), st.getHash());
+		for (Point2D p : expected)
+			assertEquals(expected.getCellState(p), st.getCellState(p));
+	}
+}
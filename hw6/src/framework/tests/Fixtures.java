@@ -0,0 +1,122 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import framework.lib.Point2D;
+import framework.lib.State;
+
+
+/**
+ * The patterns, random worlds and comparisons that the tests share.
+ */
+final class Fixtures
+{
+
+	/**
+	 * A glider heading towards +x, +y, as offsets from its top left corner.
+	 */
+	static final int[][]	GLIDER	= { { 1, 0 }, { 2, 1 }, { 0, 2 }, { 1, 2 }, { 2, 2 } };
+
+	private Fixtures()
+	{
+	}
+
+	/**
+	 * Makes a two state world with the given cells live.
+	 *
+	 * @param size the size of the world
+	 * @param wraps which axes wrap, or null for none
+	 * @param cells the live cells, as {x, y} pairs
+	 * @return the new world, at generation 0
+	 */
+	static State<Point2D> pattern(Point2D size, boolean[] wraps, int[][] cells)
+	{
+		State<Point2D> st = new State<Point2D>(size, 2, wraps, null);
+		for (int[] c : cells)
+			st.setCellState(new Point2D(c[0], c[1]), 1);
+		return st;
+	}
+
+	/**
+	 * Makes a two state world with a glider in its top left corner.
+	 *
+	 * @param size the size of the world
+	 * @param wraps which axes wrap, or null for none
+	 * @return the new world, at generation 0
+	 */
+	static State<Point2D> glider(Point2D size, boolean[] wraps)
+	{
+		return pattern(size, wraps, GLIDER);
+	}
+
+	/**
+	 * Makes a world where each cell is non-zero with the given probability,
+	 * in a state picked evenly from 1 to numStates - 1.
+	 *
+	 * @param size the size of the world
+	 * @param numStates the number of states, at least 2
+	 * @param density the chance that a cell is non-zero
+	 * @param wraps which axes wrap, or null for none
+	 * @param storage how the world stores its cells
+	 * @param seed the seed for the cells, so a test sees the same world
+	 *            every time
+	 * @return the new world, at generation 0
+	 */
+	static State<Point2D> random(Point2D size, int numStates, double density,
+			boolean[] wraps, State.Storage storage, long seed)
+	{
+		State<Point2D> st = new State<Point2D>(size, numStates, wraps, null, storage);
+		fillRandom(st, 0, 0, size.getX(), size.getY(), density, seed);
+		return st;
+	}
+
+	/**
+	 * Sets each cell of a box of a world to a non-zero state with the given
+	 * probability, in a state picked evenly from 1 to the number of states
+	 * - 1. The other cells of the box are left alone.
+	 *
+	 * @param st the world to fill
+	 * @param x the left edge of the box
+	 * @param y the top edge of the box
+	 * @param width the width of the box
+	 * @param height the height of the box
+	 * @param density the chance that a cell is set
+	 * @param seed the seed for the cells
+	 */
+	static void fillRandom(State<Point2D> st, int x, int y, int width,
+			int height, double density, long seed)
+	{
+		int numStates = st.getNumStates();
+		Random r = new Random(seed);
+		for (int j = y; j < y + height; j++) {
+			for (int i = x; i < x + width; i++) {
+				if (r.nextDouble() < density)
+					st.setCellState(new Point2D(i, j), 1 + r.nextInt(numStates - 1));
+			}
+		}
+	}
+
+	/**
+	 * Checks that two worlds are the same size and have the same cells.
+	 */
+	static void assertSameCells(State<Point2D> expected, State<Point2D> actual)
+	{
+		assertEquals(expected.getSize(), actual.getSize());
+		assertEquals(expected.getPopulation(), actual.getPopulation());
+		for (Point2D p : expected)
+			assertEquals(expected.getCellState(p), actual.getCellState(p));
+	}
+
+	/**
+	 * Checks that two worlds have the same cells and are at the same
+	 * generation.
+	 */
+	static void assertSameGeneration(State<Point2D> expected, State<Point2D> actual)
+	{
+		assertEquals(expected.getGeneration(), actual.getGeneration());
+		assertSameCells(expected, actual);
+	}
+
+}
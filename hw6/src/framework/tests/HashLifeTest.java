@@ -0,0 +1,107 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import example.LifeRule;
+import example.Seeds;
+import framework.interfaces.Rule;
+import framework.lib.HashLife;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class HashLifeTest
+{
+
+	/**
+	 * Makes an 80x80 world with a random soup in the middle, far enough from
+	 * the edges that nothing reaches them in the number of generations these
+	 * tests step.
+	 */
+	private State<Point2D> soup(long seed)
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(80, 80), 2);
+		Fixtures.fillRandom(st, 35, 35, 10, 10, 0.5, seed);
+		return st;
+	}
+
+	private void checkMatches(Rule<Point2D> rule, long generations)
+	{
+		checkMatches(rule, generations, HashLife.DEFAULT_MAX_NODES);
+	}
+
+	private void checkMatches(Rule<Point2D> rule, long generations,
+			int maxNodes)
+	{
+		for (long seed = 0; seed < 3; seed++) {
+			State<Point2D> expected = soup(seed);
+			HashLife life = new HashLife(rule, maxNodes);
+			life.setState(expected);
+
+			for (long i = 0; i < generations; i++)
+				expected.step(rule);
+			life.step(generations);
+			assertEquals(generations, life.getGeneration());
+
+			State<Point2D> actual = soup(seed);
+			life.writeTo(actual);
+			Fixtures.assertSameCells(expected, actual);
+		}
+	}
+
+	@Test
+	public void testLife()
+	{
+		checkMatches(new LifeRule(), 1);
+		checkMatches(new LifeRule(), 16);
+		checkMatches(new LifeRule(), 27);
+	}
+
+	@Test
+	public void testSmallCache()
+	{
+		checkMatches(new LifeRule(), 27, 100);
+	}
+
+	@Test
+	public void testSeeds()
+	{
+		checkMatches(new Seeds(), 6);
+	}
+
+	@Test
+	public void testGliderFarAway()
+	{
+		HashLife life = new HashLife(new LifeRule());
+		life.setCell(1, 0, true);
+		life.setCell(2, 1, true);
+		life.setCell(0, 2, true);
+		life.setCell(1, 2, true);
+		life.setCell(2, 2, true);
+
+		// A glider moves one cell diagonally every 4 generations
+		long generations = 1L << 32;
+		life.step(generations);
+		long d = generations / 4;
+		assertEquals(5, life.getPopulation());
+		assertTrue(life.getCell(1 + d, d));
+		assertTrue(life.getCell(2 + d, 1 + d));
+		assertTrue(life.getCell(2 + d, 2 + d));
+		assertFalse(life.getCell(d, d));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testWrongRadius()
+	{
+		new HashLife(new LifeRule() {
+			@Override
+			public int getNeighborhoodSize()
+			{
+				return 2;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,95 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+
+import example.LifeRule;
+import framework.interfaces.StepListener;
+import framework.lib.MetricsAggregator;
+import framework.lib.MetricsAggregator.Metric;
+import framework.lib.Point2D;
+import framework.lib.State;
+import framework.lib.StepMetrics;
+
+import org.junit.Test;
+
+
+public class MetricsAggregatorTest
+{
+
+	private State<Point2D> blinker()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(100, 100), 2);
+		for (int x = 3; x < 6; x++)
+			st.setCellState(new Point2D(x, 5), 1);
+		return st;
+	}
+
+	@Test
+	public void testListener()
+	{
+		final ArrayList<StepMetrics> seen = new ArrayList<StepMetrics>();
+		StepListener<Point2D> listener = new StepListener<Point2D>() {
+			@Override
+			public void stepped(State<Point2D> state, StepMetrics metrics)
+			{
+				seen.add(metrics);
+			}
+
+			@Override
+			public void rendered(State<Point2D> state, long nanos)
+			{
+			}
+		};
+
+		State<Point2D> st = blinker();
+		st.addStepListener(listener);
+		st.step(new LifeRule());
+		st.step(new LifeRule());
+		assertTrue(st.removeStepListener(listener));
+		st.step(new LifeRule());
+		assertFalse(st.removeStepListener(listener));
+
+		assertEquals(2, seen.size());
+		assertEquals(1, seen.get(0).getGeneration());
+		assertEquals(2, seen.get(1).getGeneration());
+		assertEquals(3, seen.get(1).getPopulation());
+		assertTrue(seen.get(0).getStepNanos() >= 0);
+
+		// LifeRule is quiescent, so only the tiles around the blinker are
+		// evaluated
+		assertTrue(seen.get(1).getCellsEvaluated() > 0);
+		assertTrue(seen.get(1).getCellsEvaluated() < 100 * 100);
+	}
+
+	@Test
+	public void testPercentiles()
+	{
+		MetricsAggregator<Point2D> agg = new MetricsAggregator<Point2D>(4);
+		assertEquals(-1, agg.percentile(Metric.RENDER_NANOS, 50));
+		assertTrue(Double.isNaN(agg.mean(Metric.RENDER_NANOS)));
+
+		State<Point2D> st = blinker();
+		for (long nanos : new long[] { 50, 10, 40, 20, 30 })
+			agg.rendered(st, nanos);
+
+		// The window only holds the last 4
+		assertEquals(4, agg.getCount(Metric.RENDER_NANOS));
+		assertEquals(10, agg.percentile(Metric.RENDER_NANOS, 0));
+		assertEquals(20, agg.percentile(Metric.RENDER_NANOS, 50));
+		assertEquals(40, agg.percentile(Metric.RENDER_NANOS, 100));
+		assertEquals(25, agg.mean(Metric.RENDER_NANOS), 1e-9);
+
+		st.addStepListener(agg);
+		for (int i = 0; i < 6; i++)
+			st.step(new LifeRule());
+		assertEquals(6, agg.getTotalSteps());
+		assertEquals(4, agg.getCount(Metric.STEP_NANOS));
+		assertEquals(3, agg.percentile(Metric.POPULATION, 50));
+		assertNotNull(agg.toString());
+
+		agg.clear();
+		assertEquals(0, agg.getCount(Metric.POPULATION));
+	}
+}
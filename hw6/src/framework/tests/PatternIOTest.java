@@ -0,0 +1,84 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import framework.lib.PatternIO;
+import framework.lib.Point2D;
+import framework.lib.State;
+
+import org.junit.Test;
+
+
+public class PatternIOTest
+{
+
+	private static final String	GLIDER_RLE	= "#N Glider\n"
+													+ "#C A comment\n"
+													+ "x = 3, y = 3, rule = B3/S23\n"
+													+ "bob$2bo$3o!\n";
+
+	private static final Point2D	SIZE	= new Point2D(150, 41);
+
+	@Test
+	public void testReadRle() throws IOException
+	{
+		State<Point2D> st = PatternIO.readRle(new StringReader(GLIDER_RLE));
+		assertEquals(new Point2D(3, 3), st.getSize());
+		assertEquals(2, st.getNumStates());
+		assertEquals(5, st.getPopulation());
+		assertEquals(1, st.getCellState(new Point2D(1, 0)));
+		assertEquals(1, st.getCellState(new Point2D(2, 1)));
+		assertEquals(0, st.getCellState(new Point2D(0, 1)));
+		for (int x = 0; x < 3; x++)
+			assertEquals(1, st.getCellState(new Point2D(x, 2)));
+	}
+
+	@Test
+	public void testReadRleAt() throws IOException
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(10, 10), 2);
+		PatternIO.readRle(new StringReader(GLIDER_RLE), st, 4, 5);
+		assertEquals(5, st.getPopulation());
+		assertEquals(1, st.getCellState(new Point2D(5, 5)));
+		assertEquals(1, st.getCellState(new Point2D(6, 7)));
+
+		try {
+			PatternIO.readRle(new StringReader(GLIDER_RLE), st, 8, 0);
+			fail("Pattern shouldn't fit");
+		}
+		catch (IOException e) {
+		}
+	}
+
+	@Test
+	public void testRleRoundTrip() throws IOException
+	{
+		for (int numStates : new int[] { 2, 3, 30, 256 }) {
+			State<Point2D> st = Fixtures.random(SIZE, numStates, 0.2, null, State.Storage.AUTO, numStates);
+			StringWriter out = new StringWriter();
+			PatternIO.writeRle(st, out);
+			for (String line : out.toString().split("\n"))
+				assertTrue(line.length() <= 70);
+
+			State<Point2D> copy = PatternIO.readRle(new StringReader(out.toString()));
+			Fixtures.assertSameCells(st, copy);
+		}
+	}
+
+	@Test
+	public void testPlaintextRoundTrip() throws IOException
+	{
+		State<Point2D> st = Fixtures.random(SIZE, 2, 0.2, null, State.Storage.AUTO, 7);
+		StringWriter out = new StringWriter();
+		PatternIO.writePlaintext(st, out);
+		Fixtures.assertSameCells(st, PatternIO.readPlaintext(new StringReader("!Name: random\n"
+				+ out)));
+
+		State<Point2D> glider = PatternIO.readPlaintext(new StringReader(".O\r\n..O\r\nOOO\r\n"));
+		Fixtures.assertSameCells(PatternIO.readRle(new StringReader(GLIDER_RLE)), glider);
+	}
+}
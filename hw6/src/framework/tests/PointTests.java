@@ -5,9 +5,12 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.fail;
 
+import java.util.Arrays;
+
 import framework.lib.Point;
 import framework.lib.Point1D;
 import framework.lib.Point2D;
+import framework.lib.Point3D;
 
 import org.junit.Test;
 
@@ -222,4 +225,74 @@ public class PointTests
 
 		p1.compareTo(null);
 	}
+
+	/**
+	 * A 2D point backed by Point's own coordinate array, like a user defined
+	 * subclass would be.
+	 */
+	private static class ArrayPoint extends Point
+	{
+		ArrayPoint(int x, int y)
+		{
+			super(2);
+			setCoord(0, x);
+			setCoord(1, y);
+		}
+
+		@Override
+		public Point copy()
+		{
+			return new ArrayPoint(getCoord(0), getCoord(1));
+		}
+	}
+
+	@Test
+	public void testFieldPointsMatchArrayPoints()
+	{
+		int[][] coords = { { 0, 0 }, { 1, -1 }, { -5, 31 }, { Integer.MAX_VALUE, Integer.MIN_VALUE } };
+		for (int[] c : coords) {
+			Point2D p = new Point2D(c[0], c[1]);
+			ArrayPoint a = new ArrayPoint(c[0], c[1]);
+			assertTrue(pointsEqual(p, a));
+			assertTrue(pointsEqual(a, p));
+			assertEquals(a.toString(), p.toString());
+		}
+		assertFalse(new Point2D(1, 2).equals(new ArrayPoint(2, 1)));
+	}
+
+	@Test
+	public void testPack()
+	{
+		int[] values = { 0, 1, -1, 12345, Integer.MAX_VALUE, Integer.MIN_VALUE };
+		for (int x : values) {
+			for (int y : values) {
+				long packed = Point2D.pack(x, y);
+				assertEquals(x, Point2D.unpackX(packed));
+				assertEquals(y, Point2D.unpackY(packed));
+				assertEquals(new Point2D(x, y), Point2D.unpack(packed));
+				assertEquals(packed, new Point2D(x, y).pack());
+			}
+		}
+		assertFalse(Point2D.pack(-1, 0) == Point2D.pack(0, -1));
+	}
+
+	@Test
+	public void testPoint3D()
+	{
+		Point3D p1 = new Point3D(4, -2, 7);
+		Point3D p2 = new Point3D(1, 1, 1);
+
+		assertEquals(4, p1.getX());
+		assertEquals(-2, p1.getY());
+		assertEquals(7, p1.getZ());
+		assertEquals(3, p1.numDimensions());
+		assertTrue(pointsEqual(p1, p1.copy()));
+		assertTrue(pointsEqual(p1.add(p2), new Point3D(5, -1, 8)));
+		assertTrue(pointsEqual(p1.sub(p2), new Point3D(3, -3, 6)));
+		assertEquals(Arrays.hashCode(new int[] { 4, -2, 7 }), p1.hashCode());
+		assertEquals("[4, -2, 7]", p1.toString());
+		assertEquals(1, new Point3D(2, 2, 2).compareTo(p2));
+		assertFalse(pointsEqual(p1, new Point2D(4, -2)));
+		assertFalse(p1.equals(new Point3D(4, -2, 6)));
+	}
 }
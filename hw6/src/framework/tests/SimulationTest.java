@@ -0,0 +1,33 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import example.Life3DRule;
+import framework.lib.Point3D;
+import framework.lib.Simulation;
+import framework.lib.Simulation3D;
+
+import org.junit.Test;
+
+
+public class SimulationTest
+{
+
+	@Test
+	public void testHeadless3D()
+	{
+		Simulation<Point3D> sim = Simulation.getSimulation(new Life3DRule(), null);
+		assertTrue(sim instanceof Simulation3D);
+
+		long population = sim.getState().getPopulation();
+		assertEquals(10, sim.runHeadless(10));
+		assertEquals(10, sim.getState().getGeneration());
+		assertTrue(population != sim.getState().getPopulation());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testHeadlessNegative()
+	{
+		Simulation.getSimulation(new Life3DRule(), null).runHeadless(-1);
+	}
+}
@@ -0,0 +1,87 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+
+import framework.lib.Point1D;
+import framework.lib.Point2D;
+import framework.lib.State;
+import framework.lib.StateSnapshot;
+
+import org.junit.Test;
+
+
+public class StateSnapshotTest
+{
+
+	private static final Point2D	SIZE	= new Point2D(67, 45);
+	private static final boolean[]	WRAPS	= { true, false };
+
+	private byte[] save(State<?> st) throws IOException
+	{
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		StateSnapshot.write(st, Channels.newChannel(out));
+		return out.toByteArray();
+	}
+
+	private State<Point2D> load(byte[] bytes) throws IOException
+	{
+		return StateSnapshot.read(Channels.newChannel(new ByteArrayInputStream(bytes)),
+				new Point2D(0, 0));
+	}
+
+	private void checkRoundTrip(State<Point2D> st) throws IOException
+	{
+		State<Point2D> copy = load(save(st));
+		assertEquals(st.getSize(), copy.getSize());
+		assertEquals(st.getNumStates(), copy.getNumStates());
+		assertTrue(Arrays.equals(st.getWraps(), copy.getWraps()));
+		assertEquals(st.getStorage(), copy.getStorage());
+		Fixtures.assertSameCells(st, copy);
+	}
+
+
+	@Test
+	public void testRoundTrip() throws IOException
+	{
+		State.Storage[] storages = { State.Storage.SPARSE, State.Storage.DENSE,
+				State.Storage.AUTO };
+		for (State.Storage storage : storages) {
+			for (double density : new double[] { 0, 0.01, 0.5, 1 }) {
+				checkRoundTrip(Fixtures.random(SIZE, 2, density, WRAPS, storage, 2));
+				checkRoundTrip(Fixtures.random(SIZE, 3, density, WRAPS, storage, 3));
+				checkRoundTrip(Fixtures.random(SIZE, 300, density, WRAPS, storage, 300));
+			}
+		}
+	}
+
+	@Test
+	public void testEmptyIsSmall() throws IOException
+	{
+		State<Point1D> st = new State<Point1D>(new Point1D(1 << 30), 2);
+		assertTrue(save(st).length < 64);
+	}
+
+	@Test(expected = IOException.class)
+	public void testCorrupt() throws IOException
+	{
+		byte[] bytes = save(Fixtures.random(SIZE, 3, 0.3, WRAPS, State.Storage.DENSE, 3));
+		bytes[bytes.length / 2] ^= 1;
+		load(bytes);
+	}
+
+	@Test(expected = IOException.class)
+	public void testTruncated() throws IOException
+	{
+		byte[] bytes = save(Fixtures.random(SIZE, 2, 0.5, WRAPS, State.Storage.DENSE, 2));
+		byte[] half = new byte[bytes.length / 2];
+		System.arraycopy(bytes, 0, half, 0, half.length);
+		load(half);
+	}
+
+}
@@ -2,11 +2,31 @@ package framework.tests;
 
 import static org.junit.Assert.*;
 
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import example.Life3DRule;
+import example.LifeRule;
+import example.Seeds;
+import framework.interfaces.CellVisitor;
+import framework.interfaces.QuiescentRule;
+import framework.interfaces.Rule;
+import framework.lib.CompiledRule;
+import framework.lib.DirtyRegions;
+import framework.lib.Neighborhood;
 import framework.lib.Point1D;
 import framework.lib.Point2D;
+import framework.lib.Point3D;
+import framework.lib.Region;
 import framework.lib.State;
+import framework.lib.UnboundedState;
 
 import org.junit.Test;
 
@@ -14,6 +34,11 @@ import org.junit.Test;
 public class StateTest
 {
 
+	private static final State.Storage[]	IN_MEMORY	= { State.Storage.SPARSE,
+			State.Storage.DENSE, State.Storage.AUTO };
+
+	private static final Point2D			SMALL		= new Point2D(13, 7);
+
 	@Test
 	public void sanityTest1()
 	{
@@ -169,4 +194,737 @@ public class StateTest
 		assertEquals(0, st.getCellState(new Point1D(11)));
 	}
 
+	/**
+	 * A rule that counts the live neighbors of a cell, so any mistake in how a
+	 * State finds neighbors shows up in the result.
+	 */
+	private static class CountRule implements Rule<Point2D>
+	{
+		@Override
+		public int stepCell(Neighborhood<Point2D> n)
+		{
+			int sum = 0;
+			for (Point2D p : n)
+				sum += n.getCellState(p) == 0 ? 0 : 1;
+			return sum % 3;
+		}
+
+		@Override
+		public Point2D getOrigin()
+		{
+			return new Point2D(0, 0);
+		}
+
+		@Override
+		public int getNeighborhoodSize()
+		{
+			return 1;
+		}
+
+		@Override
+		public State<Point2D> getInitialState()
+		{
+			return null;
+		}
+	}
+
+	private static class QuiescentCountRule extends CountRule implements
+			QuiescentRule<Point2D>
+	{
+	}
+
+	/**
+	 * A rule that checks the bulk accessors of whatever neighborhood it is
+	 * given against getCellState.
+	 */
+	private static class BulkCheckRule implements QuiescentRule<Point2D>
+	{
+		final int	radius;
+
+		BulkCheckRule(int radius)
+		{
+			this.radius = radius;
+		}
+
+		@Override
+		public int stepCell(Neighborhood<Point2D> n)
+		{
+			int cells = (2 * radius + 1) * (2 * radius + 1);
+			int[] states = new int[cells + 1];
+			assertEquals(cells, n.copyStates(states));
+			int i = 0, sum = 0, twos = 0;
+			for (Point2D p : n) {
+				int s = n.getCellState(p);
+				assertEquals(s, states[i++]);
+				sum += s;
+				twos += s == 2 ? 1 : 0;
+			}
+			assertEquals(sum, n.sumStates());
+			assertEquals(twos, n.countState(2));
+			assertEquals(n.getCellState(new Point2D(0, 0)), states[cells / 2]);
+
+			for (int b = 0; b <= radius; b++) {
+				int box = 0;
+				for (Point2D p : n) {
+					if (Math.abs(p.getX()) <= b && Math.abs(p.getY()) <= b)
+						box += n.getCellState(p);
+				}
+				assertEquals(box, n.boxSum(b));
+			}
+			return (sum + states[3]) % 3;
+		}
+
+		@Override
+		public Point2D getOrigin()
+		{
+			return new Point2D(0, 0);
+		}
+
+		@Override
+		public int getNeighborhoodSize()
+		{
+			return radius;
+		}
+
+		@Override
+		public State<Point2D> getInitialState()
+		{
+			return null;
+		}
+	}
+
+	@Test
+	public void testStorageEquivalence()
+	{
+		boolean[] wraps = { true, false };
+		State<Point2D> sparse = Fixtures.random(SMALL, 3, 0.4, wraps, State.Storage.SPARSE, 42);
+		State<Point2D> dense = Fixtures.random(SMALL, 3, 0.4, wraps, State.Storage.DENSE, 42);
+		assertFalse(sparse.isDense());
+		assertTrue(dense.isDense());
+
+		for (int i = 0; i < 5; i++) {
+			Fixtures.assertSameCells(sparse, dense);
+			sparse.step(new CountRule());
+			dense.step(new CountRule());
+		}
+	}
+
+	@Test
+	public void testAutoStorage()
+	{
+		Point2D size = new Point2D(1000, 1000);
+		State<Point2D> st = new State<Point2D>(size, 2);
+		assertEquals(State.Storage.AUTO, st.getStorage());
+		assertFalse(st.isDense());
+
+		st.setCellState(new Point2D(3, 4), 1);
+		st.setStorage(State.Storage.DENSE);
+		assertTrue(st.isDense());
+		assertEquals(1, st.getCellState(new Point2D(3, 4)));
+
+		st.setStorage(State.Storage.AUTO);
+		assertFalse(st.isDense());
+		assertEquals(1, st.getCellState(new Point2D(3, 4)));
+
+		assertTrue(new State<Point2D>(new Point2D(10, 10), 2).isDense());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetCellStateInvalid()
+	{
+		State<Point1D> st = new State<Point1D>(new Point1D(5), 2);
+		st.setCellState(new Point1D(1), 2);
+	}
+
+	@Test
+	public void testSetSizeDense()
+	{
+		Point2D size = new Point2D(4, 3);
+		State<Point2D> st = new State<Point2D>(size, 2, null, null,
+				State.Storage.DENSE);
+		st.setCellState(new Point2D(3, 2), 1);
+		st.setCellState(new Point2D(1, 1), 1);
+
+		st.setSize(new Point2D(6, 2));
+		assertEquals(0, st.getCellState(new Point2D(3, 1)));
+		assertEquals(1, st.getCellState(new Point2D(1, 1)));
+	}
+
+	@Test
+	public void testStepAtomic()
+	{
+		boolean[] wraps = { true, true };
+		State<Point2D> st = Fixtures.random(SMALL, 3, 0.4, wraps, State.Storage.DENSE, 42);
+		State<Point2D> copy = Fixtures.random(SMALL, 3, 0.4, wraps, State.Storage.DENSE, 42);
+		st.step(new CountRule());
+		copy.step(new CountRule());
+
+		try {
+			st.step(new CountRule() {
+				int	calls;
+
+				@Override
+				public int stepCell(Neighborhood<Point2D> n)
+				{
+					if (++calls > 50) throw new IllegalStateException();
+					return super.stepCell(n);
+				}
+			});
+			fail("rule should have thrown");
+		}
+		catch (IllegalStateException e) {
+		}
+
+		Fixtures.assertSameCells(copy, st);
+	}
+
+	@Test
+	public void testParallelStep() throws IOException
+	{
+		boolean[] wraps = { false, true };
+		for (State.Storage storage : IN_MEMORY) {
+			State<Point2D> serial = Fixtures.random(SMALL, 3, 0.4, wraps, storage, 42);
+			State<Point2D> parallel = Fixtures.random(SMALL, 3, 0.4, wraps, storage, 42);
+			parallel.setParallelism(4);
+			parallel.setParallelThreshold(0);
+			assertEquals(4, parallel.getParallelism());
+
+			for (int i = 0; i < 5; i++) {
+				// Closing shuts down the threads, and the next step restarts them
+				if (i == 3) parallel.close();
+				serial.step(new CountRule());
+				parallel.step(new CountRule());
+				Fixtures.assertSameCells(serial, parallel);
+			}
+			parallel.close();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetParallelism()
+	{
+		State<Point1D> st = new State<Point1D>(new Point1D(5), 2);
+		st.setParallelism(0);
+	}
+
+	@Test
+	public void testTiledStep()
+	{
+		// A world much bigger than the pattern, so most tiles are skipped
+		boolean[] wraps = { true, false };
+		for (State.Storage storage : IN_MEMORY) {
+			State<Point2D> full = new State<Point2D>(new Point2D(70, 50), 3,
+					wraps, null, storage);
+			State<Point2D> tiled = new State<Point2D>(new Point2D(70, 50), 3,
+					wraps, null, storage);
+			Random r = new Random(7);
+			for (int i = 0; i < 12; i++) {
+				Point2D p = new Point2D(r.nextInt(6), 20 + r.nextInt(6));
+				int s = 1 + r.nextInt(2);
+				full.setCellState(p, s);
+				tiled.setCellState(p, s);
+			}
+
+			Rule<Point2D> rule = new QuiescentCountRule();
+			for (int i = 0; i < 12; i++) {
+				if (i == 6) {
+					full.setCellState(new Point2D(40, 3), 2);
+					tiled.setCellState(new Point2D(40, 3), 2);
+				}
+				full.step(new CountRule());
+				tiled.step(rule);
+				Fixtures.assertSameCells(full, tiled);
+			}
+		}
+	}
+
+	/**
+	 * Checks the hash a State keeps against the hash of the same cells set
+	 * one at a time on a new State.
+	 */
+	private void checkHash(State<Point2D> st)
+	{
+		State<Point2D> fresh = new State<Point2D>(st.getSize(), st.getNumStates());
+		for (Point2D p : st)
+			fresh.setCellState(p, st.getCellState(p));
+		assertEquals(fresh.getHash(), st.getHash());
+	}
+
+	@Test
+	public void testHash()
+	{
+		boolean[] wraps = { true, false };
+		for (State.Storage storage : IN_MEMORY) {
+			State<Point2D> st = Fixtures.random(SMALL, 3, 0.4, wraps, storage, 42);
+			checkHash(st);
+			for (int i = 0; i < 12; i++) {
+				if (i == 4) {
+					st.setParallelism(3);
+					st.setParallelThreshold(0);
+				}
+				st.step(i % 3 == 0 ? new CountRule() : new QuiescentCountRule());
+				checkHash(st);
+			}
+			st.setSize(new Point2D(9, 9));
+			checkHash(st);
+
+			long hash = st.getHash();
+			Point2D p = new Point2D(2, 3);
+			int old = st.getCellState(p);
+			st.setCellState(p, (old + 1) % 3);
+			assertTrue(hash != st.getHash());
+			st.setCellState(p, old);
+			assertEquals(hash, st.getHash());
+
+			// A grid that is rejected leaves the cells and hash as they were
+			HashMap<Point2D, Integer> bad = new HashMap<Point2D, Integer>();
+			bad.put(new Point2D(0, 0), 1);
+			bad.put(new Point2D(1, 0), 7);
+			try {
+				st.setState(bad);
+				fail();
+			}
+			catch (IllegalArgumentException e) {
+			}
+			assertEquals(hash, st.getHash());
+			assertEquals(old, st.getCellState(p));
+			checkHash(st);
+		}
+	}
+
+	@Test
+	public void testMappedStorage() throws IOException
+	{
+		boolean[] wraps = { false, true };
+		File file = File.createTempFile("state", ".cells");
+		file.delete();
+		try {
+			State<Point2D> dense = Fixtures.random(SMALL, 3, 0.4, wraps, State.Storage.DENSE, 42);
+			State<Point2D> mapped = State.mapped(new Point2D(13, 7), 3, wraps, file);
+			assertEquals(State.Storage.MAPPED, mapped.getStorage());
+			for (Point2D p : dense)
+				mapped.setCellState(p, dense.getCellState(p));
+
+			for (int i = 0; i < 4; i++) {
+				dense.step(new CountRule());
+				mapped.step(i % 2 == 0 ? new CountRule() : new QuiescentCountRule());
+			}
+			mapped.close();
+
+			// Carries on from the last generation
+			mapped = State.mapped(new Point2D(13, 7), 3, wraps, file);
+			Fixtures.assertSameCells(dense, mapped);
+			assertEquals(dense.getPopulation(), mapped.getPopulation());
+
+			dense.step(new CountRule());
+			mapped.step(new CountRule());
+			Fixtures.assertSameCells(dense, mapped);
+
+			mapped.setStorage(State.Storage.DENSE);
+			mapped.step(new CountRule());
+			dense.step(new CountRule());
+			Fixtures.assertSameCells(dense, mapped);
+			mapped.close();
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMappedWrongSize() throws IOException
+	{
+		File file = File.createTempFile("state", ".cells");
+		file.delete();
+		try {
+			State.mapped(new Point2D(10, 10), 2, null, file).close();
+			State.mapped(new Point2D(10, 11), 2, null, file);
+		}
+		finally {
+			file.delete();
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetStorageMappedWithoutFile()
+	{
+		new State<Point2D>(new Point2D(3, 3), 2).setStorage(State.Storage.MAPPED);
+	}
+
+	@Test
+	public void testDirtyRegions()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(64, 64), 3);
+		DirtyRegions<Point2D> changes = st.trackChanges();
+		List<Region<Point2D>> regions = changes.take();
+		assertEquals(1, regions.size());
+		assertEquals(new Region<Point2D>(new Point2D(0, 0), new Point2D(64, 64)), regions.get(0));
+		assertFalse(changes.hasChanges());
+
+		st.setCellState(new Point2D(20, 3), 1);
+		st.setCellState(new Point2D(21, 3), 1);
+		regions = changes.take();
+		assertEquals(1, regions.size());
+		assertEquals(new Region<Point2D>(new Point2D(16, 0), new Point2D(32, 16)), regions.get(0));
+
+		// Every cell a quiescent step changes is in a region, and far away
+		// tiles aren't
+		HashMap<Point2D, Integer> before = new HashMap<Point2D, Integer>();
+		for (Point2D p : st)
+			before.put(p, st.getCellState(p));
+		st.step(new QuiescentCountRule());
+		regions = changes.take();
+		for (Point2D p : st) {
+			if (st.getCellState(p) == before.get(p)) continue;
+			boolean found = false;
+			for (Region<Point2D> region : regions)
+				found |= region.contains(p);
+			assertTrue(p.toString(), found);
+		}
+		for (Region<Point2D> region : regions)
+			assertFalse(region.contains(new Point2D(60, 60)));
+
+		st.step(new CountRule());
+		regions = changes.take();
+		assertEquals(1, regions.size());
+		assertEquals(64 * 64, regions.get(0).numCells());
+
+		st.stopTrackingChanges(changes);
+		st.setCellState(new Point2D(0, 0), 1);
+		assertFalse(changes.hasChanges());
+	}
+
+	@Test
+	public void testNonZeroCells()
+	{
+		State<Point2D> st = Fixtures.random(SMALL, 3, 0.4, new boolean[2], State.Storage.SPARSE, 42);
+		HashMap<Point2D, Integer> seen = new HashMap<Point2D, Integer>();
+		for (Point2D p : st.nonZeroCells())
+			assertNull(seen.put(p, st.getCellState(p)));
+		assertEquals(st.getPopulation(), seen.size());
+		for (Point2D p : st)
+			assertEquals(st.getCellState(p) != 0, seen.containsKey(p));
+
+		final HashMap<Point2D, Integer> visited = new HashMap<Point2D, Integer>();
+		st.visitCells(new CellVisitor() {
+			@Override
+			public void visitCell(int[] coords, int state)
+			{
+				visited.put(new Point2D(coords[0], coords[1]), state);
+			}
+		});
+		assertEquals(seen, visited);
+	}
+
+	@Test
+	public void testCellsIn()
+	{
+		State<Point2D> st = Fixtures.random(SMALL, 3, 0.4, new boolean[2], State.Storage.DENSE, 42);
+		Region<Point2D> region = new Region<Point2D>(new Point2D(2, 1), new Point2D(7, 4));
+
+		final List<Point2D> visited = new ArrayList<Point2D>();
+		final List<Integer> states = new ArrayList<Integer>();
+		st.visitCells(region, new CellVisitor() {
+			@Override
+			public void visitCell(int[] coords, int state)
+			{
+				visited.add(new Point2D(coords[0], coords[1]));
+				states.add(state);
+			}
+		});
+
+		int i = 0;
+		for (Point2D p : st) {
+			if (!region.contains(p)) continue;
+			assertEquals(p, visited.get(i));
+			assertEquals(st.getCellState(p), (int) states.get(i));
+			i++;
+		}
+		assertEquals(15, i);
+		assertEquals(15, visited.size());
+
+		i = 0;
+		for (Point2D p : st.cellsIn(region))
+			assertEquals(visited.get(i++), p);
+		assertEquals(15, i);
+
+		Region<Point2D> empty = new Region<Point2D>(new Point2D(3, 3), new Point2D(3, 5));
+		assertFalse(st.cellsIn(empty).iterator().hasNext());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCellsInOutside()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(5, 5), 2);
+		st.cellsIn(new Region<Point2D>(new Point2D(0, 0), new Point2D(6, 5)));
+	}
+
+	@Test
+	public void testBulkNeighborhood()
+	{
+		boolean[][] wraps = { { false, false }, { true, false } };
+		for (boolean[] w : wraps) {
+			State<Point2D> st = Fixtures.random(SMALL, 3, 0.4, w, State.Storage.DENSE, 42);
+			UnboundedState<Point2D> plane = new UnboundedState<Point2D>(new Point2D(0, 0), 3);
+			plane.setState(st);
+			for (int i = 0; i < 3; i++) {
+				st.step(new BulkCheckRule(2));
+				plane.step(new BulkCheckRule(2));
+			}
+		}
+		new CompiledRule<Point2D>(new BulkCheckRule(1), 2);
+	}
+
+	/**
+	 * Steps a rule cell by cell, hiding that it is outer-totalistic.
+	 */
+	private static class Plain implements Rule<Point2D>
+	{
+		private final Rule<Point2D>	rule;
+
+		Plain(Rule<Point2D> rule)
+		{
+			this.rule = rule;
+		}
+
+		@Override
+		public int stepCell(Neighborhood<Point2D> n)
+		{
+			return rule.stepCell(n);
+		}
+
+		@Override
+		public Point2D getOrigin()
+		{
+			return rule.getOrigin();
+		}
+
+		@Override
+		public int getNeighborhoodSize()
+		{
+			return rule.getNeighborhoodSize();
+		}
+
+		@Override
+		public State<Point2D> getInitialState()
+		{
+			return null;
+		}
+	}
+
+	@Test
+	public void testOuterTotalistic()
+	{
+		Point2D[] sizes = { new Point2D(40, 30), new Point2D(3, 2) };
+		boolean[][] wraps = { { false, false }, { true, true } };
+		List<Rule<Point2D>> rules = new ArrayList<Rule<Point2D>>();
+		rules.add(new LifeRule());
+		rules.add(new Seeds());
+		rules.add(new CompiledRule<Point2D>(new LifeRule(), 2));
+		for (State.Storage storage : IN_MEMORY) {
+			for (Point2D size : sizes) {
+				for (boolean[] w : wraps) {
+					for (Rule<Point2D> rule : rules) {
+						State<Point2D> counted = new State<Point2D>(size, 2, w, null, storage);
+						State<Point2D> plain = new State<Point2D>(size, 2, w, null, storage);
+						Random r = new Random(11);
+						for (Point2D p : counted) {
+							int s = r.nextInt(3) == 0 ? 1 : 0;
+							counted.setCellState(p, s);
+							plain.setCellState(p, s);
+						}
+
+						for (int i = 0; i < 40; i++) {
+							if (i % 7 == 3) {
+								// Edits between steps, and a step by another path
+								Point2D p = new Point2D(r.nextInt(size.getX()), r.nextInt(size.getY()));
+								counted.setCellState(p, 1 - counted.getCellState(p));
+								plain.setCellState(p, counted.getCellState(p));
+							}
+							counted.step(i == 20 ? new Plain(rule) : rule);
+							plain.step(new Plain(rule));
+							assertEquals(plain.getPopulation(), counted.getPopulation());
+							assertEquals(plain.getHash(), counted.getHash());
+							Fixtures.assertSameCells(plain, counted);
+						}
+						assertEquals(40, counted.getGeneration());
+					}
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testOuterTotalisticBadSets()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(5, 5), 2);
+		st.step(new Seeds() {
+			@Override
+			public boolean[] getBirth()
+			{
+				return new boolean[8];
+			}
+		});
+	}
+
+	@Test
+	public void testOuterTotalisticLargeSparse()
+	{
+		// Far too big for a count per cell, so only the live cells are kept
+		List<Rule<Point2D>> rules = new ArrayList<Rule<Point2D>>();
+		rules.add(new LifeRule());
+		rules.add(CompiledRule.compile(new LifeRule(), 2));
+		for (Rule<Point2D> rule : rules) {
+			State<Point2D> st = new State<Point2D>(new Point2D(40000, 40000), 2,
+					null, null, State.Storage.SPARSE);
+			for (int[] c : Fixtures.GLIDER)
+				st.setCellState(new Point2D(20000 + c[0], 20000 + c[1]), 1);
+
+			for (int i = 0; i < 8; i++)
+				st.step(rule);
+			assertEquals(State.Storage.SPARSE, st.getStorage());
+			assertEquals(5, st.getPopulation());
+			for (int[] c : Fixtures.GLIDER)
+				assertEquals(1, st.getCellState(new Point2D(20002 + c[0], 20002 + c[1])));
+		}
+	}
+
+	/**
+	 * LifeRule that records the threads it is evaluated on.
+	 */
+	private static class ThreadLifeRule extends LifeRule
+	{
+		final Set<Thread>	threads	= Collections.synchronizedSet(new HashSet<Thread>());
+
+		@Override
+		public int stepCell(Neighborhood<Point2D> n)
+		{
+			threads.add(Thread.currentThread());
+			return super.stepCell(n);
+		}
+	}
+
+	@Test
+	public void testOuterTotalisticParallel()
+	{
+		Point2D size = new Point2D(300, 300);
+		boolean[] wraps = { true, false };
+		State<Point2D> serial = Fixtures.random(size, 2, 0.3, wraps, State.Storage.DENSE, 5);
+		State<Point2D> parallel = Fixtures.random(size, 2, 0.3, wraps, State.Storage.DENSE, 5);
+		parallel.setParallelism(4);
+		assertTrue(300 * 300 >= parallel.getParallelThreshold());
+
+		ThreadLifeRule rule = new ThreadLifeRule();
+		for (int i = 0; i < 10; i++) {
+			serial.step(new LifeRule());
+			parallel.step(rule);
+			assertEquals(serial.getHash(), parallel.getHash());
+			Fixtures.assertSameCells(serial, parallel);
+		}
+		rule.threads.remove(Thread.currentThread());
+		assertFalse(rule.threads.isEmpty());
+	}
+
+	@Test
+	public void testBoxSum()
+	{
+		// Boxes wider than the world along axes that wrap
+		boolean[][] wraps = { { true, true }, { false, true } };
+		for (boolean[] w : wraps) {
+			for (State.Storage storage : IN_MEMORY) {
+				State<Point2D> st = Fixtures.random(SMALL, 3, 0.4, w, storage, 42);
+				st.setParallelism(w[0] ? 3 : 1);
+				st.setParallelThreshold(0);
+				for (int i = 0; i < 3; i++)
+					st.step(new BulkCheckRule(9));
+				st.setCellState(new Point2D(4, 4), 2);
+				st.step(new BulkCheckRule(4));
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBoxSumTooBig()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(5, 5), 2);
+		st.getNeighborhood(new Point2D(2, 2), 1).boxSum(2);
+	}
+
+	@Test
+	public void testThreeDimensions()
+	{
+		final Life3DRule life = new Life3DRule();
+		Rule<Point3D> plain = new Rule<Point3D>() {
+			@Override
+			public int stepCell(Neighborhood<Point3D> n)
+			{
+				return life.stepCell(n);
+			}
+
+			@Override
+			public Point3D getOrigin()
+			{
+				return life.getOrigin();
+			}
+
+			@Override
+			public int getNeighborhoodSize()
+			{
+				return 1;
+			}
+
+			@Override
+			public State<Point3D> getInitialState()
+			{
+				return null;
+			}
+		};
+
+		int[] size = { 9, 7, 6 };
+		boolean[][] wraps = { { false, false, false }, { true, false, true } };
+		for (boolean[] w : wraps) {
+			for (State.Storage storage : IN_MEMORY) {
+				State<Point3D> st = new State<Point3D>(new Point3D(size[0], size[1], size[2]), 2, w, null, storage);
+				Random r = new Random(5);
+				int cells = 0;
+				for (Point3D p : st) {
+					if (cells++ == 1) assertEquals(new Point3D(1, 0, 0), p);
+					if (r.nextInt(3) == 0) st.setCellState(p, 1);
+				}
+				assertEquals(9 * 7 * 6, cells);
+
+				for (int i = 0; i < 6; i++) {
+					// The next generation, worked out by hand
+					HashMap<Point3D, Integer> next = new HashMap<Point3D, Integer>();
+					for (Point3D p : st) {
+						int[] c = { p.getX(), p.getY(), p.getZ() };
+						int sum = 0;
+						for (int n = 0; n < 27; n++) {
+							int[] q = { c[0] + n % 3 - 1, c[1] + n / 3 % 3 - 1, c[2] + n / 9 - 1 };
+							boolean inside = true;
+							for (int d = 0; d < 3; d++) {
+								if (w[d]) q[d] = (q[d] + size[d]) % size[d];
+								inside &= q[d] >= 0 && q[d] < size[d];
+							}
+							if (n != 13 && inside) sum += st.getCellState(new Point3D(q[0], q[1], q[2]));
+						}
+						int s = st.getCellState(p);
+						next.put(p, s == 0 ? (sum == 6 ? 1 : 0) : (sum >= 5 && sum <= 7 ? 1 : 0));
+					}
+
+					st.step(i % 2 == 0 ? life : plain);
+					for (Point3D p : st)
+						assertEquals((int) next.get(p), st.getCellState(p));
+				}
+			}
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCopyStatesTooSmall()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(5, 5), 2);
+		st.getNeighborhood(new Point2D(2, 2), 1).copyStates(new int[8]);
+	}
+
 }
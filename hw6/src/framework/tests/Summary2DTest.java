@@ -0,0 +1,96 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import example.LifeRule;
+import framework.lib.Point2D;
+import framework.lib.State;
+import framework.lib.Summary2D;
+
+import org.junit.Test;
+
+
+public class Summary2DTest
+{
+
+	/**
+	 * Checks every block of every level against the cells.
+	 */
+	private void checkSummary(State<Point2D> st, Summary2D summary)
+	{
+		Point2D size = st.getSize();
+		for (int level = 0; level < summary.numLevels(); level++) {
+			int side = 1 << level;
+			assertEquals((size.getX() + side - 1) / side, summary.getWidth(level));
+			assertEquals((size.getY() + side - 1) / side, summary.getHeight(level));
+
+			for (int y = 0; y < summary.getHeight(level); y++) {
+				for (int x = 0; x < summary.getWidth(level); x++) {
+					int count = 0, max = 0;
+					for (int cy = y * side; cy < Math.min(size.getY(), (y + 1) * side); cy++) {
+						for (int cx = x * side; cx < Math.min(size.getX(), (x + 1) * side); cx++) {
+							int s = st.getCellState(new Point2D(cx, cy));
+							if (s != 0) count++;
+							max = Math.max(max, s);
+						}
+					}
+					assertEquals(count, summary.getCount(level, x, y));
+					assertEquals(max, summary.getMaxState(level, x, y));
+				}
+			}
+		}
+		int top = summary.numLevels() - 1;
+		assertEquals(1, summary.getWidth(top));
+		assertEquals(1, summary.getHeight(top));
+		assertEquals(st.getPopulation(), summary.getCount(top, 0, 0));
+	}
+
+	@Test
+	public void testLevels()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(100, 70), 2);
+		Random r = new Random(3);
+		for (int i = 0; i < 1500; i++)
+			st.setCellState(new Point2D(r.nextInt(100), r.nextInt(70)), 1);
+
+		Summary2D summary = new Summary2D(st);
+		assertEquals(8, summary.numLevels());
+		checkSummary(st, summary);
+		assertEquals(0, summary.getCount(3, -1, 0));
+		assertEquals(0, summary.getMaxState(3, 0, 100));
+	}
+
+	@Test
+	public void testUpdate()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(90, 90), 2);
+		Summary2D summary = new Summary2D(st);
+		checkSummary(st, summary);
+
+		int[][] glider = { { 1, 0 }, { 2, 1 }, { 0, 2 }, { 1, 2 }, { 2, 2 } };
+		for (int[] c : glider)
+			st.setCellState(new Point2D(c[0] + 40, c[1] + 40), 1);
+		summary.update();
+		checkSummary(st, summary);
+
+		for (int i = 0; i < 20; i++) {
+			st.step(new LifeRule());
+			summary.update();
+			checkSummary(st, summary);
+		}
+
+		st.setSize(new Point2D(50, 20));
+		summary.update();
+		checkSummary(st, summary);
+		summary.close();
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testBadLevel()
+	{
+		State<Point2D> st = new State<Point2D>(new Point2D(10, 10), 2);
+		new Summary2D(st).getCount(5, 0, 0);
+	}
+}
@@ -0,0 +1,172 @@
+package framework.tests;
+
+import static org.junit.Assert.*;
+
+import example.LifeRule;
+import framework.interfaces.QuiescentRule;
+import framework.interfaces.Rule;
+import framework.lib.CompiledRule;
+import framework.lib.Neighborhood;
+import framework.lib.Point1D;
+import framework.lib.Point2D;
+import framework.lib.Region;
+import framework.lib.State;
+import framework.lib.UnboundedState;
+
+import org.junit.Test;
+
+
+public class UnboundedStateTest
+{
+
+	/**
+	 * Rule 90: a cell becomes the exclusive or of its two neighbors.
+	 */
+	private static class Rule90 implements QuiescentRule<Point1D>
+	{
+		@Override
+		public int stepCell(Neighborhood<Point1D> n)
+		{
+			return n.getCellState(new Point1D(-1)) ^ n.getCellState(new Point1D(1));
+		}
+
+		@Override
+		public Point1D getOrigin()
+		{
+			return new Point1D(0);
+		}
+
+		@Override
+		public int getNeighborhoodSize()
+		{
+			return 1;
+		}
+
+		@Override
+		public State<Point1D> getInitialState()
+		{
+			return null;
+		}
+	}
+
+	private void checkAgainstState(Rule<Point2D> rule)
+	{
+		State<Point2D> bounded = new State<Point2D>(new Point2D(120, 120), 2);
+		UnboundedState<Point2D> unbounded = new UnboundedState<Point2D>(new Point2D(0, 0), 2);
+		for (int[] c : Fixtures.GLIDER) {
+			bounded.setCellState(new Point2D(c[0] + 10, c[1] + 10), 1);
+			unbounded.setCellState(new Point2D(c[0] + 10, c[1] + 10), 1);
+		}
+		// A block, which never changes, in a tile of its own
+		for (int i = 0; i < 4; i++) {
+			bounded.setCellState(new Point2D(100 + i % 2, 20 + i / 2), 1);
+			unbounded.setCellState(new Point2D(100 + i % 2, 20 + i / 2), 1);
+		}
+
+		State<Point2D> copy = new State<Point2D>(new Point2D(120, 120), 2);
+		for (int i = 0; i < 200; i++) {
+			bounded.step(rule);
+			unbounded.step(rule);
+			assertEquals(bounded.getPopulation(), unbounded.getPopulation());
+		}
+		unbounded.writeTo(copy);
+		assertEquals(200, copy.getGeneration());
+		Fixtures.assertSameCells(bounded, copy);
+	}
+
+	@Test
+	public void testMatchesState()
+	{
+		checkAgainstState(new LifeRule());
+		checkAgainstState(new CompiledRule<Point2D>(new LifeRule(), 2));
+	}
+
+	@Test
+	public void testWiderCompiledRule()
+	{
+		// A rule compiled for more states than the world has
+		UnboundedState<Point2D> plain = new UnboundedState<Point2D>(new Point2D(0, 0), 2);
+		UnboundedState<Point2D> compiled = new UnboundedState<Point2D>(new Point2D(0, 0), 2);
+		for (int[] c : Fixtures.GLIDER) {
+			plain.setCellState(new Point2D(c[0], c[1]), 1);
+			compiled.setCellState(new Point2D(c[0], c[1]), 1);
+		}
+		for (int i = 0; i < 3; i++) {
+			plain.setCellState(new Point2D(40 + i, 10), 1);
+			compiled.setCellState(new Point2D(40 + i, 10), 1);
+		}
+
+		Rule<Point2D> wide = new CompiledRule<Point2D>(new LifeRule(), 3);
+		for (int i = 0; i < 30; i++) {
+			plain.step(new LifeRule());
+			compiled.step(wide);
+			assertEquals(plain.getPopulation(), compiled.getPopulation());
+		}
+		assertEquals(8, compiled.getPopulation());
+		for (int y = -20; y < 30; y++) {
+			for (int x = -20; x < 50; x++) {
+				Point2D p = new Point2D(x, y);
+				assertEquals(plain.getCellState(p), compiled.getCellState(p));
+			}
+		}
+	}
+
+	@Test
+	public void testGrowsAndFrees()
+	{
+		// A glider heading up and to the left, past the origin
+		UnboundedState<Point2D> st = new UnboundedState<Point2D>(new Point2D(0, 0), 2);
+		for (int[] c : Fixtures.GLIDER)
+			st.setCellState(new Point2D(2 - c[0], 2 - c[1]), 1);
+
+		for (int i = 0; i < 400; i++)
+			st.step(new LifeRule());
+		assertEquals(5, st.getPopulation());
+		assertTrue(st.numTiles() <= 4);
+
+		Region<Point2D> bounds = st.getBounds();
+		assertEquals(-100, bounds.getMin(0), 1);
+		assertEquals(-100, bounds.getMin(1), 1);
+		assertEquals(3, bounds.getMax(0) - bounds.getMin(0));
+
+		// A lone cell dies, and its tile goes with it
+		st.clear();
+		st.setCellState(new Point2D(1000, -1000), 1);
+		assertEquals(1, st.numTiles());
+		st.step(new LifeRule());
+		assertEquals(0, st.numTiles());
+		assertEquals(0, st.getPopulation());
+		assertNull(st.getBounds());
+	}
+
+	@Test
+	public void testOneDimension()
+	{
+		State<Point1D> bounded = new State<Point1D>(new Point1D(1200), 2);
+		bounded.setCellState(new Point1D(600), 1);
+		UnboundedState<Point1D> unbounded = new UnboundedState<Point1D>(new Point1D(0), 2);
+		unbounded.setState(bounded);
+
+		for (int i = 0; i < 500; i++) {
+			bounded.step(new Rule90());
+			unbounded.step(new Rule90());
+		}
+		assertEquals(bounded.getPopulation(), unbounded.getPopulation());
+		for (Point1D p : bounded)
+			assertEquals(bounded.getCellState(p), unbounded.getCellState(p));
+		assertEquals(0, unbounded.getCellState(new Point1D(-5000)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotQuiescent()
+	{
+		UnboundedState<Point1D> st = new UnboundedState<Point1D>(new Point1D(0), 2);
+		st.step(new Rule90() {
+			@Override
+			public int stepCell(Neighborhood<Point1D> n)
+			{
+				return 1 - super.stepCell(n);
+			}
+		});
+	}
+}